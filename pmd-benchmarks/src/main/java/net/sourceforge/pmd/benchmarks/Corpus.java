@@ -0,0 +1,151 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.Parser;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+
+/**
+ * The checked-in source files, on which the benchmarks run. The files are
+ * taken from PMD itself and cover small data classes up to large, deeply
+ * nested classes.
+ */
+public final class Corpus {
+
+    private static final String JAVA_DIRECTORY = "corpus/java/";
+
+    private static final List<String> JAVA_FILES = Collections.unmodifiableList(Arrays.asList(
+            "RuleContext.java",
+            "PMD.java",
+            "Report.java",
+            "RuleSet.java",
+            "ClassTypeResolver.java"));
+
+    private Corpus() {
+        // utility class
+    }
+
+    /**
+     * Gets the Java language version, which is used for the corpus.
+     *
+     * @return the default Java version
+     */
+    public static LanguageVersion getJavaVersion() {
+        return LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+    }
+
+    /**
+     * Gets the names of the Java source files of the corpus.
+     *
+     * @return the file names, in the order of {@link #readJavaSources()}
+     */
+    public static List<String> getJavaFileNames() {
+        return JAVA_FILES;
+    }
+
+    /**
+     * Reads the Java source files of the corpus.
+     *
+     * @return the source code of each file
+     * @throws IOException if a file can't be read
+     */
+    public static List<String> readJavaSources() throws IOException {
+        final List<String> sources = new ArrayList<>(JAVA_FILES.size());
+        for (final String file : JAVA_FILES) {
+            try (InputStream stream = Corpus.class.getClassLoader().getResourceAsStream(JAVA_DIRECTORY + file)) {
+                if (stream == null) {
+                    throw new IOException("Corpus file not found: " + file);
+                }
+                sources.add(IOUtils.toString(stream, StandardCharsets.UTF_8));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Parses the Java source files of the corpus and builds their symbol
+     * table, which is needed to report violations. Type resolution is not
+     * run.
+     *
+     * @return the root node of each file
+     * @throws IOException if a file can't be read
+     */
+    public static List<Node> parseJavaSources() throws IOException {
+        final LanguageVersionHandler handler = getJavaVersion().getLanguageVersionHandler();
+        final List<Node> roots = parseJavaSources(readJavaSources());
+        for (final Node root : roots) {
+            handler.getSymbolFacade().start(root);
+        }
+        return roots;
+    }
+
+    /**
+     * Parses the given Java source files of the corpus, without running the
+     * symbol table or any other visitor.
+     *
+     * @param sources the source code of each file, see {@link #readJavaSources()}
+     * @return the root node of each file
+     */
+    public static List<Node> parseJavaSources(final List<String> sources) {
+        final LanguageVersionHandler handler = getJavaVersion().getLanguageVersionHandler();
+        final List<Node> roots = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            // like in a PMD run, there is a parser per file
+            final Parser parser = handler.getParser(handler.getDefaultParserOptions());
+            roots.add(parser.parse(JAVA_FILES.get(i), new StringReader(sources.get(i))));
+        }
+        return roots;
+    }
+
+    /**
+     * Analyzes the Java source files of the corpus like PMD does, including
+     * the data flow analysis and the type resolution, if the rules use them.
+     *
+     * @param ruleSets the comma separated rule set references
+     * @return the report with the violations of all files
+     * @throws IOException if a file can't be read
+     * @throws RuleSetNotFoundException if a rule set can't be found
+     * @throws PMDException if a file can't be analyzed
+     */
+    public static Report analyzeJavaSources(final String ruleSets)
+            throws IOException, RuleSetNotFoundException, PMDException {
+        final RuleSets rules = new RuleSetFactory().createRuleSets(ruleSets);
+        final PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setDefaultLanguageVersion(getJavaVersion());
+        final Report report = new Report();
+        final List<String> sources = readJavaSources();
+        for (int i = 0; i < sources.size(); i++) {
+            final RuleContext ctx = new RuleContext();
+            ctx.setLanguageVersion(getJavaVersion());
+            ctx.setReport(report);
+            ctx.setSourceCodeFilename(JAVA_FILES.get(i));
+            new SourceCodeProcessor(configuration).processSourceCode(new StringReader(sources.get(i)), rules, ctx);
+        }
+        return report;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.AbstractMethodOrConstructorDeclaration;
+
+/**
+ * Measures the visitors, which PMD runs on each file before the rules: the
+ * symbol table ({@code SymbolFacade}), the data flow analysis
+ * ({@code DataFlowFacade}, including the data flow of every method and
+ * constructor) and the type resolution ({@code ClassTypeResolver}).
+ *
+ * <p>The visitors annotate the AST, so every invocation gets freshly parsed
+ * ASTs. The parsing isn't measured, but as it is done per invocation, the
+ * benchmark runs a bit longer than the reported time suggests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaVisitorBenchmark {
+
+    private static final LanguageVersionHandler HANDLER = Corpus.getJavaVersion().getLanguageVersionHandler();
+
+    /**
+     * The freshly parsed ASTs of the corpus.
+     */
+    @State(Scope.Thread)
+    public static class ParsedState {
+
+        private List<String> sources;
+        /* default */ List<Node> roots;
+
+        @Setup(Level.Trial)
+        public void readSources() throws IOException {
+            sources = Corpus.readJavaSources();
+        }
+
+        @Setup(Level.Invocation)
+        public void parse() {
+            roots = Corpus.parseJavaSources(sources);
+        }
+    }
+
+    /**
+     * The freshly parsed ASTs of the corpus with their symbol table, which
+     * the data flow analysis and the type resolution need.
+     */
+    @State(Scope.Thread)
+    public static class ScopedState {
+
+        private List<String> sources;
+        /* default */ List<Node> roots;
+
+        @Setup(Level.Trial)
+        public void readSources() throws IOException {
+            sources = Corpus.readJavaSources();
+        }
+
+        @Setup(Level.Invocation)
+        public void parse() {
+            roots = Corpus.parseJavaSources(sources);
+            for (final Node root : roots) {
+                HANDLER.getSymbolFacade().start(root);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Node> symbolFacade(final ParsedState state) {
+        for (final Node root : state.roots) {
+            HANDLER.getSymbolFacade().start(root);
+        }
+        return state.roots;
+    }
+
+    @Benchmark
+    public List<Node> dataFlowFacade(final ScopedState state) {
+        for (final Node root : state.roots) {
+            HANDLER.getDataFlowFacade().start(root);
+            // the facade only prepares the data flow, it's built on the first request
+            final List<AbstractMethodOrConstructorDeclaration> methods
+                = root.findDescendantsOfType(AbstractMethodOrConstructorDeclaration.class);
+            for (final AbstractMethodOrConstructorDeclaration method : methods) {
+                method.getDataFlowNode();
+            }
+        }
+        return state.roots;
+    }
+
+    @Benchmark
+    public List<Node> typeResolution(final ScopedState state) {
+        // the corpus is taken from PMD, so its types are found on the class path of the benchmarks
+        final ClassLoader classLoader = JavaVisitorBenchmark.class.getClassLoader();
+        for (final Node root : state.roots) {
+            HANDLER.getTypeResolutionFacade(classLoader).start(root);
+        }
+        return state.roots;
+    }
+}
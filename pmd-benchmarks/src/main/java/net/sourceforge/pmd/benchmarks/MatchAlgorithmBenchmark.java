@@ -0,0 +1,95 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.cpd.CPDConfiguration;
+import net.sourceforge.pmd.cpd.CPDNullListener;
+import net.sourceforge.pmd.cpd.JavaTokenizer;
+import net.sourceforge.pmd.cpd.Match;
+import net.sourceforge.pmd.cpd.MatchAlgorithm;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+
+/**
+ * Measures the algorithms of CPD, which find the duplicates in the tokens.
+ * The corpus is tokenized before the measurement. It is copied several
+ * times under different names, so that there are duplicates to collect.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchAlgorithmBenchmark {
+
+    @Param({ CPDConfiguration.DEFAULT_MATCH_ALGORITHM, CPDConfiguration.SUFFIX_ARRAY_MATCH_ALGORITHM })
+    private String algorithm;
+
+    @Param({ "1", "4" })
+    private int copies;
+
+    private CPDConfiguration configuration;
+    private Map<String, SourceCode> source;
+    private Tokens tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        configuration = new CPDConfiguration();
+        configuration.setMatchAlgorithm(algorithm);
+        configuration.setMinimumTileSize(75);
+
+        final JavaTokenizer tokenizer = new JavaTokenizer();
+        source = new HashMap<>();
+        tokens = new Tokens();
+        final List<String> sources = Corpus.readJavaSources();
+        for (int copy = 0; copy < copies; copy++) {
+            for (int i = 0; i < sources.size(); i++) {
+                final String fileName = "copy" + copy + "/" + Corpus.getJavaFileNames().get(i);
+                final SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(sources.get(i), fileName));
+                tokenizer.tokenize(sourceCode, tokens);
+                source.put(fileName, sourceCode);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        TokenEntry.clearImages();
+    }
+
+    @Benchmark
+    public int findMatches() {
+        final MatchAlgorithm matchAlgorithm = configuration.matchAlgorithm(source, tokens, new CPDNullListener());
+        matchAlgorithm.findMatches();
+        int marks = 0;
+        final Iterator<Match> i = matchAlgorithm.matches();
+        while (i.hasNext()) {
+            marks += i.next().getMarkCount();
+        }
+        return marks;
+    }
+}
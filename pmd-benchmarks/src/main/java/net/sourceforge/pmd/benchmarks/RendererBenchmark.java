@@ -0,0 +1,68 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.renderers.RendererFactory;
+
+/**
+ * Measures the renderers on the report of the corpus. The "yahtml" renderer
+ * is left out, as it writes a file per class into a directory, and the
+ * "textcolor" renderer, as it reads the source lines from the files on disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RendererBenchmark {
+
+    /** Rules, which find many violations in the corpus. */
+    private static final String RULE_SETS = "category/java/codestyle.xml,category/java/bestpractices.xml";
+
+    @Param({ "codeclimate", "csv", "emacs", "empty", "html", "ideaj", "summaryhtml", "text", "textpad", "vbhtml", "xml",
+        "xslt" })
+    private String format;
+
+    private Report report;
+
+    @Setup
+    public void setUp() throws IOException, RuleSetNotFoundException, PMDException {
+        report = Corpus.analyzeJavaSources(RULE_SETS);
+    }
+
+    @Benchmark
+    public int render() throws IOException {
+        final Renderer renderer = RendererFactory.createRenderer(format, new Properties());
+        final StringWriter writer = new StringWriter();
+        renderer.setWriter(writer);
+        renderer.start();
+        renderer.renderFileReport(report);
+        renderer.end();
+        renderer.flush();
+        return writer.getBuffer().length();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullWriter;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RulesetsFactoryUtils;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageFilenameFilter;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.renderers.TextRenderer;
+import net.sourceforge.pmd.util.FileUtil;
+import net.sourceforge.pmd.util.ResourceLoader;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+/**
+ * Measures the peak heap usage of a multi-threaded PMD run over a synthetic
+ * corpus of Java files, once with an unbounded number of files in flight and
+ * once with the configured bound.
+ *
+ * <p>Options: <code>--files</code> (number of generated files, default 50000),
+ * <code>--threads</code>, <code>--ruleset</code> and
+ * <code>--max-files-in-flight</code> (default is four files per thread).</p>
+ *
+ * <p>This isn't a JMH benchmark, as it measures a single run per
+ * configuration. Run it with <code>java -cp pmd-benchmarks/target/benchmarks.jar
+ * net.sourceforge.pmd.benchmarks.ReportPipelineBenchmark</code>.</p>
+ *
+ * @see PMDConfiguration#getMaxFilesInFlight()
+ */
+public final class ReportPipelineBenchmark {
+
+    private static final int FILES_PER_DIRECTORY = 1000;
+
+    private ReportPipelineBenchmark() { }
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = Integer.parseInt(findOptionalStringValue(args, "--files", "50000"));
+        int threads = Integer.parseInt(findOptionalStringValue(args, "--threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int maxFilesInFlight = Integer.parseInt(findOptionalStringValue(args, "--max-files-in-flight", "0"));
+        String ruleset = findOptionalStringValue(args, "--ruleset",
+                "category/java/bestpractices.xml,category/java/errorprone.xml");
+
+        File corpus = Files.createTempDirectory("pmd-report-pipeline").toFile();
+        try {
+            generateCorpus(corpus, fileCount);
+
+            long unbounded = run(corpus, ruleset, threads, Integer.MAX_VALUE);
+            long bounded = run(corpus, ruleset, threads, maxFilesInFlight);
+
+            System.out.println("Files:                      " + fileCount);
+            System.out.println("Peak heap, unbounded (MB):  " + unbounded / FileUtils.ONE_MB);
+            System.out.println("Peak heap, bounded (MB):    " + bounded / FileUtils.ONE_MB);
+        } finally {
+            FileUtils.deleteQuietly(corpus);
+        }
+    }
+
+    private static String findOptionalStringValue(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void generateCorpus(File corpus, int fileCount) throws IOException {
+        for (int i = 0; i < fileCount; i++) {
+            File directory = new File(corpus, "p" + i / FILES_PER_DIRECTORY);
+            String source = "package p" + i / FILES_PER_DIRECTORY + ";\n\n"
+                    + "public class Synthetic" + i + " {\n"
+                    + "    private int unused;\n"
+                    + "    public void method(String s) {\n"
+                    + "        try {\n"
+                    + "            if (s == \"\") { s = null; }\n"
+                    + "        } catch (Exception e) {\n"
+                    + "        }\n"
+                    + "    }\n"
+                    + "}\n";
+            FileUtils.writeStringToFile(new File(directory, "Synthetic" + i + ".java"), source,
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Runs PMD on the corpus and returns the peak heap usage in bytes.
+     */
+    private static long run(File corpus, String ruleset, int threads, int maxFilesInFlight) throws IOException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets(ruleset);
+        configuration.setThreads(threads);
+        configuration.setMaxFilesInFlight(maxFilesInFlight);
+        configuration.setIgnoreIncrementalAnalysis(true);
+
+        Language java = LanguageRegistry.getLanguage("Java");
+        List<DataSource> files = FileUtil.collectFiles(corpus.getPath(), new LanguageFilenameFilter(java));
+        RuleSetFactory factory = RulesetsFactoryUtils.getRulesetFactory(configuration, new ResourceLoader());
+
+        Renderer renderer = new TextRenderer();
+        renderer.setWriter(new NullWriter());
+        renderer.start();
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = heapPools();
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+
+        PMD.processFiles(configuration, factory, files, new RuleContext(), Collections.singletonList(renderer));
+        renderer.end();
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+}
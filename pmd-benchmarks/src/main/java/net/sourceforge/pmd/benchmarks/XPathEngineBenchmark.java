@@ -0,0 +1,97 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
+
+/**
+ * Compares the XPath engines on the same rules: Jaxen for XPath 1.0 and
+ * Saxon for XPath 2.0 and the 1.0 compatibility mode. The expressions are
+ * valid in all versions. For the scalability of Saxon with several threads,
+ * see {@link XPathRuleBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XPathEngineBenchmark {
+
+    private static final String[] XPATHS = {
+        "//MethodDeclarator[string-length(@Image) > 20]",
+        "//IfStatement[not(Statement/Block)]",
+        "//LocalVariableDeclaration[count(VariableDeclarator) > 1]",
+        "//AllocationExpression[ClassOrInterfaceType[@Image='ArrayList']]",
+        "//FieldDeclaration/ancestor::ClassOrInterfaceDeclaration[starts-with(@Image, 'Rule')]",
+        "//CatchStatement[count(Block/BlockStatement) = 0]/preceding-sibling::Block",
+    };
+
+    @Param({ "1.0", "1.0 compatibility", "2.0" })
+    private String version;
+
+    private RuleSets ruleSets;
+    private List<Node> roots;
+
+    @Setup
+    public void setUp() throws IOException {
+        final RuleSetFactory factory = new RuleSetFactory();
+        final List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < XPATHS.length; i++) {
+            final XPathRule rule = new XPathRule(XPATHS[i]);
+            rule.setName("XPathRule" + i);
+            rule.setMessage("XPath rule " + i);
+            rule.setLanguage(LanguageRegistry.getLanguage(JavaLanguageModule.NAME));
+            rule.setVersion(version);
+            rules.add(rule);
+        }
+        ruleSets = new RuleSets(factory.createNewRuleSet("XPathEngineBenchmark", "XPath " + version + " rules", null,
+                Collections.<String>emptyList(), Collections.<String>emptyList(), rules));
+        roots = Corpus.parseJavaSources();
+    }
+
+    @Benchmark
+    public int evaluateXPathRules() {
+        int violations = 0;
+        for (final Node root : roots) {
+            final RuleContext ctx = new RuleContext();
+            ctx.setLanguageVersion(Corpus.getJavaVersion());
+            ctx.setReport(new Report());
+            ctx.setSourceCodeFilename("Benchmark.java");
+            ruleSets.apply(Collections.singletonList(root), ctx, ctx.getLanguageVersion().getLanguage());
+            // the analysis of the file is finished, see SourceCodeProcessor
+            SaxonXPathRuleQuery.clearDocumentNodeCache();
+            violations += ctx.getReport().size();
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
+
+/**
+ * Measures the throughput of XPath 2.0 rules, when evaluated by several
+ * threads at the same time. Each thread analyzes its own copy of the corpus,
+ * and the Saxon tree is released after each file like in a PMD run, so that
+ * contention on shared state shows up as a throughput, which doesn't scale
+ * with the number of threads.
+ *
+ * <p>Run {@link #main(String[])} to measure with 1, 2, 4, 8, 16 and 32
+ * threads, or pass the thread counts as arguments.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathRuleBenchmark {
+
+    private static final String[] XPATHS = {
+        // these can be evaluated with the RuleChain
+        "//MethodDeclaration[@Public = true()]/MethodDeclarator[string-length(@Image) > 20]",
+        "//IfStatement[not(Statement/Block)]",
+        "//LocalVariableDeclaration[count(VariableDeclarator) > 1]",
+        "//PrimaryPrefix[Name[ends-with(@Image, '.size')]] | //AllocationExpression[ClassOrInterfaceType[@Image='ArrayList']]",
+        // these are evaluated on the root node
+        "//FieldDeclaration[@Static = false()]/ancestor::ClassOrInterfaceDeclaration[@Nested = true()]",
+        "//CatchStatement[count(Block/BlockStatement) = 0]/preceding-sibling::Block",
+    };
+
+    private static final int[] DEFAULT_THREAD_COUNTS = { 1, 2, 4, 8, 16, 32 };
+
+    /**
+     * The rules and ASTs of one benchmark thread. Like in a PMD run, the
+     * rules are not shared between threads.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        /* default */ RuleSets ruleSets;
+        /* default */ List<Node> roots;
+
+        @Setup
+        public void setUp() throws IOException {
+            final RuleSetFactory factory = new RuleSetFactory();
+            final List<Rule> rules = new ArrayList<>();
+            for (int i = 0; i < XPATHS.length; i++) {
+                final XPathRule rule = new XPathRule(XPATHS[i]);
+                rule.setName("XPathRule" + i);
+                rule.setMessage("XPath rule " + i);
+                rule.setLanguage(LanguageRegistry.getLanguage(JavaLanguageModule.NAME));
+                rule.setVersion(XPathRuleQuery.XPATH_2_0);
+                rules.add(rule);
+            }
+            ruleSets = new RuleSets(factory.createNewRuleSet("XPathRuleBenchmark", "XPath 2.0 rules", null,
+                    Collections.<String>emptyList(), Collections.<String>emptyList(), rules));
+            roots = Corpus.parseJavaSources();
+        }
+    }
+
+    @Benchmark
+    public int evaluateXPathRules(final ThreadState state) {
+        int violations = 0;
+        for (final Node root : state.roots) {
+            final RuleContext ctx = new RuleContext();
+            ctx.setLanguageVersion(Corpus.getJavaVersion());
+            ctx.setReport(new Report());
+            ctx.setSourceCodeFilename("Benchmark.java");
+            state.ruleSets.apply(Collections.singletonList(root), ctx, ctx.getLanguageVersion().getLanguage());
+            // the analysis of the file is finished, see SourceCodeProcessor
+            SaxonXPathRuleQuery.clearDocumentNodeCache();
+            violations += ctx.getReport().size();
+        }
+        return violations;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        int[] threadCounts = DEFAULT_THREAD_COUNTS;
+        if (args.length > 0) {
+            threadCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threadCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (final int threads : threadCounts) {
+            final Options options = new OptionsBuilder()
+                    .include(XPathRuleBenchmark.class.getName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -6,6 +6,7 @@ package net.sourceforge.pmd;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -21,6 +22,7 @@ import java.util.logging.Logger;
 
 import net.sourceforge.pmd.benchmark.Benchmark;
 import net.sourceforge.pmd.benchmark.Benchmarker;
+import net.sourceforge.pmd.benchmark.ProfileReport;
 import net.sourceforge.pmd.benchmark.TextReport;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.cli.PMDCommandLineInterface;
@@ -34,6 +36,7 @@ import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.ParserOptions;
 import net.sourceforge.pmd.processor.MonoThreadProcessor;
 import net.sourceforge.pmd.processor.MultiThreadProcessor;
+import net.sourceforge.pmd.processor.WorkStealingProcessor;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.stat.Metric;
 import net.sourceforge.pmd.util.ClasspathClassLoader;
@@ -196,6 +199,21 @@ public class PMD {
      * @return number of violations found.
      */
     public static int doPMD(PMDConfiguration configuration) {
+        boolean benchmarkEnabled = Benchmarker.isEnabled();
+        if (configuration.isBenchmark() || configuration.getProfileFile() != null) {
+            Benchmarker.setEnabled(true);
+        }
+        try {
+            return analyze(configuration);
+        } finally {
+            Benchmarker.setEnabled(benchmarkEnabled);
+        }
+    }
+
+    private static int analyze(PMDConfiguration configuration) {
+        if (configuration.getProfileFile() != null) {
+            Benchmarker.setProfiling(true, configuration.getProfileSlowestCount());
+        }
 
         // Load the RuleSets
         RuleSetFactory ruleSetFactory = RulesetsFactoryUtils.getRulesetFactory(configuration, new ResourceLoader());
@@ -249,6 +267,9 @@ public class PMD {
             return 0;
         } finally {
             Benchmarker.mark(Benchmark.Reporting, System.nanoTime() - reportStart, 0);
+            if (configuration.getProfileFile() != null) {
+                writeProfile(configuration.getProfileFile());
+            }
 
             /*
              * Make sure it's our own classloader before attempting to close it....
@@ -261,6 +282,14 @@ public class PMD {
         }
     }
 
+    private static void writeProfile(String profileFile) {
+        try (Writer writer = IOUtil.createWriter(profileFile)) {
+            new ProfileReport().write(Benchmarker.profile(), profileFile, writer);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write the profile " + profileFile, e);
+        }
+    }
+
     /**
      * Creates a new rule context, initialized with a new, empty report.
      *
@@ -317,7 +346,9 @@ public class PMD {
          * be disabled if threadCount is not positive, e.g. using the
          * "-threads 0" command line option.
          */
-        if (configuration.getThreads() > 0) {
+        if (configuration.getThreads() > 0 && configuration.isLargestFilesFirst()) {
+            new WorkStealingProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
+        } else if (configuration.getThreads() > 0) {
             new MultiThreadProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
         } else {
             new MonoThreadProcessor(configuration).processFiles(silentFactoy, files, ctx, renderers);
@@ -456,6 +487,11 @@ public class PMD {
         // Need to do this, since the static logger has already been initialized
         // at this point
         LOG.setLevel(logLevel);
+        // doPMD restores the previous state, but the total time is marked afterwards
+        final boolean benchmarkEnabled = Benchmarker.isEnabled();
+        if (params.isBenchmark()) {
+            Benchmarker.setEnabled(true);
+        }
 
         try {
             int violations = PMD.doPMD(configuration);
@@ -480,7 +516,10 @@ public class PMD {
                 TextReport report = new TextReport();
 
                 report.generate(Benchmarker.values(), System.err);
+                report.generateHistograms(Benchmarker.histograms(), System.err);
+                Benchmarker.reset();
             }
+            Benchmarker.setEnabled(benchmarkEnabled);
         }
         return status;
     }
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Properties;
 
 import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.DirectoryAnalysisCache;
 import net.sourceforge.pmd.cache.FileAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -31,6 +32,9 @@ import net.sourceforge.pmd.util.IOUtil;
  * defaults to {@link PMD#SUPPRESS_MARKER}. {@link #getSuppressMarker()}</li>
  * <li>The number of threads to create when invoking on multiple files, defaults
  * one thread per available processor. {@link #getThreads()}</li>
+ * <li>The maximum number of files, that are analyzed or wait for their report
+ * to be rendered at the same time, defaults to four files per thread.
+ * {@link #getMaxFilesInFlight()}</li>
  * <li>A ClassLoader to use when loading classes during Rule processing (e.g.
  * during type resolution), defaults to ClassLoader of the Configuration class.
  * {@link #getClassLoader()}</li>
@@ -77,13 +81,23 @@ import net.sourceforge.pmd.util.IOUtil;
  * as randomizing the order of file processing. {@link #isStressTest()}</li>
  * <li>An indicator of whether PMD should log benchmarking information.
  * {@link #isBenchmark()}</li>
+ * <li>An indicator of whether PMD should analyze the largest files first,
+ * using a work-stealing thread pool. {@link #isLargestFilesFirst()}</li>
+ * <li>An indicator of whether PMD should apply the rules in a single visitation
+ * of the AST. {@link #isFuseRules()}</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
+    private static final int DEFAULT_FILES_IN_FLIGHT_PER_THREAD = 4;
+    private static final int DEFAULT_PROFILE_SLOWEST_COUNT = 20;
+
     // General behavior options
     private String suppressMarker = PMD.SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxFilesInFlight;
     private ClassLoader classLoader = getClass().getClassLoader();
+    private File symbolIndexDirectory;
+    private File multifileIndexDirectory;
     private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
 
     // Rule and source file options
@@ -104,6 +118,10 @@ public class PMDConfiguration extends AbstractConfiguration {
 
     private boolean stressTest;
     private boolean benchmark;
+    private String profileFile;
+    private int profileSlowestCount = DEFAULT_PROFILE_SLOWEST_COUNT;
+    private boolean largestFilesFirst;
+    private boolean fuseRules;
     private AnalysisCache analysisCache = new NoopAnalysisCache();
     private boolean ignoreIncrementalAnalysis;
 
@@ -146,6 +164,37 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Get the maximum number of files, that are analyzed or whose finished
+     * report waits to be rendered at the same time. When this limit is
+     * reached, no further files are dispatched to the worker threads until
+     * another report has been rendered. This bounds the memory used by the
+     * file reports. If no limit has been set, four files per thread are
+     * allowed. The limit isn't used, if the largest files are analyzed first.
+     *
+     * @return The maximum number of files in flight.
+     * @see #isLargestFilesFirst()
+     */
+    public int getMaxFilesInFlight() {
+        if (maxFilesInFlight > 0) {
+            return maxFilesInFlight;
+        }
+        return Math.max(1, threads) * DEFAULT_FILES_IN_FLIGHT_PER_THREAD;
+    }
+
+    /**
+     * Set the maximum number of files, that are analyzed or whose finished
+     * report waits to be rendered at the same time. A value of zero or less
+     * restores the default.
+     *
+     * @param maxFilesInFlight
+     *            The maximum number of files in flight.
+     * @see #getMaxFilesInFlight()
+     */
+    public void setMaxFilesInFlight(int maxFilesInFlight) {
+        this.maxFilesInFlight = maxFilesInFlight;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -192,10 +241,62 @@ public class PMDConfiguration extends AbstractConfiguration {
             classLoader = PMDConfiguration.class.getClassLoader();
         }
         if (classpath != null) {
-            classLoader = new ClasspathClassLoader(classpath, classLoader);
+            final ClasspathClassLoader classpathClassLoader = new ClasspathClassLoader(classpath, classLoader);
+            classpathClassLoader.setSymbolIndexDirectory(symbolIndexDirectory);
+            classLoader = classpathClassLoader;
         }
     }
 
+    /**
+     * Get the directory of the symbol indexes of the jars on the auxclasspath.
+     *
+     * @return The directory, or <code>null</code> if the jars are not indexed.
+     */
+    public File getSymbolIndexDirectory() {
+        return symbolIndexDirectory;
+    }
+
+    /**
+     * Set the directory, in which the symbols of the jars on the auxclasspath
+     * are stored, so that later analyses don't need to read the jars again.
+     * The indexes are keyed by the contents of the jars, so the directory can
+     * be shared.
+     *
+     * @param symbolIndexDirectory
+     *            The directory, or <code>null</code> to not index the jars.
+     * @see ClasspathClassLoader#setSymbolIndexDirectory(File)
+     */
+    public void setSymbolIndexDirectory(File symbolIndexDirectory) {
+        this.symbolIndexDirectory = symbolIndexDirectory;
+        if (classLoader instanceof ClasspathClassLoader) {
+            ((ClasspathClassLoader) classLoader).setSymbolIndexDirectory(symbolIndexDirectory);
+        }
+    }
+
+    /**
+     * Get the directory of the project indexes of the multifile rules.
+     *
+     * @return The directory, or <code>null</code> if the indexes are not
+     *         persisted.
+     */
+    public File getMultifileIndexDirectory() {
+        return multifileIndexDirectory;
+    }
+
+    /**
+     * Set the directory, in which the project indexes of the multifile rules
+     * are stored, so that later analyses of the same project only index the
+     * files, which changed. The directory belongs to one project.
+     *
+     * @param multifileIndexDirectory
+     *            The directory, or <code>null</code> to not persist the
+     *            indexes.
+     * @see net.sourceforge.pmd.lang.ProjectIndexer
+     */
+    public void setMultifileIndexDirectory(File multifileIndexDirectory) {
+        this.multifileIndexDirectory = multifileIndexDirectory;
+    }
+
     /**
      * Get the LanguageVersionDiscoverer, used to determine the LanguageVersion
      * of a source file.
@@ -517,6 +618,102 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.benchmark = benchmark;
     }
 
+    /**
+     * Get the file, into which PMD writes a profile of the analysis. The
+     * profile contains the percentiles of the durations of each rule, the
+     * slowest applications of a rule to a file and the durations of the
+     * parser and the type resolution per file. It is written as CSV, if the
+     * name ends with <code>.csv</code>, otherwise as JSON.
+     *
+     * @return The profile file, <code>null</code> if no profile is written.
+     */
+    public String getProfileFile() {
+        return profileFile;
+    }
+
+    /**
+     * Set the file, into which PMD writes a profile of the analysis.
+     *
+     * @param profileFile
+     *            The profile file, <code>null</code> to not profile.
+     * @see #getProfileFile()
+     */
+    public void setProfileFile(String profileFile) {
+        this.profileFile = profileFile;
+    }
+
+    /**
+     * Get the number of the slowest applications of a rule to a file, which
+     * are listed in the profile. The default is 20.
+     *
+     * @return The number of rule and file pairs.
+     */
+    public int getProfileSlowestCount() {
+        return profileSlowestCount;
+    }
+
+    /**
+     * Set the number of the slowest applications of a rule to a file, which
+     * are listed in the profile.
+     *
+     * @param profileSlowestCount
+     *            The number of rule and file pairs.
+     * @see #getProfileSlowestCount()
+     */
+    public void setProfileSlowestCount(int profileSlowestCount) {
+        this.profileSlowestCount = profileSlowestCount;
+    }
+
+    /**
+     * Return the largest files first indicator. If this value is
+     * <code>true</code> and more than one thread is used, then PMD dispatches
+     * the files ordered by their size, largest first, into a work-stealing
+     * thread pool. This reduces the time at the end of the analysis, where
+     * only a few threads are still busy. The report is still rendered in file
+     * name order, so the finished file reports are held back until they can be
+     * rendered. {@link #getMaxFilesInFlight()} doesn't apply in this case.
+     *
+     * @return <code>true</code> if the largest files are analyzed first,
+     *         <code>false</code> otherwise.
+     */
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    /**
+     * Set the largest files first indicator.
+     *
+     * @param largestFilesFirst
+     *            The largest files first indicator to set.
+     * @see #isLargestFilesFirst()
+     */
+    public void setLargestFilesFirst(boolean largestFilesFirst) {
+        this.largestFilesFirst = largestFilesFirst;
+    }
+
+    /**
+     * Return the fuse rules indicator. If this value is <code>true</code> then
+     * the rules, which don't use the RuleChain, are applied in a single
+     * visitation of the AST, if their language supports it.
+     *
+     * @return <code>true</code> if the rules are fused, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isFuseRules() {
+        return fuseRules;
+    }
+
+    /**
+     * Set the fuse rules indicator.
+     *
+     * @param fuseRules
+     *            The fuse rules indicator to set.
+     * @see #isFuseRules()
+     */
+    public void setFuseRules(boolean fuseRules) {
+        this.fuseRules = fuseRules;
+    }
+
     /**
      * Whether PMD should exit with status 4 (the default behavior, true) if
      * violations are found or just with 0 (to not break the build, e.g.).
@@ -601,6 +798,20 @@ public class PMDConfiguration extends AbstractConfiguration {
                                  : new FileAnalysisCache(new File(cacheLocation)));
     }
 
+    /**
+     * Sets the directory of a shared analysis cache to be used. The cached results are
+     * looked up by the contents of the files, so that the directory can be shared by
+     * multiple checkouts and concurrent PMD processes.
+     *
+     * @param cacheDirectory The directory of the analysis cache to be used.
+     * @see DirectoryAnalysisCache
+     */
+    public void setAnalysisCacheDirectory(final String cacheDirectory) {
+        setAnalysisCache(cacheDirectory == null
+                                 ? new NoopAnalysisCache()
+                                 : new DirectoryAnalysisCache(new File(cacheDirectory)));
+    }
+
 
     /**
      * Sets whether the user has explicitly disabled incremental analysis or not.
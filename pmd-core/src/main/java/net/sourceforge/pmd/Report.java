@@ -33,16 +33,25 @@ import net.sourceforge.pmd.util.NumericConstants;
  */
 public class Report implements Iterable<RuleViolation> {
 
+    /*
+     * The violations are appended in the order, in which they are reported.
+     * They are only sorted, when they are iterated, and put into the tree,
+     * when the tree is requested. Adding a violation is therefore O(1), even
+     * for reports with many violations.
+     */
+    private final List<RuleViolation> violations = new ArrayList<>();
+    /** The first sortedCount violations, sorted. Created on the first iteration. */
+    private List<RuleViolation> sortedViolations;
+    private int sortedCount;
+
     /*
      * The idea is to store the violations in a tree instead of a list, to do
      * better and faster sort and filter mechanism and to visualize the result
-     * as tree. (ide plugins).
+     * as tree. (ide plugins). Built on demand, contains the first treeCount
+     * violations.
      */
-    private final ReportTree violationTree = new ReportTree();
-
-    // Note that this and the above data structure are both being maintained for
-    // a bit
-    private final List<RuleViolation> violations = new ArrayList<>();
+    private ReportTree violationTree;
+    private int treeCount;
     private final Set<Metric> metrics = new HashSet<>();
     private final List<ThreadSafeReportListener> listeners = new ArrayList<>();
     private List<ProcessingError> errors;
@@ -262,7 +271,7 @@ public class Report implements Iterable<RuleViolation> {
      */
     public Map<String, Integer> getCountSummary() {
         Map<String, Integer> summary = new HashMap<>();
-        for (RuleViolation rv : violationTree) {
+        for (RuleViolation rv : getViolationTree()) {
             String key = keyFor(rv);
             Integer o = summary.get(key);
             summary.put(key, o == null ? NumericConstants.ONE : o + 1);
@@ -270,7 +279,21 @@ public class Report implements Iterable<RuleViolation> {
         return summary;
     }
 
+    /**
+     * Returns the violations as a tree of packages and classes. The tree is
+     * built on the first call and updated with the violations, which were
+     * added since the last call. Duplicated violations of a class are only
+     * contained once.
+     *
+     * @return the tree of the violations
+     */
     public ReportTree getViolationTree() {
+        if (violationTree == null) {
+            violationTree = new ReportTree();
+        }
+        for (; treeCount < violations.size(); treeCount++) {
+            violationTree.addRuleViolation(violations.get(treeCount));
+        }
         return this.violationTree;
     }
 
@@ -327,9 +350,7 @@ public class Report implements Iterable<RuleViolation> {
             return;
         }
 
-        int index = Collections.binarySearch(violations, violation, RuleViolationComparator.INSTANCE);
-        violations.add(index < 0 ? -index - 1 : index, violation);
-        violationTree.addRuleViolation(violation);
+        violations.add(violation);
         for (ThreadSafeReportListener listener : listeners) {
             listener.ruleViolationAdded(violation);
         }
@@ -398,10 +419,7 @@ public class Report implements Iterable<RuleViolation> {
         }
         Iterator<RuleViolation> v = r.iterator();
         while (v.hasNext()) {
-            RuleViolation violation = v.next();
-            int index = Collections.binarySearch(violations, violation, RuleViolationComparator.INSTANCE);
-            violations.add(index < 0 ? -index - 1 : index, violation);
-            violationTree.addRuleViolation(violation);
+            violations.add(v.next());
         }
         Iterator<SuppressedViolation> s = r.getSuppressedRuleViolations().iterator();
         while (s.hasNext()) {
@@ -429,7 +447,7 @@ public class Report implements Iterable<RuleViolation> {
     }
 
     public boolean isEmpty() {
-        return !violations.iterator().hasNext() && !hasErrors();
+        return violations.isEmpty() && !hasErrors();
     }
 
     /**
@@ -459,7 +477,8 @@ public class Report implements Iterable<RuleViolation> {
      *         <code>false</code> otherwise
      */
     public boolean treeIsEmpty() {
-        return !violationTree.iterator().hasNext();
+        // the tree drops duplicates only, so it's empty iff there are no violations
+        return violations.isEmpty();
     }
 
     /**
@@ -468,12 +487,18 @@ public class Report implements Iterable<RuleViolation> {
      * @return an iterator
      */
     public Iterator<RuleViolation> treeIterator() {
-        return violationTree.iterator();
+        return getViolationTree().iterator();
     }
 
+    /**
+     * Returns an iteration over the reported violations, sorted with the
+     * {@link RuleViolationComparator}.
+     *
+     * @return an iterator
+     */
     @Override
     public Iterator<RuleViolation> iterator() {
-        return violations.iterator();
+        return Collections.unmodifiableList(getSortedViolations()).iterator();
     }
 
     /**
@@ -500,7 +525,7 @@ public class Report implements Iterable<RuleViolation> {
      * @return number of violations.
      */
     public int treeSize() {
-        return violationTree.size();
+        return getViolationTree().size();
     }
 
     /**
@@ -535,6 +560,23 @@ public class Report implements Iterable<RuleViolation> {
         return end - start;
     }
 
+    /**
+     * Sorts the violations, which were added since the last call, into the
+     * sorted violations. The sort is stable and only merges the already
+     * sorted violations with the new ones, instead of sorting them again.
+     */
+    private List<RuleViolation> getSortedViolations() {
+        if (sortedViolations == null) {
+            sortedViolations = new ArrayList<>(violations.size());
+        }
+        if (sortedCount < violations.size()) {
+            sortedViolations.addAll(violations.subList(sortedCount, violations.size()));
+            Collections.sort(sortedViolations, RuleViolationComparator.INSTANCE);
+            sortedCount = violations.size();
+        }
+        return sortedViolations;
+    }
+
     public List<ThreadSafeReportListener> getListeners() {
         return listeners;
     }
@@ -4,9 +4,12 @@
 
 package net.sourceforge.pmd;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.ast.Node;
@@ -21,6 +24,8 @@ import net.sourceforge.pmd.lang.rule.RuleChainVisitor;
 public class RuleChain {
     // Mapping from Language to RuleChainVisitor
     private final Map<Language, RuleChainVisitor> languageToRuleChainVisitor = new HashMap<>();
+    // Rules not using the RuleChain, which are applied by a RuleChainVisitor
+    private final Set<Rule> fusedRules = Collections.newSetFromMap(new IdentityHashMap<Rule, Boolean>());
 
     /**
      * Add all Rules from the given RuleSet which want to participate in the
@@ -50,6 +55,33 @@ public class RuleChain {
         }
     }
 
+    /**
+     * Let the RuleChainVisitors apply the Rules from the given RuleSet, which
+     * don't participate in the RuleChain, in their single visitation of the
+     * AST, if they support these Rules.
+     *
+     * @param ruleSet
+     *            The RuleSet to fuse Rules from.
+     */
+    public void fuse(RuleSet ruleSet) {
+        for (Rule r : ruleSet.getRules()) {
+            if (!r.isRuleChain() && !fusedRules.contains(r) && r.getLanguage().getRuleChainVisitorClass() != null
+                    && getRuleChainVisitor(r.getLanguage()).fuse(ruleSet, r)) {
+                fusedRules.add(r);
+            }
+        }
+    }
+
+    /**
+     * Gets the Rules, which don't participate in the RuleChain, but are
+     * applied by a RuleChainVisitor.
+     *
+     * @return The fused Rules.
+     */
+    public Set<Rule> getFusedRules() {
+        return Collections.unmodifiableSet(fusedRules);
+    }
+
     /**
      * Apply the RuleChain to the given Nodes using the given RuleContext, for
      * those rules using the given Language.
@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -493,14 +494,32 @@ public class RuleSet implements ChecksumAware {
      *            the current context
      */
     public void apply(List<? extends Node> acuList, RuleContext ctx) {
-        long start = System.nanoTime();
+        apply(acuList, ctx, Collections.<Rule>emptySet());
+    }
+
+    /**
+     * Executes the rules in this ruleset against each of the given nodes,
+     * except the given rules, which are applied by the RuleChain.
+     *
+     * @param acuList
+     *            the node list, usually the root nodes like compilation units
+     * @param ctx
+     *            the current context
+     * @param fusedRules
+     *            the rules, which are applied by the RuleChain
+     */
+    /* default */ void apply(List<? extends Node> acuList, RuleContext ctx, Set<Rule> fusedRules) {
+        final boolean benchmark = Benchmarker.isEnabled();
+        long start = benchmark ? System.nanoTime() : 0;
         for (Rule rule : rules) {
             try {
-                if (!rule.isRuleChain() && applies(rule, ctx.getLanguageVersion())) {
+                if (!rule.isRuleChain() && !fusedRules.contains(rule) && applies(rule, ctx.getLanguageVersion())) {
                     rule.apply(acuList, ctx);
-                    long end = System.nanoTime();
-                    Benchmarker.mark(Benchmark.Rule, rule.getName(), end - start, 1);
-                    start = end;
+                    if (benchmark) {
+                        long end = System.nanoTime();
+                        Benchmarker.mark(Benchmark.Rule, rule.getName(), end - start, 1);
+                        start = end;
+                    }
                 }
             } catch (RuntimeException e) {
                 if (ctx.isIgnoreExceptions()) {
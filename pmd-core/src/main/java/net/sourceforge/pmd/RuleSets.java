@@ -5,15 +5,24 @@
 package net.sourceforge.pmd;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
 
 /**
  * Grouping of Rules per Language in a RuleSet.
@@ -31,6 +40,11 @@ public class RuleSets {
      */
     private RuleChain ruleChain = new RuleChain();
 
+    /**
+     * Whether the rules not using the RuleChain are applied by the RuleChain, if possible.
+     */
+    private boolean fused;
+
     /**
      * Public constructor.
      */
@@ -69,6 +83,9 @@ public class RuleSets {
     public void addRuleSet(RuleSet ruleSet) {
         ruleSets.add(ruleSet);
         ruleChain.add(ruleSet);
+        if (fused) {
+            ruleChain.fuse(ruleSet);
+        }
     }
 
     /**
@@ -138,10 +155,27 @@ public class RuleSets {
      */
     public void apply(List<Node> acuList, RuleContext ctx, Language language) {
         ruleChain.apply(acuList, ctx, language);
+        Set<Rule> fusedRules = ruleChain.getFusedRules();
         for (RuleSet ruleSet : ruleSets) {
             if (ruleSet.applies(ctx.getSourceCodeFile())) {
-                ruleSet.apply(acuList, ctx);
+                ruleSet.apply(acuList, ctx, fusedRules);
+            }
+        }
+    }
+
+    /**
+     * Lets the RuleChain apply the rules, which don't use the RuleChain, in
+     * its single visitation of the AST, instead of letting each of these rules
+     * visit the AST on its own. Only the rules, which the RuleChainVisitor of
+     * their language supports, are fused, the other rules are applied as
+     * before.
+     */
+    public void fuseRules() {
+        if (!fused) {
+            for (RuleSet ruleSet : ruleSets) {
+                ruleChain.fuse(ruleSet);
             }
+            fused = true;
         }
     }
 
@@ -262,4 +296,113 @@ public class RuleSets {
         }
         return checksum;
     }
+
+    /**
+     * Retrieves a checksum of each rule of the rulesets being used. The checksum
+     * of a rule changes, if the rule or the file patterns of its ruleset are
+     * configured differently. This allows to keep the cached results of the
+     * unchanged rules, when the rulesets change.
+     *
+     * @return The rules by their checksum.
+     */
+    public Map<Long, Rule> getRulesByChecksum() {
+        final Map<Long, Rule> rulesByChecksum = new HashMap<>();
+        for (final RuleSet ruleSet : ruleSets) {
+            for (final Rule rule : ruleSet.getRules()) {
+                rulesByChecksum.put(computeRuleChecksum(ruleSet, rule), rule);
+            }
+        }
+        return rulesByChecksum;
+    }
+
+    /**
+     * Retrieves the ruleset of each rule of the rulesets being used. Equal rules
+     * may be part of several rulesets, which apply to different files, so the
+     * checksum identifies the rule together with its ruleset.
+     *
+     * @return The rulesets by the checksum of their rules.
+     * @see #getRulesByChecksum()
+     */
+    public Map<Long, RuleSet> getRuleSetsByRuleChecksum() {
+        final Map<Long, RuleSet> ruleSetsByChecksum = new HashMap<>();
+        for (final RuleSet ruleSet : ruleSets) {
+            for (final Rule rule : ruleSet.getRules()) {
+                ruleSetsByChecksum.put(computeRuleChecksum(ruleSet, rule), ruleSet);
+            }
+        }
+        return ruleSetsByChecksum;
+    }
+
+    /**
+     * Creates new rulesets, which only contain the rules with the given
+     * checksums. The rule instances are shared with these rulesets.
+     *
+     * @param ruleChecksums
+     *            The checksums of the rules to keep
+     * @return The filtered rulesets
+     * @see #getRulesByChecksum()
+     */
+    public RuleSets filterByRuleChecksum(final Set<Long> ruleChecksums) {
+        final RuleSets filtered = new RuleSets();
+        for (final RuleSet ruleSet : ruleSets) {
+            final RuleSet.RuleSetBuilder builder = new RuleSet.RuleSetBuilder(ruleSet.getChecksum())
+                    .withName(ruleSet.getName())
+                    .withDescription(ruleSet.getDescription())
+                    .withFileName(ruleSet.getFileName())
+                    .setExcludePatterns(ruleSet.getExcludePatterns())
+                    .setIncludePatterns(ruleSet.getIncludePatterns());
+            boolean hasRules = false;
+            for (final Rule rule : ruleSet.getRules()) {
+                if (ruleChecksums.contains(computeRuleChecksum(ruleSet, rule))) {
+                    builder.addRule(rule);
+                    hasRules = true;
+                }
+            }
+            if (hasRules) {
+                filtered.addRuleSet(builder.build());
+            }
+        }
+        return filtered;
+    }
+
+    private static long computeRuleChecksum(final RuleSet ruleSet, final Rule rule) {
+        final StringBuilder config = new StringBuilder();
+        config.append(ruleSet.getExcludePatterns()).append('\0')
+            .append(ruleSet.getIncludePatterns()).append('\0')
+            .append(rule.getRuleClass()).append('\0')
+            .append(rule.getName()).append('\0')
+            .append(rule.getLanguage() == null ? null : rule.getLanguage().getTerseName()).append('\0')
+            .append(getVersion(rule.getMinimumLanguageVersion())).append('\0')
+            .append(getVersion(rule.getMaximumLanguageVersion())).append('\0')
+            .append(rule.getPriority()).append('\0')
+            .append(rule.getMessage()).append('\0');
+
+        // sorted by name, so that the checksum doesn't depend on the order of the properties
+        final Map<String, String> properties = new TreeMap<>();
+        for (final Map.Entry<PropertyDescriptor<?>, Object> property
+                : rule.getPropertiesByPropertyDescriptor().entrySet()) {
+            properties.put(property.getKey().name(), asDelimitedString(property.getKey(), property.getValue()));
+        }
+        for (final Map.Entry<String, String> property : properties.entrySet()) {
+            config.append(property.getKey()).append('=').append(property.getValue()).append('\0');
+        }
+
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(config.toString().getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getVersion(final LanguageVersion languageVersion) {
+        return languageVersion == null ? null : languageVersion.getVersion();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> String asDelimitedString(final PropertyDescriptor<T> descriptor, final Object value) {
+        return value == null ? null : descriptor.asDelimitedString((T) value);
+    }
 }
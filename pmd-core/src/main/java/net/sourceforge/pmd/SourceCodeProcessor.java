@@ -13,6 +13,9 @@ import java.util.List;
 
 import net.sourceforge.pmd.benchmark.Benchmark;
 import net.sourceforge.pmd.benchmark.Benchmarker;
+import net.sourceforge.pmd.cache.AbstractAnalysisCache;
+import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.TypeDependencies;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
@@ -20,7 +23,10 @@ import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.VisitorStarter;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.metrics.BasicProjectMemoizer;
+import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
 import net.sourceforge.pmd.lang.xpath.Initializer;
+import net.sourceforge.pmd.processor.ProjectIndexProcessor;
 
 public class SourceCodeProcessor {
 
@@ -82,17 +88,44 @@ public class SourceCodeProcessor {
 
         // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
         if (ruleSets.applies(ctx.getSourceCodeFile())) {
+            final AnalysisCache analysisCache = configuration.getAnalysisCache();
+            // the types and outdated rules are only tracked by the built-in caches
+            final boolean builtInCache = analysisCache instanceof AbstractAnalysisCache;
+            RuleSets rulesToApply = ruleSets;
             // Is the cache up to date?
-            if (configuration.getAnalysisCache().isUpToDate(ctx.getSourceCodeFile())) {
-                for (final RuleViolation rv : configuration.getAnalysisCache().getCachedViolations(ctx.getSourceCodeFile())) {
+            if (analysisCache.isUpToDate(ctx.getSourceCodeFile())) {
+                for (final RuleViolation rv : analysisCache.getCachedViolations(ctx.getSourceCodeFile())) {
                     ctx.getReport().addRuleViolation(rv);
                 }
-                return;
+
+                if (!builtInCache) {
+                    return;
+                }
+
+                // only the rules, which were added or changed since the cached analysis, are applied
+                rulesToApply = ((AbstractAnalysisCache) analysisCache).getOutdatedRules(ruleSets);
+                if (rulesToApply.ruleCount() == 0 || !rulesToApply.applies(ctx.getSourceCodeFile())) {
+                    return;
+                }
             }
 
+            if (configuration.isFuseRules()) {
+                rulesToApply.fuseRules();
+            }
+
+            Benchmarker.startFile(ctx.getSourceCodeFilename());
+            final long start = System.nanoTime();
             try {
-                ruleSets.start(ctx);
-                processSource(sourceCode, ruleSets, ctx);
+                if (builtInCache) {
+                    TypeDependencies.startRecording();
+                }
+                BasicProjectMemoizer.startFile();
+                rulesToApply.start(ctx);
+                processSource(sourceCode, rulesToApply, ctx);
+                if (builtInCache) {
+                    ((AbstractAnalysisCache) analysisCache).typesResolved(ctx.getSourceCodeFile(),
+                            TypeDependencies.stopRecording());
+                }
             } catch (ParseException pe) {
                 configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while parsing " + ctx.getSourceCodeFilename(), pe);
@@ -100,7 +133,12 @@ public class SourceCodeProcessor {
                 configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
                 throw new PMDException("Error while processing " + ctx.getSourceCodeFilename(), e);
             } finally {
-                ruleSets.end(ctx);
+                rulesToApply.end(ctx);
+                TypeDependencies.stopRecording();
+                // the AST is not needed anymore
+                SaxonXPathRuleQuery.clearDocumentNodeCache();
+                BasicProjectMemoizer.endFile();
+                Benchmarker.markFile(System.nanoTime() - start);
             }
         }
     }
@@ -154,9 +192,10 @@ public class SourceCodeProcessor {
 
 
     private void usesMultifile(Node rootNode, LanguageVersionHandler languageVersionHandler, RuleSets ruleSets,
-                               Language language) {
+                               Language language, RuleContext ctx) {
 
-        if (ruleSets.usesMultifile(language)) {
+        // the whole project is indexed already, if the files are processed by PMD
+        if (ruleSets.usesMultifile(language) && !ProjectIndexProcessor.isIndexed(ctx, language)) {
             long start = System.nanoTime();
             languageVersionHandler.getMultifileFacade().start(rootNode);
             long end = System.nanoTime();
@@ -175,7 +214,7 @@ public class SourceCodeProcessor {
         Language language = languageVersion.getLanguage();
         usesDFA(languageVersion, rootNode, ruleSets, language);
         usesTypeResolution(languageVersion, rootNode, ruleSets, language);
-        usesMultifile(rootNode, languageVersionHandler, ruleSets, language);
+        usesMultifile(rootNode, languageVersionHandler, ruleSets, language, ctx);
 
         List<Node> acus = Collections.singletonList(rootNode);
         ruleSets.apply(acus, ctx, language);
@@ -24,6 +24,7 @@ public enum Benchmark {
     RuleChainTotal(12, "Rule chain rule total"),
     MeasuredTotal(13, "Measured total"),
     NonMeasuredTotal(14, "Non-measured total"),
+    IdleWorkers(15, "Idle worker tail"),
     TotalPMD(16, "Total PMD");
 
     public final int index;
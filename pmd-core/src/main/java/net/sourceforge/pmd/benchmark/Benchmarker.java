@@ -8,12 +8,19 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -42,7 +49,24 @@ import net.sourceforge.pmd.util.datasource.DataSource;
  */
 public final class Benchmarker {
 
-    private static final Map<String, BenchmarkResult> BENCHMARKS_BY_NAME = new HashMap<>();
+    /** The phases, which are marked once per file or per rule and file. */
+    private static final Set<Benchmark> HISTOGRAM_PHASES = Collections.unmodifiableSet(EnumSet.of(Benchmark.Parser,
+            Benchmark.SymbolTable, Benchmark.DFA, Benchmark.TypeResolution, Benchmark.Multifile, Benchmark.Rule,
+            Benchmark.RuleChainRule));
+    private static final String FILE_HISTOGRAM = "File";
+
+    private static final Queue<Recorder> RECORDERS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Recorder> RECORDER = new ThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder recorder = new Recorder();
+            RECORDERS.add(recorder);
+            return recorder;
+        }
+    };
+
+    private static volatile boolean enabled;
+    private static volatile int profileSlowestCount = -1;
 
     private Benchmarker() { }
 
@@ -53,7 +77,7 @@ public final class Benchmarker {
      *            String
      * @return boolean
      */
-    private static boolean findBooleanSwitch(String[] args, String name) {
+    /* default */ static boolean findBooleanSwitch(String[] args, String name) {
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals(name)) {
                 return true;
@@ -72,7 +96,7 @@ public final class Benchmarker {
      *            String
      * @return String
      */
-    private static String findOptionalStringValue(String[] args, String name, String defaultValue) {
+    /* default */ static String findOptionalStringValue(String[] args, String name, String defaultValue) {
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals(name)) {
                 return args[i + 1];
@@ -206,6 +230,54 @@ public final class Benchmarker {
         }
     }
 
+    /**
+     * Enables or disables the recording of benchmarks. When disabled, which
+     * is the default, {@link #mark(Benchmark, String, long, long)} returns
+     * right away.
+     *
+     * @param enabled whether to record the benchmarks
+     */
+    public static void setEnabled(boolean enabled) {
+        Benchmarker.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables profiling, i.e. the recording of the duration of
+     * each rule on each file and of the phases per file, see
+     * {@link #profile()}. Profiling only works while the recording of
+     * benchmarks is enabled. Changing this setting clears the profile.
+     *
+     * @param profiling whether to profile
+     * @param slowestCount the number of the slowest applications of a rule
+     *            to a file, which are kept
+     */
+    public static void setProfiling(boolean profiling, int slowestCount) {
+        profileSlowestCount = profiling ? Math.max(0, slowestCount) : -1;
+        reset();
+    }
+
+    public static boolean isProfiling() {
+        return profileSlowestCount >= 0;
+    }
+
+    /**
+     * Marks the start of the processing of a file, which is ended by
+     * {@link #markFile(long)}. The durations in between are profiled for
+     * this file.
+     *
+     * @param file
+     *            the name of the file
+     */
+    public static void startFile(String file) {
+        if (enabled && profileSlowestCount >= 0) {
+            recorder().startFile(file);
+        }
+    }
+
     /**
      * @param type
      *            Benchmark
@@ -219,6 +291,8 @@ public final class Benchmarker {
     }
 
     /**
+     * Records a benchmark. The benchmarks are recorded per thread, without
+     * synchronization between the threads, and merged by {@link #values()}.
      *
      * @param type
      *            Benchmark
@@ -229,7 +303,10 @@ public final class Benchmarker {
      * @param count
      *            long
      */
-    public static synchronized void mark(Benchmark type, String name, long time, long count) {
+    public static void mark(Benchmark type, String name, long time, long count) {
+        if (!enabled) {
+            return;
+        }
         String typeName = type.name;
         if (typeName != null && name != null) {
             throw new IllegalArgumentException("Name cannot be given for type: " + type);
@@ -238,19 +315,183 @@ public final class Benchmarker {
         } else if (typeName == null) {
             typeName = name;
         }
-        BenchmarkResult benchmarkResult = BENCHMARKS_BY_NAME.get(typeName);
-        if (benchmarkResult == null) {
-            benchmarkResult = new BenchmarkResult(type, typeName);
-            BENCHMARKS_BY_NAME.put(typeName, benchmarkResult);
+        recorder().mark(type, typeName, time, count);
+    }
+
+    /**
+     * Records the time it took to process a whole file.
+     *
+     * @param time
+     *            the time in nanoseconds
+     */
+    public static void markFile(long time) {
+        if (enabled) {
+            recorder().markFile(time);
         }
-        benchmarkResult.update(time, count);
     }
 
+    /**
+     * Discards the recorded benchmarks. The recorders of the threads are
+     * released, so that the recorders of the threads, which ended since, e.g.
+     * of the thread pool of an analysis, don't pile up. Call this once the
+     * benchmarks are reported.
+     */
     public static void reset() {
-        BENCHMARKS_BY_NAME.clear();
+        Recorder recorder = RECORDERS.poll();
+        while (recorder != null) {
+            recorder.release();
+            recorder = RECORDERS.poll();
+        }
+    }
+
+    /**
+     * Gets the recorder of the current thread, a new one, if it was released.
+     */
+    private static Recorder recorder() {
+        Recorder recorder = RECORDER.get();
+        if (recorder.isReleased()) {
+            recorder = new Recorder();
+            RECORDERS.add(recorder);
+            RECORDER.set(recorder);
+        }
+        return recorder;
+    }
+
+    /* default */ static int getRecorderCount() {
+        return RECORDERS.size();
     }
 
+    /**
+     * Merges the benchmarks recorded by all threads.
+     *
+     * @return the benchmarks by name
+     */
     public static Map<String, BenchmarkResult> values() {
-        return BENCHMARKS_BY_NAME;
+        Map<String, BenchmarkResult> benchmarksByName = new HashMap<>();
+        for (Recorder recorder : RECORDERS) {
+            recorder.mergeInto(benchmarksByName);
+        }
+        return benchmarksByName;
+    }
+
+    /**
+     * Merges the histograms of the durations of the single files and of the
+     * phases, which are marked once per file, recorded by all threads.
+     *
+     * @return the histograms by the name of the phase, "File" for the files
+     */
+    public static Map<String, DurationHistogram> histograms() {
+        Map<String, DurationHistogram> histograms = new LinkedHashMap<>();
+        for (Benchmark phase : HISTOGRAM_PHASES) {
+            histograms.put(phase.name == null ? phase.name() : phase.name, new DurationHistogram());
+        }
+        histograms.put(FILE_HISTOGRAM, new DurationHistogram());
+        for (Recorder recorder : RECORDERS) {
+            recorder.mergeHistogramsInto(histograms);
+        }
+        return histograms;
+    }
+
+    /**
+     * Merges the profiles recorded by all threads.
+     *
+     * @return the profile, which is empty unless profiling is enabled
+     */
+    public static Profile profile() {
+        Map<String, ProfileRecorder.Durations> durationsByRule = new HashMap<>();
+        List<Profile.RuleFileDuration> slowest = new ArrayList<>();
+        List<Profile.FileProfile> files = new ArrayList<>();
+        for (Recorder recorder : RECORDERS) {
+            recorder.mergeProfileInto(durationsByRule, slowest, files);
+        }
+        return new Profile(durationsByRule, slowest, files, Math.max(0, profileSlowestCount));
+    }
+
+    /**
+     * The benchmarks of one thread. The lock is only contended, while the
+     * benchmarks are merged.
+     */
+    private static final class Recorder {
+        private final Map<String, BenchmarkResult> benchmarksByName = new HashMap<>();
+        private final Map<Benchmark, DurationHistogram> histograms = new EnumMap<>(Benchmark.class);
+        private DurationHistogram fileHistogram = new DurationHistogram();
+        private ProfileRecorder profile;
+        private volatile boolean released;
+
+        synchronized void startFile(String file) {
+            int slowestCount = profileSlowestCount;
+            if (profile == null && slowestCount >= 0) {
+                profile = new ProfileRecorder(slowestCount);
+            }
+            if (profile != null) {
+                profile.startFile(file);
+            }
+        }
+
+        synchronized void mark(Benchmark type, String typeName, long time, long count) {
+            BenchmarkResult benchmarkResult = benchmarksByName.get(typeName);
+            if (benchmarkResult == null) {
+                benchmarkResult = new BenchmarkResult(type, typeName);
+                benchmarksByName.put(typeName, benchmarkResult);
+            }
+            benchmarkResult.update(time, count);
+
+            if (HISTOGRAM_PHASES.contains(type)) {
+                DurationHistogram histogram = histograms.get(type);
+                if (histogram == null) {
+                    histogram = new DurationHistogram();
+                    histograms.put(type, histogram);
+                }
+                histogram.record(time);
+            }
+            if (profile != null) {
+                profile.mark(type, typeName, time);
+            }
+        }
+
+        synchronized void markFile(long time) {
+            fileHistogram.record(time);
+            if (profile != null) {
+                profile.endFile(time);
+            }
+        }
+
+        synchronized void release() {
+            benchmarksByName.clear();
+            histograms.clear();
+            fileHistogram = new DurationHistogram();
+            profile = null;
+            released = true;
+        }
+
+        boolean isReleased() {
+            return released;
+        }
+
+        synchronized void mergeInto(Map<String, BenchmarkResult> merged) {
+            for (BenchmarkResult result : benchmarksByName.values()) {
+                BenchmarkResult mergedResult = merged.get(result.name);
+                if (mergedResult == null) {
+                    mergedResult = new BenchmarkResult(result.type, result.name);
+                    merged.put(result.name, mergedResult);
+                }
+                mergedResult.update(result.getTime(), result.getCount());
+            }
+        }
+
+        synchronized void mergeHistogramsInto(Map<String, DurationHistogram> merged) {
+            for (Map.Entry<Benchmark, DurationHistogram> entry : histograms.entrySet()) {
+                Benchmark phase = entry.getKey();
+                merged.get(phase.name == null ? phase.name() : phase.name).merge(entry.getValue());
+            }
+            merged.get(FILE_HISTOGRAM).merge(fileHistogram);
+        }
+
+        synchronized void mergeProfileInto(Map<String, ProfileRecorder.Durations> durationsByRule,
+                List<Profile.RuleFileDuration> slowest, List<Profile.FileProfile> files) {
+            if (profile != null) {
+                profile.mergeInto(durationsByRule, slowest, files);
+            }
+        }
     }
 }
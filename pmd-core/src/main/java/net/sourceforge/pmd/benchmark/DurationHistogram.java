@@ -0,0 +1,107 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+/**
+ * A histogram of durations with exponential buckets: bucket 0 counts the
+ * durations below one microsecond, bucket <i>i</i> the durations from
+ * 2<sup>i-1</sup> up to 2<sup>i</sup> microseconds. This keeps the histogram
+ * small and the recording cheap, while still showing the outliers.
+ *
+ * <p>A histogram is not thread-safe. The {@link Benchmarker} keeps one per
+ * thread and merges them for the report.
+ */
+public class DurationHistogram {
+
+    /** Enough for durations of more than a day. */
+    public static final int BUCKET_COUNT = 40;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        buckets[bucketOf(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Adds the durations of the given histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void merge(DurationHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /* default */ static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Gets the lower bound of the durations counted by the given bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the bound in nanoseconds
+     */
+    public static long getLowerBound(int bucket) {
+        return bucket == 0 ? 0 : 1000L << bucket - 1;
+    }
+
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of the durations in nanoseconds.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the longest duration in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket, in which it
+     * falls, but at most the longest duration.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated duration in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return i + 1 < BUCKET_COUNT ? Math.min(max, getLowerBound(i + 1)) : max;
+            }
+        }
+        return max;
+    }
+}
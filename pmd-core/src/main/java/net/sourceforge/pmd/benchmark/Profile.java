@@ -0,0 +1,214 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The durations of the rules per file and of the phases per file, which
+ * the {@link Benchmarker} recorded while profiling. Unlike the histograms,
+ * the percentiles of a profile are exact.
+ *
+ * @see Benchmarker#setProfiling(boolean, int)
+ * @see ProfileReport
+ */
+public final class Profile {
+
+    private final List<RuleProfile> rules;
+    private final List<RuleFileDuration> slowest;
+    private final List<FileProfile> files;
+
+    /* default */ Profile(Map<String, ProfileRecorder.Durations> durationsByRule, List<RuleFileDuration> slowest,
+            List<FileProfile> files, int slowestCount) {
+        List<RuleProfile> rules = new ArrayList<>(durationsByRule.size());
+        for (Map.Entry<String, ProfileRecorder.Durations> entry : new TreeMap<>(durationsByRule).entrySet()) {
+            rules.add(new RuleProfile(entry.getKey(), entry.getValue().toSortedArray()));
+        }
+        Collections.sort(rules, new Comparator<RuleProfile>() {
+            @Override
+            public int compare(RuleProfile r1, RuleProfile r2) {
+                return Long.compare(r2.getTotal(), r1.getTotal());
+            }
+        });
+        this.rules = Collections.unmodifiableList(rules);
+
+        List<RuleFileDuration> sortedSlowest = new ArrayList<>(slowest);
+        Collections.sort(sortedSlowest, Collections.reverseOrder());
+        this.slowest = Collections.unmodifiableList(
+                new ArrayList<>(sortedSlowest.subList(0, Math.min(slowestCount, sortedSlowest.size()))));
+
+        List<FileProfile> sortedFiles = new ArrayList<>(files);
+        Collections.sort(sortedFiles, new Comparator<FileProfile>() {
+            @Override
+            public int compare(FileProfile f1, FileProfile f2) {
+                return Long.compare(f2.getTotal(), f1.getTotal());
+            }
+        });
+        this.files = Collections.unmodifiableList(sortedFiles);
+    }
+
+    /**
+     * Gets the profiles of the rules, the rule with the longest total
+     * duration first.
+     */
+    public List<RuleProfile> getRules() {
+        return rules;
+    }
+
+    /**
+     * Gets the slowest applications of a rule to a file, the slowest first.
+     */
+    public List<RuleFileDuration> getSlowest() {
+        return slowest;
+    }
+
+    /**
+     * Gets the profiles of the files, the file with the longest total
+     * duration first.
+     */
+    public List<FileProfile> getFiles() {
+        return files;
+    }
+
+    /**
+     * The durations of one rule on each file.
+     */
+    public static final class RuleProfile {
+        private final String rule;
+        private final long[] durations;
+        private final long total;
+
+        /* default */ RuleProfile(String rule, long[] sortedDurations) {
+            this.rule = rule;
+            this.durations = sortedDurations;
+            long sum = 0;
+            for (long duration : sortedDurations) {
+                sum += duration;
+            }
+            this.total = sum;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * Gets the number of files, to which the rule was applied.
+         */
+        public int getCount() {
+            return durations.length;
+        }
+
+        /**
+         * Gets the sum of the durations in nanoseconds.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the longest duration in nanoseconds.
+         */
+        public long getMax() {
+            return durations.length == 0 ? 0 : durations[durations.length - 1];
+        }
+
+        /**
+         * Gets a percentile with the nearest-rank method.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the duration in nanoseconds
+         */
+        public long getPercentile(double percentile) {
+            if (durations.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(durations.length * percentile / 100);
+            return durations[Math.min(durations.length, Math.max(1, rank)) - 1];
+        }
+    }
+
+    /**
+     * The duration of one rule on one file.
+     */
+    public static final class RuleFileDuration implements Comparable<RuleFileDuration> {
+        private final String rule;
+        private final String file;
+        private final long duration;
+
+        /* default */ RuleFileDuration(String rule, String file, long duration) {
+            this.rule = rule;
+            this.file = file;
+            this.duration = duration;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the duration in nanoseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        @Override
+        public int compareTo(RuleFileDuration other) {
+            return Long.compare(duration, other.duration);
+        }
+    }
+
+    /**
+     * The durations of the phases, which run once per file, on one file.
+     */
+    public static final class FileProfile {
+        /** The phases, which are recorded per file. */
+        public static final List<Benchmark> PHASES = Collections.unmodifiableList(Arrays.asList(Benchmark.Parser,
+                Benchmark.SymbolTable, Benchmark.DFA, Benchmark.TypeResolution, Benchmark.Multifile));
+
+        private final String file;
+        private final long total;
+        private final long[] phases;
+
+        /* default */ FileProfile(String file, long total, long[] phases) {
+            this.file = file;
+            this.total = total;
+            this.phases = phases;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the time it took to process the whole file, in nanoseconds.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the duration of the given phase in nanoseconds.
+         *
+         * @param phase one of the {@link #PHASES}
+         * @return the duration or 0, if the phase didn't run for the file
+         */
+        public long getDuration(Benchmark phase) {
+            int index = PHASES.indexOf(phase);
+            return index < 0 ? 0 : phases[index];
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Records the durations of the rules per file and of the phases per file for
+ * one thread. The durations of a rule are kept in a growing
+ * <code>long[]</code>, so the profile costs eight bytes per rule and file.
+ *
+ * <p>A recorder is not thread-safe. The {@link Benchmarker} keeps one per
+ * thread and merges them into a {@link Profile}.
+ */
+/* default */ final class ProfileRecorder {
+
+    private final int slowestCount;
+
+    private final Map<String, Durations> durationsByRule = new HashMap<>();
+    private final PriorityQueue<Profile.RuleFileDuration> slowest = new PriorityQueue<>();
+    private final List<Profile.FileProfile> files = new ArrayList<>();
+
+    private String currentFile;
+    private final Map<String, Long> currentRules = new HashMap<>();
+    private final long[] currentPhases = new long[Profile.FileProfile.PHASES.size()];
+
+    /* default */ ProfileRecorder(int slowestCount) {
+        this.slowestCount = slowestCount;
+    }
+
+    /* default */ void startFile(String file) {
+        currentFile = file;
+        currentRules.clear();
+        Arrays.fill(currentPhases, 0);
+    }
+
+    /* default */ void mark(Benchmark type, String typeName, long time) {
+        if (currentFile == null) {
+            return;
+        }
+        if (type == Benchmark.Rule || type == Benchmark.RuleChainRule) {
+            // a rule can be applied in the RuleChain and in its own visitation
+            Long previous = currentRules.get(typeName);
+            currentRules.put(typeName, previous == null ? time : previous + time);
+        } else {
+            int phase = Profile.FileProfile.PHASES.indexOf(type);
+            if (phase >= 0) {
+                currentPhases[phase] += time;
+            }
+        }
+    }
+
+    /* default */ void endFile(long time) {
+        if (currentFile == null) {
+            return;
+        }
+        files.add(new Profile.FileProfile(currentFile, time, currentPhases.clone()));
+        for (Map.Entry<String, Long> entry : currentRules.entrySet()) {
+            long duration = entry.getValue();
+            Durations durations = durationsByRule.get(entry.getKey());
+            if (durations == null) {
+                durations = new Durations();
+                durationsByRule.put(entry.getKey(), durations);
+            }
+            durations.add(duration);
+
+            if (slowest.size() < slowestCount) {
+                slowest.add(new Profile.RuleFileDuration(entry.getKey(), currentFile, duration));
+            } else if (slowestCount > 0 && slowest.peek().getDuration() < duration) {
+                slowest.poll();
+                slowest.add(new Profile.RuleFileDuration(entry.getKey(), currentFile, duration));
+            }
+        }
+        currentFile = null;
+        currentRules.clear();
+    }
+
+    /* default */ void mergeInto(Map<String, Durations> mergedDurations, List<Profile.RuleFileDuration> mergedSlowest,
+            List<Profile.FileProfile> mergedFiles) {
+        for (Map.Entry<String, Durations> entry : durationsByRule.entrySet()) {
+            Durations merged = mergedDurations.get(entry.getKey());
+            if (merged == null) {
+                merged = new Durations();
+                mergedDurations.put(entry.getKey(), merged);
+            }
+            merged.addAll(entry.getValue());
+        }
+        mergedSlowest.addAll(slowest);
+        mergedFiles.addAll(files);
+    }
+
+    /**
+     * A growing array of durations.
+     */
+    /* default */ static final class Durations {
+        private long[] values = new long[16];
+        private int size;
+
+        /* default */ void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /* default */ void addAll(Durations other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        /* default */ long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a {@link Profile} as JSON or as CSV, so that it can be processed by
+ * other tools. All durations are in milliseconds.
+ *
+ * <p>The JSON document has the arrays <code>rules</code>, with the count, the
+ * total, p50, p95, p99 and the maximum per rule, <code>slowest</code>, with the
+ * slowest applications of a rule to a file, and <code>files</code>, with the
+ * durations of the phases per file. The CSV file has the same three tables,
+ * each with a header line and separated by an empty line.
+ */
+public class ProfileReport {
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private static final String CSV_SEPARATOR = ",";
+    private static final String CSV_LINE_SEPARATOR = "\n";
+
+    /**
+     * Writes the profile as JSON or, if the name of the file ends with
+     * <code>.csv</code>, as CSV.
+     *
+     * @param profile the profile
+     * @param fileName the name of the file, which decides the format
+     * @param writer the writer, which isn't closed
+     * @throws IOException if the profile can't be written
+     */
+    public void write(Profile profile, String fileName, Writer writer) throws IOException {
+        if (fileName.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            writeCsv(profile, writer);
+        } else {
+            writeJson(profile, writer);
+        }
+    }
+
+    public void writeJson(Profile profile, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+
+        json.name("rules").beginArray();
+        for (Profile.RuleProfile rule : profile.getRules()) {
+            json.beginObject();
+            json.name("rule").value(rule.getRule());
+            json.name("count").value(rule.getCount());
+            json.name("total").value(millis(rule.getTotal()));
+            for (double percentile : PERCENTILES) {
+                json.name("p" + (int) percentile).value(millis(rule.getPercentile(percentile)));
+            }
+            json.name("max").value(millis(rule.getMax()));
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("slowest").beginArray();
+        for (Profile.RuleFileDuration duration : profile.getSlowest()) {
+            json.beginObject();
+            json.name("rule").value(duration.getRule());
+            json.name("file").value(duration.getFile());
+            json.name("duration").value(millis(duration.getDuration()));
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("files").beginArray();
+        for (Profile.FileProfile file : profile.getFiles()) {
+            json.beginObject();
+            json.name("file").value(file.getFile());
+            json.name("total").value(millis(file.getTotal()));
+            for (Benchmark phase : Profile.FileProfile.PHASES) {
+                json.name(StringUtils.uncapitalize(phase.name())).value(millis(file.getDuration(phase)));
+            }
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+    }
+
+    public void writeCsv(Profile profile, Writer writer) throws IOException {
+        StringBuilder buf = new StringBuilder();
+
+        buf.append("Rule,Count,Total,P50,P95,P99,Max").append(CSV_LINE_SEPARATOR);
+        for (Profile.RuleProfile rule : profile.getRules()) {
+            appendQuoted(buf, rule.getRule());
+            buf.append(CSV_SEPARATOR).append(rule.getCount());
+            appendMillis(buf, rule.getTotal());
+            for (double percentile : PERCENTILES) {
+                appendMillis(buf, rule.getPercentile(percentile));
+            }
+            appendMillis(buf, rule.getMax());
+            buf.append(CSV_LINE_SEPARATOR);
+        }
+
+        buf.append(CSV_LINE_SEPARATOR).append("Rule,File,Duration").append(CSV_LINE_SEPARATOR);
+        for (Profile.RuleFileDuration duration : profile.getSlowest()) {
+            appendQuoted(buf, duration.getRule());
+            buf.append(CSV_SEPARATOR);
+            appendQuoted(buf, duration.getFile());
+            appendMillis(buf, duration.getDuration());
+            buf.append(CSV_LINE_SEPARATOR);
+        }
+
+        buf.append(CSV_LINE_SEPARATOR).append("File,Total");
+        for (Benchmark phase : Profile.FileProfile.PHASES) {
+            buf.append(CSV_SEPARATOR).append(phase.name());
+        }
+        buf.append(CSV_LINE_SEPARATOR);
+        for (Profile.FileProfile file : profile.getFiles()) {
+            appendQuoted(buf, file.getFile());
+            appendMillis(buf, file.getTotal());
+            for (Benchmark phase : Profile.FileProfile.PHASES) {
+                appendMillis(buf, file.getDuration(phase));
+            }
+            buf.append(CSV_LINE_SEPARATOR);
+        }
+
+        writer.write(buf.toString());
+        writer.flush();
+    }
+
+    private static void appendQuoted(StringBuilder buf, String value) {
+        buf.append('"').append(StringUtils.replace(value, "\"", "\"\"")).append('"');
+    }
+
+    private static void appendMillis(StringBuilder buf, long nanos) {
+        buf.append(CSV_SEPARATOR).append(millis(nanos));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000 / 1000.0;
+    }
+}
@@ -25,6 +25,7 @@ public class TextReport implements BenchmarkReport {
     private static final int TIME_COLUMN = 48;
     private static final int NAME_COLUMN_WIDTH = 50;
     private static final int VALUE_COLUMN_WIDTH = 8;
+    private static final int HISTOGRAM_BAR_WIDTH = 40;
 
     @Override
     public void generate(Set<RuleDuration> stressResults, PrintStream stream) {
@@ -142,6 +143,63 @@ public class TextReport implements BenchmarkReport {
         stream.print(buf.toString());
     }
 
+    /**
+     * Writes the histograms of the durations of the files and the phases,
+     * e.g. as collected by {@link Benchmarker#histograms()}.
+     *
+     * @param histogramsByPhase
+     *            the histograms by the name of the phase
+     * @param stream
+     *            the stream to write to
+     */
+    public void generateHistograms(Map<String, DurationHistogram> histogramsByPhase, PrintStream stream) {
+        StringBuilderCR buf = new StringBuilderCR(PMD.EOL);
+        buf.appendLn();
+        buf.appendLn("-------------------------------<<< Histograms >>>------------------------------");
+        buf.appendLn("Phase                               Count     p50 (ms)     p90 (ms)     Max (ms)");
+
+        for (Map.Entry<String, DurationHistogram> entry : histogramsByPhase.entrySet()) {
+            DurationHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            buf.appendLn();
+            buf.appendLn(StringUtils.rightPad(entry.getKey(), 30),
+                    StringUtils.leftPad(MessageFormat.format("{0,number,###,###,###,###}", histogram.getCount()), 10),
+                    StringUtils.leftPad(millis(histogram.getPercentile(50)), 13),
+                    StringUtils.leftPad(millis(histogram.getPercentile(90)), 13),
+                    StringUtils.leftPad(millis(histogram.getMax()), 13));
+
+            int first = 0;
+            while (histogram.getBucket(first) == 0) {
+                first++;
+            }
+            int last = DurationHistogram.BUCKET_COUNT - 1;
+            long maxBucket = 0;
+            while (histogram.getBucket(last) == 0) {
+                last--;
+            }
+            for (int i = first; i <= last; i++) {
+                maxBucket = Math.max(maxBucket, histogram.getBucket(i));
+            }
+            for (int i = first; i <= last; i++) {
+                String bound = i + 1 < DurationHistogram.BUCKET_COUNT
+                        ? "< " + millis(DurationHistogram.getLowerBound(i + 1))
+                        : ">= " + millis(DurationHistogram.getLowerBound(i));
+                long count = histogram.getBucket(i);
+                buf.appendLn(StringUtils.leftPad(bound, 16),
+                        StringUtils.leftPad(MessageFormat.format("{0,number,###,###,###,###}", count), 14),
+                        "  ", StringUtils.repeat('#', (int) (HISTOGRAM_BAR_WIDTH * count / maxBucket)));
+            }
+        }
+
+        stream.print(buf.toString());
+    }
+
+    private static String millis(long nanos) {
+        return MessageFormat.format("{0,number,0.000}", Double.valueOf(nanos / 1000000.0));
+    }
+
     /**
      *
      * @param timeTotals
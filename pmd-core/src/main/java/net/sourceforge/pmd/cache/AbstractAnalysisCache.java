@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.cache;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -17,7 +19,11 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
@@ -28,7 +34,6 @@ import java.util.zip.CheckedInputStream;
 import org.apache.commons.io.IOUtils;
 
 import net.sourceforge.pmd.PMDVersion;
-import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.stat.Metric;
@@ -39,6 +44,8 @@ import net.sourceforge.pmd.stat.Metric;
 public abstract class AbstractAnalysisCache implements AnalysisCache {
 
     protected static final Logger LOG = Logger.getLogger(AbstractAnalysisCache.class.getName());
+    /** The checksum of types, which aren't loaded from the auxclasspath, and which are not recorded. */
+    protected static final long NOT_ON_AUXCLASSPATH = -1;
     protected final String pmdVersion;
     protected final ConcurrentMap<String, AnalysisResult> fileResultsCache;
     protected final ConcurrentMap<String, AnalysisResult> updatedResultsCache;
@@ -46,6 +53,21 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
     protected final CachedRuleMapper ruleMapper = new CachedRuleMapper();
+    /** The checksums of the rules, whose violations are stored in the cache. */
+    protected final Set<Long> ruleChecksums = new HashSet<>();
+    /** The checksums of the rules, which were added or changed since the cached analysis. */
+    protected final Set<Long> outdatedRuleChecksums = new HashSet<>();
+    /** The checksums of the multifile rules, whose violations depend on other files, and are never cached. */
+    protected final Set<Long> multifileRuleChecksums = new HashSet<>();
+    /** Whether rules were added, changed or removed since the cached analysis. */
+    protected boolean rulesChanged;
+    /** The outdated rules of the rulesets of each thread. */
+    private final Map<RuleSets, RuleSets> outdatedRuleSets = Collections
+            .synchronizedMap(new WeakHashMap<RuleSets, RuleSets>());
+    /** The class loader of the auxclasspath of this analysis. */
+    private ClassLoader auxclassPathClassLoader;
+    /** The checksums of the types of the auxclasspath by their name, computed once per analysis. */
+    private final ConcurrentMap<String, Long> typeChecksums = new ConcurrentHashMap<>();
     
     /**
      * Creates a new empty cache
@@ -63,34 +85,186 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         updatedResultsCache.put(sourceFile.getPath(), updatedResult);
         
         // Now check the old cache
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        final AnalysisResult analysisResult = getFileResult(sourceFile.getPath());
         
-        // is this a known file? has it changed?
-        final boolean result = analysisResult != null
+        // is this a known file? has it or one of the types it depends on changed?
+        final boolean fileUpToDate = analysisResult != null
                 && analysisResult.getFileChecksum() == updatedResult.getFileChecksum();
+        final boolean result = fileUpToDate && isTypeDependenciesUpToDate(analysisResult);
+        if (result) {
+            // the violations of outdated rules may still depend on other types
+            updatedResult.addTypeDependencies(analysisResult.getTypeDependencies());
+        }
 
         if (LOG.isLoggable(Level.FINE)) {
             if (result) {
                 LOG.fine("Incremental Analysis cache HIT");
             } else {
                 LOG.fine("Incremental Analysis cache MISS - "
-                        + (analysisResult != null ? "file changed" : "no previous result found"));
+                        + (analysisResult == null ? "no previous result found"
+                                : fileUpToDate ? "auxclasspath type changed" : "file changed"));
             }
         }
 
         return result;
     }
 
+    /**
+     * Sets the class loader of the auxclasspath, on which the types the results depend on are looked up.
+     *
+     * @param auxclassPathClassLoader The class loader for auxclasspath configured for this analysis
+     */
+    protected void setAuxclassPathClassLoader(final ClassLoader auxclassPathClassLoader) {
+        this.auxclassPathClassLoader = auxclassPathClassLoader;
+        typeChecksums.clear();
+    }
+
+    /**
+     * Checks, whether the types of the auxclasspath, which the given result depends on, didn't change.
+     *
+     * @param analysisResult The result of the previous analysis
+     * @return True if none of the types changed
+     */
+    protected boolean isTypeDependenciesUpToDate(final AnalysisResult analysisResult) {
+        for (final Map.Entry<String, Long> dependency : analysisResult.getTypeDependencies().entrySet()) {
+            if (computeTypeChecksum(dependency.getKey()) != dependency.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Notifies the cache of the types, which were looked up on the classpath while analyzing the given
+     * file. The cached result of the file is only up to date, as long as these types don't change.
+     *
+     * @param sourceFile The file that was analyzed
+     * @param classNames The binary names of the types
+     * @see TypeDependencies
+     */
+    public void typesResolved(final File sourceFile, final Set<String> classNames) {
+        final AnalysisResult analysisResult = updatedResultsCache.get(sourceFile.getPath());
+        if (analysisResult == null) {
+            return;
+        }
+
+        for (final String className : classNames) {
+            final long checksum = computeTypeChecksum(className);
+            if (checksum != NOT_ON_AUXCLASSPATH) {
+                analysisResult.addTypeDependency(className, checksum);
+            }
+        }
+    }
+
+    /**
+     * Computes the checksum of the class file of the given type on the auxclasspath.
+     *
+     * @param className The binary name of the type
+     * @return The checksum, 0 if the type can't be found, or {@link #NOT_ON_AUXCLASSPATH}
+     *         if the type is found by the parent of the auxclasspath class loader
+     */
+    protected long computeTypeChecksum(final String className) {
+        final ClassLoader classLoader = auxclassPathClassLoader;
+        if (!(classLoader instanceof URLClassLoader)) {
+            return NOT_ON_AUXCLASSPATH;
+        }
+
+        Long checksum = typeChecksums.get(className);
+        if (checksum == null) {
+            final String resourceName = className.replace('.', '/') + ".class";
+            final URL resource = classLoader.getResource(resourceName);
+            if (resource == null) {
+                checksum = 0L;
+            } else if (classLoader.getParent() != null && classLoader.getParent().getResource(resourceName) != null) {
+                // the JDK or PMD itself, these are checked with the execution classpath
+                checksum = NOT_ON_AUXCLASSPATH;
+            } else {
+                checksum = computeClassPathHash(resource);
+            }
+            typeChecksums.put(className, checksum);
+        }
+        return checksum;
+    }
+
     @Override
     public List<RuleViolation> getCachedViolations(final File sourceFile) {
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        final AnalysisResult analysisResult = getFileResult(sourceFile.getPath());
 
         if (analysisResult == null) {
             // new file, avoid nulls
             return Collections.emptyList();
         }
 
-        return analysisResult.getViolations();
+        if (analysisResult.getViolations().isEmpty()) {
+            return analysisResult.getViolations();
+        }
+
+        // the result may be the one of a file with the same contents at another path, so the
+        // violations of rules, whose rulesets exclude this file, are dropped as well
+        final List<RuleViolation> violations = new ArrayList<>();
+        for (final RuleViolation rv : analysisResult.getViolations()) {
+            if (!(rv instanceof CachedRuleViolation) || isApplicable((CachedRuleViolation) rv, sourceFile)) {
+                violations.add(rv);
+            }
+        }
+        return violations;
+    }
+
+    private boolean isApplicable(final CachedRuleViolation violation, final File sourceFile) {
+        if (multifileRuleChecksums.contains(violation.getRuleChecksum())) {
+            return false;
+        }
+        if (rulesChanged && !isUpToDate(violation)) {
+            // the violations of removed and outdated rules are dropped
+            return false;
+        }
+        return ruleMapper.appliesTo(violation.getRuleChecksum(), sourceFile);
+    }
+
+    private boolean isUpToDate(final CachedRuleViolation violation) {
+        final long ruleChecksum = violation.getRuleChecksum();
+        return ruleMapper.getRuleForChecksum(ruleChecksum) != null && !outdatedRuleChecksums.contains(ruleChecksum);
+    }
+
+    /**
+     * Retrieves the rules, whose cached violations are outdated, because they were added to the
+     * rulesets or configured differently since the cached analysis. These rules still have to be
+     * applied to files, which are up to date. The cached violations don't include the violations
+     * of these rules. The multifile rules are always outdated, as their violations depend on the
+     * other files of the project.
+     *
+     * @param ruleSets The rulesets configured for this analysis.
+     * @return The outdated rules, which may be empty.
+     */
+    public RuleSets getOutdatedRules(final RuleSets ruleSets) {
+        synchronized (outdatedRuleSets) {
+            RuleSets outdatedRules = outdatedRuleSets.get(ruleSets);
+            if (outdatedRules == null) {
+                final Set<Long> rulesToApply = new HashSet<>(outdatedRuleChecksums);
+                rulesToApply.addAll(multifileRuleChecksums);
+                outdatedRules = ruleSets.filterByRuleChecksum(rulesToApply);
+                outdatedRuleSets.put(ruleSets, outdatedRules);
+            }
+            return outdatedRules;
+        }
+    }
+
+    /**
+     * Gets the result of the previous analysis of the given file. Implementations, which
+     * load the cached results lazily, can override this.
+     *
+     * @param fileName The path of the file
+     * @return The previous result, or null if the file is not in the cache
+     */
+    protected AnalysisResult getFileResult(final String fileName) {
+        return fileResultsCache.get(fileName);
+    }
+
+    /**
+     * Discards the results of the previous analysis, e.g. because the rulesets changed.
+     */
+    protected void clearFileResults() {
+        fileResultsCache.clear();
     }
 
     @Override
@@ -102,30 +276,34 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
         boolean cacheIsValid = true;
 
-        if (ruleSets.getChecksum() != rulesetChecksum) {
-            LOG.info("Analysis cache invalidated, rulesets changed.");
-            cacheIsValid = false;
-        }
-
-        final long currentAuxClassPathChecksum;
-        if (auxclassPathClassLoader instanceof URLClassLoader) {
-            final URLClassLoader urlClassLoader = (URLClassLoader) auxclassPathClassLoader;
-            currentAuxClassPathChecksum = computeClassPathHash(urlClassLoader.getURLs());
-            
-            if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
-                // Do we even care?
-                for (final Rule r : ruleSets.getAllRules()) {
-                    if (r.isDfa() || r.isTypeResolution()) {
-                        LOG.info("Analysis cache invalidated, auxclasspath changed.");
-                        cacheIsValid = false;
-                        break;
-                    }
+        initializeRules(ruleSets);
+        final Set<Long> currentRuleChecksums = ruleMapper.getRuleChecksums();
+        outdatedRuleChecksums.clear();
+        outdatedRuleSets.clear();
+        rulesChanged = false;
+        if (ruleChecksums.isEmpty() ? ruleSets.getChecksum() != rulesetChecksum
+                : !ruleChecksums.equals(currentRuleChecksums)) {
+            // only the rules, which were added or changed, need to be applied again
+            for (final Long ruleChecksum : currentRuleChecksums) {
+                if (!ruleChecksums.contains(ruleChecksum)) {
+                    outdatedRuleChecksums.add(ruleChecksum);
                 }
             }
-        } else {
-            currentAuxClassPathChecksum = 0;
+
+            if (ruleChecksums.isEmpty() || outdatedRuleChecksums.size() == currentRuleChecksums.size()) {
+                LOG.info("Analysis cache invalidated, rulesets changed.");
+                cacheIsValid = false;
+            } else {
+                LOG.info("Analysis cache partially invalidated, " + outdatedRuleChecksums.size()
+                        + " rules added or changed.");
+                rulesChanged = true;
+            }
         }
-        
+
+        // the results only depend on the types of the auxclasspath, which were looked up
+        // while analyzing the file, so these are checked for each file instead
+        setAuxclassPathClassLoader(auxclassPathClassLoader);
+
         final long currentExecutionClassPathChecksum = computeClassPathHash(getClassPathEntries());
         if (currentExecutionClassPathChecksum != executionClassPathChecksum) {
             LOG.info("Analysis cache invalidated, execution classpath changed.");
@@ -134,17 +312,40 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
 
         if (!cacheIsValid) {
             // Clear the cache
-            fileResultsCache.clear();
+            clearFileResults();
+            outdatedRuleChecksums.clear();
+            rulesChanged = false;
         }
 
         // Update the local checksums
         rulesetChecksum = ruleSets.getChecksum();
-        auxClassPathChecksum = currentAuxClassPathChecksum;
+        auxClassPathChecksum = 0;
         executionClassPathChecksum = currentExecutionClassPathChecksum;
+        ruleChecksums.clear();
+        ruleChecksums.addAll(currentRuleChecksums);
+    }
+
+    /**
+     * Initializes the rule mapper and the multifile rules with the rulesets of this analysis.
+     *
+     * @param ruleSets The rulesets configured for this analysis
+     */
+    protected void initializeRules(final RuleSets ruleSets) {
         ruleMapper.initialize(ruleSets);
+        multifileRuleChecksums.clear();
+        for (final Long ruleChecksum : ruleMapper.getRuleChecksums()) {
+            if (ruleMapper.getRuleForChecksum(ruleChecksum).isMultifile()) {
+                multifileRuleChecksums.add(ruleChecksum);
+            }
+        }
     }
 
-    private URL[] getClassPathEntries() {
+    /**
+     * Gets the entries of the classpath PMD is running on. Directories are expanded to the files they contain.
+     *
+     * @return The classpath entries
+     */
+    protected URL[] getClassPathEntries() {
         final String classpath = System.getProperty("java.class.path");
         final String[] classpathEntries = classpath.split(File.pathSeparator);
         final List<URL> entries = new ArrayList<>();
@@ -176,7 +377,13 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         return entries.toArray(new URL[0]);
     }
 
-    private long computeClassPathHash(final URL... classpathEntry) {
+    /**
+     * Computes a checksum over the contents of the given classpath entries.
+     *
+     * @param classpathEntry The classpath entries
+     * @return The checksum
+     */
+    protected long computeClassPathHash(final URL... classpathEntry) {
         final Adler32 adler32 = new Adler32();
         for (final URL url : classpathEntry) {
             try (CheckedInputStream inputStream = new CheckedInputStream(url.openStream(), adler32)) {
@@ -193,11 +400,54 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         return adler32.getValue();
     }
 
+    /**
+     * Writes the type dependencies of the given result to a stream.
+     *
+     * @param outputStream The stream to write to
+     * @param result The result of the analysis of a file
+     * @throws IOException If the stream can't be written
+     */
+    protected static void writeTypeDependencies(final DataOutputStream outputStream,
+            final AnalysisResult result) throws IOException {
+        final Map<String, Long> typeDependencies = result.getTypeDependencies();
+        outputStream.writeInt(typeDependencies.size());
+        for (final Map.Entry<String, Long> dependency : typeDependencies.entrySet()) {
+            outputStream.writeUTF(dependency.getKey());
+            outputStream.writeLong(dependency.getValue());
+        }
+    }
+
+    /**
+     * Reads the type dependencies, which were written by {@link #writeTypeDependencies(DataOutputStream, AnalysisResult)},
+     * into the given result.
+     *
+     * @param inputStream The stream to read from
+     * @param result The result of the analysis of a file
+     * @throws IOException If the stream can't be read
+     */
+    protected static void readTypeDependencies(final DataInputStream inputStream,
+            final AnalysisResult result) throws IOException {
+        final int count = inputStream.readInt();
+        for (int i = 0; i < count; i++) {
+            final String className = inputStream.readUTF();
+            result.addTypeDependency(className, inputStream.readLong());
+        }
+    }
+
     @Override
     public void ruleViolationAdded(final RuleViolation ruleViolation) {
         final AnalysisResult analysisResult = updatedResultsCache.get(ruleViolation.getFilename());
-        
-        analysisResult.addViolation(ruleViolation);
+        if (analysisResult == null || ruleViolation.getRule() != null && ruleViolation.getRule().isMultifile()) {
+            // the violations of multifile rules are found again in every analysis
+            return;
+        }
+
+        if (ruleMapper.isCacheable(ruleViolation.getRule(), new File(ruleViolation.getFilename()))) {
+            analysisResult.addViolation(ruleViolation);
+        } else {
+            // equal rules of several rulesets apply to the file, their violations can't be told apart
+            updatedResultsCache.remove(ruleViolation.getFilename());
+        }
     }
 
     @Override
@@ -9,7 +9,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.Adler32;
 import java.util.zip.CheckedInputStream;
 
@@ -25,6 +27,7 @@ public class AnalysisResult {
 
     private final long fileChecksum;
     private final List<RuleViolation> violations;
+    private final Map<String, Long> typeDependencies = new HashMap<>();
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
@@ -67,4 +70,22 @@ public class AnalysisResult {
     public void addViolation(final RuleViolation ruleViolation) {
         this.violations.add(ruleViolation);
     }
+
+    /**
+     * Gets the types from the auxclasspath, which the analysis depends on.
+     *
+     * @return The checksums of the types by their name. The checksum of types,
+     *         which couldn't be found, is 0.
+     */
+    public Map<String, Long> getTypeDependencies() {
+        return typeDependencies;
+    }
+
+    public void addTypeDependencies(final Map<String, Long> typeDependencies) {
+        this.typeDependencies.putAll(typeDependencies);
+    }
+
+    public void addTypeDependency(final String className, final long checksum) {
+        this.typeDependencies.put(className, checksum);
+    }
 }
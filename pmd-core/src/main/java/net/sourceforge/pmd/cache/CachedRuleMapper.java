@@ -4,18 +4,30 @@
 
 package net.sourceforge.pmd.cache;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.rule.RuleReference;
 
 /**
- * A mapper from rule class names to rule instances for cached rules.
+ * A mapper from rule class names and rule checksums to rule instances for cached rules.
  */
 public class CachedRuleMapper {
 
     private final Map<String, Rule> ruleByClassName = new HashMap<>();
+    private final Map<Long, Rule> ruleByChecksum = new HashMap<>();
+    private final Map<Long, RuleSet> ruleSetByChecksum = new HashMap<>();
+    /** Equal rules of several rulesets have a checksum for each ruleset. */
+    private final Map<Rule, List<Long>> checksumsByRule = new HashMap<>();
 
     /**
      * Finds a rule instance for the given rule class name
@@ -26,6 +38,98 @@ public class CachedRuleMapper {
         return ruleByClassName.get(className);
     }
 
+    /**
+     * Finds a rule instance for the given rule checksum
+     * @param checksum The checksum of the rule that generated the cache entry
+     * @return The requested rule, or null if the rule isn't part of the active rulesets
+     * @see RuleSets#getRulesByChecksum()
+     */
+    public Rule getRuleForChecksum(final long checksum) {
+        return ruleByChecksum.get(checksum);
+    }
+
+    /**
+     * Finds the checksum of the given rule, which reported a violation on the given file.
+     * The rule may also be a copy of a rule of the active rulesets, as used by other threads.
+     * @param rule The rule that generated a violation
+     * @param file The file the violation was reported on
+     * @return The checksum, or 0 if the rule isn't part of the active rulesets, or if it is
+     *         part of several rulesets, which apply to the file
+     */
+    public long getChecksumForRule(final Rule rule, final File file) {
+        final List<Long> checksums = checksumsByRule.get(rule);
+        if (checksums == null) {
+            return 0;
+        }
+
+        long result = 0;
+        for (final Long checksum : checksums) {
+            if (!appliesTo(checksum, file)) {
+                continue;
+            } else if (result != 0 && result != checksum) {
+                // the violations of equal rules can't be told apart
+                return 0;
+            }
+            result = checksum;
+        }
+        return result;
+    }
+
+    /**
+     * Checks, whether the violations of the given rule can be cached for the given file. This
+     * isn't the case, if equal rules of several rulesets apply to the file.
+     * @param rule The rule that generated a violation
+     * @param file The file the violation was reported on
+     * @return True if the violations can be told apart from those of other rules
+     */
+    public boolean isCacheable(final Rule rule, final File file) {
+        final List<Long> checksums = checksumsByRule.get(rule);
+        return checksums == null || checksums.size() == 1 || getChecksumForRule(rule, file) != 0;
+    }
+
+    /**
+     * Checks, whether the ruleset of the rule with the given checksum applies to the given file.
+     * @param checksum The checksum of the rule that generated the cache entry
+     * @param file The analyzed file
+     * @return True if the rule is applied to the file, or if its ruleset is unknown
+     * @see RuleSet#applies(File)
+     */
+    public boolean appliesTo(final long checksum, final File file) {
+        final RuleSet ruleSet = ruleSetByChecksum.get(checksum);
+        return ruleSet == null || ruleSet.applies(file);
+    }
+
+    /**
+     * Computes a checksum of the rules of the active rulesets, which apply to the given file.
+     * The checksum changes, if the file patterns of the rulesets select other rules for the file.
+     * @param file The analyzed file
+     * @return The checksum of the applicable rules
+     */
+    public long getApplicableRulesChecksum(final File file) {
+        final Map<RuleSet, Boolean> applies = new IdentityHashMap<>();
+        long checksum = 1;
+        for (final Long ruleChecksum : new TreeSet<>(ruleByChecksum.keySet())) {
+            final RuleSet ruleSet = ruleSetByChecksum.get(ruleChecksum);
+            Boolean applicable = applies.get(ruleSet);
+            if (applicable == null) {
+                applicable = ruleSet == null || ruleSet.applies(file);
+                applies.put(ruleSet, applicable);
+            }
+            if (applicable) {
+                checksum = checksum * 31 + ruleChecksum;
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Gets the checksums of all rules of the active rulesets.
+     * @return The rule checksums
+     */
+    public Set<Long> getRuleChecksums() {
+        return ruleByChecksum.keySet();
+    }
+
     /**
      * Initialize the mapper with the given rulesets.
      * @param rs The rulesets from which to retrieve rules.
@@ -34,5 +138,31 @@ public class CachedRuleMapper {
         for (final Rule r : rs.getAllRules()) {
             ruleByClassName.put(r.getRuleClass(), r);
         }
+
+        ruleByChecksum.clear();
+        ruleSetByChecksum.clear();
+        checksumsByRule.clear();
+        ruleSetByChecksum.putAll(rs.getRuleSetsByRuleChecksum());
+        for (final Map.Entry<Long, Rule> entry : rs.getRulesByChecksum().entrySet()) {
+            ruleByChecksum.put(entry.getKey(), entry.getValue());
+            Rule rule = entry.getValue();
+            addChecksum(rule, entry.getKey());
+            // the violations of a rule reference are reported by the referenced rule
+            while (rule instanceof RuleReference) {
+                rule = ((RuleReference) rule).getRule();
+                addChecksum(rule, entry.getKey());
+            }
+        }
+    }
+
+    private void addChecksum(final Rule rule, final Long checksum) {
+        List<Long> checksums = checksumsByRule.get(rule);
+        if (checksums == null) {
+            checksums = new ArrayList<>(1);
+            checksumsByRule.put(rule, checksums);
+        }
+        if (!checksums.contains(checksum)) {
+            checksums.add(checksum);
+        }
     }
 }
@@ -6,6 +6,7 @@ package net.sourceforge.pmd.cache;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 
 import net.sourceforge.pmd.Rule;
@@ -20,7 +21,7 @@ public final class CachedRuleViolation implements RuleViolation {
 
     private final String description;
     private final String fileName;
-    private final String ruleClassName;
+    private final long ruleChecksum;
     private final int beginLine;
     private final int beginColumn;
     private final int endLine;
@@ -31,13 +32,13 @@ public final class CachedRuleViolation implements RuleViolation {
     private final String variableName;
 
     private CachedRuleViolation(final CachedRuleMapper mapper, final String description,
-            final String fileName, final String ruleClassName, final int beginLine,
+            final String fileName, final long ruleChecksum, final int beginLine,
             final int beginColumn, final int endLine, final int endColumn, final String packageName,
             final String className, final String methodName, final String variableName) {
         this.mapper = mapper;
         this.description = description;
         this.fileName = fileName;
-        this.ruleClassName = ruleClassName;
+        this.ruleChecksum = ruleChecksum;
         this.beginLine = beginLine;
         this.beginColumn = beginColumn;
         this.endLine = endLine;
@@ -51,7 +52,16 @@ public final class CachedRuleViolation implements RuleViolation {
     @Override
     public Rule getRule() {
         // The mapper may be initialized after cache is loaded, so use it lazily
-        return mapper.getRuleForClass(ruleClassName);
+        return mapper.getRuleForChecksum(ruleChecksum);
+    }
+
+    /**
+     * Gets the checksum of the rule, which reported this violation.
+     *
+     * @return The rule checksum
+     */
+    /* package */ long getRuleChecksum() {
+        return ruleChecksum;
     }
 
     @Override
@@ -121,7 +131,7 @@ public final class CachedRuleViolation implements RuleViolation {
     /* package */ static CachedRuleViolation loadFromStream(final DataInputStream stream,
             final String fileName, final CachedRuleMapper mapper) throws IOException {
         final String description = stream.readUTF();
-        final String ruleClassName = stream.readUTF();
+        final long ruleChecksum = stream.readLong();
         final int beginLine = stream.readInt();
         final int beginColumn = stream.readInt();
         final int endLine = stream.readInt();
@@ -131,7 +141,7 @@ public final class CachedRuleViolation implements RuleViolation {
         final String methodName = stream.readUTF();
         final String variableName = stream.readUTF();
 
-        return new CachedRuleViolation(mapper, description, fileName, ruleClassName, beginLine, beginColumn,
+        return new CachedRuleViolation(mapper, description, fileName, ruleChecksum, beginLine, beginColumn,
                 endLine, endColumn, packageName, className, methodName, variableName);
     }
 
@@ -141,12 +151,15 @@ public final class CachedRuleViolation implements RuleViolation {
      *
      * @param stream The stream on which to store the violation.
      * @param violation The rule violation to cache.
+     * @param mapper The mapper to be used to obtain the checksum of the rule.
      * @throws IOException
      */
     /* package */ static void storeToStream(final DataOutputStream stream,
-            final RuleViolation violation) throws IOException {
+            final RuleViolation violation, final CachedRuleMapper mapper) throws IOException {
         stream.writeUTF(getValueOrEmpty(violation.getDescription()));
-        stream.writeUTF(getValueOrEmpty(violation.getRule().getRuleClass()));
+        stream.writeLong(violation instanceof CachedRuleViolation
+                ? ((CachedRuleViolation) violation).ruleChecksum
+                : mapper.getChecksumForRule(violation.getRule(), new File(violation.getFilename())));
         stream.writeInt(violation.getBeginLine());
         stream.writeInt(violation.getBeginColumn());
         stream.writeInt(violation.getEndLine());
@@ -0,0 +1,275 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+
+/**
+ * An analysis cache backed by a directory, which can be shared by several PMD
+ * processes at the same time, e.g. by multiple checkouts of the same project or
+ * by the jobs of a build server.
+ *
+ * <p>The results are not stored by the path of the file, but by a SHA-256 hash of
+ * the file contents, the file name, the PMD version and the checksums of the
+ * rulesets, of the rules applied to the file, and of the execution classpath. A file
+ * with the same contents in another checkout is thus a cache hit, as long as the
+ * types of the auxclasspath, which the file depends on, didn't change. A file with
+ * the same contents at another path, to which the include and exclude patterns of
+ * the rulesets apply other rules, is a cache miss.
+ * Each result is stored in its own file, which is written to a temporary file first
+ * and then moved into place, so that concurrent processes never see a partially
+ * written result. The modification time of a result is updated on every cache hit,
+ * so that unused results can be deleted by their age. The directory can be
+ * deleted at any time.
+ */
+public class DirectoryAnalysisCache extends AbstractAnalysisCache {
+
+    /** "PMDE" */
+    private static final int MAGIC = 0x504d4445;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File cacheDirectory;
+
+    /** The hash of the PMD version, rulesets and execution classpath, which is part of every key. */
+    private byte[] contextHash = new byte[0];
+
+    /** The keys of the files of this analysis by their path. */
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    /** The files, whose result was found in the cache. */
+    private final Set<String> cachedFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Creates a new cache backed by the given directory. The directory is created,
+     * when the cache is persisted.
+     * @param cacheDirectory The directory in which to store analysis results
+     */
+    public DirectoryAnalysisCache(final File cacheDirectory) {
+        super();
+        this.cacheDirectory = cacheDirectory;
+
+        if (cacheDirectory.exists() && !cacheDirectory.isDirectory()) {
+            LOG.severe("Could not use analysis cache directory. " + cacheDirectory.getPath() + " is not a directory");
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        // There is a new file being analyzed, prepare entry in updated cache
+        updatedResultsCache.put(sourceFile.getPath(), new AnalysisResult(0, new ArrayList<RuleViolation>()));
+
+        final String key = computeKey(sourceFile);
+        if (key == null) {
+            // the analysis will fail and report the unreadable file on it's own
+            return false;
+        }
+        keys.put(sourceFile.getPath(), key);
+
+        final File entryFile = getEntryFile(key);
+        final AnalysisResult result = entryFile.isFile() ? readEntry(entryFile, sourceFile.getPath()) : null;
+        if (result == null) {
+            LOG.fine("Incremental Analysis cache MISS - no previous result found");
+            return false;
+        } else if (!isTypeDependenciesUpToDate(result)) {
+            LOG.fine("Incremental Analysis cache MISS - auxclasspath type changed");
+            return false;
+        }
+
+        fileResultsCache.put(sourceFile.getPath(), result);
+        cachedFiles.add(sourceFile.getPath());
+        // keep recently used results from being cleaned up
+        entryFile.setLastModified(System.currentTimeMillis());
+        LOG.fine("Incremental Analysis cache HIT");
+        return true;
+    }
+
+    @Override
+    public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
+        // the results are looked up by these checksums, so they never need to be invalidated
+        rulesetChecksum = ruleSets.getChecksum();
+        executionClassPathChecksum = computeClassPathHash(getClassPathEntries());
+        initializeRules(ruleSets);
+        // the types of the auxclasspath are checked for each result
+        setAuxclassPathClassLoader(auxclassPathClassLoader);
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream context = new DataOutputStream(bytes);
+            context.writeUTF(pmdVersion);
+            context.writeLong(rulesetChecksum);
+            context.writeLong(executionClassPathChecksum);
+            context.flush();
+            contextHash = newDigest().digest(bytes.toByteArray());
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void persist() {
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            LOG.severe("Could not persist analysis cache to directory. " + cacheDirectory.getPath()
+                    + " is not a writable directory");
+            return;
+        }
+
+        int written = 0;
+        for (final Map.Entry<String, AnalysisResult> entry : updatedResultsCache.entrySet()) {
+            final String key = keys.get(entry.getKey());
+            if (key == null || cachedFiles.contains(entry.getKey())) {
+                continue;
+            }
+
+            try {
+                writeEntry(getEntryFile(key), entry.getValue());
+                written++;
+            } catch (final IOException e) {
+                LOG.severe("Could not persist analysis cache to directory. " + e.getMessage());
+                return;
+            }
+        }
+
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info("Analysis cache updated, " + written + " results stored");
+        }
+    }
+
+    /**
+     * Computes the key of the given file, which is the hash of the file name, the
+     * rules applied to the file and the file contents in the context of this analysis.
+     *
+     * @return The key as hex string, or null if the file can't be read
+     */
+    private String computeKey(final File sourceFile) {
+        final MessageDigest digest = newDigest();
+        digest.update(contextHash);
+        digest.update(sourceFile.getName().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(ByteBuffer.allocate(8).putLong(ruleMapper.getApplicableRulesChecksum(sourceFile)).array());
+
+        try (InputStream stream = new FileInputStream(sourceFile)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException ignored) {
+            return null;
+        }
+
+        final byte[] hash = digest.digest();
+        final char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Gets the file of the given key. The results are spread over subdirectories by
+     * the first two digits of the key, to keep the directories small.
+     */
+    private File getEntryFile(final String key) {
+        return new File(new File(cacheDirectory, key.substring(0, 2)), key.substring(2));
+    }
+
+    /**
+     * Reads the result from the given entry. Malformed entries are deleted, so that
+     * they are replaced by the result of the new analysis.
+     *
+     * @return The result, or null if the entry is malformed
+     */
+    private AnalysisResult readEntry(final File entryFile, final String fileName) {
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(entryFile)))) {
+            if (inputStream.readInt() == MAGIC) {
+                final int countViolations = inputStream.readInt();
+                final List<RuleViolation> violations = new ArrayList<>(countViolations);
+                for (int i = 0; i < countViolations; i++) {
+                    violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+                }
+                final AnalysisResult result = new AnalysisResult(0, violations);
+                readTypeDependencies(inputStream, result);
+                return result;
+            }
+        } catch (final IOException ignored) {
+            // treated as malformed
+        }
+
+        LOG.warning("Cache entry " + entryFile.getPath() + " is malformed, will not be used");
+        entryFile.delete();
+        return null;
+    }
+
+    /**
+     * Writes the given result to a temporary file in the directory of the entry, and
+     * moves it into place.
+     */
+    private void writeEntry(final File entryFile, final AnalysisResult result) throws IOException {
+        final File directory = entryFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory.getPath());
+        }
+
+        final File tempFile = File.createTempFile(entryFile.getName(), ".tmp", directory);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                final List<RuleViolation> violations = result.getViolations();
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(violations.size());
+                for (final RuleViolation rv : violations) {
+                    CachedRuleViolation.storeToStream(outputStream, rv, ruleMapper);
+                }
+                writeTypeDependencies(outputStream, result);
+            }
+
+            try {
+                Files.move(tempFile.toPath(), entryFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -4,29 +4,72 @@
 
 package net.sourceforge.pmd.cache;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.RuleViolation;
 
 /**
  * An analysis cache backed by a regular file.
+ *
+ * <p>Only the index and the footer of the file are read on load. The result of a
+ * file is only read, when it is asked for by {@link #isUpToDate(File)} or
+ * {@link #getCachedViolations(File)}.
+ * The file consists of
+ * <ul>
+ * <li>a header with a magic number and the PMD version,</li>
+ * <li>the records with the results of each file and the types it depends on,</li>
+ * <li>an index of the records, sorted by the hash of the file name,</li>
+ * <li>the checksums of the rules, whose violations are stored in the records,</li>
+ * <li>a footer with the checksums of the rulesets and classpaths and the
+ * location of the index.</li>
+ * </ul>
+ * {@link #persist()} appends the records of the files, which changed, and a new
+ * index and footer, which refers to the records of the unchanged files. Once the
+ * records and indexes, which are not referred to anymore, take more space than the
+ * current ones, the file is compacted by writing a new file.
+ *
+ * <p>The file isn't memory-mapped. The records are read with one channel, which
+ * is opened on load and kept open for the whole analysis. {@link #persist()}
+ * closes it, before the file is appended to or replaced.
  */
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    /** "PMDC" */
+    private static final int MAGIC = 0x504d4443;
+    private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+    private static final int FOOTER_SIZE = 8 + 8 + 8 + 8 + 4 + 4 + 4;
+
     private final File cacheFile;
-    
+
+    /** The index of the cache file, or null if there is no valid cache file. */
+    private volatile Index index;
+
+    /** The files, whose cached result is still valid in this analysis. */
+    private final Set<String> upToDateFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     /**
      * Creates a new cache backed by the given file, and attempts to load pre-existing data from it.
      * @param cache The file on which to store analysis cache
@@ -39,49 +82,111 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
     }
 
     /**
-     * Loads cache data from the given file.
+     * Reads the header, the index and the footer of the given file. The records are read lazily.
      * @param cacheFile The file which backs the file analysis cache.
      */
     private void loadFromFile(final File cacheFile) {
-        if (cacheFile.exists()) {
-            try (
-                DataInputStream inputStream = new DataInputStream(
-                    new BufferedInputStream(new FileInputStream(cacheFile)));
-            ) {
-                final String cacheVersion = inputStream.readUTF();
-                
-                if (PMDVersion.VERSION.equals(cacheVersion)) {
-                    // Cache seems valid, load the rest
-                    
-                    // Get checksums
-                    rulesetChecksum = inputStream.readLong();
-                    auxClassPathChecksum = inputStream.readLong();
-                    executionClassPathChecksum = inputStream.readLong();
-                    
-                    // Cached results
-                    while (inputStream.available() > 0) {
-                        final String fileName = inputStream.readUTF();
-                        final long checksum = inputStream.readLong();
-                        
-                        final int countViolations = inputStream.readInt();
-                        final List<RuleViolation> violations = new ArrayList<>(countViolations);
-                        for (int i = 0; i < countViolations; i++) {
-                            violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
-                        }
-
-                        fileResultsCache.put(fileName, new AnalysisResult(checksum, violations));
-                    }
+        index = null;
+        if (!cacheFile.exists()) {
+            return;
+        } else if (!cacheFile.isFile()) {
+            LOG.severe("Could not load analysis cache from file. " + cacheFile.getPath() + " is not a file");
+            return;
+        }
 
-                    LOG.info("Analysis cache loaded");
-                } else {
-                    LOG.info("Analysis cache invalidated, PMD version changed.");
-                }
-            } catch (final EOFException e) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+            final long size = channel.size();
+            if (size < 4 + 2 + FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+                return;
+            }
+
+            final ByteBuffer header = read(channel, 0, 4 + 2);
+            final ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            if (header.getInt(0) != MAGIC || footer.getInt(FOOTER_SIZE - 4) != MAGIC) {
+                LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+                return;
+            }
+
+            final int versionLength = header.getShort(4) & 0xffff;
+            final String cacheVersion = openStream(read(channel, 4, 2 + versionLength)).readUTF();
+            if (!PMDVersion.VERSION.equals(cacheVersion)) {
+                LOG.info("Analysis cache invalidated, PMD version changed.");
+                return;
+            }
+
+            // Get checksums
+            rulesetChecksum = footer.getLong(0);
+            auxClassPathChecksum = footer.getLong(8);
+            executionClassPathChecksum = footer.getLong(16);
+
+            // Get the index and the rule checksums
+            final long offset = footer.getLong(24);
+            final int count = footer.getInt(32);
+            final int ruleCount = footer.getInt(36);
+            final long ruleChecksumsOffset = offset + (long) count * INDEX_ENTRY_SIZE;
+            if (offset < 0 || count < 0 || ruleCount < 0
+                    || ruleChecksumsOffset + ruleCount * 8L != size - FOOTER_SIZE) {
                 LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+                return;
+            }
+            final ByteBuffer indexAndRules = read(channel, offset, (int) (size - FOOTER_SIZE - offset));
+            ruleChecksums.clear();
+            for (int i = 0; i < ruleCount; i++) {
+                ruleChecksums.add(indexAndRules.getLong(count * INDEX_ENTRY_SIZE + i * 8));
+            }
+            index = new Index(channel, indexAndRules, count, size, footer);
+            // the channel is kept open for reading the records
+            channel = null;
+
+            LOG.info("Analysis cache loaded");
+        } catch (final IOException e) {
+            LOG.severe("Could not load analysis cache from file. " + e.getMessage());
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile) {
+        final boolean upToDate = super.isUpToDate(sourceFile);
+        // the records of files, whose cached violations are partially outdated, are written again
+        if (upToDate && !rulesChanged) {
+            upToDateFiles.add(sourceFile.getPath());
+        }
+        return upToDate;
+    }
+
+    @Override
+    protected AnalysisResult getFileResult(final String fileName) {
+        AnalysisResult result = fileResultsCache.get(fileName);
+        final Index currentIndex = index;
+        if (result == null && currentIndex != null && currentIndex.mightContain(fileName)) {
+            try {
+                final int entry = currentIndex.find(fileName);
+                if (entry >= 0) {
+                    result = readRecord(read(currentIndex.channel, currentIndex.offsets[entry],
+                            currentIndex.lengths[entry]), fileName);
+                    fileResultsCache.putIfAbsent(fileName, result);
+                }
             } catch (final IOException e) {
-                LOG.severe("Could not load analysis cache from file. " + e.getMessage());
+                LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, the result of "
+                        + fileName + " will not be used for current analysis");
             }
         }
+        return result;
+    }
+
+    @Override
+    protected void clearFileResults() {
+        super.clearFileResults();
+        final Index currentIndex = index;
+        index = null;
+        if (currentIndex != null) {
+            closeQuietly(currentIndex.channel);
+        }
     }
 
     @Override
@@ -92,33 +197,325 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             if (parentFile != null && !parentFile.exists()) {
                 parentFile.mkdirs();
             }
+        } else if (!cacheFile.isFile() || !cacheFile.canWrite()) {
+            LOG.severe("Could not persist analysis cache to file. " + cacheFile.getPath() + " is not a writable file");
+            return;
         }
 
-        try (
-            DataOutputStream outputStream = new DataOutputStream(
-                new BufferedOutputStream(new FileOutputStream(cacheFile)))
-        ) {
-            outputStream.writeUTF(pmdVersion);
-            
-            outputStream.writeLong(rulesetChecksum);
-            outputStream.writeLong(auxClassPathChecksum);
-            outputStream.writeLong(executionClassPathChecksum);
-            
+        final Index currentIndex = index;
+        index = null;
+        try (FileChannel channel = currentIndex == null ? null : currentIndex.channel) {
+            // The records of the unchanged files are kept, the other ones are written
+            final List<IndexEntry> entries = new ArrayList<>(updatedResultsCache.size());
+            final ByteArrayOutputStream newRecords = new ByteArrayOutputStream();
+            final DataOutputStream recordStream = new DataOutputStream(newRecords);
             for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
-                final List<RuleViolation> violations = resultEntry.getValue().getViolations();
-
-                outputStream.writeUTF(resultEntry.getKey());
-                outputStream.writeLong(resultEntry.getValue().getFileChecksum());
-                
-                outputStream.writeInt(violations.size());
-                for (final RuleViolation rv : violations) {
-                    CachedRuleViolation.storeToStream(outputStream, rv);
+                final String fileName = resultEntry.getKey();
+                final int entry = channel != null && upToDateFiles.contains(fileName)
+                        ? currentIndex.find(fileName) : -1;
+                if (entry >= 0) {
+                    entries.add(new IndexEntry(hash(fileName), currentIndex.offsets[entry],
+                            currentIndex.lengths[entry]));
+                } else {
+                    final int start = recordStream.size();
+                    writeRecord(recordStream, fileName, resultEntry.getValue());
+                    // the offset is relative to the new records for now
+                    entries.add(new IndexEntry(hash(fileName), -1 - start, recordStream.size() - start));
+                }
+            }
+            recordStream.flush();
+
+            long newLiveBytes = 0;
+            for (final IndexEntry entry : entries) {
+                newLiveBytes += entry.length;
+            }
+
+            // compact the file, once less than half of it is in use
+            final long currentBytes = newLiveBytes + (long) entries.size() * INDEX_ENTRY_SIZE
+                    + ruleChecksums.size() * 8L + FOOTER_SIZE;
+            if (channel != null && isUnchangedOnDisk(currentIndex)
+                    && currentIndex.fileSize + newRecords.size() + currentBytes - newLiveBytes <= 2 * currentBytes) {
+                if (newRecords.size() > 0 || entries.size() != currentIndex.count()
+                        || checksumsChanged(currentIndex)) {
+                    channel.close();
+                    append(currentIndex, entries, newRecords);
                 }
+            } else {
+                compact(channel, entries, newRecords);
             }
-            
+
             LOG.info("Analysis cache updated");
         } catch (final IOException e) {
             LOG.severe("Could not persist analysis cache to file. " + e.getMessage());
         }
+
+        // the file changed, read the new index
+        loadFromFile(cacheFile);
+        upToDateFiles.clear();
+    }
+
+    /**
+     * Appends the new records, index and footer to the cache file.
+     */
+    private void append(final Index currentIndex, final List<IndexEntry> entries,
+            final ByteArrayOutputStream newRecords) throws IOException {
+        final long recordsOffset = currentIndex.fileSize;
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(cacheFile, true)))) {
+            newRecords.writeTo(outputStream);
+            writeIndexAndFooter(outputStream, entries, recordsOffset, recordsOffset + newRecords.size());
+        }
+    }
+
+    /**
+     * Writes a new cache file, which only contains the current records, and replaces the cache file with it.
+     *
+     * @param channel The channel of the current cache file, from which the kept records are copied,
+     *                or null if there is no valid cache file. It is closed before the file is replaced.
+     */
+    private void compact(final FileChannel channel, final List<IndexEntry> entries,
+            final ByteArrayOutputStream newRecords) throws IOException {
+        final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+        final File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parentFile);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeUTF(pmdVersion);
+
+                // copy the kept records, the offsets of the entries change
+                for (final IndexEntry entry : entries) {
+                    if (entry.offset >= 0) {
+                        final ByteBuffer record = read(channel, entry.offset, entry.length);
+                        entry.offset = outputStream.size();
+                        outputStream.write(record.array(), 0, entry.length);
+                    }
+                }
+
+                final long recordsOffset = outputStream.size();
+                newRecords.writeTo(outputStream);
+                writeIndexAndFooter(outputStream, entries, recordsOffset, recordsOffset + newRecords.size());
+            }
+
+            // the cache file must not be open, when it is replaced
+            if (channel != null) {
+                channel.close();
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Writes the index, sorted by the hash of the file names, and the footer.
+     *
+     * @param recordsOffset The offset, at which the new records were written
+     * @param indexOffset The offset, at which the index is written
+     */
+    private void writeIndexAndFooter(final DataOutputStream outputStream, final List<IndexEntry> entries,
+            final long recordsOffset, final long indexOffset) throws IOException {
+        Collections.sort(entries);
+        for (final IndexEntry entry : entries) {
+            outputStream.writeLong(entry.hash);
+            outputStream.writeLong(entry.offset >= 0 ? entry.offset : recordsOffset - 1 - entry.offset);
+            outputStream.writeInt(entry.length);
+        }
+
+        for (final Long ruleChecksum : ruleChecksums) {
+            outputStream.writeLong(ruleChecksum);
+        }
+
+        outputStream.writeLong(rulesetChecksum);
+        outputStream.writeLong(auxClassPathChecksum);
+        outputStream.writeLong(executionClassPathChecksum);
+        outputStream.writeLong(indexOffset);
+        outputStream.writeInt(entries.size());
+        outputStream.writeInt(ruleChecksums.size());
+        outputStream.writeInt(MAGIC);
+    }
+
+    private boolean checksumsChanged(final Index currentIndex) {
+        final ByteBuffer footer = currentIndex.footer;
+        return footer.getLong(0) != rulesetChecksum
+                || footer.getLong(8) != auxClassPathChecksum
+                || footer.getLong(16) != executionClassPathChecksum
+                || footer.getInt(36) != ruleChecksums.size();
+    }
+
+    /**
+     * Checks, whether the cache file is still the one, whose index was read, so that it can be appended to.
+     * Another process may have written or replaced it in the meantime.
+     */
+    private boolean isUnchangedOnDisk(final Index currentIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            return channel.size() == currentIndex.fileSize
+                    && read(channel, currentIndex.fileSize - FOOTER_SIZE, FOOTER_SIZE).equals(currentIndex.footer);
+        } catch (final NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException ignored) {
+                // nothing to do, the channel was only read
+            }
+        }
+    }
+
+    private void writeRecord(final DataOutputStream outputStream, final String fileName,
+            final AnalysisResult result) throws IOException {
+        final List<RuleViolation> violations = result.getViolations();
+
+        outputStream.writeUTF(fileName);
+        outputStream.writeLong(result.getFileChecksum());
+
+        outputStream.writeInt(violations.size());
+        for (final RuleViolation rv : violations) {
+            CachedRuleViolation.storeToStream(outputStream, rv, ruleMapper);
+        }
+        writeTypeDependencies(outputStream, result);
+    }
+
+    private AnalysisResult readRecord(final ByteBuffer record, final String fileName) throws IOException {
+        final DataInputStream inputStream = openStream(record);
+        inputStream.readUTF(); // the file name, already checked
+        final long checksum = inputStream.readLong();
+
+        final int countViolations = inputStream.readInt();
+        final List<RuleViolation> violations = new ArrayList<>(countViolations);
+        for (int i = 0; i < countViolations; i++) {
+            violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+        }
+        final AnalysisResult result = new AnalysisResult(checksum, violations);
+        readTypeDependencies(inputStream, result);
+        return result;
+    }
+
+    /**
+     * The 64 bit FNV-1a hash of the file name.
+     */
+    private static long hash(final String fileName) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < fileName.length(); i++) {
+            hash ^= fileName.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the given range of the file into the heap.
+     */
+    private static ByteBuffer read(final FileChannel channel, final long offset, final int length)
+            throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new EOFException("Unexpected end of cache file");
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private static DataInputStream openStream(final ByteBuffer bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.array(), bytes.arrayOffset(), bytes.limit()));
+    }
+
+    /**
+     * The index of the records of the cache file, as read on load.
+     */
+    private static final class Index {
+        /** The channel of the cache file, from which the records are read. */
+        private final FileChannel channel;
+        private final long[] hashes;
+        private final long[] offsets;
+        private final int[] lengths;
+        /** The size of the cache file, to which the index belongs. */
+        private final long fileSize;
+        private final ByteBuffer footer;
+
+        Index(final FileChannel channel, final ByteBuffer entries, final int count, final long fileSize,
+                final ByteBuffer footer) {
+            this.channel = channel;
+            hashes = new long[count];
+            offsets = new long[count];
+            lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = entries.getLong(i * INDEX_ENTRY_SIZE);
+                offsets[i] = entries.getLong(i * INDEX_ENTRY_SIZE + 8);
+                lengths[i] = entries.getInt(i * INDEX_ENTRY_SIZE + 16);
+            }
+            this.fileSize = fileSize;
+            this.footer = footer;
+        }
+
+        int count() {
+            return hashes.length;
+        }
+
+        /**
+         * Checks, whether the index has an entry with the hash of the given file name.
+         */
+        boolean mightContain(final String fileName) {
+            return Arrays.binarySearch(hashes, hash(fileName)) >= 0;
+        }
+
+        /**
+         * Finds the index entry of the given file by binary search over the hashes.
+         *
+         * @return The number of the index entry, or -1 if the file is not in the cache
+         */
+        int find(final String fileName) throws IOException {
+            final long hash = hash(fileName);
+            int entry = Arrays.binarySearch(hashes, hash);
+            if (entry < 0) {
+                return -1;
+            }
+
+            // go back to the first entry with this hash, and check the names for collisions
+            while (entry > 0 && hashes[entry - 1] == hash) {
+                entry--;
+            }
+            for (; entry < hashes.length && hashes[entry] == hash; entry++) {
+                // the record starts with the file name
+                final int nameLength = Math.min(lengths[entry], 2 + 3 * fileName.length());
+                final ByteBuffer name = read(channel, offsets[entry], nameLength);
+                if (name.limit() >= 2 && (name.getShort(0) & 0xffff) <= nameLength - 2
+                        && fileName.equals(openStream(name).readUTF())) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * An entry of the index. The offset of a record, which is not written yet, is negative.
+     */
+    private static final class IndexEntry implements Comparable<IndexEntry> {
+        private final long hash;
+        private long offset;
+        private final int length;
+
+        IndexEntry(final long hash, final long offset, final int length) {
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(final IndexEntry o) {
+            return hash < o.hash ? -1 : hash == o.hash ? 0 : 1;
+        }
     }
 }
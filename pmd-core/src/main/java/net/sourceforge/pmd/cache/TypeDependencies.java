@@ -0,0 +1,68 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the types, which are looked up on the classpath while a file is
+ * analyzed, e.g. by type resolution. The types, which couldn't be found, are
+ * recorded as well. The analysis cache uses them to decide, whether the cached
+ * result of a file is still up to date, when the auxclasspath changed.
+ *
+ * <p>The types are recorded for the file, which is analyzed by the current thread.
+ *
+ * @see AbstractAnalysisCache#typesResolved(java.io.File, Set)
+ */
+public final class TypeDependencies {
+
+    private static final ThreadLocal<Set<String>> RECORDED_TYPES = new ThreadLocal<>();
+
+    private TypeDependencies() {
+        // utility class
+    }
+
+    /**
+     * Starts recording the types for the current thread.
+     */
+    public static void startRecording() {
+        RECORDED_TYPES.set(new HashSet<String>());
+    }
+
+    /**
+     * Checks, whether the types are recorded for the current thread. The
+     * types are only recorded, if an analysis cache uses them.
+     *
+     * @return <code>true</code>, if the types are recorded
+     */
+    public static boolean isRecording() {
+        return RECORDED_TYPES.get() != null;
+    }
+
+    /**
+     * Records, that the given type was looked up on the classpath. Does nothing,
+     * if no types are recorded for the current thread.
+     *
+     * @param className The binary name of the type
+     * @return <code>true</code>, if the type is recorded and wasn't recorded before
+     */
+    public static boolean typeResolved(final String className) {
+        final Set<String> types = RECORDED_TYPES.get();
+        return types != null && types.add(className);
+    }
+
+    /**
+     * Stops recording the types for the current thread.
+     *
+     * @return The recorded types
+     */
+    public static Set<String> stopRecording() {
+        final Set<String> types = RECORDED_TYPES.get();
+        RECORDED_TYPES.remove();
+        return types == null ? Collections.<String>emptySet() : types;
+    }
+}
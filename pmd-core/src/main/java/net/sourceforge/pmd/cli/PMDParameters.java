@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.cli;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -52,10 +53,30 @@ public class PMDParameters {
             validateWith = PositiveInteger.class)
     private Integer threads = 1;
 
+    @Parameter(names = "-maxfilesinflight",
+            description = "Sets the maximum number of files, that are analyzed or wait for their report to be rendered at the same time; default is four files per thread.",
+            validateWith = PositiveInteger.class)
+    private Integer maxFilesInFlight = 0;
+
+    @Parameter(names = "-largestfilesfirst",
+            description = "Analyze the largest files first on a work-stealing thread pool; only used with more than one thread.")
+    private boolean largestFilesFirst = false;
+
+    @Parameter(names = "-fuserules",
+            description = "Apply the rules, which support it, in a single visitation of the AST instead of one visitation per rule.")
+    private boolean fuseRules = false;
+
     @Parameter(names = { "-benchmark", "-b" },
             description = "Benchmark mode - output a benchmark report upon completion; default to System.err.")
     private boolean benchmark = false;
 
+    @Parameter(names = "-profile",
+            description = "Writes a profile with the percentiles of the durations of each rule, the slowest rules on single files and the parser and type resolution durations per file into the given file; as CSV, if the name ends with '.csv', otherwise as JSON.")
+    private String profileFile = null;
+
+    @Parameter(names = "-profileslowest", description = "The number of the slowest rule and file pairs in the profile.")
+    private int profileSlowestCount = 20;
+
     @Parameter(names = { "-stress", "-S" }, description = "Performs a stress test.")
     private boolean stress = false;
 
@@ -102,7 +123,16 @@ public class PMDParameters {
     @Parameter(names = "-cache", description = "Specify the location of the cache file for incremental analysis.")
     private String cacheLocation = null;
 
-    @Parameter(names = "-no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
+    @Parameter(names = "-cachedir", description = "Specify a directory for a shared cache for incremental analysis, which is keyed by the file contents. Takes precedence over '-cache'.")
+    private String cacheDirectory = null;
+
+    @Parameter(names = "-symbolindexdir", description = "Specify a directory for the symbol indexes of the jars on the auxclasspath, so that later runs don't need to read the jars again.")
+    private String symbolIndexDirectory = null;
+
+    @Parameter(names = "-multifileindexdir", description = "Specify a directory for the project index of the multifile rules, so that later runs only index the changed files.")
+    private String multifileIndexDirectory = null;
+
+    @Parameter(names = "-no-cache", description = "Explicitly disable incremental analysis. The '-cache' and '-cachedir' options are ignored if this switch is present in the command line.")
     private boolean noCache = false;
 
     // this has to be a public static class, so that JCommander can use it!
@@ -162,6 +192,8 @@ public class PMDParameters {
         configuration.setInputUri(this.getUri());
         configuration.setReportFormat(this.getFormat());
         configuration.setBenchmark(this.isBenchmark());
+        configuration.setProfileFile(this.getProfileFile());
+        configuration.setProfileSlowestCount(this.getProfileSlowestCount());
         configuration.setDebug(this.isDebug());
         configuration.setMinimumPriority(this.getMinimumPriority());
         configuration.setReportFile(this.getReportfile());
@@ -174,9 +206,21 @@ public class PMDParameters {
         configuration.setStressTest(this.isStress());
         configuration.setSuppressMarker(this.getSuppressmarker());
         configuration.setThreads(this.getThreads());
+        configuration.setMaxFilesInFlight(this.getMaxFilesInFlight());
+        configuration.setLargestFilesFirst(this.isLargestFilesFirst());
+        configuration.setFuseRules(this.isFuseRules());
         configuration.setFailOnViolation(this.isFailOnViolation());
         configuration.setAnalysisCacheLocation(this.cacheLocation);
+        if (this.cacheDirectory != null) {
+            configuration.setAnalysisCacheDirectory(this.cacheDirectory);
+        }
         configuration.setIgnoreIncrementalAnalysis(this.isIgnoreIncrementalAnalysis());
+        if (this.symbolIndexDirectory != null) {
+            configuration.setSymbolIndexDirectory(new File(this.symbolIndexDirectory));
+        }
+        if (this.multifileIndexDirectory != null) {
+            configuration.setMultifileIndexDirectory(new File(this.multifileIndexDirectory));
+        }
 
         LanguageVersion languageVersion = LanguageRegistry
                 .findLanguageVersionByTerseName(this.getLanguage() + ' ' + this.getVersion());
@@ -222,10 +266,30 @@ public class PMDParameters {
         return threads;
     }
 
+    public Integer getMaxFilesInFlight() {
+        return maxFilesInFlight;
+    }
+
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    public boolean isFuseRules() {
+        return fuseRules;
+    }
+
     public boolean isBenchmark() {
         return benchmark;
     }
 
+    public String getProfileFile() {
+        return profileFile;
+    }
+
+    public int getProfileSlowestCount() {
+        return profileSlowestCount;
+    }
+
     public boolean isStress() {
         return stress;
     }
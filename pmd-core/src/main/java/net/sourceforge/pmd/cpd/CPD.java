@@ -14,12 +14,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
 
 import net.sourceforge.pmd.lang.ast.TokenMgrError;
+import net.sourceforge.pmd.processor.PmdThreadFactory;
 import net.sourceforge.pmd.util.FileFinder;
 import net.sourceforge.pmd.util.database.DBMSMetadata;
 import net.sourceforge.pmd.util.database.DBURI;
@@ -36,11 +42,34 @@ public class CPD {
     private MatchAlgorithm matchAlgorithm;
     private Set<String> current = new HashSet<>();
 
+    /** Tokenizes the files in parallel, if more than one thread is configured. */
+    private ExecutorService tokenizer;
+    /** The files being tokenized in parallel, in the order they were added. */
+    private List<Future<Tokens>> pendingTokens = new ArrayList<>();
+    private List<SourceCode> pendingSources = new ArrayList<>();
+
+    /** The cached tokens of the files, if a cache is configured. */
+    private TokenCache cache;
+
     public CPD(CPDConfiguration theConfiguration) {
         configuration = theConfiguration;
         // before we start any tokenizing (add(File...)), we need to reset the
         // static TokenEntry status
         TokenEntry.clearImages();
+        if (configuration.getCacheLocation() != null) {
+            cache = new TokenCache(new File(configuration.getCacheLocation()), cacheFingerprint());
+        }
+    }
+
+    /**
+     * Describes the configuration of the tokenizer, as the cached tokens
+     * can't be used, if it changes.
+     */
+    private String cacheFingerprint() {
+        return configuration.getLanguage().getTerseName() + ',' + configuration.getSourceEncoding() + ','
+                + configuration.isIgnoreLiterals() + ',' + configuration.isIgnoreIdentifiers() + ','
+                + configuration.isIgnoreAnnotations() + ',' + configuration.isIgnoreUsings() + ','
+                + configuration.isNoSkipBlocks() + ',' + configuration.getSkipBlocksPattern();
     }
 
     public void setCpdListener(CPDListener cpdListener) {
@@ -48,7 +77,20 @@ public class CPD {
     }
 
     public void go() {
-        matchAlgorithm = new MatchAlgorithm(source, tokens, configuration.getMinimumTileSize(), listener);
+        addPendingTokens();
+        matchAlgorithm = configuration.matchAlgorithm(source, tokens, listener);
+        if (cache != null) {
+            cache.persist(tokens);
+            if (configuration.isChangedOnly()) {
+                Set<String> changedFiles = new HashSet<>();
+                for (String fileName : source.keySet()) {
+                    if (!cache.isUpToDate(fileName)) {
+                        changedFiles.add(fileName);
+                    }
+                }
+                matchAlgorithm.setChangedFiles(changedFiles);
+            }
+        }
         matchAlgorithm.findMatches();
     }
 
@@ -131,7 +173,11 @@ public class CPD {
     }
 
     private void add(SourceCode sourceCode) throws IOException {
-        if (configuration.isSkipLexicalErrors()) {
+        if (configuration.getThreads() > 1) {
+            addInParallel(sourceCode);
+        } else if (cache != null) {
+            addCached(sourceCode);
+        } else if (configuration.isSkipLexicalErrors()) {
             addAndSkipLexicalErrors(sourceCode);
         } else {
             addAndThrowLexicalError(sourceCode);
@@ -145,13 +191,117 @@ public class CPD {
     }
 
     private void addAndSkipLexicalErrors(SourceCode sourceCode) throws IOException {
-        TokenEntry.State savedTokenEntry = new TokenEntry.State(tokens.getTokens());
+        TokenEntry.State savedTokenEntry = new TokenEntry.State();
+        int savedSize = tokens.size();
         try {
             addAndThrowLexicalError(sourceCode);
         } catch (TokenMgrError e) {
             System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + e.getMessage());
-            tokens.getTokens().clear();
-            tokens.getTokens().addAll(savedTokenEntry.restore());
+            savedTokenEntry.restore();
+            tokens.truncate(savedSize);
+        }
+    }
+
+    /**
+     * Adds the cached tokens of the given file, or tokenizes it, if it
+     * changed.
+     */
+    private void addCached(SourceCode sourceCode) throws IOException {
+        Tokens fileTokens;
+        try {
+            fileTokens = tokenize(sourceCode, configuration.tokenizer());
+        } catch (TokenMgrError e) {
+            if (!configuration.isSkipLexicalErrors()) {
+                throw e;
+            }
+            System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + e.getMessage());
+            return;
+        }
+        addTokens(sourceCode, fileTokens);
+    }
+
+    /**
+     * Tokenizes the given file into its own tokens, unless its tokens are
+     * cached.
+     */
+    private Tokens tokenize(SourceCode sourceCode, Tokenizer fileTokenizer) throws IOException {
+        Tokens fileTokens = cache == null ? null : cache.getTokens(sourceCode.getFileName());
+        if (fileTokens == null) {
+            fileTokens = new Tokens();
+            fileTokenizer.tokenize(sourceCode, fileTokens);
+        }
+        return fileTokens;
+    }
+
+    private void addTokens(SourceCode sourceCode, Tokens fileTokens) {
+        int from = tokens.size();
+        tokens.addAll(fileTokens);
+        if (cache != null) {
+            cache.tokensAdded(sourceCode.getFileName(), from, tokens.size());
+        }
+        listener.addedFile(1, new File(sourceCode.getFileName()));
+        source.put(sourceCode.getFileName(), sourceCode);
+    }
+
+    /**
+     * Tokenizes the given file on one of the tokenizer threads into its own
+     * buffer. The tokens are added, when all files were added.
+     */
+    private void addInParallel(final SourceCode sourceCode) {
+        if (tokenizer == null) {
+            tokenizer = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
+        }
+        final Map<String, Integer> images = TokenEntry.getImages();
+        final Tokenizer fileTokenizer = configuration.tokenizer();
+        pendingSources.add(sourceCode);
+        pendingTokens.add(tokenizer.submit(new Callable<Tokens>() {
+            @Override
+            public Tokens call() throws IOException {
+                TokenEntry.useImages(images);
+                return tokenize(sourceCode, fileTokenizer);
+            }
+        }));
+    }
+
+    /**
+     * Adds the tokens of the files, which were tokenized in parallel, in the
+     * order the files were added, so that the result is the same as with a
+     * single thread.
+     */
+    private void addPendingTokens() {
+        if (tokenizer == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < pendingTokens.size(); i++) {
+                SourceCode sourceCode = pendingSources.get(i);
+                Tokens fileTokens;
+                try {
+                    fileTokens = pendingTokens.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof TokenMgrError && configuration.isSkipLexicalErrors()) {
+                        System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: "
+                                + e.getCause().getMessage());
+                        continue;
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new RuntimeException("Problem while tokenizing " + sourceCode.getFileName(), e.getCause());
+                }
+
+                addTokens(sourceCode, fileTokens);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tokenizing", e);
+        } finally {
+            tokenizer.shutdownNow();
+            tokenizer = null;
+            pendingTokens.clear();
+            pendingSources.clear();
         }
     }
 
@@ -161,6 +311,7 @@ public class CPD {
      * @return names of sources to be processed
      */
     public List<String> getSourcePaths() {
+        addPendingTokens();
         return new ArrayList<>(source.keySet());
     }
 
@@ -170,6 +321,7 @@ public class CPD {
      * @return all Sources to be processed
      */
     public List<SourceCode> getSources() {
+        addPendingTokens();
         return new ArrayList<>(source.values());
     }
 
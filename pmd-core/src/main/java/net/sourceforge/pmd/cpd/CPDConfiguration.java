@@ -38,6 +38,8 @@ public class CPDConfiguration extends AbstractConfiguration {
 
     public static final String DEFAULT_LANGUAGE = "java";
     public static final String DEFAULT_RENDERER = "text";
+    public static final String DEFAULT_MATCH_ALGORITHM = "hash";
+    public static final String SUFFIX_ARRAY_MATCH_ALGORITHM = "suffix-array";
 
     private static final Map<String, Class<? extends CPDRenderer>> RENDERERS = new HashMap<>();
     
@@ -132,6 +134,30 @@ public class CPDConfiguration extends AbstractConfiguration {
             description = "By default CPD exits with status 4 if code duplications are found. Disable this option with '-failOnViolation false' to exit with 0 instead and just write the report.")
     private boolean failOnViolation = true;
 
+    @Parameter(names = "--match-algorithm",
+            description = "The algorithm to find the duplicates, either " + DEFAULT_MATCH_ALGORITHM + " or "
+                    + SUFFIX_ARRAY_MATCH_ALGORITHM + ". The suffix array needs less memory and time "
+                    + "for large code bases. Default value is " + DEFAULT_MATCH_ALGORITHM,
+            required = false)
+    private String matchAlgorithm = DEFAULT_MATCH_ALGORITHM;
+
+    @Parameter(names = "--threads",
+            description = "The number of threads to tokenize the files and to hash the tokens. Default value is 1",
+            required = false)
+    private int threads = 1;
+
+    @Parameter(names = "--cache",
+            description = "The file, in which the tokens of the files are cached, so that only the changed files "
+                    + "are tokenized again",
+            required = false)
+    private String cacheLocation;
+
+    @Parameter(names = "--changed-only",
+            description = "Only report the duplicates, which involve a file that changed since the cache was "
+                    + "written. Requires --cache",
+            required = false)
+    private boolean changedOnly;
+
     // this has to be a public static class, so that JCommander can use it!
     public static class LanguageConverter implements IStringConverter<Language> {
 
@@ -495,4 +521,56 @@ public class CPDConfiguration extends AbstractConfiguration {
     public void setFailOnViolation(boolean failOnViolation) {
         this.failOnViolation = failOnViolation;
     }
+
+    public String getMatchAlgorithm() {
+        return matchAlgorithm;
+    }
+
+    public void setMatchAlgorithm(String matchAlgorithm) {
+        this.matchAlgorithm = matchAlgorithm;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public String getCacheLocation() {
+        return cacheLocation;
+    }
+
+    public void setCacheLocation(String cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
+    public boolean isChangedOnly() {
+        return changedOnly;
+    }
+
+    public void setChangedOnly(boolean changedOnly) {
+        this.changedOnly = changedOnly;
+    }
+
+    /**
+     * Creates the configured match algorithm.
+     *
+     * @param source the source code by file name
+     * @param tokens the tokens of all files
+     * @param listener the listener to inform about the progress
+     * @return the match algorithm
+     * @throws IllegalArgumentException if the match algorithm is unknown
+     */
+    public MatchAlgorithm matchAlgorithm(Map<String, SourceCode> source, Tokens tokens, CPDListener listener) {
+        if (matchAlgorithm == null || DEFAULT_MATCH_ALGORITHM.equalsIgnoreCase(matchAlgorithm)) {
+            MatchAlgorithm algorithm = new MatchAlgorithm(source, tokens, getMinimumTileSize(), listener);
+            algorithm.setThreads(threads);
+            return algorithm;
+        } else if (SUFFIX_ARRAY_MATCH_ALGORITHM.equalsIgnoreCase(matchAlgorithm)) {
+            return new SuffixArrayMatchAlgorithm(source, tokens, getMinimumTileSize(), listener);
+        }
+        throw new IllegalArgumentException("Unknown match algorithm: " + matchAlgorithm);
+    }
 }
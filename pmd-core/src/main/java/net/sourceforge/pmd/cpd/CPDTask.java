@@ -64,6 +64,10 @@ public class CPDTask extends Task {
     private boolean skipDuplicateFiles;
     private boolean skipBlocks = true;
     private String skipBlocksPattern = Tokenizer.DEFAULT_SKIP_BLOCKS_PATTERN;
+    private String matchAlgorithm = CPDConfiguration.DEFAULT_MATCH_ALGORITHM;
+    private int threads = 1;
+    private File cacheLocation;
+    private boolean changedOnly;
     private File outputFile;
     private String encoding = System.getProperty("file.encoding");
     private List<FileSet> filesets = new ArrayList<>();
@@ -85,6 +89,12 @@ public class CPDTask extends Task {
             config.setEncoding(encoding);
             config.setSkipDuplicates(skipDuplicateFiles);
             config.setSkipLexicalErrors(skipLexicalErrors);
+            config.setMatchAlgorithm(matchAlgorithm);
+            config.setThreads(threads);
+            if (cacheLocation != null) {
+                config.setCacheLocation(cacheLocation.getPath());
+            }
+            config.setChangedOnly(changedOnly);
 
             CPD cpd = new CPD(config);
             tokenizeFiles(cpd);
@@ -254,6 +264,22 @@ public class CPDTask extends Task {
         this.skipBlocksPattern = skipBlocksPattern;
     }
 
+    public void setMatchAlgorithm(String matchAlgorithm) {
+        this.matchAlgorithm = matchAlgorithm;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setCacheLocation(File cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
+    public void setChangedOnly(boolean changedOnly) {
+        this.changedOnly = changedOnly;
+    }
+
     public static class FormatAttribute extends EnumeratedAttribute {
         private static final String[] FORMATS = new String[] { XML_FORMAT, TEXT_FORMAT, CSV_FORMAT };
 
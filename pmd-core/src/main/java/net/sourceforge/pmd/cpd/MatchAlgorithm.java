@@ -5,24 +5,31 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sourceforge.pmd.processor.PmdThreadFactory;
 
 public class MatchAlgorithm {
 
     private static final int MOD = 37;
-    private int lastHash;
     private int lastMod = 1;
 
     private List<Match> matches;
     private Map<String, SourceCode> source;
     private Tokens tokens;
-    private List<TokenEntry> code;
     private CPDListener cpdListener;
     private int min;
+    private int threads = 1;
+    private Set<String> changedFiles;
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
         this(sourceCode, tokens, min, new CPDNullListener());
@@ -31,7 +38,6 @@ public class MatchAlgorithm {
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, CPDListener listener) {
         this.source = sourceCode;
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.min = min;
         this.cpdListener = listener;
         for (int i = 0; i < min; i++) {
@@ -43,12 +49,38 @@ public class MatchAlgorithm {
         this.cpdListener = listener;
     }
 
+    /**
+     * Sets the number of threads, which hash the tokens.
+     *
+     * @param threads the number of threads, 1 to hash on the calling thread
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Only reports the matches, which have a mark in one of the given files,
+     * e.g. in the files, which changed since the last run.
+     *
+     * @param changedFiles the names of the files, <code>null</code> to report all matches
+     */
+    public void setChangedFiles(Set<String> changedFiles) {
+        this.changedFiles = changedFiles;
+    }
+
     public Iterator<Match> matches() {
         return matches.iterator();
     }
 
     public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
+        return tokens.get(offset + m.getIndex());
+    }
+
+    /**
+     * Gets the tokens, in which the matches are searched.
+     */
+    Tokens getTokens() {
+        return tokens;
     }
 
     public int getMinimumTileSize() {
@@ -57,22 +89,100 @@ public class MatchAlgorithm {
 
     public void findMatches() {
         cpdListener.phaseUpdate(CPDListener.HASH);
-        Map<TokenEntry, Object> markGroups = hash();
+        int[] hashes = hash();
+        long[] marks = sortByHash(hashes);
 
         cpdListener.phaseUpdate(CPDListener.MATCH);
         MatchCollector matchCollector = new MatchCollector(this);
-        for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
-            Object o = i.next();
-            if (o instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<TokenEntry> l = (List<TokenEntry>) o;
-                Collections.reverse(l);
-                matchCollector.collect(l);
+        int groupStart = 0;
+        for (int i = 1; i <= marks.length; i++) {
+            if (i == marks.length || (int) (marks[i] >> 32) != (int) (marks[groupStart] >> 32)) {
+                if (i - groupStart > 1 && isChanged(marks, groupStart, i)) {
+                    matchCollector.collect(createGroup(marks, groupStart, i));
+                }
+                groupStart = i;
             }
-            i.remove();
         }
         cpdListener.phaseUpdate(CPDListener.GROUPING);
-        matches = matchCollector.getMatches();
+        setMatches(matchCollector.getMatches());
+        cpdListener.phaseUpdate(CPDListener.DONE);
+    }
+
+    /**
+     * Sorts the tokens by their hash and index, so that the tokens with the
+     * same hash follow each other. The end of a file has no hash.
+     *
+     * @return the hash in the upper and the index in the lower 32 bits
+     */
+    private long[] sortByHash(int[] hashes) {
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getIdentifier(i) != 0) {
+                count++;
+            }
+        }
+        long[] marks = new long[count];
+        count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getIdentifier(i) != 0) {
+                marks[count++] = (long) hashes[i] << 32 | i;
+            }
+        }
+        Arrays.sort(marks);
+        return marks;
+    }
+
+    /**
+     * Checks, whether a group of tokens with the same hash contains a token
+     * of a changed file. Only such groups can lead to reported matches.
+     */
+    private boolean isChanged(long[] marks, int from, int to) {
+        if (changedFiles == null) {
+            return true;
+        }
+        for (int i = from; i < to; i++) {
+            if (changedFiles.contains(tokens.getTokenSrcID((int) marks[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the token entries of a group of tokens with the same hash,
+     * ordered by their index.
+     */
+    private List<TokenEntry> createGroup(long[] marks, int from, int to) {
+        List<TokenEntry> group = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            TokenEntry token = tokens.get((int) marks[i]);
+            token.setHashCode((int) (marks[i] >> 32));
+            group.add(token);
+        }
+        return group;
+    }
+
+    /**
+     * Sets the found matches and completes their marks with the line count
+     * and the source code. Only the matches in changed files are kept, if
+     * the changed files are set.
+     *
+     * @param matches the matches, sorted by their token count
+     */
+    protected void setMatches(List<Match> matches) {
+        if (changedFiles != null) {
+            List<Match> changedMatches = new ArrayList<>();
+            for (Match match : matches) {
+                for (Mark mark : match) {
+                    if (changedFiles.contains(mark.getFilename())) {
+                        changedMatches.add(match);
+                        break;
+                    }
+                }
+            }
+            matches = changedMatches;
+        }
+        this.matches = matches;
 
         for (Match match : matches) {
             for (Mark mark : match) {
@@ -84,46 +194,102 @@ public class MatchAlgorithm {
                 mark.setSourceCode(sourceCode);
             }
         }
-        cpdListener.phaseUpdate(CPDListener.DONE);
     }
 
+    /**
+     * Gets the listener, which is informed about the progress.
+     *
+     * @return the listener
+     */
+    protected CPDListener getListener() {
+        return cpdListener;
+    }
+
+    /**
+     * Computes the hashes of all tokens. With several threads, the tokens are
+     * split into shards of whole files, which are hashed in parallel.
+     *
+     * @return the hash of each token
+     */
+    private int[] hash() {
+        final int[] hashes = new int[tokens.size()];
+        List<int[]> shards = threads > 1 ? splitIntoShards(threads * 4) : Collections.<int[]>emptyList();
+        if (shards.size() < 2) {
+            hash(0, tokens.size(), hashes);
+            return hashes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new PmdThreadFactory());
+        try {
+            List<Future<?>> hashedShards = new ArrayList<>(shards.size());
+            for (final int[] shard : shards) {
+                hashedShards.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        hash(shard[0], shard[1], hashes);
+                    }
+                }));
+            }
+            for (Future<?> hashedShard : hashedShards) {
+                hashedShard.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing tokens", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error while hashing tokens", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return hashes;
+    }
+
+    /**
+     * Splits the tokens after the end of a file into about the given number
+     * of shards.
+     *
+     * @return the start (inclusive) and end (exclusive) of each shard
+     */
+    private List<int[]> splitIntoShards(int count) {
+        List<int[]> shards = new ArrayList<>(count);
+        int size = tokens.size();
+        int shardSize = Math.max(size / count, 1);
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            if (tokens.getIdentifier(i) == 0 && i + 1 - start >= shardSize) {
+                shards.add(new int[] { start, i + 1 });
+                start = i + 1;
+            }
+        }
+        if (start < size) {
+            shards.add(new int[] { start, size });
+        }
+        return shards;
+    }
+
+    /**
+     * Hashes the tokens between the given indexes, which must start and end
+     * at the boundaries of files.
+     */
     @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (token != TokenEntry.EOF) {
-                int last = tokenAt(min, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
-                }
+    private void hash(int from, int to, int[] hashes) {
+        int lastHash = 0;
+        for (int i = to - 1; i >= from; i--) {
+            int identifier = tokens.getIdentifier(i);
+            if (identifier != 0) {
+                int last = tokens.getIdentifier(i + min);
+                lastHash = MOD * lastHash + identifier - lastMod * last;
+                hashes[i] = lastHash;
             } else {
                 lastHash = 0;
-                for (int end = Math.max(0, i - min + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token == TokenEntry.EOF) {
+                for (int end = Math.max(from, i - min + 1); i > end; i--) {
+                    identifier = tokens.getIdentifier(i - 1);
+                    lastHash = MOD * lastHash + identifier;
+                    if (identifier == 0) {
                         break;
                     }
                 }
             }
         }
-        return markGroups;
     }
 }
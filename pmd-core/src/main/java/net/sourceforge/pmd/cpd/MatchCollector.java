@@ -14,9 +14,11 @@ public class MatchCollector {
     private List<Match> matchList = new ArrayList<>();
     private Map<Integer, Map<Integer, Match>> matchTree = new TreeMap<>();
     private MatchAlgorithm ma;
+    private Tokens tokens;
 
     public MatchCollector(MatchAlgorithm ma) {
         this.ma = ma;
+        this.tokens = ma.getTokens();
     }
 
     public void collect(List<TokenEntry> marks) {
@@ -86,18 +88,19 @@ public class MatchCollector {
         if (mark1.getIndex() == 0) {
             return false;
         }
-        return !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
+        return !matchEnded(mark1.getIndex() - 1, mark2.getIndex() - 1);
     }
 
     private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
         int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+        while (!matchEnded(mark1.getIndex() + index, mark2.getIndex() + index)) {
             index++;
         }
         return index;
     }
 
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF || token2 == TokenEntry.EOF;
+    private boolean matchEnded(int index1, int index2) {
+        int identifier1 = tokens.getIdentifier(index1);
+        return identifier1 != tokens.getIdentifier(index2) || identifier1 == 0;
     }
 }
@@ -0,0 +1,352 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A match algorithm, which finds the duplicates with a suffix array instead of
+ * hashing every token. The token identifiers are copied into an
+ * <code>int[]</code>, whose suffix array is built by prefix doubling. The
+ * duplicates are then found as the intervals of the LCP array (the longest
+ * common prefixes of neighbouring suffixes), so that every repeat is found
+ * once, instead of comparing all pairs of marks with the same hash.
+ *
+ * <p>Every end of file is replaced by a unique identifier, so that no
+ * duplicate spans several files. A match contains all occurrences of a
+ * maximal repeat, i.e. of a token sequence, which can't be extended to the
+ * left or right for all occurrences. Overlapping occurrences are only
+ * reported, if they also occur somewhere else.
+ *
+ * <p>The memory needed is about 20 bytes per token in addition to the tokens.
+ */
+public class SuffixArrayMatchAlgorithm extends MatchAlgorithm {
+
+    /** The token identifiers, with unique identifiers for the ends of files. */
+    private int[] text;
+    /** The largest identifier of a token, which isn't the end of a file. */
+    private int maxIdentifier;
+    private int[] suffixArray;
+    private int[] lcp;
+
+    public SuffixArrayMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
+        this(sourceCode, tokens, min, new CPDNullListener());
+    }
+
+    public SuffixArrayMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min,
+            CPDListener listener) {
+        super(sourceCode, tokens, min, listener);
+    }
+
+    @Override
+    public void findMatches() {
+        getListener().phaseUpdate(CPDListener.HASH);
+        buildText();
+        buildSuffixArray();
+        buildLcpArray();
+
+        getListener().phaseUpdate(CPDListener.MATCH);
+        List<Match> matches = collectMatches();
+        text = null;
+        suffixArray = null;
+        lcp = null;
+
+        getListener().phaseUpdate(CPDListener.GROUPING);
+        Collections.sort(matches);
+        setMatches(matches);
+        getListener().phaseUpdate(CPDListener.DONE);
+    }
+
+    private void buildText() {
+        Tokens tokens = getTokens();
+        int n = tokens.size();
+        text = new int[n];
+        maxIdentifier = 0;
+        for (int i = 0; i < n; i++) {
+            maxIdentifier = Math.max(maxIdentifier, tokens.getIdentifier(i));
+        }
+        int nextEof = maxIdentifier + 1;
+        for (int i = 0; i < n; i++) {
+            int identifier = tokens.getIdentifier(i);
+            text[i] = identifier == 0 ? nextEof++ : identifier;
+        }
+    }
+
+    private boolean isEof(int position) {
+        return text[position] > maxIdentifier;
+    }
+
+    /**
+     * Sorts the suffixes by prefix doubling: in each round, the suffixes are
+     * sorted by the ranks of their first k tokens and the ranks of the
+     * following k tokens with two stable counting sorts.
+     */
+    private void buildSuffixArray() {
+        int n = text.length;
+        suffixArray = new int[n];
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        int alphabetSize = n == 0 ? 1 : text.length + maxIdentifier + 1;
+        int[] count = new int[Math.max(alphabetSize, n) + 1];
+
+        // initial order by the first token
+        for (int i = 0; i < n; i++) {
+            count[text[i]]++;
+        }
+        for (int i = 1; i < alphabetSize; i++) {
+            count[i] += count[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffixArray[--count[text[i]]] = i;
+        }
+        int classes = 0;
+        for (int j = 0; j < n; j++) {
+            if (j == 0 || text[suffixArray[j]] != text[suffixArray[j - 1]]) {
+                classes++;
+            }
+            rank[suffixArray[j]] = classes - 1;
+        }
+
+        for (int k = 1; classes < n; k <<= 1) {
+            // order by the second key, the suffixes without second key first
+            int p = 0;
+            for (int i = Math.max(0, n - k); i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int j = 0; j < n; j++) {
+                if (suffixArray[j] >= k) {
+                    tmp[p++] = suffixArray[j] - k;
+                }
+            }
+
+            // stable order by the first key
+            Arrays.fill(count, 0, classes + 1, 0);
+            for (int i = 0; i < n; i++) {
+                count[rank[i] + 1]++;
+            }
+            for (int i = 1; i <= classes; i++) {
+                count[i] += count[i - 1];
+            }
+            for (int j = 0; j < n; j++) {
+                suffixArray[count[rank[tmp[j]]]++] = tmp[j];
+            }
+
+            classes = 0;
+            for (int j = 0; j < n; j++) {
+                int current = suffixArray[j];
+                if (j == 0) {
+                    classes++;
+                } else {
+                    int previous = suffixArray[j - 1];
+                    if (rank[current] != rank[previous]
+                            || secondRank(rank, current, k) != secondRank(rank, previous, k)) {
+                        classes++;
+                    }
+                }
+                tmp[current] = classes - 1;
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+        }
+    }
+
+    private static int secondRank(int[] rank, int position, int k) {
+        return position + k < rank.length ? rank[position + k] : -1;
+    }
+
+    /**
+     * Computes the longest common prefix of each suffix with its predecessor
+     * in the suffix array in linear time (Kasai et al.).
+     */
+    private void buildLcpArray() {
+        int n = text.length;
+        int[] rank = new int[n];
+        for (int j = 0; j < n; j++) {
+            rank[suffixArray[j]] = j;
+        }
+        lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (rank[i] > 0) {
+                int j = suffixArray[rank[i] - 1];
+                while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[rank[i]] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+    }
+
+    /**
+     * Traverses the LCP intervals bottom up with a stack. Intervals, whose
+     * common prefix is shorter than the minimum tile size, are skipped.
+     */
+    private List<Match> collectMatches() {
+        List<Match> matches = new ArrayList<>();
+        int n = text.length;
+        int min = getMinimumTileSize();
+        int[] lcpStack = new int[16];
+        int[] lbStack = new int[16];
+        int top = 0;
+        lcpStack[0] = 0;
+        lbStack[0] = 0;
+
+        for (int i = 1; i <= n; i++) {
+            int current = i < n && lcp[i] >= min ? lcp[i] : 0;
+            int lb = i - 1;
+            while (current < lcpStack[top]) {
+                lb = lbStack[top];
+                Match match = createMatch(lcpStack[top], lb, i - 1);
+                if (match != null) {
+                    matches.add(match);
+                }
+                top--;
+            }
+            if (current > lcpStack[top]) {
+                top++;
+                if (top == lcpStack.length) {
+                    lcpStack = Arrays.copyOf(lcpStack, top * 2);
+                    lbStack = Arrays.copyOf(lbStack, top * 2);
+                }
+                lcpStack[top] = current;
+                lbStack[top] = lb;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Creates the match of the suffixes in the given interval of the suffix
+     * array, which share a prefix of exactly the given length. An occurrence
+     * is part of the match, if there is another occurrence in a different
+     * child interval, which has a different preceding token and doesn't
+     * overlap it. The child intervals start at the suffixes, whose LCP equals
+     * the length.
+     *
+     * @return the match or <code>null</code>, if there are less than two such
+     *         occurrences
+     */
+    private Match createMatch(int length, int lb, int rb) {
+        int size = rb - lb + 1;
+        if (size == 2) {
+            int first = Math.min(suffixArray[lb], suffixArray[rb]);
+            int second = Math.max(suffixArray[lb], suffixArray[rb]);
+            int before = precedingToken(first);
+            if ((before < 0 || before != precedingToken(second)) && second - first >= length) {
+                return new Match(length, getTokens().get(first), getTokens().get(second));
+            }
+            return null;
+        }
+
+        // the occurrences ordered by position, with their child interval and preceding token
+        long[] order = new long[size];
+        int[] children = new int[size];
+        int[] childSizes = new int[size];
+        Map<Integer, int[]> tokenCounts = new HashMap<>();
+        Map<Long, int[]> childTokenCounts = new HashMap<>();
+        int child = 0;
+        for (int j = lb; j <= rb; j++) {
+            if (j > lb && lcp[j] == length) {
+                child++;
+            }
+            children[j - lb] = child;
+            childSizes[child]++;
+            order[j - lb] = (long) suffixArray[j] << 32 | j - lb;
+            int before = precedingToken(suffixArray[j]);
+            if (before >= 0) {
+                increment(tokenCounts, before);
+                increment(childTokenCounts, (long) child << 32 | before);
+            }
+        }
+        Arrays.sort(order);
+
+        List<TokenEntry> occurrences = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int index = (int) order[i];
+            int position = (int) (order[i] >>> 32);
+            int before = precedingToken(position);
+
+            // the other occurrences in other child intervals with a different preceding token
+            int others = size - childSizes[children[index]];
+            if (before >= 0) {
+                long childToken = (long) children[index] << 32 | before;
+                others -= tokenCounts.get(before)[0] - childTokenCounts.get(childToken)[0];
+            }
+            if (others <= 0) {
+                continue;
+            }
+
+            boolean overlapping = i > 0 && position - (int) (order[i - 1] >>> 32) < length
+                    || i < size - 1 && (int) (order[i + 1] >>> 32) - position < length;
+            if (!overlapping || hasDistantPartner(order, children, i, length)) {
+                occurrences.add(getTokens().get(position));
+            }
+        }
+        if (occurrences.size() < 2) {
+            return null;
+        }
+
+        Match match = new Match(length, occurrences.get(0), occurrences.get(1));
+        for (int j = 2; j < occurrences.size(); j++) {
+            match.addTokenEntry(occurrences.get(j));
+        }
+        return match;
+    }
+
+    /**
+     * Checks, whether there is another occurrence in a different child
+     * interval with a different preceding token, which doesn't overlap the
+     * given occurrence. Only needed for occurrences, which overlap others,
+     * e.g. in repetitive code.
+     */
+    private boolean hasDistantPartner(long[] order, int[] children, int i, int length) {
+        int position = (int) (order[i] >>> 32);
+        int child = children[(int) order[i]];
+        int before = precedingToken(position);
+        for (int j = 0; j < order.length; j++) {
+            int other = (int) (order[j] >>> 32);
+            if (Math.abs(other - position) >= length && children[(int) order[j]] != child) {
+                int otherBefore = precedingToken(other);
+                if (before < 0 || otherBefore < 0 || before != otherBefore) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static <K> void increment(Map<K, int[]> counts, K key) {
+        int[] counter = counts.get(key);
+        if (counter == null) {
+            counter = new int[1];
+            counts.put(key, counter);
+        }
+        counter[0]++;
+    }
+
+    /**
+     * Gets the token before the given position.
+     *
+     * @return the identifier or -1, if the position is at the start of a file,
+     *         so that the occurrence can't be extended to the left
+     */
+    private int precedingToken(int position) {
+        if (position == 0 || isEof(position - 1)) {
+            return -1;
+        }
+        return text[position - 1];
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.PMDVersion;
+
+/**
+ * A cache of the tokens of the files, so that only the files, which changed
+ * since the last run, need to be tokenized again. The tokens are stored by the
+ * file name with the checksum of the file contents. The identifiers of the
+ * tokens are stored with their images, as they are only valid in one run.
+ *
+ * <p>The cache is invalidated as a whole, if the PMD version or the
+ * configuration of the tokenizer changed. The rolling hashes are not stored,
+ * as they depend on the minimum tile size and take only a fraction of the
+ * time needed for tokenizing.
+ */
+class TokenCache {
+
+    private static final Logger LOG = Logger.getLogger(TokenCache.class.getName());
+
+    /** "CPDT" */
+    private static final int MAGIC = 0x43504454;
+
+    private final File cacheFile;
+    private final String fingerprint;
+
+    /** The images of the identifiers of the cached tokens, the first one is the end of a file. */
+    private String[] images = new String[] { null };
+    /** The identifiers of the images in this run, 0 if not yet known. */
+    private int[] identifiers = new int[1];
+
+    private final Map<String, CachedFile> cachedFiles = new ConcurrentHashMap<>();
+    private final Map<String, Long> checksums = new ConcurrentHashMap<>();
+    private final Set<String> upToDateFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** The tokens of the files of this run by file name, as start and end index. */
+    private final Map<String, int[]> addedFiles = new LinkedHashMap<>();
+
+    /**
+     * Creates a new cache backed by the given file, and loads it, if it was
+     * written with the same PMD version and tokenizer configuration.
+     *
+     * @param cacheFile the file in which to store the tokens
+     * @param fingerprint the configuration of the tokenizer
+     */
+    TokenCache(File cacheFile, String fingerprint) {
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+        load();
+    }
+
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (input.readInt() != MAGIC) {
+                LOG.warning("CPD cache file " + cacheFile.getPath() + " is malformed, will not be used");
+                return;
+            }
+            if (!PMDVersion.VERSION.equals(input.readUTF()) || !fingerprint.equals(readString(input))) {
+                LOG.info("CPD cache invalidated, PMD version or tokenizer configuration changed.");
+                return;
+            }
+
+            String[] cachedImages = new String[input.readInt() + 1];
+            for (int i = 1; i < cachedImages.length; i++) {
+                cachedImages[i] = readString(input);
+            }
+            int fileCount = input.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                String fileName = input.readUTF();
+                long checksum = input.readLong();
+                int[] fileIdentifiers = new int[input.readInt()];
+                int[] lines = new int[fileIdentifiers.length];
+                for (int j = 0; j < fileIdentifiers.length; j++) {
+                    fileIdentifiers[j] = input.readInt();
+                    lines[j] = input.readInt();
+                    if (fileIdentifiers[j] < 0 || fileIdentifiers[j] >= cachedImages.length) {
+                        throw new IOException("Unknown identifier " + fileIdentifiers[j]);
+                    }
+                }
+                cachedFiles.put(fileName, new CachedFile(checksum, fileIdentifiers, lines));
+            }
+            images = cachedImages;
+            identifiers = new int[cachedImages.length];
+            LOG.info("CPD cache loaded");
+        } catch (IOException e) {
+            cachedFiles.clear();
+            LOG.warning("CPD cache file " + cacheFile.getPath() + " is malformed, will not be used: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the cached tokens of the given file, if the file didn't change.
+     * May be called by several threads at the same time.
+     *
+     * @param fileName the name of the file
+     * @return the tokens, or <code>null</code> if the file needs to be tokenized
+     */
+    Tokens getTokens(String fileName) {
+        File file = new File(fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        long checksum = computeChecksum(file);
+        checksums.put(fileName, checksum);
+
+        CachedFile cachedFile = cachedFiles.remove(fileName);
+        if (cachedFile == null || cachedFile.checksum != checksum) {
+            return null;
+        }
+
+        Tokens tokens = new Tokens();
+        for (int i = 0; i < cachedFile.identifiers.length; i++) {
+            int identifier = cachedFile.identifiers[i];
+            if (identifier == 0) {
+                tokens.add(TokenEntry.EOF);
+            } else {
+                tokens.add(currentIdentifier(identifier), cachedFile.lines[i], fileName);
+            }
+        }
+        upToDateFiles.add(fileName);
+        return tokens;
+    }
+
+    /**
+     * Maps the identifier of a cached token to the identifier of its image in
+     * this run. Concurrent threads compute the same identifier.
+     */
+    private int currentIdentifier(int identifier) {
+        int current = identifiers[identifier];
+        if (current == 0) {
+            current = TokenEntry.identifierOf(images[identifier]);
+            identifiers[identifier] = current;
+        }
+        return current;
+    }
+
+    /**
+     * Records the tokens of a file, which were added to the tokens of this run.
+     *
+     * @param fileName the name of the file
+     * @param from the index of the first token
+     * @param to the index after the end of the file
+     */
+    void tokensAdded(String fileName, int from, int to) {
+        if (checksums.containsKey(fileName)) {
+            addedFiles.put(fileName, new int[] { from, to });
+        }
+    }
+
+    /**
+     * Checks, whether the tokens of the given file were found in the cache.
+     */
+    boolean isUpToDate(String fileName) {
+        return upToDateFiles.contains(fileName);
+    }
+
+    /**
+     * Writes the tokens of all files of this run to the cache file. The
+     * files, which weren't part of this run, are removed from the cache.
+     *
+     * @param tokens the tokens of this run
+     */
+    void persist(Tokens tokens) {
+        File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+            output.writeInt(MAGIC);
+            output.writeUTF(PMDVersion.VERSION);
+            writeString(output, fingerprint);
+
+            Map<String, Integer> currentImages = TokenEntry.getImages();
+            String[] imagesById = new String[currentImages.size() + 1];
+            for (Map.Entry<String, Integer> image : currentImages.entrySet()) {
+                imagesById[image.getValue()] = image.getKey();
+            }
+            output.writeInt(imagesById.length - 1);
+            for (int i = 1; i < imagesById.length; i++) {
+                writeString(output, imagesById[i]);
+            }
+
+            output.writeInt(addedFiles.size());
+            for (Map.Entry<String, int[]> file : addedFiles.entrySet()) {
+                int from = file.getValue()[0];
+                int to = file.getValue()[1];
+                output.writeUTF(file.getKey());
+                output.writeLong(checksums.get(file.getKey()));
+                output.writeInt(to - from);
+                for (int i = from; i < to; i++) {
+                    output.writeInt(tokens.getIdentifier(i));
+                    output.writeInt(tokens.getBeginLine(i));
+                }
+            }
+            if (LOG.isLoggable(Level.INFO)) {
+                LOG.info("CPD cache updated, " + addedFiles.size() + " files stored");
+            }
+        } catch (IOException e) {
+            LOG.severe("Could not persist CPD cache to file. " + e.getMessage());
+        }
+    }
+
+    private static long computeChecksum(File file) {
+        try (CheckedInputStream stream = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), new Adler32())) {
+            // Just read it, the CheckedInputStream will update the checksum on it's own
+            IOUtils.skipFully(stream, file.length());
+            return stream.getChecksum().getValue();
+        } catch (IOException ignored) {
+            // the tokenizer will report the unreadable file on it's own
+            return 0;
+        }
+    }
+
+    /**
+     * Writes a string, which may be longer than {@link DataOutputStream#writeUTF(String)}
+     * supports, e.g. a long literal.
+     */
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class CachedFile {
+        private final long checksum;
+        private final int[] identifiers;
+        private final int[] lines;
+
+        CachedFile(long checksum, int[] identifiers, int[] lines) {
+            this.checksum = checksum;
+            this.identifiers = identifiers;
+            this.lines = lines;
+        }
+    }
+}
@@ -5,9 +5,11 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TokenEntry implements Comparable<TokenEntry> {
@@ -20,10 +22,14 @@ public class TokenEntry implements Comparable<TokenEntry> {
     private int identifier;
     private int hashCode;
 
+    /**
+     * The identifiers of the images. The map is shared by the threads, which
+     * tokenize the files of one CPD run in parallel.
+     */
     private static final ThreadLocal<Map<String, Integer>> TOKENS = new ThreadLocal<Map<String, Integer>>() {
         @Override
         protected Map<String, Integer> initialValue() {
-            return new HashMap<>();
+            return new ConcurrentHashMap<>();
         }
     };
     private static final ThreadLocal<AtomicInteger> TOKEN_COUNT = new ThreadLocal<AtomicInteger>() {
@@ -51,6 +57,16 @@ public class TokenEntry implements Comparable<TokenEntry> {
         this.index = TOKEN_COUNT.get().getAndIncrement();
     }
 
+    /**
+     * Creates a view of a token, which is stored by {@link Tokens}.
+     */
+    TokenEntry(int identifier, String tokenSrcID, int beginLine, int index) {
+        this.identifier = identifier;
+        this.tokenSrcID = tokenSrcID;
+        this.beginLine = beginLine;
+        this.index = index;
+    }
+
     public static TokenEntry getEOF() {
         TOKEN_COUNT.get().getAndIncrement();
         return EOF;
@@ -62,6 +78,25 @@ public class TokenEntry implements Comparable<TokenEntry> {
         TOKEN_COUNT.remove();
     }
 
+    /**
+     * Gets the identifiers of the images of the current thread.
+     */
+    static Map<String, Integer> getImages() {
+        return TOKENS.get();
+    }
+
+    /**
+     * Lets the current thread use the given identifiers of the images, so
+     * that the tokens created by several threads can be compared. The token
+     * indexes of the current thread start at 0 again.
+     *
+     * @param images the identifiers of the images, see {@link #getImages()}
+     */
+    static void useImages(Map<String, Integer> images) {
+        TOKENS.set(images);
+        TOKEN_COUNT.set(new AtomicInteger(0));
+    }
+
     /**
      * Helper class to preserve and restore the current state of the token
      * entries.
@@ -77,6 +112,14 @@ public class TokenEntry implements Comparable<TokenEntry> {
             this.entries = new ArrayList<>(entries);
         }
 
+        /**
+         * Preserves only the images and the token count, the tokens are
+         * restored with {@link Tokens#truncate(int)}.
+         */
+        State() {
+            this(Collections.<TokenEntry>emptyList());
+        }
+
         public List<TokenEntry> restore() {
             TokenEntry.TOKEN_COUNT.get().set(tokenCount);
             TOKENS.get().clear();
@@ -138,11 +181,26 @@ public class TokenEntry implements Comparable<TokenEntry> {
     }
 
     final void setImage(String image) {
-        Integer i = TOKENS.get().get(image);
+        this.identifier = identifierOf(image);
+    }
+
+    /**
+     * Gets the identifier of the given image, which is created, if the image
+     * is new.
+     */
+    static int identifierOf(String image) {
+        Map<String, Integer> images = TOKENS.get();
+        Integer i = images.get(image);
         if (i == null) {
-            i = TOKENS.get().size() + 1;
-            TOKENS.get().put(image, i);
+            // new images are rare, so the lock is hardly contended
+            synchronized (images) {
+                i = images.get(image);
+                if (i == null) {
+                    i = images.size() + 1;
+                    images.put(image, i);
+                }
+            }
         }
-        this.identifier = i.intValue();
+        return i.intValue();
     }
 }
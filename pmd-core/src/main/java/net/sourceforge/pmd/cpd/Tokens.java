@@ -4,40 +4,225 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * The tokens of all files. The tokens are not kept as {@link TokenEntry}
+ * objects, but in parallel <code>int</code> arrays of their identifiers, lines
+ * and files, which need about 12 bytes per token. The token entries returned
+ * by this class are views, which are created on demand. They are copies of the
+ * stored token, i.e. changes to them are only stored by
+ * {@link List#set(int, Object)} of the list returned by {@link #getTokens()}.
+ *
+ * <p>The end of a file is stored with the identifier 0 and always returned as
+ * {@link TokenEntry#EOF}.
+ */
 public class Tokens {
 
-    private List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int NO_FILE = -1;
+
+    private int size;
+    private int[] identifiers = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] fileIndexes = new int[INITIAL_CAPACITY];
+
+    private final List<String> fileNames = new ArrayList<>();
+    private final Map<String, Integer> fileIndexByName = new HashMap<>();
+    private final List<TokenEntry> view = new TokenList();
 
     public void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+        ensureCapacity(size + 1);
+        set(size++, tokenEntry);
+    }
+
+    /**
+     * Adds a token, which isn't the end of a file, without creating a token
+     * entry, e.g. a cached token.
+     */
+    void add(int identifier, int beginLine, String fileName) {
+        ensureCapacity(size + 1);
+        identifiers[size] = identifier;
+        beginLines[size] = beginLine;
+        fileIndexes[size] = fileIndex(fileName);
+        size++;
+    }
+
+    /**
+     * Adds all tokens of the given tokens, e.g. of a file, which was
+     * tokenized separately.
+     */
+    void addAll(Tokens other) {
+        ensureCapacity(size + other.size);
+        int[] fileMapping = new int[other.fileNames.size()];
+        for (int i = 0; i < fileMapping.length; i++) {
+            fileMapping[i] = fileIndex(other.fileNames.get(i));
+        }
+        System.arraycopy(other.identifiers, 0, identifiers, size, other.size);
+        System.arraycopy(other.beginLines, 0, beginLines, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            int fileIndex = other.fileIndexes[i];
+            fileIndexes[size + i] = fileIndex == NO_FILE ? NO_FILE : fileMapping[fileIndex];
+        }
+        size += other.size;
+    }
+
+    /**
+     * Removes the tokens after the given size, e.g. the tokens of a file,
+     * which couldn't be tokenized.
+     */
+    void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", new size: " + newSize);
+        }
+        size = newSize;
     }
 
     public Iterator<TokenEntry> iterator() {
-        return tokens.iterator();
+        return view.iterator();
+    }
+
+    /**
+     * Gets a view of the token at the given index.
+     */
+    TokenEntry get(int index) {
+        checkIndex(index);
+        if (identifiers[index] == 0) {
+            return TokenEntry.EOF;
+        }
+        return new TokenEntry(identifiers[index], fileNames.get(fileIndexes[index]), beginLines[index], index);
     }
 
-    private TokenEntry get(int index) {
-        return tokens.get(index);
+    /**
+     * Gets the identifier of the token at the given index, which is 0 for the
+     * end of a file.
+     */
+    int getIdentifier(int index) {
+        checkIndex(index);
+        return identifiers[index];
+    }
+
+    /**
+     * Gets the line of the token at the given index.
+     */
+    int getBeginLine(int index) {
+        checkIndex(index);
+        return beginLines[index];
+    }
+
+    /**
+     * Gets the name of the file of the token at the given index, or
+     * <code>null</code> for the end of a file.
+     */
+    String getTokenSrcID(int index) {
+        checkIndex(index);
+        return fileIndexes[index] == NO_FILE ? null : fileNames.get(fileIndexes[index]);
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     public int getLineCount(TokenEntry mark, Match match) {
-        TokenEntry endTok = get(mark.getIndex() + match.getTokenCount() - 1);
-        if (endTok == TokenEntry.EOF) {
-            endTok = get(mark.getIndex() + match.getTokenCount() - 2);
+        int end = mark.getIndex() + match.getTokenCount() - 1;
+        checkIndex(end);
+        if (identifiers[end] == 0) {
+            end--;
         }
-        return endTok.getBeginLine() - mark.getBeginLine() + 1;
+        return beginLines[end] - mark.getBeginLine() + 1;
     }
 
+    /**
+     * Gets a view of the tokens. The list supports adding tokens, replacing
+     * tokens and removing tokens at the end.
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return view;
+    }
+
+    private void set(int index, TokenEntry tokenEntry) {
+        if (tokenEntry == TokenEntry.EOF) {
+            identifiers[index] = 0;
+            beginLines[index] = 0;
+            fileIndexes[index] = NO_FILE;
+        } else {
+            identifiers[index] = tokenEntry.getIdentifier();
+            beginLines[index] = tokenEntry.getBeginLine();
+            fileIndexes[index] = fileIndex(tokenEntry.getTokenSrcID());
+        }
+    }
+
+    private int fileIndex(String fileName) {
+        // the tokens of a file are added one after another
+        int last = fileNames.size() - 1;
+        if (last >= 0 && fileNames.get(last).equals(fileName)) {
+            return last;
+        }
+        Integer index = fileIndexByName.get(fileName);
+        if (index == null) {
+            index = fileNames.size();
+            fileNames.add(fileName);
+            fileIndexByName.put(fileName, index);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > identifiers.length) {
+            int newCapacity = Math.max(capacity, identifiers.length + (identifiers.length >> 1));
+            identifiers = Arrays.copyOf(identifiers, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            fileIndexes = Arrays.copyOf(fileIndexes, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
     }
 
+    private class TokenList extends AbstractList<TokenEntry> {
+
+        @Override
+        public TokenEntry get(int index) {
+            return Tokens.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public TokenEntry set(int index, TokenEntry element) {
+            TokenEntry previous = get(index);
+            Tokens.this.set(index, element);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, TokenEntry element) {
+            if (index != size) {
+                throw new UnsupportedOperationException("Tokens can only be added at the end");
+            }
+            Tokens.this.add(element);
+            modCount++;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            if (toIndex != size) {
+                throw new UnsupportedOperationException("Only the last tokens can be removed");
+            }
+            truncate(fromIndex);
+            modCount++;
+        }
+    }
 }
@@ -60,6 +60,11 @@ public abstract class AbstractLanguageVersionHandler implements LanguageVersionH
         return VisitorStarter.DUMMY;
     }
 
+    @Override
+    public ProjectIndexer getProjectIndexer() {
+        return null;
+    }
+
     @Override
     public DFAGraphRule getDFAGraphRule() {
         return null;
@@ -96,5 +96,15 @@ public interface LanguageVersionHandler {
     VisitorStarter getMultifileFacade();
 
 
+    /**
+     * Gets a new indexer, which builds the index of the whole project for the
+     * multifile rules, before the rules are applied.
+     *
+     * @return The indexer, or <code>null</code> if the language doesn't index
+     *         the project
+     */
+    ProjectIndexer getProjectIndexer();
+
+
     DFAGraphRule getDFAGraphRule();
 }
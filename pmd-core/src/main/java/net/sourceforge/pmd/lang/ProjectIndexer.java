@@ -0,0 +1,80 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang;
+
+import java.io.File;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * Builds the index of the whole project, which the multifile rules of a
+ * language use. PMD indexes all files, before it applies any rule, so that
+ * the rules see the same index, regardless of the order, in which the files
+ * are analyzed.
+ *
+ * <p>An indexer is used for one analysis:
+ * <ol>
+ * <li>{@link #start(File)} loads the index of the previous analysis.</li>
+ * <li>For each file, {@link #isUpToDate(String, long)} checks whether the
+ * file is indexed already. If not, {@link #index(String, long, Node)} indexes
+ * its AST. These methods are called by several threads at the same time.</li>
+ * <li>{@link #publish(RuleContext)} drops the files, which aren't part of the
+ * project anymore, makes the index available to the rules and persists it.</li>
+ * <li>{@link #release(RuleContext)} is called, when the rules are done.</li>
+ * </ol>
+ *
+ * <p>The index is only available to the rules of the analysis, for which it
+ * was built, as attribute of the {@link RuleContext} of the analysis. The
+ * rule contexts of the files share the attributes of this context.
+ *
+ * @see LanguageVersionHandler#getProjectIndexer()
+ */
+public interface ProjectIndexer {
+
+    /**
+     * Starts the indexing.
+     *
+     * @param indexFile the file, from which the index of the previous
+     *            analysis is loaded and into which the index is persisted,
+     *            <code>null</code> to not persist the index
+     */
+    void start(File indexFile);
+
+    /**
+     * Checks whether the given file is indexed already with the same
+     * contents, in which case it is kept in the index without being parsed.
+     *
+     * @param fileName the name of the file
+     * @param checksum the checksum of the contents of the file
+     * @return <code>true</code> if the file doesn't need to be indexed
+     */
+    boolean isUpToDate(String fileName, long checksum);
+
+    /**
+     * Indexes a file, replacing the former entries of the file.
+     *
+     * @param fileName the name of the file
+     * @param checksum the checksum of the contents of the file
+     * @param rootNode the root of the AST, with the symbol table
+     */
+    void index(String fileName, long checksum, Node rootNode);
+
+    /**
+     * Ends the indexing and makes the index available to the rules.
+     *
+     * @param ctx the rule context of the analysis, of which the index
+     *            becomes an attribute
+     */
+    void publish(RuleContext ctx);
+
+    /**
+     * Releases the index, after the rules are applied.
+     *
+     * @param ctx the rule context of the analysis, from which the index
+     *            is removed
+     */
+    void release(RuleContext ctx);
+}
@@ -185,7 +185,9 @@ public abstract class AbstractNode implements Node {
     public DataFlowNode getDataFlowNode() {
         if (this.dataFlowNode == null) {
             if (this.parent != null) {
-                return parent.getDataFlowNode();
+                DataFlowNode inherited = parent.getDataFlowNode();
+                // the parent may have built the data flow just now, which includes this node
+                return this.dataFlowNode == null ? inherited : this.dataFlowNode;
             }
             return null; // TODO wise?
         }
@@ -0,0 +1,67 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * Reads the value of one attribute of a node. The getter method is looked up
+ * once per node class and bound to a {@link MethodHandle}, so that reading a
+ * value doesn't go through {@link Method#invoke(Object, Object...)} with its
+ * argument array and access checks.
+ */
+final class AttributeAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Node.class);
+
+    private final String name;
+    private final Method method;
+    private final MethodHandle getter;
+
+    AttributeAccessor(String name, Method method) {
+        this.name = name;
+        this.method = method;
+        this.getter = createGetter(method);
+    }
+
+    private static MethodHandle createGetter(Method method) {
+        try {
+            // adapt to (Node)Object, so that it can be invoked exactly for any node class
+            return MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            // e.g. a public method of a non-public class, use reflection
+            return null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Reads the value of the attribute.
+     *
+     * @param node the node, whose attribute is read
+     * @return the value, primitives are boxed
+     * @throws IllegalAccessException if the getter is not accessible
+     * @throws InvocationTargetException if the getter throws an exception
+     */
+    public Object getValue(Node node) throws IllegalAccessException, InvocationTargetException {
+        if (getter == null) {
+            return method.invoke(node);
+        }
+        try {
+            return (Object) getter.invokeExact(node);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
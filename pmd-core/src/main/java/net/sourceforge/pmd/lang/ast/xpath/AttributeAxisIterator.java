@@ -7,70 +7,128 @@ package net.sourceforge.pmd.lang.ast.xpath;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import net.sourceforge.pmd.lang.ast.Node;
 
+/**
+ * Iterates over the attributes of a node. The attribute accessors of each
+ * node class are looked up once and kept in a table, in which the accessors
+ * of an attribute name can be found by index, so that an XPath step like
+ * <code>@Image</code> doesn't need to iterate over all attributes.
+ */
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
-    private static class MethodWrapper {
-        public Method method;
-        public String name;
-
-        MethodWrapper(Method m) {
-            this.method = m;
-            this.name = truncateMethodName(m.getName());
-        }
-
-        private String truncateMethodName(String n) {
-            // about 70% of the methods start with 'get', so this case goes
-            // first
-            if (n.startsWith("get")) {
-                return n.substring("get".length());
-            }
-            if (n.startsWith("is")) {
-                return n.substring("is".length());
-            }
-            if (n.startsWith("has")) {
-                return n.substring("has".length());
-            }
-            if (n.startsWith("uses")) {
-                return n.substring("uses".length());
+    /**
+     * The attribute accessors of a node class.
+     */
+    private static class AccessorTable {
+        public final AttributeAccessor[] accessors;
+        /** The indexes into {@link #accessors} by attribute name. */
+        public final Map<String, int[]> indexesByName;
+
+        AccessorTable(AttributeAccessor[] accessors) {
+            this.accessors = accessors;
+            this.indexesByName = new HashMap<>();
+            for (int i = 0; i < accessors.length; i++) {
+                int[] indexes = indexesByName.get(accessors[i].getName());
+                if (indexes == null) {
+                    indexes = new int[] { i };
+                } else {
+                    // e.g. getFoo() and isFoo()
+                    indexes = Arrays.copyOf(indexes, indexes.length + 1);
+                    indexes[indexes.length - 1] = i;
+                }
+                indexesByName.put(accessors[i].getName(), indexes);
             }
-
-            return n;
         }
     }
 
+    private static final int[] NO_INDEXES = new int[0];
+
     private Attribute currObj;
-    private MethodWrapper[] methodWrappers;
+    private AttributeAccessor[] accessors;
+    private int[] indexes;
     private int position;
     private Node node;
 
-    private static ConcurrentMap<Class<?>, MethodWrapper[]> methodCache =
-            new ConcurrentHashMap<Class<?>, MethodWrapper[]>();
+    private static ConcurrentMap<Class<?>, AccessorTable> accessorCache =
+            new ConcurrentHashMap<Class<?>, AccessorTable>();
 
+    /**
+     * Iterates over all attributes of the given node.
+     *
+     * @param contextNode the node
+     */
     public AttributeAxisIterator(Node contextNode) {
         this.node = contextNode;
-        if (!methodCache.containsKey(contextNode.getClass())) {
+        this.accessors = getAccessorTable(contextNode).accessors;
+
+        this.position = 0;
+        this.currObj = getNextAttribute();
+    }
+
+    /**
+     * Iterates over the attributes of the given node with the given name.
+     * Usually there is at most one.
+     *
+     * @param contextNode the node
+     * @param name the attribute name, e.g. <code>Image</code>
+     */
+    public AttributeAxisIterator(Node contextNode, String name) {
+        this.node = contextNode;
+        AccessorTable table = getAccessorTable(contextNode);
+        this.accessors = table.accessors;
+        this.indexes = table.indexesByName.get(name);
+        if (this.indexes == null) {
+            this.indexes = NO_INDEXES;
+        }
+
+        this.position = 0;
+        this.currObj = getNextAttribute();
+    }
+
+    private AccessorTable getAccessorTable(Node contextNode) {
+        AccessorTable table = accessorCache.get(contextNode.getClass());
+        if (table == null) {
             Method[] preFilter = contextNode.getClass().getMethods();
-            List<MethodWrapper> postFilter = new ArrayList<>();
+            List<AttributeAccessor> postFilter = new ArrayList<>();
             for (Method element : preFilter) {
                 if (isAttributeAccessor(element)) {
-                    postFilter.add(new MethodWrapper(element));
+                    postFilter.add(new AttributeAccessor(truncateMethodName(element.getName()), element));
                 }
             }
-            methodCache.putIfAbsent(contextNode.getClass(), postFilter.toArray(new MethodWrapper[0]));
+            accessorCache.putIfAbsent(contextNode.getClass(),
+                    new AccessorTable(postFilter.toArray(new AttributeAccessor[0])));
+            table = accessorCache.get(contextNode.getClass());
         }
-        this.methodWrappers = methodCache.get(contextNode.getClass());
+        return table;
+    }
 
-        this.position = 0;
-        this.currObj = getNextAttribute();
+    private static String truncateMethodName(String n) {
+        // about 70% of the methods start with 'get', so this case goes
+        // first
+        if (n.startsWith("get")) {
+            return n.substring("get".length());
+        }
+        if (n.startsWith("is")) {
+            return n.substring("is".length());
+        }
+        if (n.startsWith("has")) {
+            return n.substring("has".length());
+        }
+        if (n.startsWith("uses")) {
+            return n.substring("uses".length());
+        }
+
+        return n;
     }
 
     @Override
@@ -94,11 +152,16 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
     }
 
     private Attribute getNextAttribute() {
-        if (methodWrappers == null || position == methodWrappers.length) {
+        if (indexes != null) {
+            if (position == indexes.length) {
+                return null;
+            }
+            return new Attribute(node, accessors[indexes[position++]]);
+        }
+        if (position == accessors.length) {
             return null;
         }
-        MethodWrapper m = methodWrappers[position++];
-        return new Attribute(node, m.name, m.method);
+        return new Attribute(node, accessors[position++]);
     }
 
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES 
@@ -5,9 +5,12 @@
 package net.sourceforge.pmd.lang.ast.xpath;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jaxen.DefaultNavigator;
+import org.jaxen.NamedAccessNavigator;
 import org.jaxen.XPath;
 import org.jaxen.util.SingleObjectIterator;
 
@@ -17,7 +20,7 @@ import net.sourceforge.pmd.lang.ast.RootNode;
 /**
  * @author daniels
  */
-public class DocumentNavigator extends DefaultNavigator {
+public class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator {
 
     private static final Iterator<Node> EMPTY_ITERATOR = new ArrayList<Node>().iterator();
 
@@ -142,6 +145,81 @@ public class DocumentNavigator extends DefaultNavigator {
         }
     }
 
+    /**
+     * Get an iterator over the attributes of this node with the given name.
+     * The attribute is looked up by name, without iterating over all
+     * attributes of the node.
+     *
+     * @param contextNode
+     *            The context node for the attribute axis.
+     * @param localName
+     *            The name of the attribute.
+     * @param namespacePrefix
+     *            The namespace prefix, not used.
+     * @param namespaceURI
+     *            The namespace URI, AST attributes don't have a namespace.
+     * @return A possibly-empty iterator (not null).
+     */
+    @Override
+    public Iterator<Attribute> getAttributeAxisIterator(Object contextNode, final String localName,
+            String namespacePrefix, String namespaceURI) {
+        if (namespaceURI != null && !namespaceURI.isEmpty()) {
+            return Collections.<Attribute>emptyIterator();
+        }
+        if (contextNode instanceof AttributeNode) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (Iterator<Attribute> iter = ((AttributeNode) contextNode).getAttributeIterator(); iter.hasNext();) {
+                Attribute attribute = iter.next();
+                if (localName.equals(attribute.getName())) {
+                    attributes.add(attribute);
+                }
+            }
+            return attributes.iterator();
+        } else {
+            return new AttributeAxisIterator((Node) contextNode, localName);
+        }
+    }
+
+    /**
+     * Get an iterator over this node's children with the given name.
+     *
+     * @param contextNode
+     *            The context node for the child axis.
+     * @param localName
+     *            The XPath node name of the children.
+     * @param namespacePrefix
+     *            The namespace prefix, not used.
+     * @param namespaceURI
+     *            The namespace URI, AST nodes don't have a namespace.
+     * @return A possibly-empty iterator (not null).
+     */
+    @Override
+    public Iterator<Node> getChildAxisIterator(Object contextNode, final String localName,
+            String namespacePrefix, String namespaceURI) {
+        if (namespaceURI != null && !namespaceURI.isEmpty()) {
+            return EMPTY_ITERATOR;
+        }
+        return new NodeIterator((Node) contextNode) {
+            @Override
+            protected Node getFirstNode(Node node) {
+                return skipOtherNames(getFirstChild(node));
+            }
+
+            @Override
+            protected Node getNextNode(Node node) {
+                return skipOtherNames(getNextSibling(node));
+            }
+
+            private Node skipOtherNames(Node node) {
+                Node result = node;
+                while (result != null && !localName.equals(result.getXPathNodeName())) {
+                    result = getNextSibling(result);
+                }
+                return result;
+            }
+        };
+    }
+
     /**
      * Get an iterator over all of this node's children.
      *
@@ -46,6 +46,15 @@ public class DocumentNode extends AbstractNodeInfo implements DocumentInfo {
         this.rootNode = new ElementNode(this, new IdGenerator(), null, node, -1);
     }
 
+    /**
+     * Gets the AST Node, which is the root of this DocumentNode.
+     *
+     * @return the root AST Node
+     */
+    public Node getRootASTNode() {
+        return (Node) rootNode.getUnderlyingNode();
+    }
+
     @Override
     public String[] getUnparsedEntity(String name) {
         throw createUnsupportedOperationException("DocumentInfo.getUnparsedEntity(String)");
@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.lang.dfa;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -14,18 +15,25 @@ import net.sourceforge.pmd.lang.ast.Node;
 /**
  * Each data flow contains a set of DataFlowNodes.
  *
+ * <p>The nodes link each other with lists, while the data flow is built.
+ * Once it is linked, the edges are moved into a {@link DataFlowGraph}, see
+ * {@link DataFlowGraph#compact(List)}.
+ *
  * @author raik
  */
 public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     protected Node node;
 
-    protected List<DataFlowNode> parents = new ArrayList<>();
-    protected List<DataFlowNode> children = new ArrayList<>();
+    // most nodes have one or two parents and children
+    protected List<DataFlowNode> parents = new ArrayList<>(2);
+    protected List<DataFlowNode> children = new ArrayList<>(2);
     protected Set<NodeType> type = EnumSet.noneOf(NodeType.class);
-    protected List<VariableAccess> variableAccess = new ArrayList<>();
+    protected List<VariableAccess> variableAccess = Collections.emptyList();
     protected List<DataFlowNode> dataFlow;
     protected int line;
+    private DataFlowGraph graph;
+    private int index;
 
     public AbstractDataFlowNode(List<DataFlowNode> dataFlow) {
         this.dataFlow = dataFlow;
@@ -46,6 +54,7 @@ public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     @Override
     public void addPathToChild(DataFlowNode child) {
+        checkNotCompacted();
         DataFlowNode thisChild = child;
         // TODO - throw an exception if already contained in children list?
         if (!this.children.contains(thisChild) || this.equals(thisChild)) {
@@ -56,6 +65,7 @@ public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     @Override
     public boolean removePathToChild(DataFlowNode child) {
+        checkNotCompacted();
         DataFlowNode thisChild = child;
         thisChild.getParents().remove(this);
         return this.children.remove(thisChild);
@@ -63,6 +73,7 @@ public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     @Override
     public void reverseParentPathsTo(DataFlowNode destination) {
+        checkNotCompacted();
         while (!parents.isEmpty()) {
             DataFlowNode parent = parents.get(0);
             parent.removePathToChild(this);
@@ -92,12 +103,12 @@ public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     @Override
     public List<DataFlowNode> getChildren() {
-        return this.children;
+        return graph == null ? this.children : graph.getChildren(index);
     }
 
     @Override
     public List<DataFlowNode> getParents() {
-        return this.parents;
+        return graph == null ? this.parents : graph.getParents(index);
     }
 
     @Override
@@ -107,7 +118,29 @@ public abstract class AbstractDataFlowNode implements DataFlowNode {
 
     @Override
     public int getIndex() {
-        return this.dataFlow.indexOf(this);
+        return graph == null ? this.dataFlow.indexOf(this) : index;
+    }
+
+    /**
+     * Returns the graph, which stores the edges of this node.
+     *
+     * @return the graph, <code>null</code> if the data flow isn't compacted
+     */
+    public DataFlowGraph getGraph() {
+        return graph;
+    }
+
+    /* default */ void compact(DataFlowGraph graph, int index) {
+        this.graph = graph;
+        this.index = index;
+        this.parents = null;
+        this.children = null;
+    }
+
+    private void checkNotCompacted() {
+        if (graph != null) {
+            throw new IllegalStateException("The data flow is already linked and compacted");
+        }
     }
 
     @Override
@@ -0,0 +1,244 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The edges of the data flow of a method, stored as int-indexed adjacency
+ * arrays. The indexes are the positions of the nodes in the flow.
+ *
+ * <p>While the data flow is built, the nodes link each other with lists.
+ * Once the data flow is linked, {@link #compact(List)} stores the edges in a
+ * graph, which is shared by all nodes of the flow, and releases the lists of
+ * the nodes. The children and parents of a compacted node are read-only views
+ * on the graph.
+ *
+ * @see AbstractDataFlowNode
+ */
+public final class DataFlowGraph {
+
+    private final List<DataFlowNode> flow;
+    private final int[] childOffsets;
+    private final int[] childIndices;
+    private final int[] parentOffsets;
+    private final int[] parentIndices;
+    /** Whether all edges lead to nodes of the flow. */
+    private final boolean complete;
+    /** Only used for the nodes, which aren't compacted. */
+    private Map<DataFlowNode, Integer> indices;
+
+    private DataFlowGraph(List<DataFlowNode> flow) {
+        this.flow = flow;
+        int size = flow.size();
+        Map<DataFlowNode, Integer> nodeIndices = new IdentityHashMap<>(size * 4 / 3 + 1);
+        int childCount = 0;
+        int parentCount = 0;
+        for (int i = 0; i < size; i++) {
+            DataFlowNode node = flow.get(i);
+            nodeIndices.put(node, i);
+            childCount += node.getChildren().size();
+            parentCount += node.getParents().size();
+        }
+
+        childOffsets = new int[size + 1];
+        int[] children = new int[childCount];
+        parentOffsets = new int[size + 1];
+        int[] parents = new int[parentCount];
+        childCount = 0;
+        parentCount = 0;
+        for (int i = 0; i < size; i++) {
+            DataFlowNode node = flow.get(i);
+            childOffsets[i] = childCount;
+            childCount = addIndices(node.getChildren(), nodeIndices, children, childCount);
+            parentOffsets[i] = parentCount;
+            parentCount = addIndices(node.getParents(), nodeIndices, parents, parentCount);
+        }
+        childOffsets[size] = childCount;
+        parentOffsets[size] = parentCount;
+
+        this.complete = childCount == children.length && parentCount == parents.length;
+        this.childIndices = complete ? children : Arrays.copyOf(children, childCount);
+        this.parentIndices = complete ? parents : Arrays.copyOf(parents, parentCount);
+        this.indices = nodeIndices;
+    }
+
+    /**
+     * Stores the edges of the given data flow in a graph and switches the
+     * nodes of the flow to it. Nodes, which aren't {@link AbstractDataFlowNode
+     * AbstractDataFlowNodes}, keep their own edges. If an edge leads to a
+     * node, which isn't part of the flow, no node is switched.
+     *
+     * @param flow the nodes of the linked data flow of a method
+     * @return the graph
+     */
+    public static DataFlowGraph compact(List<DataFlowNode> flow) {
+        DataFlowGraph graph = new DataFlowGraph(flow);
+        if (!graph.complete) {
+            return graph;
+        }
+        boolean allCompacted = true;
+        for (int i = 0; i < flow.size(); i++) {
+            DataFlowNode node = flow.get(i);
+            if (node instanceof AbstractDataFlowNode) {
+                ((AbstractDataFlowNode) node).compact(graph, i);
+            } else {
+                allCompacted = false;
+            }
+        }
+        if (allCompacted) {
+            // the nodes know their index
+            graph.indices = null;
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the graph of the given data flow. That's the graph of the flow,
+     * if it was compacted, otherwise a new graph of the edges between the
+     * nodes of the flow.
+     *
+     * @param flow the nodes of the data flow of a method
+     * @return the graph
+     */
+    public static DataFlowGraph of(List<DataFlowNode> flow) {
+        if (!flow.isEmpty() && flow.get(0) instanceof AbstractDataFlowNode) {
+            DataFlowGraph graph = ((AbstractDataFlowNode) flow.get(0)).getGraph();
+            if (graph != null && graph.flow == flow) {
+                return graph;
+            }
+        }
+        return new DataFlowGraph(flow);
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return flow.size();
+    }
+
+    /**
+     * Returns the node with the given index.
+     *
+     * @param index the index of the node
+     * @return the node
+     */
+    public DataFlowNode getNode(int index) {
+        return flow.get(index);
+    }
+
+    /**
+     * Returns the index of the given node.
+     *
+     * @param node the node
+     * @return the index, or -1 if the node isn't part of the graph
+     */
+    public int indexOf(DataFlowNode node) {
+        if (node instanceof AbstractDataFlowNode && ((AbstractDataFlowNode) node).getGraph() == this) {
+            return ((AbstractDataFlowNode) node).getIndex();
+        }
+        Integer index = indices == null ? null : indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the number of children of the node with the given index.
+     *
+     * @param index the index of the node
+     * @return the number of children
+     */
+    public int getChildCount(int index) {
+        return childOffsets[index + 1] - childOffsets[index];
+    }
+
+    /**
+     * Returns the index of a child of the node with the given index.
+     *
+     * @param index the index of the node
+     * @param n the number of the child, less than {@link #getChildCount(int)}
+     * @return the index of the child
+     */
+    public int getChild(int index, int n) {
+        return childIndices[childOffsets[index] + n];
+    }
+
+    /**
+     * Returns the number of parents of the node with the given index.
+     *
+     * @param index the index of the node
+     * @return the number of parents
+     */
+    public int getParentCount(int index) {
+        return parentOffsets[index + 1] - parentOffsets[index];
+    }
+
+    /**
+     * Returns the index of a parent of the node with the given index.
+     *
+     * @param index the index of the node
+     * @param n the number of the parent, less than {@link #getParentCount(int)}
+     * @return the index of the parent
+     */
+    public int getParent(int index, int n) {
+        return parentIndices[parentOffsets[index] + n];
+    }
+
+    /* default */ List<DataFlowNode> getChildren(int index) {
+        return new NodeList(childIndices, childOffsets[index], childOffsets[index + 1]);
+    }
+
+    /* default */ List<DataFlowNode> getParents(int index) {
+        return new NodeList(parentIndices, parentOffsets[index], parentOffsets[index + 1]);
+    }
+
+    private static int addIndices(List<DataFlowNode> nodes, Map<DataFlowNode, Integer> nodeIndices, int[] target,
+            int offset) {
+        int next = offset;
+        for (DataFlowNode node : nodes) {
+            Integer index = nodeIndices.get(node);
+            if (index != null) {
+                target[next++] = index;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * A read-only view on a range of the adjacency arrays.
+     */
+    private final class NodeList extends AbstractList<DataFlowNode> implements RandomAccess {
+
+        private final int[] nodeIndices;
+        private final int from;
+        private final int to;
+
+        NodeList(int[] nodeIndices, int from, int to) {
+            this.nodeIndices = nodeIndices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public DataFlowNode get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return flow.get(nodeIndices[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -58,6 +58,16 @@ public class Structure {
         return this.dataFlow.get(0);
     }
 
+    /**
+     * Moves the edges of the linked data flow into a {@link DataFlowGraph}.
+     * The nodes can't be linked afterwards.
+     *
+     * @return the graph of the data flow
+     */
+    public DataFlowGraph compact() {
+        return DataFlowGraph.compact(dataFlow);
+    }
+
     // ----------------------------------------------------------------------------
     // STACK FUNCTIONS
 
@@ -0,0 +1,273 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.BitSet;
+import java.util.List;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowGraph;
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+
+/**
+ * Iterative data flow analysis over the data flow graph of a method. The
+ * facts are bits in a {@link BitSet}, e.g. one bit per variable. The state
+ * before and after each node is computed with a worklist until a fixed point
+ * is reached. Each pass over the nodes is linear in the number of nodes and
+ * edges, the number of passes is bounded by the depth of the loops. The
+ * edges are read from the {@link DataFlowGraph} of the flow.
+ *
+ * <p>Only the nodes, which are reachable from the start node of the graph,
+ * are analyzed.
+ *
+ * <p>Subclasses define the direction of the analysis, how the states of
+ * several predecessors are combined and the effect of a node on the state.
+ *
+ * @see ReachingAccesses
+ * @see LiveVariables
+ * @see DefiniteAssignment
+ */
+public abstract class DataFlowAnalysis {
+
+    /**
+     * The direction, in which the facts flow.
+     */
+    public enum Direction {
+        /** From the start node to the end node, e.g. reaching definitions. */
+        FORWARD,
+        /** From the end node to the start node, e.g. live variables. */
+        BACKWARD
+    }
+
+    /**
+     * How the states of several predecessors (successors for backward
+     * analyses) are combined.
+     */
+    public enum Meet {
+        /** A fact holds, if it holds on any path. */
+        UNION,
+        /** A fact holds, if it holds on all paths. */
+        INTERSECTION
+    }
+
+    private final List<DataFlowNode> flow;
+    private final Direction direction;
+    private final Meet meet;
+    private final DataFlowGraph graph;
+    private final BitSet reachable;
+    private BitSet[] entry;
+    private BitSet[] exit;
+
+    /**
+     * Creates an analysis of the given data flow.
+     *
+     * @param flow the nodes of the data flow of a method, starting with the start node and ending with the end node
+     * @param direction the direction of the analysis
+     * @param meet how the states of several paths are combined
+     */
+    protected DataFlowAnalysis(List<DataFlowNode> flow, Direction direction, Meet meet) {
+        this.flow = flow;
+        this.direction = direction;
+        this.meet = meet;
+        this.graph = DataFlowGraph.of(flow);
+        this.reachable = findReachableNodes();
+    }
+
+    /**
+     * Returns the number of facts. This is the size of the state, to which
+     * the states of the {@link Meet#INTERSECTION} analyses are initialized.
+     *
+     * @return the number of facts
+     */
+    protected abstract int getFactCount();
+
+    /**
+     * Returns the state at the boundary of the graph, i.e. before the start
+     * node of a forward analysis or after the end node of a backward analysis.
+     *
+     * @return the boundary state, which may be modified
+     */
+    protected abstract BitSet getBoundaryState();
+
+    /**
+     * Applies the effect of the node to the state. For forward analyses, the
+     * state before the node is transformed into the state after the node, for
+     * backward analyses the other way round.
+     *
+     * @param node the node
+     * @param state the state, which is modified in place
+     */
+    protected abstract void transfer(DataFlowNode node, BitSet state);
+
+    /**
+     * Computes the states of all nodes until a fixed point is reached.
+     */
+    public void run() {
+        int size = flow.size();
+        entry = new BitSet[size];
+        exit = new BitSet[size];
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            entry[i] = initialState();
+            exit[i] = initialState();
+        }
+
+        boolean forward = direction == Direction.FORWARD;
+        BitSet pending = (BitSet) reachable.clone();
+        int i = forward ? pending.nextSetBit(0) : pending.previousSetBit(size - 1);
+        while (i >= 0) {
+            pending.clear(i);
+            DataFlowNode node = flow.get(i);
+            BitSet in = forward ? entry[i] : exit[i];
+            BitSet out = forward ? exit[i] : entry[i];
+
+            if (isBoundary(i)) {
+                in.clear();
+                in.or(getBoundaryState());
+            } else {
+                meet(i, forward, in);
+            }
+
+            BitSet newOut = (BitSet) in.clone();
+            transfer(node, newOut);
+            if (!newOut.equals(out)) {
+                out.clear();
+                out.or(newOut);
+                int successors = forward ? graph.getChildCount(i) : graph.getParentCount(i);
+                for (int n = 0; n < successors; n++) {
+                    int successor = forward ? graph.getChild(i, n) : graph.getParent(i, n);
+                    if (reachable.get(successor)) {
+                        pending.set(successor);
+                    }
+                }
+            }
+
+            i = next(pending, i, forward);
+        }
+    }
+
+    /**
+     * Returns the state before the given node, in the order of the
+     * execution, regardless of the direction of the analysis.
+     *
+     * @param node the node
+     * @return the state, <code>null</code> if the node isn't reachable
+     */
+    public BitSet getEntryState(DataFlowNode node) {
+        int index = graph.indexOf(node);
+        return index < 0 ? null : entry[index];
+    }
+
+    /**
+     * Returns the state after the given node, in the order of the execution,
+     * regardless of the direction of the analysis.
+     *
+     * @param node the node
+     * @return the state, <code>null</code> if the node isn't reachable
+     */
+    public BitSet getExitState(DataFlowNode node) {
+        int index = graph.indexOf(node);
+        return index < 0 ? null : exit[index];
+    }
+
+    /**
+     * Returns the nodes of the analyzed data flow.
+     *
+     * @return the nodes
+     */
+    protected List<DataFlowNode> getFlow() {
+        return flow;
+    }
+
+    /**
+     * Returns the index of the node in the data flow.
+     *
+     * @param node the node
+     * @return the index, or -1 if the node isn't part of the data flow
+     */
+    protected int indexOf(DataFlowNode node) {
+        return graph.indexOf(node);
+    }
+
+    /**
+     * Checks whether the node with the given index in the data flow is
+     * reachable from the start node.
+     *
+     * @param index the index of the node
+     * @return <code>true</code> if the node is analyzed
+     */
+    protected boolean isReachable(int index) {
+        return reachable.get(index);
+    }
+
+    private BitSet initialState() {
+        BitSet state = new BitSet(getFactCount());
+        if (meet == Meet.INTERSECTION) {
+            state.set(0, getFactCount());
+        }
+        return state;
+    }
+
+    private boolean isBoundary(int index) {
+        return direction == Direction.FORWARD ? index == 0 : index == flow.size() - 1;
+    }
+
+    private void meet(int node, boolean forward, BitSet in) {
+        boolean first = true;
+        int predecessors = forward ? graph.getParentCount(node) : graph.getChildCount(node);
+        for (int n = 0; n < predecessors; n++) {
+            int index = forward ? graph.getParent(node, n) : graph.getChild(node, n);
+            if (!reachable.get(index)) {
+                continue;
+            }
+            BitSet state = forward ? exit[index] : entry[index];
+            if (first) {
+                in.clear();
+                in.or(state);
+                first = false;
+            } else if (meet == Meet.UNION) {
+                in.or(state);
+            } else {
+                in.and(state);
+            }
+        }
+        if (first) {
+            // no predecessor, e.g. a node in an endless loop of a backward analysis
+            in.clear();
+            if (meet == Meet.INTERSECTION) {
+                in.set(0, getFactCount());
+            }
+        }
+    }
+
+    private BitSet findReachableNodes() {
+        BitSet result = new BitSet(flow.size());
+        if (flow.isEmpty()) {
+            return result;
+        }
+        int[] stack = new int[flow.size()];
+        int top = 0;
+        stack[top++] = 0;
+        result.set(0);
+        while (top > 0) {
+            int node = stack[--top];
+            for (int n = 0; n < graph.getChildCount(node); n++) {
+                int child = graph.getChild(node, n);
+                if (!result.get(child)) {
+                    result.set(child);
+                    stack[top++] = child;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int next(BitSet pending, int current, boolean forward) {
+        if (forward) {
+            int next = pending.nextSetBit(current + 1);
+            return next >= 0 ? next : pending.nextSetBit(0);
+        }
+        int next = current > 0 ? pending.previousSetBit(current - 1) : -1;
+        return next >= 0 ? next : pending.previousSetBit(pending.length() - 1);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+
+/**
+ * Two consecutive accesses of a variable on a path of the data flow, which
+ * are suspicious.
+ *
+ * @see ReachingAccesses#getAnomalies()
+ */
+public final class DataFlowAnomaly {
+
+    /**
+     * The kind of an anomaly.
+     */
+    public enum Type {
+        /** A defined variable is defined again, before it is referenced. */
+        DD,
+        /** A defined variable is undefined, i.e. goes out of scope, before it is referenced. */
+        DU,
+        /** An undefined variable is referenced. */
+        UR
+    }
+
+    private final Type type;
+    private final String variableName;
+    private final DataFlowNode firstNode;
+    private final DataFlowNode lastNode;
+
+    /**
+     * Creates an anomaly.
+     *
+     * @param type the kind of the anomaly
+     * @param variableName the name of the variable
+     * @param firstNode the node with the first access
+     * @param lastNode the node with the second access
+     */
+    public DataFlowAnomaly(Type type, String variableName, DataFlowNode firstNode, DataFlowNode lastNode) {
+        this.type = type;
+        this.variableName = variableName;
+        this.firstNode = firstNode;
+        this.lastNode = lastNode;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getVariableName() {
+        return variableName;
+    }
+
+    public DataFlowNode getFirstNode() {
+        return firstNode;
+    }
+
+    public DataFlowNode getLastNode() {
+        return lastNode;
+    }
+
+    @Override
+    public String toString() {
+        return type + "-anomaly of " + variableName + " (lines " + firstNode.getLine() + "-" + lastNode.getLine()
+                + ")";
+    }
+}
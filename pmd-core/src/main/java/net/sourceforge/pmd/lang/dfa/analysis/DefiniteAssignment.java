@@ -0,0 +1,88 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.BitSet;
+import java.util.List;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Computes the definitely assigned variables: a variable is definitely
+ * assigned at a point of the data flow, if it is defined on all paths to this
+ * point and not undefined afterwards. The bits of the states are the indexes
+ * of the {@link VariableIndex}.
+ */
+public class DefiniteAssignment extends DataFlowAnalysis {
+
+    private final VariableIndex variables;
+
+    /**
+     * Creates the analysis of the given data flow. Call {@link #run()} to
+     * compute the definitely assigned variables.
+     *
+     * @param flow the nodes of the data flow of a method
+     */
+    public DefiniteAssignment(List<DataFlowNode> flow) {
+        super(flow, Direction.FORWARD, Meet.INTERSECTION);
+        this.variables = new VariableIndex(flow);
+    }
+
+    /**
+     * Checks whether the variable is definitely assigned before the given
+     * node.
+     *
+     * @param node the node
+     * @param variable the name of the variable
+     * @return <code>true</code> if the variable is defined on all paths to the node
+     */
+    public boolean isAssignedBefore(DataFlowNode node, String variable) {
+        return isSet(getEntryState(node), variable);
+    }
+
+    /**
+     * Checks whether the variable is definitely assigned after the given
+     * node.
+     *
+     * @param node the node
+     * @param variable the name of the variable
+     * @return <code>true</code> if the variable is defined on all paths through the node
+     */
+    public boolean isAssignedAfter(DataFlowNode node, String variable) {
+        return isSet(getExitState(node), variable);
+    }
+
+    @Override
+    protected int getFactCount() {
+        return variables.size();
+    }
+
+    @Override
+    protected BitSet getBoundaryState() {
+        return new BitSet();
+    }
+
+    @Override
+    protected void transfer(DataFlowNode node, BitSet state) {
+        List<VariableAccess> accesses = node.getVariableAccess();
+        if (accesses == null) {
+            return;
+        }
+        for (VariableAccess access : accesses) {
+            int variable = variables.indexOf(access.getVariableName());
+            if (access.isDefinition()) {
+                state.set(variable);
+            } else if (access.isUndefinition()) {
+                state.clear(variable);
+            }
+        }
+    }
+
+    private boolean isSet(BitSet state, String variable) {
+        int index = variables.indexOf(variable);
+        return state != null && index >= 0 && state.get(index);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.BitSet;
+import java.util.List;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Computes the live variables: a variable is live at a point of the data
+ * flow, if it is referenced on some path from this point, before it is
+ * defined or undefined again. The bits of the states are the indexes of the
+ * {@link VariableIndex}.
+ */
+public class LiveVariables extends DataFlowAnalysis {
+
+    private final VariableIndex variables;
+
+    /**
+     * Creates the analysis of the given data flow. Call {@link #run()} to
+     * compute the live variables.
+     *
+     * @param flow the nodes of the data flow of a method
+     */
+    public LiveVariables(List<DataFlowNode> flow) {
+        super(flow, Direction.BACKWARD, Meet.UNION);
+        this.variables = new VariableIndex(flow);
+    }
+
+    /**
+     * Checks whether the variable is live after the given node.
+     *
+     * @param node the node
+     * @param variable the name of the variable
+     * @return <code>true</code> if the variable may be referenced later
+     */
+    public boolean isLiveAfter(DataFlowNode node, String variable) {
+        return isSet(getExitState(node), variable);
+    }
+
+    /**
+     * Checks whether the variable is live before the given node.
+     *
+     * @param node the node
+     * @param variable the name of the variable
+     * @return <code>true</code> if the variable may be referenced by the node or later
+     */
+    public boolean isLiveBefore(DataFlowNode node, String variable) {
+        return isSet(getEntryState(node), variable);
+    }
+
+    @Override
+    protected int getFactCount() {
+        return variables.size();
+    }
+
+    @Override
+    protected BitSet getBoundaryState() {
+        return new BitSet();
+    }
+
+    @Override
+    protected void transfer(DataFlowNode node, BitSet state) {
+        List<VariableAccess> accesses = node.getVariableAccess();
+        if (accesses == null) {
+            return;
+        }
+        // backwards, the last access of the node determines the state before the node
+        for (int i = accesses.size() - 1; i >= 0; i--) {
+            VariableAccess access = accesses.get(i);
+            int variable = variables.indexOf(access.getVariableName());
+            if (access.isReference()) {
+                state.set(variable);
+            } else {
+                state.clear(variable);
+            }
+        }
+    }
+
+    private boolean isSet(BitSet state, String variable) {
+        int index = variables.indexOf(variable);
+        return state != null && index >= 0 && state.get(index);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.dfa.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.VariableAccess;
+
+/**
+ * Numbers the variables, which are accessed in a data flow, so that they can
+ * be used as indexes of bit sets.
+ */
+public final class VariableIndex {
+
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Indexes the variables, which are accessed by the given nodes.
+     *
+     * @param flow the nodes of the data flow
+     */
+    public VariableIndex(List<DataFlowNode> flow) {
+        for (DataFlowNode node : flow) {
+            if (node.getVariableAccess() == null) {
+                continue;
+            }
+            for (VariableAccess access : node.getVariableAccess()) {
+                if (!indices.containsKey(access.getVariableName())) {
+                    indices.put(access.getVariableName(), names.size());
+                    names.add(access.getVariableName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of variables.
+     *
+     * @return the number of variables
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns the index of the variable.
+     *
+     * @param name the name of the variable
+     * @return the index, or -1 if the variable isn't accessed in the data flow
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the name of the variable with the given index.
+     *
+     * @param index the index
+     * @return the name of the variable
+     */
+    public String getName(int index) {
+        return names.get(index);
+    }
+}
@@ -4,8 +4,12 @@
 
 package net.sourceforge.pmd.lang.metrics;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.sourceforge.pmd.lang.ast.QualifiableNode;
 import net.sourceforge.pmd.lang.ast.QualifiedName;
@@ -14,7 +18,11 @@ import net.sourceforge.pmd.lang.ast.QualifiedName;
  * Simple implementation of a project memoizer. Memoizers are accessible in constant time, provided the QualifiedName's
  * hashCode is well distributed.
  *
- * <p>This implementation takes care of recollecting irrelevant memoizers by storing them in {@link WeakHashMap}.
+ * <p>The memoizers of the nodes of a file are only relevant while the file is analyzed. Between {@link #startFile()}
+ * and {@link #endFile()}, the memoizers are kept in a scope of the current thread, so that the rules applied to the
+ * file share the computed metrics without any synchronization, and they are dropped when the file is done. Outside of
+ * a file scope, the memoizers are kept in concurrent maps, which are bounded by the maximum size given to the
+ * constructor. When a map is full, half of its memoizers are evicted.
  *
  * @param <T> Type of type declaration nodes of the language
  * @param <O> Type of operation declaration nodes of the language
@@ -25,33 +33,140 @@ import net.sourceforge.pmd.lang.ast.QualifiedName;
 public abstract class BasicProjectMemoizer<T extends QualifiableNode, O extends QualifiableNode>
     implements ProjectMemoizer<T, O> {
 
-    private Map<QualifiedName, MetricMemoizer<T>> classes = new WeakHashMap<>();
-    private Map<QualifiedName, MetricMemoizer<O>> operations = new WeakHashMap<>();
+    /** Default maximum number of class or operation memoizers kept outside of a file scope. */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final ThreadLocal<FileScope> FILE_SCOPE = new ThreadLocal<>();
+
+    private final int maxSize;
+    private final ConcurrentMap<QualifiedName, MetricMemoizer<T>> classes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QualifiedName, MetricMemoizer<O>> operations = new ConcurrentHashMap<>();
+
+
+    /** Creates a project memoizer with the {@link #DEFAULT_MAX_SIZE default maximum size}. */
+    protected BasicProjectMemoizer() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+
+    /**
+     * Creates a project memoizer.
+     *
+     * @param maxSize The maximum number of class or operation memoizers kept outside of a file scope
+     */
+    protected BasicProjectMemoizer(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * Starts the analysis of a file by the current thread. The memoizers requested by this thread are kept until
+     * {@link #endFile()} is called.
+     */
+    public static void startFile() {
+        FILE_SCOPE.set(new FileScope());
+    }
+
+
+    /**
+     * Ends the analysis of a file by the current thread and drops the memoizers of the file.
+     */
+    public static void endFile() {
+        FILE_SCOPE.remove();
+    }
 
 
     /** Clears all memoizers. Used for tests. */
     public void reset() {
         classes.clear();
         operations.clear();
+        FileScope scope = FILE_SCOPE.get();
+        if (scope != null) {
+            scope.memoizers.remove(this);
+        }
     }
 
 
     @Override
     public MetricMemoizer<O> getOperationMemoizer(QualifiedName qname) {
-        if (!operations.containsKey(qname)) {
-            operations.put(qname, new BasicMetricMemoizer<O>());
+        FileScope scope = FILE_SCOPE.get();
+        if (scope == null) {
+            return getMemoizer(operations, qname);
         }
-
-        return operations.get(qname);
+        return getFileMemoizer(scope.getMemoizers(this).operations, qname);
     }
 
 
     @Override
     public MetricMemoizer<T> getClassMemoizer(QualifiedName qname) {
-        if (!classes.containsKey(qname)) {
-            classes.put(qname, new BasicMetricMemoizer<T>());
+        FileScope scope = FILE_SCOPE.get();
+        if (scope == null) {
+            return getMemoizer(classes, qname);
         }
+        return getFileMemoizer(scope.getMemoizers(this).classes, qname);
+    }
+
+
+    private static <N extends QualifiableNode> MetricMemoizer<N> getFileMemoizer(
+        Map<QualifiedName, MetricMemoizer<?>> map, QualifiedName qname) {
+        @SuppressWarnings("unchecked")
+        MetricMemoizer<N> memoizer = (MetricMemoizer<N>) map.get(qname);
+        if (memoizer == null) {
+            memoizer = new BasicMetricMemoizer<>();
+            map.put(qname, memoizer);
+        }
+        return memoizer;
+    }
+
+
+    private <N extends QualifiableNode> MetricMemoizer<N> getMemoizer(
+        ConcurrentMap<QualifiedName, MetricMemoizer<N>> map, QualifiedName qname) {
+        MetricMemoizer<N> memoizer = map.get(qname);
+        if (memoizer == null) {
+            if (map.size() >= maxSize) {
+                evict(map);
+            }
+            memoizer = new BasicMetricMemoizer<>();
+            MetricMemoizer<N> previous = map.putIfAbsent(qname, memoizer);
+            if (previous != null) {
+                memoizer = previous;
+            }
+        }
+        return memoizer;
+    }
+
+
+    /** Removes half of the memoizers. The memoized values are recomputed when they are requested again. */
+    private void evict(ConcurrentMap<QualifiedName, ?> map) {
+        int toRemove = map.size() - maxSize / 2;
+        for (Iterator<QualifiedName> it = map.keySet().iterator(); it.hasNext() && toRemove > 0; toRemove--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+
+    /** The memoizers of the file analyzed by a thread. */
+    private static final class FileScope {
+        private final Map<BasicProjectMemoizer<?, ?>, FileMemoizers> memoizers = new IdentityHashMap<>();
+
+
+        FileMemoizers getMemoizers(BasicProjectMemoizer<?, ?> projectMemoizer) {
+            FileMemoizers result = memoizers.get(projectMemoizer);
+            if (result == null) {
+                result = new FileMemoizers();
+                memoizers.put(projectMemoizer, result);
+            }
+            return result;
+        }
+    }
+
 
-        return classes.get(qname);
+    private static final class FileMemoizers {
+        private final Map<QualifiedName, MetricMemoizer<?>> classes = new HashMap<>();
+        private final Map<QualifiedName, MetricMemoizer<?>> operations = new HashMap<>();
     }
 }
@@ -26,6 +26,20 @@ public interface RuleChainVisitor {
      */
     void add(RuleSet ruleSet, Rule rule);
 
+    /**
+     * Lets the visitor apply the given rule, which doesn't use the RuleChain,
+     * in its single visitation of the AST, so that the rule doesn't need to
+     * perform its own visitation.
+     *
+     * @param ruleSet
+     *            The RuleSet to which the rule belongs.
+     * @param rule
+     *            The rule to apply.
+     * @return <code>true</code> if the visitor applies the rule,
+     *         <code>false</code> if the rule must be applied on its own
+     */
+    boolean fuse(RuleSet ruleSet, Rule rule);
+
     /**
      * Visit all the given Nodes provided using the given RuleContext. Every
      * Rule added will visit the AST as appropriate.
@@ -0,0 +1,252 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits an XPath 2.0 query into queries, which can be evaluated with the
+ * RuleChain. A query like <code>//TypeA[@Foo='x']/TypeB | //TypeC</code> is
+ * split into <code>self::TypeA[@Foo='x']/TypeB</code>, which is evaluated on
+ * every TypeA node, and <code>self::TypeC</code>, which is evaluated on
+ * every TypeC node.
+ *
+ * <p>This works on the query string, so that the resulting queries can be
+ * compiled again by the XPath engine. Only queries, for which the split
+ * queries select exactly the same nodes as the original query, are split:
+ * <ul>
+ * <li>Each part of the query must start with <code>//NodeName</code>.</li>
+ * <li>The predicates of this first step must not be positional.</li>
+ * <li>The following steps may only use the child axis, so that no node is
+ * selected twice from different nodes of the RuleChain.</li>
+ * <li>If the query is a union, then every part may only consist of the
+ * first step.</li>
+ * </ul>
+ */
+final class RuleChainXPathSplitter {
+
+    private static final Pattern FIRST_STEP = Pattern.compile("^//([A-Za-z_][\\w.\\-]*)(.*)$", Pattern.DOTALL);
+    private static final Pattern CHILD_STEPS = Pattern
+            .compile("^(\\s*/\\s*(child\\s*::\\s*)?([A-Za-z_][\\w.\\-]*|\\*))*\\s*$");
+    private static final Pattern POSITIONAL_PREDICATE = Pattern
+            .compile("^\\s*(\\d+|\\$[\\w.\\-]+)\\s*$|position\\s*\\(|last\\s*\\(");
+
+    private RuleChainXPathSplitter() {
+        // utility class
+    }
+
+    /**
+     * Splits the given query into RuleChain queries.
+     *
+     * @param xpath the XPath query
+     * @return the RuleChain queries by node name, or an empty map, if the
+     *         query can't be split
+     */
+    public static Map<String, List<String>> split(final String xpath) {
+        final List<String> parts = splitUnions(xpath);
+        final Map<String, List<String>> nodeNameToQueries = new LinkedHashMap<>();
+        for (final String part : parts) {
+            final Matcher matcher = FIRST_STEP.matcher(part);
+            if (!matcher.matches()) {
+                return Collections.emptyMap();
+            }
+            final String nodeName = matcher.group(1);
+            final String rest = matcher.group(2);
+
+            // the predicates of the first step
+            final List<String> predicates = new ArrayList<>();
+            final int restStart = collectPredicates(rest, predicates);
+            if (restStart < 0) {
+                return Collections.emptyMap();
+            }
+            for (final String predicate : predicates) {
+                if (POSITIONAL_PREDICATE.matcher(predicate).find()) {
+                    return Collections.emptyMap();
+                }
+            }
+
+            final String remainingSteps = removePredicates(rest.substring(restStart));
+            if (remainingSteps == null || !CHILD_STEPS.matcher(remainingSteps).matches()
+                    || parts.size() > 1 && !remainingSteps.trim().isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            List<String> queries = nodeNameToQueries.get(nodeName);
+            if (queries == null) {
+                queries = new ArrayList<>();
+                nodeNameToQueries.put(nodeName, queries);
+            }
+            queries.add("self::" + nodeName + rest);
+        }
+        return nodeNameToQueries;
+    }
+
+    /**
+     * Splits the query at the top level union operators. Parts enclosed in
+     * parentheses are split as well.
+     */
+    private static List<String> splitUnions(final String xpath) {
+        final List<String> parts = new ArrayList<>();
+        final String query = stripEnclosingParentheses(xpath.trim());
+        int depth = 0;
+        int start = 0;
+        int i = 0;
+        while (i < query.length()) {
+            final char c = query.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipLiteral(query, i);
+                continue;
+            } else if (c == '(' && i + 1 < query.length() && query.charAt(i + 1) == ':') {
+                // comments are not supported
+                return Collections.singletonList(query);
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+            } else if (depth == 0 && c == '|') {
+                addUnionPart(parts, query.substring(start, i));
+                start = i + 1;
+            } else if (depth == 0 && isUnionKeyword(query, i)) {
+                addUnionPart(parts, query.substring(start, i));
+                start = i + "union".length();
+                i = start;
+                continue;
+            }
+            i++;
+        }
+        if (parts.isEmpty()) {
+            parts.add(query);
+        } else {
+            addUnionPart(parts, query.substring(start));
+        }
+        return parts;
+    }
+
+    private static void addUnionPart(final List<String> parts, final String part) {
+        final List<String> subParts = splitUnions(part);
+        parts.addAll(subParts);
+    }
+
+    private static boolean isUnionKeyword(final String query, final int index) {
+        if (!query.startsWith("union", index) || index == 0 || index + "union".length() >= query.length()) {
+            return false;
+        }
+        final char before = query.charAt(index - 1);
+        final char after = query.charAt(index + "union".length());
+        return (Character.isWhitespace(before) || before == ')' || before == ']')
+                && (Character.isWhitespace(after) || after == '(' || after == '/');
+    }
+
+    private static String stripEnclosingParentheses(final String query) {
+        String result = query;
+        while (result.startsWith("(") && findClosing(result, 0) == result.length() - 1) {
+            result = result.substring(1, result.length() - 1).trim();
+        }
+        return result;
+    }
+
+    /**
+     * Collects the predicates at the start of the given string.
+     *
+     * @return the index after the last predicate, or -1 if the brackets don't
+     *         match
+     */
+    private static int collectPredicates(final String steps, final List<String> predicates) {
+        int i = 0;
+        while (true) {
+            while (i < steps.length() && Character.isWhitespace(steps.charAt(i))) {
+                i++;
+            }
+            if (i >= steps.length() || steps.charAt(i) != '[') {
+                return i;
+            }
+            final int end = findClosing(steps, i);
+            if (end < 0) {
+                return -1;
+            }
+            predicates.add(steps.substring(i + 1, end));
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Removes all (possibly nested) predicates from the given steps.
+     *
+     * @return the steps without predicates, or null if the brackets don't
+     *         match
+     */
+    private static String removePredicates(final String steps) {
+        final StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < steps.length()) {
+            final char c = steps.charAt(i);
+            if (c == '[') {
+                final int end = findClosing(steps, i);
+                if (end < 0) {
+                    return null;
+                }
+                i = end + 1;
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Finds the bracket, which closes the bracket at the given index.
+     *
+     * @return the index of the closing bracket or -1
+     */
+    private static int findClosing(final String query, final int openIndex) {
+        int depth = 0;
+        int i = openIndex;
+        while (i < query.length()) {
+            final char c = query.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipLiteral(query, i);
+                continue;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Skips the string literal starting at the given index. Quotes are
+     * escaped by doubling them.
+     *
+     * @return the index after the literal
+     */
+    private static int skipLiteral(final String query, final int start) {
+        final char quote = query.charAt(start);
+        int i = start + 1;
+        while (i < query.length()) {
+            if (query.charAt(i) == quote) {
+                if (i + 1 < query.length() && query.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -5,9 +5,14 @@
 package net.sourceforge.pmd.lang.rule.xpath;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
@@ -42,24 +47,29 @@ import net.sf.saxon.value.UntypedAtomicValue;
  */
 public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
-    private static final int MAX_CACHE_SIZE = 20;
-    private static final Map<Node, DocumentNode> CACHE = new LinkedHashMap<Node, DocumentNode>(MAX_CACHE_SIZE) {
-        private static final long serialVersionUID = -7653916493967142443L;
+    private static final Logger LOG = Logger.getLogger(SaxonXPathRuleQuery.class.getName());
 
-
-        protected boolean removeEldestEntry(final Map.Entry<Node, DocumentNode> eldest) {
-            return size() > MAX_CACHE_SIZE;
-        }
-    };
+    /**
+     * The Saxon tree of the AST, which is currently analyzed by this thread. A thread analyzes one file at a time,
+     * so a single entry per thread is enough and no lock is needed. The entry is replaced as soon as a rule is
+     * evaluated on another AST, and is released by {@link #clearDocumentNodeCache()} at the end of each file.
+     */
+    private static final ThreadLocal<DocumentNode> CURRENT_DOCUMENT_NODE = new ThreadLocal<>();
 
     /**
      * Representation of an XPath query, created at {@link #initializeXPathExpression()} using {@link #xpath}.
      */
     private XPathExpression xpathExpression;
 
+    /**
+     * Mapping from node name to the XPath queries, which are evaluated on the nodes with this name, if the RuleChain
+     * is used. Created at {@link #initializeXPathExpression()}.
+     */
+    private Map<String, List<XPathExpression>> nodeNameToXPaths;
+
     /**
      * Holds the static context later used to match the variables in the dynamic context in
-     * {@link #createDynamicContext(ElementNode)}. Created at {@link #initializeXPathExpression()}
+     * {@link #createDynamicContext(XPathExpression, ElementNode)}. Created at {@link #initializeXPathExpression()}
      * using the properties descriptors in {@link #properties}.
      */
     private List<XPathVariable> xpathVariables;
@@ -78,37 +88,61 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
             final DocumentNode documentNode = getDocumentNodeForRootNode(node);
 
             // Map AST Node -> Saxon Node
-            final ElementNode rootElementNode = documentNode.nodeToElementNode.get(node);
-
-            final XPathDynamicContext xpathDynamicContext = createDynamicContext(rootElementNode);
-            final List<ElementNode> nodes = xpathExpression.evaluate(xpathDynamicContext);
+            final ElementNode elementNode = documentNode.nodeToElementNode.get(node);
 
             /*
              Map List of Saxon Nodes -> List of AST Nodes, which were detected to match the XPath expression
-             (i.e. violation found)
+             (i.e. violation found). A node might be matched by more than one RuleChain query.
               */
-            final List<Node> results = new ArrayList<>();
-            for (final ElementNode elementNode : nodes) {
-                results.add((Node) elementNode.getUnderlyingNode());
+            final Set<Node> results = new LinkedHashSet<>();
+            for (final XPathExpression expression : getXPathExpressionsForNodeOrDefault(node.getXPathNodeName())) {
+                final XPathDynamicContext xpathDynamicContext = createDynamicContext(expression, elementNode);
+                final List<ElementNode> nodes = expression.evaluate(xpathDynamicContext);
+                for (final ElementNode resultNode : nodes) {
+                    results.add((Node) resultNode.getUnderlyingNode());
+                }
             }
-            return results;
+            return new ArrayList<>(results);
         } catch (final XPathException e) {
             throw new RuntimeException(super.xpath + " had problem: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public List<String> getRuleChainVisits() {
+        initializeXPathExpression();
+        return super.getRuleChainVisits();
+    }
+
     /**
-     * Attempt to create a dynamic context on which to evaluate the {@link #xpathExpression}.
+     * Get the XPath queries associated with the node name. If there are none, the original XPath query is used,
+     * which is evaluated on the root node.
      *
+     * @param nodeName the name of the node
+     * @return the list of XPath queries to evaluate on the node
+     */
+    private List<XPathExpression> getXPathExpressionsForNodeOrDefault(final String nodeName) {
+        final List<XPathExpression> expressions = nodeNameToXPaths.get(nodeName);
+        if (expressions == null) {
+            return Collections.singletonList(xpathExpression);
+        }
+        return expressions;
+    }
+
+    /**
+     * Attempt to create a dynamic context on which to evaluate the given expression.
+     *
+     * @param expression the expression to evaluate
      * @param elementNode the node on which to create the context; generally this node is the root node of the Saxon
-     *                    Tree
+     *                    Tree, or the node visited by the RuleChain
      * @return the dynamic context on which to run the query
      * @throws XPathException if the supplied value does not conform to the required type of the
      * variable, when setting up the dynamic context; or if the supplied value contains a node that does not belong to
      * this Configuration (or another Configuration that shares the same namePool)
      */
-    private XPathDynamicContext createDynamicContext(final ElementNode elementNode) throws XPathException {
-        final XPathDynamicContext dynamicContext = xpathExpression.createDynamicContext(elementNode);
+    private XPathDynamicContext createDynamicContext(final XPathExpression expression, final ElementNode elementNode)
+            throws XPathException {
+        final XPathDynamicContext dynamicContext = expression.createDynamicContext(elementNode);
 
         // Set variable values on the dynamic context
         for (final XPathVariable xpathVariable : xpathVariables) {
@@ -143,7 +177,8 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
     /**
      * Gets the DocumentNode representation for the whole AST in which the node is, that is, if the node is not the root
      * of the AST, then the AST is traversed all the way up until the root node is found. If the DocumentNode was
-     * cached because this method was previously called, then a new DocumentNode will not be instanced.
+     * cached by the current thread because this method was previously called for the same AST, then a new
+     * DocumentNode will not be instanced.
      *
      * @param node the node from which the root node will be looked for.
      * @return the DocumentNode representing the whole AST
@@ -151,17 +186,22 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
     private DocumentNode getDocumentNodeForRootNode(final Node node) {
         final Node root = getRootNode(node);
 
-        DocumentNode documentNode;
-        synchronized (CACHE) {
-            documentNode = CACHE.get(root);
-            if (documentNode == null) {
-                documentNode = new DocumentNode(root);
-                CACHE.put(root, documentNode);
-            }
+        DocumentNode documentNode = CURRENT_DOCUMENT_NODE.get();
+        if (documentNode == null || documentNode.getRootASTNode() != root) {
+            documentNode = new DocumentNode(root);
+            CURRENT_DOCUMENT_NODE.set(documentNode);
         }
         return documentNode;
     }
 
+    /**
+     * Releases the DocumentNode cached by the current thread. This is called once the analysis of a file is
+     * finished, so that the Saxon tree of the AST doesn't outlive the analysis.
+     */
+    public static void clearDocumentNodeCache() {
+        CURRENT_DOCUMENT_NODE.remove();
+    }
+
     /**
      * Traverse the AST until the root node is found.
      *
@@ -198,7 +238,8 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
             /*
             Create XPathVariables for later use. It is a Saxon quirk that XPathVariables must be defined on the
             static context, and reused later to associate an actual value on the dynamic context creation, in
-            createDynamicContext(ElementNode).
+            createDynamicContext(XPathExpression, ElementNode). The variables are shared by the main expression
+            and the RuleChain expressions, as they are all created with the same static context.
             */
             xpathVariables = new ArrayList<>();
             for (final PropertyDescriptor<?> propertyDescriptor : super.properties.keySet()) {
@@ -209,15 +250,41 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
                 }
             }
 
-            // TODO Come up with a way to make use of RuleChain. I had hacked up
-            // an approach which used Jaxen's stuff, but that only works for
-            // 1.0 compatibility mode. Rather do it right instead of kludging.
             xpathExpression = xpathEvaluator.createExpression(super.xpath);
+            nodeNameToXPaths = createRuleChainExpressions(xpathEvaluator);
+            super.ruleChainVisits.addAll(nodeNameToXPaths.keySet());
         } catch (final XPathException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Attempt to use the RuleChain with this XPath query. The query is split into one query per node name, which
+     * is then evaluated only on the nodes with this name, see {@link RuleChainXPathSplitter}.
+     *
+     * @param xpathEvaluator the evaluator, whose static context already contains the variables
+     * @return the RuleChain queries by node name, empty if the RuleChain can't be used
+     */
+    private Map<String, List<XPathExpression>> createRuleChainExpressions(final XPathEvaluator xpathEvaluator) {
+        final Map<String, List<XPathExpression>> expressions = new HashMap<>();
+        try {
+            for (final Map.Entry<String, List<String>> entry : RuleChainXPathSplitter.split(super.xpath).entrySet()) {
+                final List<XPathExpression> expressionsForNode = new ArrayList<>();
+                for (final String query : entry.getValue()) {
+                    expressionsForNode.add(xpathEvaluator.createExpression(query));
+                }
+                expressions.put(entry.getKey(), expressionsForNode);
+            }
+        } catch (final XPathException e) {
+            // Use original XPath if we cannot use the RuleChain
+            expressions.clear();
+        }
+        if (expressions.isEmpty() && LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Unable to use RuleChain for XPath: " + super.xpath);
+        }
+        return expressions;
+    }
+
 
     /**
      * Gets the Saxon representation of the parameter, if its type corresponds 
@@ -103,22 +103,44 @@ public abstract class AbstractPMDProcessor {
             List<Renderer> renderers) {
         RuleSets rs = createRuleSets(ruleSetFactory, ctx.getReport());
         configuration.getAnalysisCache().checkValidity(rs, configuration.getClassLoader());
-        SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
 
-        for (DataSource dataSource : files) {
-            String niceFileName = filenameFrom(dataSource);
+        // index the whole project first - the multifile rules need it
+        ProjectIndexProcessor indexProcessor = new ProjectIndexProcessor(configuration);
+        try {
+            indexProcessor.index(rs, files, ctx);
 
-            runAnalysis(new PmdRunnable(dataSource, niceFileName, renderers, ctx, rs, processor));
-        }
+            SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
 
-        // render base report first - general errors
-        renderReports(renderers, ctx.getReport());
-        
-        // then add analysis results per file
-        collectReports(renderers);
+            // render base report first - general errors
+            renderReports(renderers, ctx.getReport());
+
+            for (DataSource dataSource : files) {
+                String niceFileName = filenameFrom(dataSource);
+
+                runAnalysis(new PmdRunnable(dataSource, niceFileName, renderers, ctx, rs, processor), renderers);
+            }
+
+            // then add the remaining analysis results per file
+            collectReports(renderers);
+        } finally {
+            indexProcessor.release();
+        }
     }
 
     protected abstract void runAnalysis(PmdRunnable runnable);
 
+    /**
+     * Starts the analysis of a single file. Implementations may already
+     * render the reports of files, whose analysis is finished, with the given
+     * renderers. The default implementation just calls
+     * {@link #runAnalysis(PmdRunnable)}.
+     *
+     * @param runnable the analysis of the file
+     * @param renderers the renderers for the file reports
+     */
+    protected void runAnalysis(PmdRunnable runnable, List<Renderer> renderers) {
+        runAnalysis(runnable);
+    }
+
     protected abstract void collectReports(List<Renderer> renderers);
 }
@@ -29,11 +29,18 @@ public final class MonoThreadProcessor extends AbstractPMDProcessor {
         reports.add(runnable.call());
     }
 
+    @Override
+    protected void runAnalysis(PmdRunnable runnable, List<Renderer> renderers) {
+        // single thread execution, render the report right away
+        super.renderReports(renderers, runnable.call());
+    }
+
     @Override
     protected void collectReports(List<Renderer> renderers) {
         for (Report r : reports) {
             super.renderReports(renderers, r);
         }
+        reports.clear();
 
         // Since this thread may run PMD again, clean up the runnable
         PmdRunnable.reset();
@@ -4,20 +4,24 @@
 
 package net.sourceforge.pmd.processor;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.renderers.Renderer;
 
 /**
+ * Dispatches the files to a fixed pool of worker threads. The file reports
+ * are rendered as soon as they are available, in the order in which the
+ * analysis finishes. At most {@link PMDConfiguration#getMaxFilesInFlight()}
+ * files are dispatched but not yet rendered at any time, so that the reports
+ * don't accumulate in memory.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  *
  */
@@ -25,32 +29,64 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
 
     private ExecutorService executor;
     private CompletionService<Report> completionService;
-    private List<Future<Report>> tasks = new ArrayList<>();
+    private final int maxFilesInFlight;
+    private int filesInFlight;
+    private final WorkerIdleTracker idleTracker = new WorkerIdleTracker();
 
     public MultiThreadProcessor(final PMDConfiguration configuration) {
         super(configuration);
 
         executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
         completionService = new ExecutorCompletionService<>(executor);
+        maxFilesInFlight = configuration.getMaxFilesInFlight();
     }
 
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
         // multi-threaded execution, dispatch analysis to worker threads
-        tasks.add(completionService.submit(runnable));
+        completionService.submit(idleTracker.track(runnable));
+        filesInFlight++;
+    }
+
+    @Override
+    protected void runAnalysis(PmdRunnable runnable, List<Renderer> renderers) {
+        // backpressure: render finished reports, until there is room for another file
+        while (filesInFlight >= maxFilesInFlight) {
+            renderNextReport(renderers);
+        }
+        runAnalysis(runnable);
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
         // Collect result analysis, waiting for termination if needed
         try {
-            for (int i = 0; i < tasks.size(); i++) {
-                final Report report = completionService.take().get();
-                super.renderReports(renderers, report);
+            while (filesInFlight > 0) {
+                renderNextReport(renderers);
             }
+            idleTracker.mark();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the next finished file and renders its report.
+     *
+     * @param renderers the renderers to use
+     * @throws IllegalStateException if the current thread has been interrupted
+     */
+    private void renderNextReport(List<Renderer> renderers) {
+        try {
+            final Report report = completionService.take().get();
+            filesInFlight--;
+            super.renderReports(renderers, report);
         } catch (InterruptedException ie) {
+            executor.shutdownNow();
             Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the analysis of the files", ie);
         } catch (ExecutionException ee) {
+            executor.shutdownNow();
             Throwable t = ee.getCause();
             if (t instanceof RuntimeException) {
                 throw (RuntimeException) t;
@@ -59,8 +95,6 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
             } else {
                 throw new IllegalStateException("PmdRunnable exception", t);
             }
-        } finally {
-            executor.shutdownNow();
         }
     }
 }
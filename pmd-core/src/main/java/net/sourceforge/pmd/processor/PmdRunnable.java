@@ -43,6 +43,10 @@ public class PmdRunnable implements Callable<Report> {
         this.sourceCodeProcessor = sourceCodeProcessor;
     }
 
+    /* default */ DataSource getDataSource() {
+        return dataSource;
+    }
+
     public static void reset() {
         LOCAL_THREAD_CONTEXT.remove();
     }
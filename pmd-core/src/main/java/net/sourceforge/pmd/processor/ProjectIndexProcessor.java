@@ -0,0 +1,204 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ProjectIndexer;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+/**
+ * Indexes the whole project for the multifile rules, before the rules are
+ * applied. The files of the languages, which have multifile rules, are
+ * parsed on {@link PMDConfiguration#getThreads()} threads and passed to the
+ * {@link ProjectIndexer} of their language. The ASTs aren't kept, the files
+ * are parsed again to apply the rules.
+ *
+ * <p>If {@link PMDConfiguration#getMultifileIndexDirectory()} is set, the
+ * indexes are persisted, and only the files, which changed since the last
+ * analysis, are parsed.
+ *
+ * <p>The indexes are published to the {@link RuleContext} of the analysis, so
+ * that concurrent analyses in the same JVM don't see each other's indexes.
+ */
+public class ProjectIndexProcessor {
+
+    private static final Logger LOG = Logger.getLogger(ProjectIndexProcessor.class.getName());
+    private static final String INDEXED_ATTRIBUTE = ProjectIndexProcessor.class.getName() + ".indexed.";
+
+    private final PMDConfiguration configuration;
+    private final Map<Language, ProjectIndexer> indexers = new HashMap<>();
+    private RuleContext ruleContext;
+
+    public ProjectIndexProcessor(PMDConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Indexes the files of the languages, which are used by a multifile rule,
+     * and publishes the indexes.
+     *
+     * @param ruleSets the rules, which are applied afterwards
+     * @param files the files of the project
+     * @param ctx the rule context of the analysis, to which the indexes are published
+     * @throws IllegalStateException if the indexing is interrupted, the
+     *             incomplete indexes aren't published then
+     */
+    public void index(RuleSets ruleSets, List<DataSource> files, RuleContext ctx) {
+        ruleContext = ctx;
+        Map<Language, ProjectIndexer> indexersByLanguage = new HashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (DataSource dataSource : files) {
+            String fileName = dataSource.getNiceFileName(false, null);
+            LanguageVersion languageVersion = configuration.getLanguageVersionOfFile(fileName);
+            Language language = languageVersion.getLanguage();
+            if (!ruleSets.usesMultifile(language)) {
+                continue;
+            }
+            if (!indexersByLanguage.containsKey(language)) {
+                ProjectIndexer indexer = languageVersion.getLanguageVersionHandler().getProjectIndexer();
+                if (indexer != null) {
+                    indexer.start(getIndexFile(language));
+                    indexers.put(language, indexer);
+                }
+                indexersByLanguage.put(language, indexer);
+            }
+            ProjectIndexer indexer = indexersByLanguage.get(language);
+            if (indexer != null) {
+                tasks.add(new IndexTask(dataSource, fileName, languageVersion, indexer));
+            }
+        }
+
+        if (configuration.getThreads() > 0 && tasks.size() > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // the index is incomplete, it must not be published
+                throw new IllegalStateException("Interrupted while indexing the project", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Indexing failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Indexing failed", e);
+                }
+            }
+        }
+
+        for (Map.Entry<Language, ProjectIndexer> entry : indexers.entrySet()) {
+            entry.getValue().publish(ctx);
+            ctx.setAttribute(INDEXED_ATTRIBUTE + entry.getKey().getTerseName(), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Releases the indexes, after the rules are applied.
+     */
+    public void release() {
+        if (ruleContext != null) {
+            for (Map.Entry<Language, ProjectIndexer> entry : indexers.entrySet()) {
+                ruleContext.removeAttribute(INDEXED_ATTRIBUTE + entry.getKey().getTerseName());
+                entry.getValue().release(ruleContext);
+            }
+        }
+        indexers.clear();
+        ruleContext = null;
+    }
+
+    /**
+     * Checks whether the whole project is indexed for the given language in
+     * the analysis of the given rule context. The multifile facade of the
+     * language doesn't need to visit the files then.
+     *
+     * @param ctx the rule context of the analysis or of one of its files
+     * @param language the language of the file
+     * @return <code>true</code> if the index of the language is published
+     */
+    public static boolean isIndexed(RuleContext ctx, Language language) {
+        return ctx.getAttribute(INDEXED_ATTRIBUTE + language.getTerseName()) != null;
+    }
+
+    private File getIndexFile(Language language) {
+        File directory = configuration.getMultifileIndexDirectory();
+        return directory == null ? null : new File(directory, "multifile-" + language.getTerseName() + ".idx");
+    }
+
+    private final class IndexTask implements Callable<Void> {
+        private final DataSource dataSource;
+        private final String fileName;
+        private final LanguageVersion languageVersion;
+        private final ProjectIndexer indexer;
+
+        IndexTask(DataSource dataSource, String fileName, LanguageVersion languageVersion, ProjectIndexer indexer) {
+            this.dataSource = dataSource;
+            this.fileName = fileName;
+            this.languageVersion = languageVersion;
+            this.indexer = indexer;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                byte[] contents;
+                try (InputStream stream = dataSource.getInputStream()) {
+                    contents = IOUtils.toByteArray(stream);
+                }
+                Adler32 checksum = new Adler32();
+                checksum.update(contents, 0, contents.length);
+                if (indexer.isUpToDate(fileName, checksum.getValue())) {
+                    return null;
+                }
+
+                Node rootNode;
+                try (Reader reader = new InputStreamReader(new ByteArrayInputStream(contents),
+                        configuration.getSourceEncoding())) {
+                    rootNode = PMD.parserFor(languageVersion, configuration).parse(fileName, reader);
+                }
+                languageVersion.getLanguageVersionHandler().getSymbolFacade(configuration.getClassLoader())
+                        .start(rootNode);
+                indexer.index(fileName, checksum.getValue(), rootNode);
+            } catch (IOException | RuntimeException e) {
+                // the file is left out of the index, the error is reported again, when the rules are applied to it
+                LOG.log(Level.WARNING, "Could not index " + fileName, e);
+            }
+            return null;
+        }
+    }
+}
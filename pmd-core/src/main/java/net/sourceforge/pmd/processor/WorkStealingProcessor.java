@@ -0,0 +1,151 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+/**
+ * Multi-threaded processor, that dispatches the files with the highest
+ * estimated analysis cost first into a work-stealing pool. This avoids that a
+ * few huge files are picked up at the very end and keep only one worker busy,
+ * while all the others are idle.
+ *
+ * <p>The file reports are still rendered in the order, in which the files have
+ * been given to this processor, so the output is deterministic. All files are
+ * dispatched by their cost, independently of this order, so the finished
+ * reports are held back until the reports of all preceding files have been
+ * rendered. Unlike {@link MultiThreadProcessor}, this processor doesn't limit
+ * the files in flight to {@link PMDConfiguration#getMaxFilesInFlight()}, as
+ * the expensive files would otherwise only be ordered among the next files to
+ * render. Only the reports are held back, the ASTs of the files are released
+ * as soon as their analysis is finished.</p>
+ *
+ * @see PMDConfiguration#isLargestFilesFirst()
+ */
+public class WorkStealingProcessor extends AbstractPMDProcessor {
+
+    private final ForkJoinPool pool;
+    private final List<PmdRunnable> runnables = new ArrayList<>();
+
+    public WorkStealingProcessor(final PMDConfiguration configuration) {
+        super(configuration);
+
+        pool = new ForkJoinPool(configuration.getThreads(), new PmdWorkerThreadFactory(), null, false);
+    }
+
+    @Override
+    protected void runAnalysis(PmdRunnable runnable) {
+        // the files are dispatched only when all of them are known,
+        // so that they can be ordered by their cost
+        runnables.add(runnable);
+    }
+
+    @Override
+    protected void collectReports(List<Renderer> renderers) {
+        final WorkerIdleTracker idleTracker = new WorkerIdleTracker();
+        final int fileCount = runnables.size();
+        final long[] costs = new long[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            costs[i] = estimateCost(runnables.get(i).getDataSource());
+        }
+        final Queue<Integer> byCost = newMostExpensiveFirstQueue(costs);
+        for (int i = 0; i < fileCount; i++) {
+            byCost.add(i);
+        }
+
+        // the pool picks up the submitted files in the order of their submission
+        final List<Future<Report>> tasks = new ArrayList<>(Collections.<Future<Report>>nCopies(fileCount, null));
+        while (!byCost.isEmpty()) {
+            final int index = byCost.poll();
+            tasks.set(index, pool.submit(idleTracker.track(runnables.get(index))));
+        }
+
+        try {
+            for (int nextRendered = 0; nextRendered < fileCount; nextRendered++) {
+                // the finished reports wait until the preceding reports are rendered,
+                // and are released as soon as they are rendered themselves
+                final Report report = tasks.set(nextRendered, null).get();
+                super.renderReports(renderers, report);
+            }
+            idleTracker.mark();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the analysis of the files", ie);
+        } catch (ExecutionException ee) {
+            Throwable t = ee.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else {
+                throw new IllegalStateException("PmdRunnable exception", t);
+            }
+        } finally {
+            runnables.clear();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the queue, in which the files wait to be dispatched. The files
+     * with the same estimated cost keep their original order.
+     *
+     * @param costs the estimated costs of the files by their index
+     * @return the queue of the indexes of the files, most expensive first
+     */
+    private static Queue<Integer> newMostExpensiveFirstQueue(final long[] costs) {
+        return new PriorityQueue<>(Math.max(1, costs.length), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                final int byCost = Long.compare(costs[right], costs[left]);
+                return byCost != 0 ? byCost : Integer.compare(left, right);
+            }
+        });
+    }
+
+    /**
+     * Estimates the cost of analyzing the given data source. The file size is
+     * used as approximation. Data sources, for which the size is not known,
+     * have a cost of zero and are therefore processed last.
+     *
+     * @param dataSource the data source
+     * @return the estimated cost
+     */
+    /* default */ static long estimateCost(DataSource dataSource) {
+        if (dataSource instanceof FileDataSource) {
+            return ((FileDataSource) dataSource).getFile().length();
+        }
+        return 0;
+    }
+
+    private static class PmdWorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("PmdThread " + counter.incrementAndGet());
+            return thread;
+        }
+    }
+}
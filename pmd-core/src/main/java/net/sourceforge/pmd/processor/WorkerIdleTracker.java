@@ -0,0 +1,71 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.benchmark.Benchmark;
+import net.sourceforge.pmd.benchmark.Benchmarker;
+
+/**
+ * Records when each worker thread finished its last file. The difference
+ * to the end of the whole analysis is the time the worker sat idle, while
+ * other workers were still busy with the last (usually big) files.
+ */
+class WorkerIdleTracker {
+
+    private final ConcurrentMap<Thread, Long> lastFinishByWorker = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps the given task, so that the finishing time is recorded for the
+     * executing thread.
+     *
+     * @param task the task to track
+     * @return the wrapped task
+     */
+    public Callable<Report> track(final Callable<Report> task) {
+        return new Callable<Report>() {
+            @Override
+            public Report call() throws Exception {
+                try {
+                    return task.call();
+                } finally {
+                    lastFinishByWorker.put(Thread.currentThread(), System.nanoTime());
+                }
+            }
+        };
+    }
+
+    /**
+     * Sums up, over all workers, the time between the worker finishing its
+     * last file and the last worker finishing.
+     *
+     * @return the idle time in nanoseconds
+     */
+    public long getIdleTime() {
+        long end = Long.MIN_VALUE;
+        for (Long finish : lastFinishByWorker.values()) {
+            end = Math.max(end, finish);
+        }
+
+        long idle = 0;
+        for (Map.Entry<Thread, Long> entry : lastFinishByWorker.entrySet()) {
+            idle += end - entry.getValue();
+        }
+        return idle;
+    }
+
+    /**
+     * Reports the idle time to the {@link Benchmarker}. Must only be called
+     * after all tracked tasks are done.
+     */
+    public void mark() {
+        Benchmarker.mark(Benchmark.IdleWorkers, getIdleTime(), lastFinishByWorker.size());
+    }
+}
@@ -29,7 +29,9 @@ import org.apache.commons.lang3.StringUtils;
 public class ClasspathClassLoader extends URLClassLoader {
 
     private static final Logger LOG = Logger.getLogger(ClasspathClassLoader.class.getName());
-    
+
+    private volatile File symbolIndexDirectory;
+
     static {
         registerAsParallelCapable();
     }
@@ -81,6 +83,20 @@ public class ClasspathClassLoader extends URLClassLoader {
         return file.getAbsoluteFile().toURI().toURL();
     }
 
+    /**
+     * Gets the directory, in which the languages store the symbols of the jars
+     * of this classpath, e.g. the class names and members.
+     *
+     * @return the directory or <code>null</code>, if the jars are not indexed
+     */
+    public File getSymbolIndexDirectory() {
+        return symbolIndexDirectory;
+    }
+
+    public void setSymbolIndexDirectory(File symbolIndexDirectory) {
+        this.symbolIndexDirectory = symbolIndexDirectory;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(getClass().getSimpleName())
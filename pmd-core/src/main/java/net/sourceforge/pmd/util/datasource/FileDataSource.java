@@ -33,6 +33,15 @@ public class FileDataSource implements DataSource {
         return new FileInputStream(file);
     }
 
+    /**
+     * Gets the file this data source reads from.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public String getNiceFileName(boolean shortNames, String inputFileName) {
         return glomName(shortNames, inputFileName, file);
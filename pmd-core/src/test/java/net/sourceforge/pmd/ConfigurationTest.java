@@ -42,6 +42,18 @@ public class ConfigurationTest {
         assertEquals("Changed threads", 0, configuration.getThreads());
     }
 
+    @Test
+    public void testMaxFilesInFlight() {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setThreads(2);
+        assertEquals("Default max files in flight", 8, configuration.getMaxFilesInFlight());
+        configuration.setMaxFilesInFlight(1);
+        assertEquals("Changed max files in flight", 1, configuration.getMaxFilesInFlight());
+        configuration.setThreads(0);
+        configuration.setMaxFilesInFlight(0);
+        assertEquals("Default max files in flight without threads", 4, configuration.getMaxFilesInFlight());
+    }
+
     @Test
     public void testClassLoader() throws IOException {
         PMDConfiguration configuration = new PMDConfiguration();
@@ -14,9 +14,11 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -474,6 +476,39 @@ public class RuleSetTest {
         assertNotSame(rule, ruleSet2.getRuleByName("FooRule1"));
     }
 
+    @Test
+    public void testRuleChecksums() {
+        Rule rule = new FooRule();
+        Rule otherRule = new FooRule();
+        otherRule.setName("FooRule2");
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("RuleSet1").addRule(rule).addRule(otherRule).build());
+        Map<Long, Rule> rulesByChecksum = ruleSets.getRulesByChecksum();
+        assertEquals(2, rulesByChecksum.size());
+
+        // the checksums don't depend on the rule instances
+        RuleSets copy = new RuleSets(ruleSets);
+        assertEquals(rulesByChecksum.keySet(), copy.getRulesByChecksum().keySet());
+
+        // but on the configuration of the rule and the file patterns of its ruleset
+        Rule changedRule = new FooRule();
+        changedRule.setPriority(RulePriority.HIGH);
+        assertFalse(rulesByChecksum.keySet().containsAll(new RuleSets(createRuleSetBuilder("RuleSet1")
+                .addRule(changedRule).build()).getRulesByChecksum().keySet()));
+        assertFalse(rulesByChecksum.keySet().containsAll(new RuleSets(createRuleSetBuilder("RuleSet1")
+                .addExcludePattern(".*/package/.*").addRule(rule).build()).getRulesByChecksum().keySet()));
+
+        Long otherRuleChecksum = null;
+        for (Map.Entry<Long, Rule> entry : rulesByChecksum.entrySet()) {
+            if (entry.getValue() == otherRule) {
+                otherRuleChecksum = entry.getKey();
+            }
+        }
+        RuleSets filtered = copy.filterByRuleChecksum(Collections.singleton(otherRuleChecksum));
+        assertEquals(1, filtered.ruleCount());
+        assertEquals(otherRule, filtered.getAllRules().iterator().next());
+        assertEquals(0, copy.filterByRuleChecksum(Collections.<Long>emptySet()).ruleCount());
+    }
+
     private void verifyRuleSet(RuleSet ruleset, int size, Set<RuleViolation> values) {
 
         RuleContext context = new RuleContext();
@@ -0,0 +1,193 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BenchmarkerTest {
+
+    @Before
+    public void setUp() {
+        Benchmarker.reset();
+        Benchmarker.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        Benchmarker.setProfiling(false, 0);
+        Benchmarker.setEnabled(false);
+        Benchmarker.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        Benchmarker.setEnabled(false);
+        Benchmarker.mark(Benchmark.Rule, "MyRule", 1000, 1);
+        Benchmarker.markFile(1000);
+
+        assertTrue(Benchmarker.values().isEmpty());
+        assertEquals(0, Benchmarker.histograms().get("File").getCount());
+    }
+
+    @Test
+    public void testMergeThreads() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        Benchmarker.mark(Benchmark.Rule, "MyRule", 2000, 1);
+                        Benchmarker.mark(Benchmark.Parser, 5000, 0);
+                        Benchmarker.markFile(10000);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<String, BenchmarkResult> values = Benchmarker.values();
+        assertEquals(4000, values.get("MyRule").getCount());
+        assertEquals(4000 * 2000, values.get("MyRule").getTime());
+        assertEquals(4000 * 5000, values.get("Parser").getTime());
+
+        Map<String, DurationHistogram> histograms = Benchmarker.histograms();
+        assertEquals(4000, histograms.get("Rule").getCount());
+        assertEquals(4000, histograms.get("Parser").getBucket(DurationHistogram.bucketOf(5000)));
+        assertEquals(4000, histograms.get("File").getCount());
+        assertEquals(0, histograms.get("Type resolution").getCount());
+    }
+
+    @Test
+    public void testResetReleasesRecorders() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    Benchmarker.mark(Benchmark.Rule, "MyRule", 2000, 1);
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        assertEquals(4, Benchmarker.getRecorderCount());
+
+        Benchmarker.reset();
+        assertEquals(0, Benchmarker.getRecorderCount());
+        assertTrue(Benchmarker.values().isEmpty());
+
+        // the current thread gets a new recorder
+        Benchmarker.mark(Benchmark.Rule, "MyRule", 2000, 1);
+        Benchmarker.mark(Benchmark.Rule, "MyRule", 2000, 1);
+        assertEquals(1, Benchmarker.getRecorderCount());
+        assertEquals(2, Benchmarker.values().get("MyRule").getCount());
+    }
+
+    @Test
+    public void testHistogram() {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        // 50 ms falls into the bucket from 32.768 to 65.536 ms
+        assertEquals(65536000L, histogram.getPercentile(50));
+        assertEquals(100000000L, histogram.getPercentile(99));
+        assertEquals(0, DurationHistogram.bucketOf(999));
+        assertEquals(1, DurationHistogram.bucketOf(1000));
+        assertEquals(2000, DurationHistogram.getLowerBound(2));
+    }
+
+    @Test
+    public void testTextReport() {
+        Benchmarker.mark(Benchmark.Parser, 5000000, 0);
+        Benchmarker.markFile(7000000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TextReport().generateHistograms(Benchmarker.histograms(), new PrintStream(out));
+        String report = out.toString();
+
+        assertTrue(report.contains("Histograms"));
+        assertTrue(report.contains("Parser"));
+        assertTrue(report.contains("File"));
+        assertTrue(report.contains("< 8.192"));
+    }
+
+    @Test
+    public void testProfile() {
+        Benchmarker.setProfiling(true, 2);
+        for (int i = 1; i <= 100; i++) {
+            Benchmarker.startFile("File" + i + ".java");
+            Benchmarker.mark(Benchmark.Parser, i * 10L, 0);
+            Benchmarker.mark(Benchmark.TypeResolution, 5, 0);
+            Benchmarker.mark(Benchmark.Rule, "MyRule", i * 1000L, 1);
+            // applied in the RuleChain and in its own visitation
+            Benchmarker.mark(Benchmark.RuleChainRule, "MyRule", i * 1000L, 1);
+            Benchmarker.markFile(i * 5000L);
+        }
+
+        Profile profile = Benchmarker.profile();
+        Profile.RuleProfile rule = profile.getRules().get(0);
+        assertEquals("MyRule", rule.getRule());
+        assertEquals(100, rule.getCount());
+        assertEquals(100000, rule.getPercentile(50));
+        assertEquals(190000, rule.getPercentile(95));
+        assertEquals(198000, rule.getPercentile(99));
+        assertEquals(200000, rule.getMax());
+
+        assertEquals(2, profile.getSlowest().size());
+        assertEquals("File100.java", profile.getSlowest().get(0).getFile());
+        assertEquals("File99.java", profile.getSlowest().get(1).getFile());
+
+        assertEquals(100, profile.getFiles().size());
+        Profile.FileProfile file = profile.getFiles().get(0);
+        assertEquals("File100.java", file.getFile());
+        assertEquals(500000, file.getTotal());
+        assertEquals(1000, file.getDuration(Benchmark.Parser));
+        assertEquals(5, file.getDuration(Benchmark.TypeResolution));
+        assertEquals(0, file.getDuration(Benchmark.DFA));
+    }
+
+    @Test
+    public void testProfileReport() throws Exception {
+        Benchmarker.setProfiling(true, 10);
+        Benchmarker.startFile("Foo,\"Bar\".java");
+        Benchmarker.mark(Benchmark.Parser, 2000000, 0);
+        Benchmarker.mark(Benchmark.Rule, "MyRule", 3000000, 1);
+        Benchmarker.markFile(6000000);
+        Profile profile = Benchmarker.profile();
+
+        StringWriter json = new StringWriter();
+        new ProfileReport().write(profile, "profile.json", json);
+        assertTrue(json.toString().contains("\"p95\": 3.0"));
+        assertTrue(json.toString().contains("\"parser\": 2.0"));
+        assertTrue(json.toString().contains("\"file\": \"Foo,\\\"Bar\\\".java\""));
+
+        StringWriter csv = new StringWriter();
+        new ProfileReport().write(profile, "profile.CSV", csv);
+        assertTrue(csv.toString().startsWith("Rule,Count,Total,P50,P95,P99,Max\n\"MyRule\",1,3.0,3.0,3.0,3.0,3.0\n"));
+        assertTrue(csv.toString().contains("\n\"MyRule\",\"Foo,\"\"Bar\"\".java\",3.0\n"));
+        assertTrue(csv.toString().contains("\n\"Foo,\"\"Bar\"\".java\",6.0,2.0,0.0,0.0,0.0,0.0\n"));
+    }
+}
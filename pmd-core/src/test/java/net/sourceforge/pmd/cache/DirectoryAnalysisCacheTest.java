@@ -0,0 +1,262 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.rule.MockRule;
+
+public class DirectoryAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheDirectory;
+    private File sourceFile;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+    private net.sourceforge.pmd.Rule rule;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = new File(tempFolder.getRoot(), "cache");
+        sourceFile = new File(tempFolder.newFolder("checkout1"), "Source.java");
+        Files.write(sourceFile.toPath(), "class Source {}".getBytes(StandardCharsets.UTF_8));
+        rule = new MockRule("Mock", "description", "message", "ruleset");
+        ruleSets = mock(RuleSets.class);
+        when(ruleSets.getRulesByChecksum()).thenReturn(Collections.singletonMap(1L, rule));
+        classLoader = mock(ClassLoader.class);
+    }
+
+    @Test
+    public void testStoreOnFileShouldntThrow() throws IOException {
+        final DirectoryAnalysisCache cache = new DirectoryAnalysisCache(tempFolder.newFile());
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+    }
+
+    @Test
+    public void testPersistedResultIsFoundInOtherCheckout() throws IOException {
+        analyzeWithViolation(sourceFile);
+
+        final File copy = new File(tempFolder.newFolder("checkout2"), "Source.java");
+        Files.copy(sourceFile.toPath(), copy.toPath());
+
+        final DirectoryAnalysisCache reloadedCache = newCache();
+        assertTrue("Cache believes file with the same contents is not up to date", reloadedCache.isUpToDate(copy));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(copy);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals(copy.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testViolationsOfExcludingRulesetsAreNotReused() throws IOException {
+        final File excluded = new File(tempFolder.newFolder("excluded"), "Source.java");
+        Files.copy(sourceFile.toPath(), excluded.toPath());
+        final RuleSet ruleSet = new RuleSetFactory().createNewRuleSet("ruleset", "description", null,
+                Collections.singletonList(".*excluded.*"), Collections.<String>emptyList(),
+                Arrays.<net.sourceforge.pmd.Rule>asList(rule));
+        ruleSets = new RuleSets(ruleSet);
+        analyzeWithViolation(sourceFile);
+
+        final DirectoryAnalysisCache reloadedCache = newCache();
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        assertEquals(1, reloadedCache.getCachedViolations(sourceFile).size());
+
+        // the file with the same contents is a cache miss, as the ruleset excludes it
+        assertFalse("Cache believes file with other applicable rules is up to date",
+                reloadedCache.isUpToDate(excluded));
+        assertTrue("Violation of a rule, whose ruleset excludes the file, was reused",
+                reloadedCache.getCachedViolations(excluded).isEmpty());
+    }
+
+    @Test
+    public void testRulesOfIncludingRulesetsAreApplied() throws IOException {
+        final File included = new File(tempFolder.newFolder("included"), "Source.java");
+        Files.copy(sourceFile.toPath(), included.toPath());
+        final RuleSet ruleSet = new RuleSetFactory().createNewRuleSet("ruleset", "description", null,
+                Collections.singletonList(".*"), Collections.singletonList(".*included.*"),
+                Arrays.<net.sourceforge.pmd.Rule>asList(rule));
+        ruleSets = new RuleSets(ruleSet);
+
+        // the rule isn't applied to the file, so there are no violations
+        final DirectoryAnalysisCache cache = newCache();
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.persist();
+
+        assertTrue(newCache().isUpToDate(sourceFile));
+        assertFalse("Cache believes file, to which the rule was never applied, is up to date",
+                newCache().isUpToDate(included));
+    }
+
+    @Test
+    public void testViolationsOfEqualRulesAreKeptApart() throws IOException {
+        final File excluded = new File(tempFolder.newFolder("excluded"), "Source.java");
+        Files.copy(sourceFile.toPath(), excluded.toPath());
+        final RuleSetFactory factory = new RuleSetFactory();
+        final RuleSet ruleSet = factory.createNewRuleSet("ruleset", "description", null,
+                Collections.singletonList(".*excluded.*"), Collections.<String>emptyList(),
+                Arrays.<net.sourceforge.pmd.Rule>asList(rule));
+        final RuleSet otherRuleSet = factory.createNewRuleSet("other", "description", null,
+                Collections.singletonList(".*checkout1.*"), Collections.<String>emptyList(),
+                Arrays.<net.sourceforge.pmd.Rule>asList(new MockRule("Mock", "description", "message", "other")));
+        ruleSets = new RuleSets(ruleSet);
+        ruleSets.addRuleSet(otherRuleSet);
+        analyzeWithViolation(sourceFile);
+
+        final DirectoryAnalysisCache reloadedCache = newCache();
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        assertEquals(1, reloadedCache.getCachedViolations(sourceFile).size());
+
+        // the equal rule of the other ruleset applies to this file, but didn't report the violation
+        reloadedCache.isUpToDate(excluded);
+        assertTrue("Violation of an equal rule of another ruleset was reused",
+                reloadedCache.getCachedViolations(excluded).isEmpty());
+    }
+
+    @Test
+    public void testViolationsOfAmbiguousRulesAreNotCached() throws IOException {
+        final RuleSetFactory factory = new RuleSetFactory();
+        ruleSets = new RuleSets(factory.createSingleRuleRuleSet(rule));
+        // both rulesets apply to the file, but differ in their file patterns
+        ruleSets.addRuleSet(factory.createNewRuleSet("other", "description", null,
+                Collections.singletonList(".*excluded.*"), Collections.<String>emptyList(),
+                Arrays.<net.sourceforge.pmd.Rule>asList(new MockRule("Mock", "description", "message", "other"))));
+        analyzeWithViolation(sourceFile);
+
+        assertFalse("Cache believes file with violations of equal rules is up to date",
+                newCache().isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testChangedFileIsNotUpToDate() throws IOException {
+        analyzeWithViolation(sourceFile);
+
+        Files.write(sourceFile.toPath(), "class Source { }".getBytes(StandardCharsets.UTF_8));
+        assertFalse("Cache believes modified file is up to date", newCache().isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testFileNameIsPartOfKey() throws IOException {
+        analyzeWithViolation(sourceFile);
+
+        final File renamed = tempFolder.newFile("Other.java");
+        Files.copy(sourceFile.toPath(), renamed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertFalse("Cache believes renamed file is up to date", newCache().isUpToDate(renamed));
+    }
+
+    @Test
+    public void testRulesetChangeIsNotUpToDate() throws IOException {
+        analyzeWithViolation(sourceFile);
+
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        assertFalse("Cache believes file is up to date after ruleset changed", newCache().isUpToDate(sourceFile));
+
+        // the results of the previous rulesets are still there
+        when(ruleSets.getChecksum()).thenReturn(0L);
+        assertTrue("Cache lost the results of the previous rulesets", newCache().isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testCachedResultIsNotRewritten() throws IOException {
+        analyzeWithViolation(sourceFile);
+        final File entry = findEntryFile();
+        entry.setLastModified(0);
+
+        final DirectoryAnalysisCache cache = newCache();
+        assertTrue(cache.isUpToDate(sourceFile));
+        cache.persist();
+
+        assertEquals(1, cacheDirectory.listFiles().length);
+        assertTrue("Cache hit didn't update the modification time", entry.lastModified() > 0);
+    }
+
+    @Test
+    public void testMalformedEntryIsNotUpToDate() throws IOException {
+        analyzeWithViolation(sourceFile);
+        Files.write(findEntryFile().toPath(), new byte[] { 1, 2, 3 });
+
+        final DirectoryAnalysisCache cache = newCache();
+        assertFalse("Cache believes file with malformed entry is up to date", cache.isUpToDate(sourceFile));
+
+        // the result of the new analysis replaces the malformed entry
+        cache.persist();
+        assertTrue(newCache().isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testAuxClasspathTypeChangeIsNotUpToDate() throws IOException {
+        final File classpathDirectory = tempFolder.newFolder("classpath");
+        final File classFile = new File(classpathDirectory, "B.class");
+        Files.write(classFile.toPath(), "some text".getBytes(StandardCharsets.UTF_8));
+        classLoader = new URLClassLoader(new URL[] { classpathDirectory.toURI().toURL(), }, null);
+
+        final DirectoryAnalysisCache cache = newCache();
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.typesResolved(sourceFile, Collections.singleton("B"));
+        cache.persist();
+        assertTrue(newCache().isUpToDate(sourceFile));
+
+        Files.write(classFile.toPath(), "some other text".getBytes(StandardCharsets.UTF_8));
+        final DirectoryAnalysisCache reloadedCache = newCache();
+        assertFalse("Cache believes file is up to date after used type changed", reloadedCache.isUpToDate(sourceFile));
+
+        // the result of the new analysis replaces the outdated entry
+        reloadedCache.persist();
+        assertTrue(newCache().isUpToDate(sourceFile));
+    }
+
+    private DirectoryAnalysisCache newCache() {
+        final DirectoryAnalysisCache cache = new DirectoryAnalysisCache(cacheDirectory);
+        cache.checkValidity(ruleSets, classLoader);
+        return cache;
+    }
+
+    private void analyzeWithViolation(final File file) {
+        final DirectoryAnalysisCache cache = newCache();
+        assertFalse(cache.isUpToDate(file));
+
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        when(rv.getRule()).thenReturn(rule);
+
+        cache.ruleViolationAdded(rv);
+        cache.persist();
+    }
+
+    private File findEntryFile() {
+        final File[] subdirectories = cacheDirectory.listFiles();
+        assertEquals(1, subdirectories.length);
+        final File[] entries = subdirectories[0].listFiles();
+        assertEquals(1, entries.length);
+        return entries[0];
+    }
+}
@@ -7,17 +7,20 @@ package net.sourceforge.pmd.cache;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -28,8 +31,13 @@ import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import net.sourceforge.pmd.FooRule;
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetReference;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.rule.RuleReference;
 
 public class FileAnalysisCacheTest {
     
@@ -139,7 +147,7 @@ public class FileAnalysisCacheTest {
     }
     
     @Test
-    public void testAuxClasspathChangeWithoutDFAorTypeResolutionDoesNotInvalidatesCache() throws MalformedURLException, IOException {
+    public void testAuxClasspathChangeWithoutTypeDependenciesDoesNotInvalidatesCache() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
         final URLClassLoader cl = mock(URLClassLoader.class);
         when(cl.getURLs()).thenReturn(new URL[] { });
@@ -149,56 +157,65 @@ public class FileAnalysisCacheTest {
         final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
         when(cl.getURLs()).thenReturn(new URL[] { tempFolder.newFile().toURI().toURL(), });
         reloadedCache.checkValidity(rs, cl);
-        assertTrue("Cache believes unmodified file is not up to date after auxclasspath changed when no rule cares",
+        assertTrue("Cache believes unmodified file is not up to date after auxclasspath changed when no type is used",
                 reloadedCache.isUpToDate(sourceFile));
     }
 
     @Test
     public void testAuxClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
-        final URLClassLoader cl = mock(URLClassLoader.class);
-        when(cl.getURLs()).thenReturn(new URL[] { });
-        
-        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
-        
+        final File classpathDirectory = tempFolder.newFolder();
+
+        // the type is looked up, but not found
+        setupCacheWithTypeDependency(rs, newAuxClassLoader(classpathDirectory), "a.B");
+
+        writeClassFile(classpathDirectory, "a/B.class", "some text");
         final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
-        final File classpathFile = tempFolder.newFile();
-        when(cl.getURLs()).thenReturn(new URL[] { classpathFile.toURI().toURL(), });
-        
-        // Make sure the auxclasspath file is not empty
-        Files.write(Paths.get(classpathFile.getAbsolutePath()), "some text".getBytes());
-        
-        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
-        when(r.isDfa()).thenReturn(true);
-        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
-        reloadedCache.checkValidity(rs, cl);
-        assertFalse("Cache believes unmodified file is up to date after auxclasspath changed",
+        reloadedCache.checkValidity(rs, newAuxClassLoader(classpathDirectory));
+        assertFalse("Cache believes unmodified file is up to date after used type was added to auxclasspath",
                 reloadedCache.isUpToDate(sourceFile));
     }
     
     @Test
-    public void testAuxClasspathJarContentsChangeInvalidatesCache() throws MalformedURLException, IOException {
+    public void testAuxClasspathTypeContentsChangeInvalidatesCache() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
-        final URLClassLoader cl = mock(URLClassLoader.class);
-        
-        final File classpathFile = tempFolder.newFile();
-        when(cl.getURLs()).thenReturn(new URL[] { classpathFile.toURI().toURL(), });
-        
-        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
-        when(r.isDfa()).thenReturn(true);
-        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
-        
-        setupCacheWithFiles(newCacheFile, rs, cl, sourceFile);
-        
-        // Edit the auxclasspath referenced file
-        Files.write(Paths.get(classpathFile.getAbsolutePath()), "some text".getBytes());
-        
+        final File classpathDirectory = tempFolder.newFolder();
+        writeClassFile(classpathDirectory, "a/B.class", "some text");
+
+        setupCacheWithTypeDependency(rs, newAuxClassLoader(classpathDirectory), "a.B");
+
+        // Edit the used type
+        writeClassFile(classpathDirectory, "a/B.class", "some other text");
         final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
-        reloadedCache.checkValidity(rs, cl);
-        assertFalse("Cache believes cache is up to date when a auxclasspath file changed",
+        reloadedCache.checkValidity(rs, newAuxClassLoader(classpathDirectory));
+        assertFalse("Cache believes cache is up to date when a used type of the auxclasspath changed",
                 reloadedCache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testUnrelatedAuxClasspathChangeDoesNotInvalidateCache() throws MalformedURLException, IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final File classpathDirectory = tempFolder.newFolder();
+        writeClassFile(classpathDirectory, "a/B.class", "some text");
+        writeClassFile(classpathDirectory, "a/C.class", "some text");
+
+        setupCacheWithTypeDependency(rs, newAuxClassLoader(classpathDirectory), "a.B");
+
+        writeClassFile(classpathDirectory, "a/C.class", "some other text");
+        writeClassFile(classpathDirectory, "a/D.class", "some text");
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, newAuxClassLoader(classpathDirectory));
+        assertTrue("Cache believes unmodified file is not up to date after unused types of the auxclasspath changed",
+                reloadedCache.isUpToDate(sourceFile));
+
+        // the dependencies are kept for the next analysis
+        reloadedCache.persist();
+        writeClassFile(classpathDirectory, "a/B.class", "some other text");
+        final FileAnalysisCache secondCache = new FileAnalysisCache(newCacheFile);
+        secondCache.checkValidity(rs, newAuxClassLoader(classpathDirectory));
+        assertFalse("Cache lost the used types of a cached result", secondCache.isUpToDate(sourceFile));
+    }
+
     @Test
     public void testClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
         final RuleSets rs = mock(RuleSets.class);
@@ -268,6 +285,222 @@ public class FileAnalysisCacheTest {
                 cache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testPersistAppendsChangedFilesOnly() throws IOException {
+        final File otherSourceFile = tempFolder.newFile("Other.java");
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile, otherSourceFile);
+        final long initialSize = newCacheFile.length();
+
+        // Edit one of the files and analyze both again
+        Files.write(Paths.get(otherSourceFile.getAbsolutePath()), "some text".getBytes());
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        assertTrue("Cache believes an unchanged file is not up to date", cache.isUpToDate(sourceFile));
+        assertFalse("Cache believes a changed file is up to date", cache.isUpToDate(otherSourceFile));
+        cache.persist();
+        assertTrue("Cache file has been rewritten instead of appended to", newCacheFile.length() > initialSize);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        assertTrue("Cache believes an unchanged file is not up to date", reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cache believes a reanalyzed file is not up to date", reloadedCache.isUpToDate(otherSourceFile));
+    }
+
+    @Test
+    public void testPersistCompactsFile() throws IOException {
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+        final long initialSize = newCacheFile.length();
+
+        for (int i = 0; i < 10; i++) {
+            Files.write(Paths.get(sourceFile.getAbsolutePath()), ("some text " + i).getBytes());
+            final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+            assertFalse("Cache believes a changed file is up to date", cache.isUpToDate(sourceFile));
+            cache.persist();
+        }
+
+        assertTrue("Cache file grows without compaction", newCacheFile.length() < 3 * initialSize);
+        assertTrue("Cache believes an unchanged file is not up to date",
+                new FileAnalysisCache(newCacheFile).isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testCacheFileChangedAfterLoad() throws IOException {
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+
+        // another process writes to the cache file, while it is open
+        try (FileOutputStream out = new FileOutputStream(newCacheFile, true)) {
+            out.write(new byte[100]);
+        }
+
+        assertTrue("Cache doesn't read the records of the loaded cache file", cache.isUpToDate(sourceFile));
+        // the cache file must be rewritten, the index is not at its end anymore
+        cache.persist();
+        assertTrue("Cache believes a known, unchanged file is not up to date",
+                new FileAnalysisCache(newCacheFile).isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testDroppedFileIsNotUpToDate() throws IOException {
+        final File otherSourceFile = tempFolder.newFile("Other.java");
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile, otherSourceFile);
+
+        // Analyze only one of the files
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        assertTrue("Cache believes an unchanged file is not up to date", cache.isUpToDate(sourceFile));
+        assertFalse("Cache keeps a file, which was not analyzed", cache.isUpToDate(otherSourceFile));
+    }
+
+    @Test
+    public void testLoadFromMalformedFile() throws IOException {
+        Files.write(Paths.get(emptyCacheFile.getAbsolutePath()), new byte[100]);
+        final FileAnalysisCache cache = new FileAnalysisCache(emptyCacheFile);
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(sourceFile));
+
+        // the malformed file is replaced
+        cache.persist();
+        assertTrue("Cache believes a known, unchanged file is not up to date",
+                new FileAnalysisCache(emptyCacheFile).isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testAddedRuleIsOutdated() {
+        final net.sourceforge.pmd.Rule fooRule = new FooRule();
+        final net.sourceforge.pmd.Rule barRule = newRule("Bar");
+        final ClassLoader cl = mock(ClassLoader.class);
+        setupCacheWithViolation(createRuleSets(fooRule), cl, fooRule);
+
+        final RuleSets ruleSets = createRuleSets(fooRule, barRule);
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSets, cl);
+        assertTrue("Cache believes unmodified file is not up to date after a rule was added",
+                reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertSame(fooRule, cachedViolations.get(0).getRule());
+        assertEquals(Collections.singleton(barRule), reloadedCache.getOutdatedRules(ruleSets).getAllRules());
+    }
+
+    @Test
+    public void testChangedRuleIsOutdated() {
+        final net.sourceforge.pmd.Rule fooRule = new FooRule();
+        final net.sourceforge.pmd.Rule barRule = newRule("Bar");
+        final ClassLoader cl = mock(ClassLoader.class);
+        setupCacheWithViolation(createRuleSets(fooRule, barRule), cl, fooRule);
+
+        final net.sourceforge.pmd.Rule changedFooRule = new FooRule();
+        changedFooRule.setPriority(RulePriority.HIGH);
+        final RuleSets ruleSets = createRuleSets(changedFooRule, barRule);
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSets, cl);
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cached violations of changed rule are used", reloadedCache.getCachedViolations(sourceFile).isEmpty());
+        assertEquals(Collections.singleton(changedFooRule), reloadedCache.getOutdatedRules(ruleSets).getAllRules());
+
+        // the record is written again, with the violations of the changed rule
+        reloadedCache.persist();
+        final FileAnalysisCache updatedCache = new FileAnalysisCache(newCacheFile);
+        updatedCache.checkValidity(ruleSets, cl);
+        assertTrue(updatedCache.isUpToDate(sourceFile));
+        assertEquals(0, updatedCache.getOutdatedRules(ruleSets).ruleCount());
+    }
+
+    @Test
+    public void testRemovedRuleViolationsAreDropped() {
+        final net.sourceforge.pmd.Rule fooRule = new FooRule();
+        final net.sourceforge.pmd.Rule barRule = newRule("Bar");
+        final ClassLoader cl = mock(ClassLoader.class);
+        setupCacheWithViolation(createRuleSets(fooRule, barRule), cl, fooRule);
+
+        final RuleSets ruleSets = createRuleSets(barRule);
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSets, cl);
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cached violations of removed rule are used", reloadedCache.getCachedViolations(sourceFile).isEmpty());
+        assertEquals(0, reloadedCache.getOutdatedRules(ruleSets).ruleCount());
+    }
+
+    @Test
+    public void testMultifileRulesAreNotCached() {
+        final net.sourceforge.pmd.Rule fooRule = new FooRule();
+        final net.sourceforge.pmd.Rule multifileRule = newRule("Multifile");
+        multifileRule.setMultifile(true);
+        final ClassLoader cl = mock(ClassLoader.class);
+        final RuleSets ruleSets = createRuleSets(fooRule, multifileRule);
+        setupCacheWithViolation(ruleSets, cl, multifileRule);
+
+        // the violations of multifile rules depend on the other files, which may have changed
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(ruleSets, cl);
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        assertTrue("Cached violations of multifile rule are used",
+                reloadedCache.getCachedViolations(sourceFile).isEmpty());
+        assertEquals(Collections.singleton(multifileRule), reloadedCache.getOutdatedRules(ruleSets).getAllRules());
+    }
+
+    @Test
+    public void testViolationOfReferencedRuleIsCached() {
+        // the violations of a rule reference are reported by the referenced rule
+        final net.sourceforge.pmd.Rule fooRule = new FooRule();
+        final RuleReference reference = new RuleReference(fooRule, new RuleSetReference("rulesets/foo.xml"));
+        final ClassLoader cl = mock(ClassLoader.class);
+        setupCacheWithViolation(createRuleSets(reference), cl, fooRule);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(createRuleSets(reference), cl);
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertSame(reference, cachedViolations.get(0).getRule());
+    }
+
+    private static net.sourceforge.pmd.Rule newRule(final String name) {
+        final net.sourceforge.pmd.Rule rule = new FooRule();
+        rule.setName(name);
+        return rule;
+    }
+
+    private static RuleSets createRuleSets(final net.sourceforge.pmd.Rule... rules) {
+        return new RuleSets(new RuleSetFactory().createNewRuleSet("RuleSet", "desc", null,
+                Collections.<String>emptyList(), Collections.<String>emptyList(), Arrays.asList(rules)));
+    }
+
+    private void setupCacheWithViolation(final RuleSets ruleSets, final ClassLoader classLoader,
+            final net.sourceforge.pmd.Rule rule) {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(sourceFile.getPath());
+        when(rv.getRule()).thenReturn(rule);
+        cache.ruleViolationAdded(rv);
+        cache.persist();
+    }
+
+    private void setupCacheWithTypeDependency(final RuleSets ruleSets, final ClassLoader classLoader,
+            final String className) {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.typesResolved(sourceFile, Collections.singleton(className));
+        cache.persist();
+    }
+
+    private static ClassLoader newAuxClassLoader(final File classpathDirectory) throws MalformedURLException {
+        // no parent, so that only the given directory is searched
+        return new URLClassLoader(new URL[] { classpathDirectory.toURI().toURL(), }, null);
+    }
+
+    private static void writeClassFile(final File classpathDirectory, final String path, final String contents)
+            throws IOException {
+        final File classFile = new File(classpathDirectory, path);
+        classFile.getParentFile().mkdirs();
+        Files.write(classFile.toPath(), contents.getBytes());
+    }
+
     private void setupCacheWithFiles(final File cacheFile, final RuleSets ruleSets,
             final ClassLoader classLoader, final File... files) {
         // Setup a cache file with an entry for an empty Source.java with no violations
@@ -45,4 +45,24 @@ public class CPDConfigurationTest {
             Assert.assertSame(entry.getValue(), r.getClass());
         }
     }
+
+    @Test
+    public void testMatchAlgorithms() {
+        CPDConfiguration configuration = new CPDConfiguration();
+        Map<String, SourceCode> source = new HashMap<>();
+        Tokens tokens = new Tokens();
+        CPDListener listener = new CPDNullListener();
+        Assert.assertSame(MatchAlgorithm.class, configuration.matchAlgorithm(source, tokens, listener).getClass());
+
+        configuration.setMatchAlgorithm("suffix-array");
+        Assert.assertSame(SuffixArrayMatchAlgorithm.class,
+                configuration.matchAlgorithm(source, tokens, listener).getClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMatchAlgorithm() {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMatchAlgorithm("foo");
+        configuration.matchAlgorithm(new HashMap<String, SourceCode>(), new Tokens(), new CPDNullListener());
+    }
 }
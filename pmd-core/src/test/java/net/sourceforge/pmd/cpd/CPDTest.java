@@ -5,11 +5,19 @@
 package net.sourceforge.pmd.cpd;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit test for {@link CPD}
@@ -26,6 +34,11 @@ public class CPDTest {
         }
     }
 
+    private static final File SOURCE_DIRECTORY = new File("src/main/java/net/sourceforge/pmd/cpd");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private CPD cpd;
 
     private boolean canTestSymLinks = false;
@@ -120,6 +133,85 @@ public class CPDTest {
         listener.verify();
     }
 
+    /**
+     * Tokenizing and hashing with several threads must find the same matches
+     * in the same order as a single thread.
+     *
+     * @throws Exception
+     *             any error
+     */
+    @Test
+    public void testMultipleThreadsFindSameMatches() throws Exception {
+        List<String> expected = findMatches(newConfiguration(1), SOURCE_DIRECTORY);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, findMatches(newConfiguration(4), SOURCE_DIRECTORY));
+    }
+
+    @Test
+    public void testCachedTokensFindSameMatches() throws Exception {
+        List<String> expected = findMatches(newConfiguration(1), SOURCE_DIRECTORY);
+        String cacheLocation = new File(tempFolder.getRoot(), "cpd.cache").getPath();
+
+        CPDConfiguration configuration = newConfiguration(1);
+        configuration.setCacheLocation(cacheLocation);
+        Assert.assertEquals(expected, findMatches(configuration, SOURCE_DIRECTORY));
+        Assert.assertTrue(new File(cacheLocation).isFile());
+        Assert.assertEquals(expected, findMatches(configuration, SOURCE_DIRECTORY));
+
+        CPDConfiguration threadedConfiguration = newConfiguration(4);
+        threadedConfiguration.setCacheLocation(cacheLocation);
+        Assert.assertEquals(expected, findMatches(threadedConfiguration, SOURCE_DIRECTORY));
+    }
+
+    @Test
+    public void testChangedOnly() throws Exception {
+        File directory = tempFolder.newFolder("cpd");
+        FileUtils.copyDirectory(SOURCE_DIRECTORY, directory);
+        CPDConfiguration configuration = newConfiguration(1);
+        configuration.setCacheLocation(new File(tempFolder.getRoot(), "cpd.cache").getPath());
+        configuration.setChangedOnly(true);
+
+        // without a cache, every file is changed
+        List<String> expected = findMatches(configuration, directory);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertTrue(findMatches(configuration, directory).isEmpty());
+
+        String changedFile = expected.get(0).split(" ")[1].split(":")[0];
+        FileUtils.write(new File(changedFile), "// changed", StandardCharsets.UTF_8, true);
+        List<String> changed = findMatches(configuration, directory);
+        Assert.assertFalse(changed.isEmpty());
+        for (String match : changed) {
+            Assert.assertTrue(match, match.contains(changedFile + ":"));
+            Assert.assertTrue(match, expected.contains(match));
+        }
+    }
+
+    private CPDConfiguration newConfiguration(int threads) {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMinimumTileSize(20);
+        configuration.setThreads(threads);
+        configuration.postContruct();
+        return configuration;
+    }
+
+    private List<String> findMatches(CPDConfiguration configuration, File directory) throws IOException {
+        CPD threadedCpd = new CPD(configuration);
+        threadedCpd.addRecursively(directory);
+        threadedCpd.go();
+
+        List<String> matches = new ArrayList<>();
+        for (Iterator<Match> it = threadedCpd.getMatches(); it.hasNext();) {
+            Match match = it.next();
+            StringBuilder description = new StringBuilder().append(match.getTokenCount());
+            for (Mark mark : match) {
+                description.append(' ').append(mark.getFilename()).append(':').append(mark.getBeginLine())
+                    .append('-').append(mark.getEndLine());
+            }
+            matches.add(description.toString());
+        }
+        return matches;
+    }
+
     /**
      * Simple listener that fails, if to many files were added and not skipped.
      */
@@ -0,0 +1,75 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokensTest {
+
+    private Tokens tokens;
+
+    @Before
+    public void setUp() {
+        TokenEntry.clearImages();
+        tokens = new Tokens();
+        tokens.add(new TokenEntry("public", "Foo.java", 1));
+        tokens.add(new TokenEntry("class", "Foo.java", 2));
+        tokens.add(TokenEntry.getEOF());
+    }
+
+    @Test
+    public void testTokenViews() {
+        assertEquals(3, tokens.size());
+        TokenEntry token = tokens.getTokens().get(1);
+        assertEquals("class", token.toString());
+        assertEquals("Foo.java", token.getTokenSrcID());
+        assertEquals(2, token.getBeginLine());
+        assertEquals(1, token.getIndex());
+        assertSame(TokenEntry.EOF, tokens.getTokens().get(2));
+    }
+
+    @Test
+    public void testSetToken() {
+        TokenEntry token = tokens.getTokens().get(1);
+        token.setImage("public");
+        tokens.getTokens().set(1, token);
+        assertEquals(tokens.getTokens().get(0).getIdentifier(), tokens.getTokens().get(1).getIdentifier());
+    }
+
+    @Test
+    public void testAddAll() {
+        Tokens other = new Tokens();
+        other.add(new TokenEntry("class", "Bar.java", 3));
+        other.add(TokenEntry.getEOF());
+        tokens.addAll(other);
+
+        List<TokenEntry> entries = tokens.getTokens();
+        assertEquals(5, entries.size());
+        assertEquals("Bar.java", entries.get(3).getTokenSrcID());
+        assertEquals(3, entries.get(3).getBeginLine());
+        assertEquals(3, entries.get(3).getIndex());
+        assertEquals(entries.get(1).getIdentifier(), entries.get(3).getIdentifier());
+        assertSame(TokenEntry.EOF, entries.get(4));
+    }
+
+    @Test
+    public void testTruncate() {
+        tokens.truncate(1);
+        tokens.add(new TokenEntry("interface", "Foo.java", 3));
+        assertEquals(2, tokens.size());
+        assertEquals("interface", tokens.getTokens().get(1).toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInsertIsNotSupported() {
+        tokens.getTokens().add(0, new TokenEntry("final", "Foo.java", 1));
+    }
+}
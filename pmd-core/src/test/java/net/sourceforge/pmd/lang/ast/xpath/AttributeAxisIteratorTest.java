@@ -41,4 +41,22 @@ public class AttributeAxisIteratorTest {
         Assert.assertTrue(atts.containsKey("EndColumn"));
         Assert.assertTrue(atts.containsKey("EndLine"));
     }
+
+    /**
+     * Test the lookup of an attribute by name.
+     */
+    @Test
+    public void testAttributeAxisIteratorByName() {
+        DummyNode dummyNode = new DummyNode(1);
+        dummyNode.testingOnlySetBeginLine(42);
+
+        AttributeAxisIterator it = new AttributeAxisIterator(dummyNode, "BeginLine");
+        Assert.assertTrue(it.hasNext());
+        Attribute attribute = it.next();
+        Assert.assertEquals("BeginLine", attribute.getName());
+        Assert.assertEquals(42, attribute.getValue());
+        Assert.assertFalse(it.hasNext());
+
+        Assert.assertFalse(new AttributeAxisIterator(dummyNode, "Unknown").hasNext());
+    }
 }
@@ -4,10 +4,14 @@
 
 package net.sourceforge.pmd.lang.ast.xpath;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.util.Iterator;
+
 import org.junit.Test;
 
 import net.sourceforge.pmd.lang.ast.DummyNode;
@@ -42,4 +46,25 @@ public class DocumentNavigatorTest {
         n.jjtSetParent(root);
         assertSame(root, nav.getDocumentNode(n));
     }
+
+    @Test
+    public void getNamedAxisIterators() {
+        DocumentNavigator nav = new DocumentNavigator();
+
+        Node root = new DummyRootNode(1);
+        Node n = new DummyNode(2);
+        n.setImage("foo");
+        root.jjtAddChild(n, 0);
+        n.jjtSetParent(root);
+
+        Iterator<Attribute> attributes = nav.getAttributeAxisIterator(n, "Image", null, null);
+        assertEquals("foo", attributes.next().getValue());
+        assertFalse(attributes.hasNext());
+        assertFalse(nav.getAttributeAxisIterator(n, "Image", "ns", "urn:ns").hasNext());
+
+        Iterator<Node> children = nav.getChildAxisIterator(root, n.getXPathNodeName(), null, null);
+        assertSame(n, children.next());
+        assertFalse(children.hasNext());
+        assertFalse(nav.getChildAxisIterator(root, "Unknown", null, null).hasNext());
+    }
 }
@@ -0,0 +1,59 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RuleChainXPathSplitterTest {
+
+    @Test
+    public void testSingleNode() {
+        Map<String, List<String>> queries = RuleChainXPathSplitter.split("//ClassOrInterfaceDeclaration[@Abstract='true']");
+        assertEquals(Collections.singletonMap("ClassOrInterfaceDeclaration",
+                Arrays.asList("self::ClassOrInterfaceDeclaration[@Abstract='true']")), queries);
+    }
+
+    @Test
+    public void testChildSteps() {
+        Map<String, List<String>> queries = RuleChainXPathSplitter.split("//Block[count(*) > 1]/BlockStatement[1]/*");
+        assertEquals(Collections.singletonMap("Block",
+                Arrays.asList("self::Block[count(*) > 1]/BlockStatement[1]/*")), queries);
+    }
+
+    @Test
+    public void testUnion() {
+        Map<String, List<String>> queries = RuleChainXPathSplitter.split("//A[@X='|'] | (//B union //A[@Y])");
+        assertEquals(2, queries.size());
+        assertEquals(Arrays.asList("self::A[@X='|']", "self::A[@Y]"), queries.get("A"));
+        assertEquals(Arrays.asList("self::B"), queries.get("B"));
+    }
+
+    @Test
+    public void testNotSplit() {
+        // not starting with a descendant step
+        assertTrue(RuleChainXPathSplitter.split("/A").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//*[@Image='a']").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("(//A)[1]").isEmpty());
+        // positional predicates
+        assertTrue(RuleChainXPathSplitter.split("//A[1]").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//A[position() > 1]").isEmpty());
+        // steps, which could select the same node from different A nodes
+        assertTrue(RuleChainXPathSplitter.split("//A//B").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//A/following-sibling::A").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//A/..").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//A | //B/A").isEmpty());
+        // other expressions
+        assertTrue(RuleChainXPathSplitter.split("//A except //A[@B]").isEmpty());
+        assertTrue(RuleChainXPathSplitter.split("//A[@B] (: comment :)").isEmpty());
+    }
+}
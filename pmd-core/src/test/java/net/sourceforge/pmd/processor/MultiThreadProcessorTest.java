@@ -39,9 +39,15 @@ public class MultiThreadProcessorTest {
     private SimpleReportListener reportListener;
     
     public void setUpForTest(final String ruleset) {
+        setUpForTest(ruleset, 0);
+    }
+
+    public void setUpForTest(final String ruleset, final int maxFilesInFlight) {
         PMDConfiguration configuration = new PMDConfiguration();
         configuration.setRuleSets(ruleset);
         configuration.setThreads(2);
+        configuration.setMaxFilesInFlight(maxFilesInFlight);
+        NotThreadSafeRule.count.set(0);
         files = new ArrayList<>();
         files.add(new StringDataSource("file1-violation.dummy", "ABC"));
         files.add(new StringDataSource("file2-foo.dummy", "DEF"));
@@ -85,6 +91,34 @@ public class MultiThreadProcessorTest {
         Assert.assertEquals("Missing violation", 1, reportListener.violations.get());
     }
 
+    @Test
+    public void testBoundedFilesInFlight() throws IOException {
+        setUpForTest("rulesets/MultiThreadProcessorTest/basic.xml", 1);
+        files.add(new StringDataSource("file3-violation.dummy", "GHI"));
+        final SimpleRenderer renderer = new SimpleRenderer(null, null);
+        renderer.start();
+        processor.processFiles(ruleSetFactory, files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals("Missing violations", 2, renderer.getReport().size());
+    }
+
+    @Test
+    public void testInterruptIsReported() {
+        setUpForTest("rulesets/MultiThreadProcessorTest/basic.xml");
+
+        Thread.currentThread().interrupt();
+        try {
+            processor.processFiles(ruleSetFactory, files, ctx, Collections.<Renderer>emptyList());
+            Assert.fail("The interrupted analysis ended without error");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getCause() instanceof InterruptedException);
+            Assert.assertTrue("The interrupt flag is lost", Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
     private static class StringDataSource implements DataSource {
         private final String data;
         private final String name;
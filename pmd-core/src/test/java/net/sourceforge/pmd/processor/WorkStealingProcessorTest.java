@@ -0,0 +1,162 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+public class WorkStealingProcessorTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReportsAreRenderedInFileOrder() throws IOException {
+        List<DataSource> files = new ArrayList<>();
+        files.add(createFile("a.dummy", 10));
+        files.add(createFile("b.dummy", 10000));
+        files.add(createFile("c.dummy", 1000));
+
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/WorkStealingProcessorTest/everyfile.xml");
+        configuration.setThreads(2);
+        configuration.setLargestFilesFirst(true);
+
+        FileOrderRenderer renderer = new FileOrderRenderer();
+        renderer.start();
+        new WorkStealingProcessor(configuration).processFiles(new RuleSetFactory(), files, new RuleContext(),
+                Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals(3, renderer.fileNames.size());
+        Assert.assertTrue(renderer.fileNames.get(0).endsWith("a.dummy"));
+        Assert.assertTrue(renderer.fileNames.get(1).endsWith("b.dummy"));
+        Assert.assertTrue(renderer.fileNames.get(2).endsWith("c.dummy"));
+    }
+
+    @Test
+    public void testFilesAreDispatchedByCost() throws IOException {
+        List<DataSource> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(createFile(i + ".dummy", 10 * i));
+        }
+
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/WorkStealingProcessorTest/everyfile.xml");
+        configuration.setThreads(1);
+        configuration.setMaxFilesInFlight(2);
+        configuration.setLargestFilesFirst(true);
+        EveryFileRule.started.clear();
+
+        FileOrderRenderer renderer = new FileOrderRenderer();
+        renderer.start();
+        new WorkStealingProcessor(configuration).processFiles(new RuleSetFactory(), files, new RuleContext(),
+                Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals(10, renderer.fileNames.size());
+        Assert.assertTrue(renderer.fileNames.get(9).endsWith("9.dummy"));
+        // the files are analyzed largest first, not only among the next files to render
+        Assert.assertEquals(10, EveryFileRule.started.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(EveryFileRule.started.get(i).endsWith((9 - i) + ".dummy"));
+        }
+    }
+
+    @Test
+    public void testInterruptIsReported() throws IOException {
+        List<DataSource> files = new ArrayList<>();
+        files.add(createFile("a.dummy", 10));
+        files.add(createFile("b.dummy", 10));
+
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setRuleSets("rulesets/WorkStealingProcessorTest/everyfile.xml");
+        configuration.setThreads(2);
+        configuration.setLargestFilesFirst(true);
+
+        Thread.currentThread().interrupt();
+        try {
+            new WorkStealingProcessor(configuration).processFiles(new RuleSetFactory(), files, new RuleContext(),
+                    Collections.<Renderer>emptyList());
+            Assert.fail("The interrupted analysis ended without error");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getCause() instanceof InterruptedException);
+            Assert.assertTrue("The interrupt flag is lost", Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testEstimateCost() throws IOException {
+        Assert.assertEquals(1000, WorkStealingProcessor.estimateCost(createFile("a.dummy", 1000)));
+    }
+
+    private DataSource createFile(String name, int size) throws IOException {
+        File file = tempFolder.newFile(name);
+        FileUtils.writeStringToFile(file, StringUtils.repeat('x', size), StandardCharsets.UTF_8);
+        return new FileDataSource(file);
+    }
+
+    public static class EveryFileRule extends AbstractRule {
+        public static List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            started.add(ctx.getSourceCodeFilename());
+            addViolation(ctx, nodes.get(0));
+        }
+    }
+
+    private static class FileOrderRenderer extends AbstractAccumulatingRenderer {
+
+        private final List<String> fileNames = new ArrayList<>();
+
+        FileOrderRenderer() {
+            super(null, null);
+        }
+
+        @Override
+        public String defaultFileExtension() {
+            return null;
+        }
+
+        @Override
+        public void renderFileReport(Report report) throws IOException {
+            Iterator<RuleViolation> violations = report.iterator();
+            while (violations.hasNext()) {
+                fileNames.add(violations.next().getFilename());
+            }
+        }
+
+        @Override
+        public void end() throws IOException {
+        }
+    }
+}
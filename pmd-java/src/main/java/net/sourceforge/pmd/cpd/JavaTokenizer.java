@@ -301,6 +301,7 @@ public class JavaTokenizer implements Tokenizer {
                     int lastTokenIndex = tokenEntries.size() - 1;
                     TokenEntry lastToken = tokenEntries.getTokens().get(lastTokenIndex);
                     lastToken.setImage(prevIdentifier);
+                    tokenEntries.getTokens().set(lastTokenIndex, lastToken);
                 }
             }
         }
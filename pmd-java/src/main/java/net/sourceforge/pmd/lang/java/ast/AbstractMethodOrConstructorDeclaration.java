@@ -4,12 +4,15 @@
 
 package net.sourceforge.pmd.lang.java.ast;
 
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.java.dfa.DataFlowFacade;
 import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSignature;
 
 
 public abstract class AbstractMethodOrConstructorDeclaration extends AbstractMethodLikeNode implements ASTMethodOrConstructorDeclaration {
 
     private JavaOperationSignature signature;
+    private DataFlowFacade dataFlowFacade;
 
 
     AbstractMethodOrConstructorDeclaration(int i) {
@@ -30,4 +33,32 @@ public abstract class AbstractMethodOrConstructorDeclaration extends AbstractMet
 
         return signature;
     }
+
+
+    /**
+     * Returns the data flow node of this method or constructor. The data flow
+     * is built on the first call, if the data flow facade was run on the
+     * compilation unit.
+     */
+    @Override
+    public DataFlowNode getDataFlowNode() {
+        if (dataFlowFacade != null) {
+            DataFlowFacade facade = dataFlowFacade;
+            dataFlowFacade = null;
+            facade.buildDataFlowFor(this);
+        }
+
+        return super.getDataFlowNode();
+    }
+
+
+    /**
+     * Defers the construction of the data flow of this method or constructor
+     * to the first call of {@link #getDataFlowNode()}.
+     *
+     * @param dataFlowFacade the facade, which builds the data flow
+     */
+    public void setDataFlowFacade(DataFlowFacade dataFlowFacade) {
+        this.dataFlowFacade = dataFlowFacade;
+    }
 }
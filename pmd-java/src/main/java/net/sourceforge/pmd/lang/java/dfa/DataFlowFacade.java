@@ -8,9 +8,16 @@ import net.sourceforge.pmd.lang.DataFlowHandler;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.ASTConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.AbstractMethodOrConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorAdapter;
 
 /**
+ * Prepares the data flow of the methods and constructors of a compilation
+ * unit. The data flow of a method or constructor is only built, when it is
+ * requested for the first time, see
+ * {@link AbstractMethodOrConstructorDeclaration#getDataFlowNode()}, so that
+ * the methods, which no rule inspects, cost nothing.
+ *
  * TODO What about initializers? This only processes methods and
  * constructors.
  *
@@ -28,14 +35,27 @@ public class DataFlowFacade extends JavaParserVisitorAdapter {
     }
 
     public Object visit(ASTMethodDeclaration node, Object data) {
-        sbf.buildDataFlowFor(node);
-        vav.compute(node);
+        node.setDataFlowFacade(this);
         return data;
     }
 
     public Object visit(ASTConstructorDeclaration node, Object data) {
-        sbf.buildDataFlowFor(node);
-        vav.compute(node);
+        node.setDataFlowFacade(this);
         return data;
     }
+
+    /**
+     * Builds the data flow of the given method or constructor and computes
+     * the accesses of its variables.
+     *
+     * @param node the method or constructor
+     */
+    public void buildDataFlowFor(AbstractMethodOrConstructorDeclaration node) {
+        sbf.buildDataFlowFor(node);
+        if (node instanceof ASTMethodDeclaration) {
+            vav.compute((ASTMethodDeclaration) node);
+        } else {
+            vav.compute((ASTConstructorDeclaration) node);
+        }
+    }
 }
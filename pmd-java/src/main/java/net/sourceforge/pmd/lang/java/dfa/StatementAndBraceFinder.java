@@ -76,6 +76,7 @@ public class StatementAndBraceFinder extends JavaParserVisitorAdapter {
         } catch (SequenceException | LinkerException e) {
             e.printStackTrace();
         }
+        this.dataFlow.compact();
     }
 
 
@@ -15,4 +15,12 @@ import net.sourceforge.pmd.lang.metrics.BasicProjectMemoizer;
  */
 class JavaProjectMemoizer extends BasicProjectMemoizer<ASTAnyTypeDeclaration, MethodLikeNode> {
 
+    JavaProjectMemoizer() {
+        super();
+    }
+
+
+    JavaProjectMemoizer(int maxSize) {
+        super(maxSize);
+    }
 }
@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.lang.java.multifile;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -15,6 +18,8 @@ import net.sourceforge.pmd.lang.java.multifile.signature.JavaFieldSigMask;
 import net.sourceforge.pmd.lang.java.multifile.signature.JavaFieldSignature;
 import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSigMask;
 import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSignature;
+import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSignature.Role;
+import net.sourceforge.pmd.lang.java.multifile.signature.JavaSignature.Visibility;
 
 /**
  * Statistics about a class, enum, interface, or annotation. Stores information about the contained members and their
@@ -95,6 +100,111 @@ final class ClassStats implements ClassMirror {
     }
 
 
+    /**
+     * Adds the members and nested classes of another class to this one. The other class is not modified.
+     *
+     * @param other The class to merge into this one
+     */
+    void merge(ClassStats other) {
+        for (Entry<JavaOperationSignature, Set<String>> e : other.operations.entrySet()) {
+            for (String name : e.getValue()) {
+                addOperation(name, e.getKey());
+            }
+        }
+        for (Entry<JavaFieldSignature, Set<String>> e : other.fields.entrySet()) {
+            for (String name : e.getValue()) {
+                addField(name, e.getKey());
+            }
+        }
+        for (Entry<String, ClassStats> e : other.nestedClasses.entrySet()) {
+            getNestedClassStats(e.getKey(), true).merge(e.getValue());
+        }
+    }
+
+
+    /**
+     * Writes this class and its nested classes.
+     *
+     * @param out The output
+     *
+     * @throws IOException If the output fails
+     * @see #read(DataInput)
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(operations.size());
+        for (Entry<JavaOperationSignature, Set<String>> e : operations.entrySet()) {
+            JavaOperationSignature sig = e.getKey();
+            out.writeByte(sig.visibility.ordinal());
+            out.writeByte(sig.role.ordinal());
+            out.writeBoolean(sig.isAbstract);
+            writeNames(out, e.getValue());
+        }
+        out.writeInt(fields.size());
+        for (Entry<JavaFieldSignature, Set<String>> e : fields.entrySet()) {
+            JavaFieldSignature sig = e.getKey();
+            out.writeByte(sig.visibility.ordinal());
+            out.writeBoolean(sig.isStatic);
+            out.writeBoolean(sig.isFinal);
+            writeNames(out, e.getValue());
+        }
+        out.writeInt(nestedClasses.size());
+        for (Entry<String, ClassStats> e : nestedClasses.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+    }
+
+
+    /**
+     * Reads a class, which was written by {@link #write(DataOutput)}.
+     *
+     * @param in The input
+     *
+     * @return The class
+     *
+     * @throws IOException If the input fails
+     */
+    static ClassStats read(DataInput in) throws IOException {
+        ClassStats stats = new ClassStats();
+        int operationCount = in.readInt();
+        for (int i = 0; i < operationCount; i++) {
+            JavaOperationSignature sig = JavaOperationSignature.of(Visibility.values()[in.readByte()],
+                                                                   Role.values()[in.readByte()], in.readBoolean());
+            stats.operations.put(sig, readNames(in));
+        }
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            JavaFieldSignature sig = JavaFieldSignature.of(Visibility.values()[in.readByte()],
+                                                           in.readBoolean(), in.readBoolean());
+            stats.fields.put(sig, readNames(in));
+        }
+        int nestedCount = in.readInt();
+        for (int i = 0; i < nestedCount; i++) {
+            String name = in.readUTF();
+            stats.nestedClasses.put(name, read(in));
+        }
+        return stats;
+    }
+
+
+    private static void writeNames(DataOutput out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+
+    private static Set<String> readNames(DataInput in) throws IOException {
+        int count = in.readInt();
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+
     @Override
     public boolean hasMatchingOpSig(String name, JavaOperationSigMask mask) {
         // Indexing on signatures optimises this type of request
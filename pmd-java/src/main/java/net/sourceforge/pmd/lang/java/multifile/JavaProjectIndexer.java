@@ -0,0 +1,209 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.multifile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.ProjectIndexer;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+
+/**
+ * Builds the {@link PackageStats} of the whole project, before the multifile
+ * rules are applied. Each file is indexed into its own PackageStats, so that
+ * the files can be indexed in parallel and a changed file can replace its
+ * former entries. The trees of the files are merged, when the index is
+ * published as attribute of the {@link RuleContext} of the analysis, so that
+ * concurrent analyses don't share their indexes.
+ *
+ * <p>The index file consists of a header with a magic number, the format and
+ * the PMD version, followed by the name, the checksum and the PackageStats of
+ * each file.
+ *
+ * @since 6.2.0
+ */
+public final class JavaProjectIndexer implements ProjectIndexer {
+
+    private static final Logger LOG = Logger.getLogger(JavaProjectIndexer.class.getName());
+
+    /** "PMDM" */
+    private static final int MAGIC = 0x504d444d;
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_ATTRIBUTE = JavaProjectIndexer.class.getName();
+
+    private final ConcurrentMap<String, IndexedFile> files = new ConcurrentHashMap<>();
+    private final Set<String> seenFiles = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean changed;
+    private File indexFile;
+
+
+    @Override
+    public void start(File indexFile) {
+        this.indexFile = indexFile;
+        files.clear();
+        seenFiles.clear();
+        changed = false;
+        if (indexFile != null && indexFile.isFile()) {
+            try {
+                read(indexFile);
+            } catch (IOException e) {
+                LOG.info("Multifile index " + indexFile + " is malformed or outdated, it is created again");
+                files.clear();
+                changed = true;
+            }
+        }
+    }
+
+
+    @Override
+    public boolean isUpToDate(String fileName, long checksum) {
+        seenFiles.add(fileName);
+        IndexedFile indexed = files.get(fileName);
+        return indexed != null && indexed.checksum == checksum;
+    }
+
+
+    @Override
+    public void index(String fileName, long checksum, Node rootNode) {
+        PackageStats stats = new PackageStats();
+        ((ASTCompilationUnit) rootNode).jjtAccept(new MultifileVisitor(stats), null);
+        seenFiles.add(fileName);
+        files.put(fileName, new IndexedFile(checksum, stats));
+        changed = true;
+    }
+
+
+    @Override
+    public void publish(RuleContext ctx) {
+        if (files.keySet().retainAll(seenFiles)) {
+            changed = true;
+        }
+
+        PackageStats merged = new PackageStats();
+        for (IndexedFile indexed : files.values()) {
+            merged.merge(indexed.stats);
+        }
+        ctx.setAttribute(INDEX_ATTRIBUTE, merged);
+
+        if (indexFile != null && changed) {
+            try {
+                write(indexFile);
+            } catch (IOException e) {
+                LOG.warning("Could not write multifile index " + indexFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    @Override
+    public void release(RuleContext ctx) {
+        ctx.removeAttribute(INDEX_ATTRIBUTE);
+        files.clear();
+        seenFiles.clear();
+    }
+
+
+    /**
+     * Returns true if an index of the whole project is published for the
+     * analysis of the given rule context.
+     *
+     * @param ctx The rule context of the analysis or of one of its files
+     * @return True if the project is indexed
+     */
+    /* default */ static boolean isPublished(RuleContext ctx) {
+        return ctx.getAttribute(INDEX_ATTRIBUTE) != null;
+    }
+
+
+    /**
+     * Gets the project mirror the rules use: the published index, or the
+     * mirror built file by file, if the project isn't indexed.
+     *
+     * @param ctx The rule context of the analysis or of one of its files
+     * @return The project mirror
+     */
+    /* default */ static ProjectMirror getProjectMirror(RuleContext ctx) {
+        Object index = ctx.getAttribute(INDEX_ATTRIBUTE);
+        return index == null ? PackageStats.INSTANCE : (ProjectMirror) index;
+    }
+
+
+    private void read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(in.readUTF())) {
+                throw new IOException("Multifile index is outdated");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = in.readUTF();
+                long checksum = in.readLong();
+                files.put(fileName, new IndexedFile(checksum, PackageStats.read(in)));
+            }
+        }
+    }
+
+
+    private void write(File file) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(data);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(PMDVersion.VERSION);
+        out.writeInt(files.size());
+        for (Map.Entry<String, IndexedFile> entry : files.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().checksum);
+            entry.getValue().stats.write(out);
+        }
+        out.flush();
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        // write to a temporary file first, so that an interrupted analysis doesn't leave a broken index
+        File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            Files.write(tempFile.toPath(), data.toByteArray());
+            try {
+                Files.move(tempFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        changed = false;
+    }
+
+
+    private static final class IndexedFile {
+        private final long checksum;
+        private final PackageStats stats;
+
+        IndexedFile(long checksum, PackageStats stats) {
+            this.checksum = checksum;
+            this.stats = stats;
+        }
+    }
+}
@@ -15,8 +15,10 @@ public final class MultifileVisitorFacade extends JavaParserVisitorAdapter {
 
     public void initializeWith(ASTCompilationUnit rootNode) {
         PackageStats projectMirror = PackageStats.INSTANCE;
-        MultifileVisitor visitor = new MultifileVisitor(projectMirror);
-        rootNode.jjtAccept(visitor, null);
+        synchronized (projectMirror) {
+            MultifileVisitor visitor = new MultifileVisitor(projectMirror);
+            rootNode.jjtAccept(visitor, null);
+        }
     }
 
 
@@ -4,9 +4,13 @@
 
 package net.sourceforge.pmd.lang.java.multifile;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import net.sourceforge.pmd.lang.java.ast.ImmutableList;
 import net.sourceforge.pmd.lang.java.ast.JavaQualifiedName;
@@ -32,9 +36,9 @@ final class PackageStats implements ProjectMirror {
 
 
     /**
-     * Default constructor.
+     * Default constructor. Except for {@link #INSTANCE}, the packages are built by the {@link JavaProjectIndexer}.
      */
-    private PackageStats() {
+    /* default */ PackageStats() {
     }
 
 
@@ -47,6 +51,78 @@ final class PackageStats implements ProjectMirror {
     }
 
 
+    /**
+     * Adds the subpackages and classes of another package to this one. The other package is not modified.
+     *
+     * @param other The package to merge into this one
+     */
+    /* default */ void merge(PackageStats other) {
+        for (Entry<String, PackageStats> e : other.subPackages.entrySet()) {
+            PackageStats subPackage = subPackages.get(e.getKey());
+            if (subPackage == null) {
+                subPackage = new PackageStats();
+                subPackages.put(e.getKey(), subPackage);
+            }
+            subPackage.merge(e.getValue());
+        }
+        for (Entry<String, ClassStats> e : other.classes.entrySet()) {
+            ClassStats clazz = classes.get(e.getKey());
+            if (clazz == null) {
+                clazz = new ClassStats();
+                classes.put(e.getKey(), clazz);
+            }
+            clazz.merge(e.getValue());
+        }
+    }
+
+
+    /**
+     * Writes this package with its subpackages and classes.
+     *
+     * @param out The output
+     *
+     * @throws IOException If the output fails
+     * @see #read(DataInput)
+     */
+    /* default */ void write(DataOutput out) throws IOException {
+        out.writeInt(subPackages.size());
+        for (Entry<String, PackageStats> e : subPackages.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+        out.writeInt(classes.size());
+        for (Entry<String, ClassStats> e : classes.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+    }
+
+
+    /**
+     * Reads a package, which was written by {@link #write(DataOutput)}.
+     *
+     * @param in The input
+     *
+     * @return The package
+     *
+     * @throws IOException If the input fails
+     */
+    /* default */ static PackageStats read(DataInput in) throws IOException {
+        PackageStats stats = new PackageStats();
+        int subPackageCount = in.readInt();
+        for (int i = 0; i < subPackageCount; i++) {
+            String name = in.readUTF();
+            stats.subPackages.put(name, read(in));
+        }
+        int classCount = in.readInt();
+        for (int i = 0; i < classCount; i++) {
+            String name = in.readUTF();
+            stats.classes.put(name, ClassStats.read(in));
+        }
+        return stats;
+    }
+
+
     /**
      * Gets the ClassStats corresponding to the named resource. The class can be nested. If the createIfNotFound
      * parameter is set, the method also creates the hierarchy if it doesn't exist.
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,7 +31,7 @@ import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
  */
 public final class JavaOperationSignature extends JavaSignature<ASTMethodOrConstructorDeclaration> {
 
-    private static final Map<Integer, JavaOperationSignature> POOL = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Integer, JavaOperationSignature> POOL = new ConcurrentHashMap<>();
     public final Role role;
     public final boolean isAbstract;
 
@@ -78,11 +79,30 @@ public final class JavaOperationSignature extends JavaSignature<ASTMethodOrConst
      * @return The signature of the parameter
      */
     public static JavaOperationSignature buildFor(ASTMethodOrConstructorDeclaration node) {
-        int code = code(Visibility.get(node), Role.get(node), node.isAbstract());
-        if (!POOL.containsKey(code)) {
-            POOL.put(code, new JavaOperationSignature(Visibility.get(node), Role.get(node), node.isAbstract()));
+        return of(Visibility.get(node), Role.get(node), node.isAbstract());
+    }
+
+
+    /**
+     * Gets the pooled operation signature with the given properties, for example to restore a persisted signature.
+     *
+     * @param visibility The visibility of the operation
+     * @param role       The role of the operation
+     * @param isAbstract Whether the operation is abstract
+     *
+     * @return The signature
+     */
+    public static JavaOperationSignature of(Visibility visibility, Role role, boolean isAbstract) {
+        int code = code(visibility, role, isAbstract);
+        JavaOperationSignature sig = POOL.get(code);
+        if (sig == null) {
+            JavaOperationSignature newSig = new JavaOperationSignature(visibility, role, isAbstract);
+            sig = POOL.putIfAbsent(code, newSig);
+            if (sig == null) {
+                sig = newSig;
+            }
         }
-        return POOL.get(code);
+        return sig;
     }
 
 
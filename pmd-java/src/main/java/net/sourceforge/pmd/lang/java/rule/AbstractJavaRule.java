@@ -16,6 +16,12 @@ import net.sourceforge.pmd.lang.rule.ImmutableLanguage;
 
 public abstract class AbstractJavaRule extends AbstractRule implements JavaParserVisitor, ImmutableLanguage {
 
+    /**
+     * Whether the rule is applied by the {@link JavaRuleChainVisitor}, which
+     * visits the children of the nodes itself.
+     */
+    private boolean fused;
+
     public AbstractJavaRule() {
         super.setLanguage(LanguageRegistry.getLanguage(JavaLanguageModule.NAME));
         // Enable Type Resolution on Java Rules by default
@@ -74,13 +80,24 @@ public abstract class AbstractJavaRule extends AbstractRule implements JavaParse
         return JavaRuleViolation.isSupressed(node, this);
     }
 
+    /**
+     * Lets the {@link JavaRuleChainVisitor} apply this rule in its single
+     * visitation of the AST. The rule then doesn't visit the children of the
+     * nodes itself.
+     */
+    /* default */ void setFused(boolean fused) {
+        this.fused = fused;
+    }
+
     //
     // The following APIs are identical to those in JavaParserVisitorAdapter.
     // Due to Java single inheritance, it preferred to extend from the more
     // complex Rule base class instead of from relatively simple Visitor.
     //
     public Object visit(JavaNode node, Object data) {
-        node.childrenAccept(this, data);
+        if (!fused) {
+            node.childrenAccept(this, data);
+        }
         return null;
     }
 
@@ -0,0 +1,368 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.lang.java.ast.JavaParserVisitor;
+
+/**
+ * Finds out, whether a rule can be applied by the {@link JavaRuleChainVisitor}
+ * in its single visitation of the AST, instead of visiting the AST on its own.
+ *
+ * <p>This is only possible, if the rule visits every node in pre-order, i.e.
+ * if every visit method of the rule and its super classes ends with
+ * <code>return super.visit(node, data);</code> or
+ * <code>super.visit(node, data); return data;</code>, and if the rule doesn't
+ * visit any nodes on its own. The byte code of the classes is analyzed for
+ * this, so that rules, which skip children, do something after visiting them
+ * or visit them with other data, are applied as before.
+ */
+final class FusableRuleAnalyzer {
+
+    private static final Set<Class<?>> NOT_FUSABLE = Collections.unmodifiableSet(new HashSet<Class<?>>());
+
+    private static final ConcurrentMap<Class<?>, Set<Class<?>>> VISITED_NODES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, Class<?>> VISIT_TYPES = new ConcurrentHashMap<>();
+
+    private FusableRuleAnalyzer() {
+        // utility class
+    }
+
+    /**
+     * Gets the node types, which the given rule visits, i.e. the parameter
+     * types of its visit methods.
+     *
+     * @param ruleClass the class of the rule
+     * @return the node types or <code>null</code>, if the rule can't be fused
+     */
+    static Set<Class<?>> getVisitedNodes(Class<? extends AbstractJavaRule> ruleClass) {
+        Set<Class<?>> visitedNodes = VISITED_NODES.get(ruleClass);
+        if (visitedNodes == null) {
+            visitedNodes = analyze(ruleClass);
+            VISITED_NODES.putIfAbsent(ruleClass, visitedNodes);
+        }
+        return visitedNodes == NOT_FUSABLE ? null : visitedNodes;
+    }
+
+    /**
+     * Gets the type of the visit method, which is called for nodes of the
+     * given class, i.e. the parameter type of the overload chosen by its
+     * <code>jjtAccept</code> method.
+     *
+     * @param nodeClass the class of the node
+     * @return the parameter type of the visit method
+     */
+    static Class<?> getVisitType(Class<?> nodeClass) {
+        Class<?> visitType = VISIT_TYPES.get(nodeClass);
+        if (visitType == null) {
+            visitType = findVisitType(nodeClass);
+            VISIT_TYPES.putIfAbsent(nodeClass, visitType);
+        }
+        return visitType;
+    }
+
+    private static Class<?> findVisitType(Class<?> nodeClass) {
+        Class<?> type;
+        try {
+            type = nodeClass.getMethod("jjtAccept", JavaParserVisitor.class, Object.class).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            return JavaNode.class;
+        }
+        for (; type != null; type = type.getSuperclass()) {
+            try {
+                JavaParserVisitor.class.getMethod("visit", type, Object.class);
+                return type;
+            } catch (NoSuchMethodException e) {
+                // try the super class
+            }
+        }
+        return JavaNode.class;
+    }
+
+    private static Set<Class<?>> analyze(Class<?> ruleClass) {
+        List<Class<?>> classes = new ArrayList<>();
+        Set<String> visitorTypes = new HashSet<>();
+        for (Class<?> c = ruleClass; c != AbstractJavaRule.class; c = c.getSuperclass()) {
+            classes.add(c);
+            visitorTypes.add(Type.getInternalName(c));
+        }
+        visitorTypes.add(Type.getInternalName(AbstractJavaRule.class));
+        visitorTypes.add(Type.getInternalName(JavaParserVisitor.class));
+
+        Set<Class<?>> visitedNodes = new HashSet<>();
+        for (Class<?> c : classes) {
+            if (!addVisitedNodes(c, visitedNodes) || !isFusable(c, visitorTypes)) {
+                return NOT_FUSABLE;
+            }
+        }
+        return Collections.unmodifiableSet(visitedNodes);
+    }
+
+    private static boolean addVisitedNodes(Class<?> c, Set<Class<?>> visitedNodes) {
+        for (Method method : c.getDeclaredMethods()) {
+            if (method.isSynthetic() || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if ("apply".equals(method.getName()) || "visitAll".equals(method.getName())) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if ("visit".equals(method.getName()) && parameterTypes.length == 2
+                    && JavaNode.class.isAssignableFrom(parameterTypes[0])) {
+                if (parameterTypes[0] == JavaNode.class) {
+                    return false;
+                }
+                visitedNodes.add(parameterTypes[0]);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFusable(Class<?> c, Set<String> visitorTypes) {
+        ClassLoader classLoader = c.getClassLoader();
+        if (classLoader == null) {
+            return false;
+        }
+        try (InputStream classFile = classLoader.getResourceAsStream(Type.getInternalName(c) + ".class")) {
+            if (classFile == null) {
+                return false;
+            }
+            FusionCheck check = new FusionCheck(visitorTypes);
+            new ClassReader(classFile).accept(check, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return check.fusable;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static class FusionCheck extends ClassVisitor {
+        private final Set<String> visitorTypes;
+        private boolean fusable = true;
+
+        FusionCheck(Set<String> visitorTypes) {
+            super(Opcodes.ASM6);
+            this.visitorTypes = visitorTypes;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            boolean visitMethod = "visit".equals(name)
+                    && (access & (Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0
+                    && Type.getArgumentTypes(desc).length == 2;
+            return new MethodCheck(visitMethod ? desc : null);
+        }
+
+        /**
+         * Checks, that the method doesn't visit nodes, and for visit methods,
+         * that every return is the tail call of the super method. The
+         * instructions of the tail call and the labels in between are tracked
+         * as states: <code>ALOAD 0, ALOAD 1, ALOAD 2, INVOKESPECIAL visit</code>
+         * followed by <code>ARETURN</code> or by <code>POP</code>, the load of
+         * the node, the data or null and <code>ARETURN</code>.
+         */
+        private class MethodCheck extends MethodVisitor {
+            private static final int NONE = 0;
+            private static final int THIS_LOADED = 1;
+            private static final int NODE_LOADED = 2;
+            private static final int DATA_LOADED = 3;
+            private static final int VISITED = 4;
+            private static final int RESULT_POPPED = 5;
+            private static final int RESULT_LOADED = 6;
+
+            private final String visitDesc;
+            private int state = NONE;
+            private final List<Label> sequenceLabels = new ArrayList<>();
+            private final List<Label> tailLabels = new ArrayList<>();
+            private final Set<Label> jumpTargets = new HashSet<>();
+
+            MethodCheck(String visitDesc) {
+                super(Opcodes.ASM6);
+                this.visitDesc = visitDesc;
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                if ("jjtAccept".equals(name) || "childrenAccept".equals(name)) {
+                    fusable = false;
+                } else if (("visit".equals(name) || "visitAll".equals(name)) && visitorTypes.contains(owner)) {
+                    if (state == DATA_LOADED && opcode == Opcodes.INVOKESPECIAL && desc.equals(visitDesc)) {
+                        state = VISITED;
+                    } else {
+                        fusable = false;
+                    }
+                    return;
+                }
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int var) {
+                if (visitDesc != null && opcode == Opcodes.ASTORE && (var == 1 || var == 2)) {
+                    // the node or the data is replaced
+                    fusable = false;
+                }
+                step(opcode, var);
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitLdcInsn(Object cst) {
+                step(Opcodes.LDC, -1);
+            }
+
+            @Override
+            public void visitIincInsn(int var, int increment) {
+                step(Opcodes.IINC, -1);
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String desc, int dims) {
+                step(Opcodes.MULTIANEWARRAY, -1);
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String desc, Handle bsm,
+                    Object... bsmArgs) {
+                step(Opcodes.INVOKEDYNAMIC, -1);
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                jumpTargets.add(label);
+                step(opcode, -1);
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                jumpTargets.add(dflt);
+                Collections.addAll(jumpTargets, labels);
+                step(Opcodes.TABLESWITCH, -1);
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                jumpTargets.add(dflt);
+                Collections.addAll(jumpTargets, labels);
+                step(Opcodes.LOOKUPSWITCH, -1);
+            }
+
+            @Override
+            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                jumpTargets.add(handler);
+            }
+
+            @Override
+            public void visitLabel(Label label) {
+                if (state != NONE) {
+                    sequenceLabels.add(label);
+                }
+            }
+
+            @Override
+            public void visitEnd() {
+                // no other code may jump into a tail call
+                for (Label label : tailLabels) {
+                    if (jumpTargets.contains(label)) {
+                        fusable = false;
+                    }
+                }
+                if (state != NONE) {
+                    fusable = false;
+                }
+            }
+
+            private void step(int opcode, int var) {
+                if (visitDesc == null) {
+                    return;
+                }
+                switch (state) {
+                case VISITED:
+                    if (opcode == Opcodes.ARETURN) {
+                        completeTailCall();
+                    } else if (opcode == Opcodes.POP) {
+                        state = RESULT_POPPED;
+                    } else {
+                        fusable = false;
+                    }
+                    break;
+                case RESULT_POPPED:
+                    if (opcode == Opcodes.ACONST_NULL || opcode == Opcodes.ALOAD && (var == 1 || var == 2)) {
+                        state = RESULT_LOADED;
+                    } else {
+                        fusable = false;
+                    }
+                    break;
+                case RESULT_LOADED:
+                    if (opcode == Opcodes.ARETURN) {
+                        completeTailCall();
+                    } else {
+                        fusable = false;
+                    }
+                    break;
+                default:
+                    if (opcode == Opcodes.ARETURN) {
+                        // returns without visiting the children
+                        fusable = false;
+                    } else if (opcode == Opcodes.ALOAD && var == 0) {
+                        sequenceLabels.clear();
+                        state = THIS_LOADED;
+                    } else if (opcode == Opcodes.ALOAD && var == state && state != NONE && state != DATA_LOADED) {
+                        state++;
+                    } else {
+                        sequenceLabels.clear();
+                        state = NONE;
+                    }
+                    break;
+                }
+            }
+
+            private void completeTailCall() {
+                tailLabels.addAll(sequenceLabels);
+                sequenceLabels.clear();
+                state = NONE;
+            }
+        }
+    }
+}
@@ -4,33 +4,105 @@
 
 package net.sourceforge.pmd.lang.java.rule;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.benchmark.Benchmark;
+import net.sourceforge.pmd.benchmark.Benchmarker;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitor;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorAdapter;
 import net.sourceforge.pmd.lang.rule.AbstractRuleChainVisitor;
+import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.lang.rule.XPathRule;
 
 public class JavaRuleChainVisitor extends AbstractRuleChainVisitor {
 
+    private static final Logger LOG = Logger.getLogger(JavaRuleChainVisitor.class.getName());
+
+    /**
+     * The rules not using the RuleChain, which are applied while indexing
+     * the nodes. While benchmarking, their time is measured for each rule,
+     * and excluded from the RuleChain visit.
+     */
+    private final List<FusedRule> fusedRules = new ArrayList<>();
+    private long fusedRulesTime;
+
+    /**
+     * Fuses rules, which visit all nodes in pre-order and don't visit nodes
+     * on their own, see {@link FusableRuleAnalyzer}.
+     */
+    @Override
+    public boolean fuse(RuleSet ruleSet, Rule rule) {
+        // Visit with underlying Rule, not the RuleReference
+        Rule actualRule = rule;
+        while (actualRule instanceof RuleReference) {
+            actualRule = ((RuleReference) actualRule).getRule();
+        }
+        if (!(actualRule instanceof AbstractJavaRule)) {
+            return false;
+        }
+
+        AbstractJavaRule javaRule = (AbstractJavaRule) actualRule;
+        Set<Class<?>> visitedNodes = FusableRuleAnalyzer.getVisitedNodes(javaRule.getClass());
+        if (visitedNodes == null) {
+            return false;
+        }
+        javaRule.setFused(true);
+        fusedRules.add(new FusedRule(ruleSet, rule, javaRule, visitedNodes));
+        return true;
+    }
+
     protected void indexNodes(List<Node> nodes, RuleContext ctx) {
-        JavaParserVisitor javaParserVistor = new JavaParserVisitorAdapter() {
-            // Perform a visitation of the AST to index nodes which need
-            // visiting by type
-            public Object visit(JavaNode node, Object data) {
-                indexNode(node);
-                return super.visit(node, data);
+        fusedRulesTime = 0;
+        List<FusedRule> activeRules = new ArrayList<>();
+        for (FusedRule fusedRule : fusedRules) {
+            if (fusedRule.ruleSet.applies(ctx.getSourceCodeFile())
+                    && RuleSet.applies(fusedRule.rule, ctx.getLanguageVersion())) {
+                activeRules.add(fusedRule);
             }
-        };
+        }
+
+        JavaParserVisitor javaParserVistor;
+        if (activeRules.isEmpty()) {
+            javaParserVistor = new JavaParserVisitorAdapter() {
+                // Perform a visitation of the AST to index nodes which need
+                // visiting by type
+                public Object visit(JavaNode node, Object data) {
+                    indexNode(node);
+                    return super.visit(node, data);
+                }
+            };
+        } else {
+            javaParserVistor = new FusingVisitor(activeRules, Benchmarker.isEnabled());
+        }
 
         for (final Node node : nodes) {
             javaParserVistor.visit((ASTCompilationUnit) node, ctx);
         }
+
+        if (javaParserVistor instanceof FusingVisitor && ((FusingVisitor) javaParserVistor).benchmark) {
+            for (FusedRule fusedRule : activeRules) {
+                Benchmarker.mark(Benchmark.Rule, fusedRule.rule.getName(), fusedRule.time, 1);
+                fusedRulesTime += fusedRule.time;
+            }
+        }
+    }
+
+    @Override
+    protected long getFusedRulesTime() {
+        return fusedRulesTime;
     }
 
     protected void visit(Rule rule, Node node, RuleContext ctx) {
@@ -41,4 +113,87 @@ public class JavaRuleChainVisitor extends AbstractRuleChainVisitor {
             ((JavaNode) node).jjtAccept((JavaParserVisitor) rule, ctx);
         }
     }
+
+    /**
+     * Indexes the nodes and lets the fused rules visit each node, before its
+     * children are visited.
+     */
+    private class FusingVisitor extends JavaParserVisitorAdapter {
+        private final List<FusedRule> activeRules;
+        private final Map<Class<?>, FusedRule[]> rulesByVisitType = new HashMap<>();
+        private final Set<FusedRule> failedRules = new HashSet<>();
+        private final boolean benchmark;
+
+        FusingVisitor(List<FusedRule> activeRules, boolean benchmark) {
+            this.activeRules = activeRules;
+            this.benchmark = benchmark;
+            for (FusedRule fusedRule : activeRules) {
+                fusedRule.time = 0;
+            }
+        }
+
+        @Override
+        public Object visit(JavaNode node, Object data) {
+            indexNode(node);
+            for (FusedRule fusedRule : getRules(node.getClass())) {
+                if (failedRules.isEmpty() || !failedRules.contains(fusedRule)) {
+                    if (benchmark) {
+                        long start = System.nanoTime();
+                        apply(fusedRule, node, (RuleContext) data);
+                        fusedRule.time += System.nanoTime() - start;
+                    } else {
+                        apply(fusedRule, node, (RuleContext) data);
+                    }
+                }
+            }
+            return super.visit(node, data);
+        }
+
+        private FusedRule[] getRules(Class<?> nodeClass) {
+            FusedRule[] rules = rulesByVisitType.get(nodeClass);
+            if (rules == null) {
+                Class<?> visitType = FusableRuleAnalyzer.getVisitType(nodeClass);
+                List<FusedRule> interestedRules = new ArrayList<>();
+                for (FusedRule fusedRule : activeRules) {
+                    if (fusedRule.visitedNodes.contains(visitType)) {
+                        interestedRules.add(fusedRule);
+                    }
+                }
+                rules = interestedRules.toArray(new FusedRule[0]);
+                rulesByVisitType.put(nodeClass, rules);
+            }
+            return rules;
+        }
+
+        private void apply(FusedRule fusedRule, JavaNode node, RuleContext ctx) {
+            try {
+                node.jjtAccept(fusedRule.actualRule, ctx);
+            } catch (RuntimeException e) {
+                if (!ctx.isIgnoreExceptions()) {
+                    throw e;
+                }
+                failedRules.add(fusedRule);
+                if (LOG.isLoggable(Level.WARNING)) {
+                    LOG.log(Level.WARNING, "Exception applying rule " + fusedRule.rule.getName() + " on file "
+                            + ctx.getSourceCodeFilename() + ", continuing with next rule", e);
+                }
+            }
+        }
+    }
+
+    private static class FusedRule {
+        private final RuleSet ruleSet;
+        private final Rule rule;
+        private final AbstractJavaRule actualRule;
+        private final Set<Class<?>> visitedNodes;
+        /** The time, which the rule took for the current file, only measured while benchmarking. */
+        private long time;
+
+        FusedRule(RuleSet ruleSet, Rule rule, AbstractJavaRule actualRule, Set<Class<?>> visitedNodes) {
+            this.ruleSet = ruleSet;
+            this.rule = rule;
+            this.actualRule = actualRule;
+            this.visitedNodes = visitedNodes;
+        }
+    }
 }
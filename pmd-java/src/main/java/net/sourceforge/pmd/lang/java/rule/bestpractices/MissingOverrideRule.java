@@ -26,6 +26,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTFormalParameter;
 import net.sourceforge.pmd.lang.java.ast.ASTFormalParameters;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.java.typeresolution.PMDASMClassLoader;
 
 
 /**
@@ -119,7 +120,12 @@ public class MissingOverrideRule extends AbstractJavaRule {
 
             Map<Integer, List<Method>> pCountToOverloads = result.get(m.getName());
 
-            int paramCount = m.getParameterTypes().length;
+            Class<?>[] paramTypes = m.getParameterTypes();
+            for (Class<?> paramType : paramTypes) {
+                // the overridden methods are found by comparing these types
+                PMDASMClassLoader.typeResolved(paramType);
+            }
+            int paramCount = paramTypes.length;
             if (!pCountToOverloads.containsKey(paramCount)) {
                 pCountToOverloads.put(paramCount, new ArrayList<Method>());
             }
@@ -12,6 +12,9 @@ import java.util.Set;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.java.typeresolution.ClassSymbol;
+import net.sourceforge.pmd.lang.java.typeresolution.ClassTypeResolver;
+import net.sourceforge.pmd.lang.java.typeresolution.MemberSymbol;
 import net.sourceforge.pmd.lang.rule.ImportWrapper;
 
 public class DuplicateImportsRule extends AbstractJavaRule {
@@ -64,16 +67,10 @@ public class DuplicateImportsRule extends AbstractJavaRule {
                         // Class exists in another imported package
                         return true;
                     }
-                } else {
-                    Class<?> importClass = node.getClassTypeResolver().loadClass(thisImportOnDemand.getName());
-                    if (importClass != null) {
-                        for (Method m : importClass.getMethods()) {
-                            if (Modifier.isStatic(m.getModifiers()) && m.getName().equals(singleTypeName)) {
-                                // static method in another imported class
-                                return true;
-                            }
-                        }
-                    }
+                } else if (hasStaticMethod(node.getClassTypeResolver(), thisImportOnDemand.getName(),
+                        singleTypeName)) {
+                    // static method in another imported class
+                    return true;
                 }
             }
         }
@@ -83,6 +80,39 @@ public class DuplicateImportsRule extends AbstractJavaRule {
         return node.getClassTypeResolver().classNameExists(fullyQualifiedClassName);
     }
 
+    /**
+     * Checks the class files of the given class and its super classes for a
+     * public static method, without loading the classes. If a class file
+     * can't be read, the class is loaded instead.
+     */
+    private boolean hasStaticMethod(ClassTypeResolver resolver, String className, String methodName) {
+        String name = className;
+        while (name != null) {
+            ClassSymbol symbol = resolver.getClassSymbol(name);
+            if (symbol == null) {
+                return hasStaticMethod(resolver.loadClass(className), methodName);
+            }
+            for (MemberSymbol method : symbol.getMethods()) {
+                if (method.isPublic() && method.isStatic() && method.getName().equals(methodName)) {
+                    return true;
+                }
+            }
+            name = symbol.getSuperName();
+        }
+        return false;
+    }
+
+    private boolean hasStaticMethod(Class<?> importClass, String methodName) {
+        if (importClass != null) {
+            for (Method m : importClass.getMethods()) {
+                if (Modifier.isStatic(m.getModifiers()) && m.getName().equals(methodName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public Object visit(ASTImportDeclaration node, Object data) {
         ImportWrapper wrapper = new ImportWrapper(node.getImportedName(), node.getImportedName(),
                 node.getImportedNameNode(), node.isStatic() && node.isImportOnDemand());
@@ -6,32 +6,31 @@ package net.sourceforge.pmd.lang.java.rule.errorprone;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
-import net.sourceforge.pmd.lang.dfa.DataFlowNode;
-import net.sourceforge.pmd.lang.dfa.VariableAccess;
-import net.sourceforge.pmd.lang.dfa.pathfinder.CurrentPath;
-import net.sourceforge.pmd.lang.dfa.pathfinder.DAAPathFinder;
-import net.sourceforge.pmd.lang.dfa.pathfinder.Executable;
+import net.sourceforge.pmd.lang.dfa.analysis.DataFlowAnomaly;
+import net.sourceforge.pmd.lang.dfa.analysis.ReachingAccesses;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclarator;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 import net.sourceforge.pmd.properties.IntegerProperty;
 
 /**
- * Starts path search for each method and runs code if found.
+ * Computes the reaching accesses of the variables of each method and reports
+ * the anomalies.
  *
  * @author raik
  * @author Sven Jacob
  */
-public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Executable {
+public class DataflowAnomalyAnalysisRule extends AbstractJavaRule {
+    /** Ignored, all paths are checked by the data flow analysis. */
     private static final IntegerProperty MAX_PATH_DESCRIPTOR
             = IntegerProperty.named("maxPaths")
-                             .desc("Maximum number of checked paths per method. A lower value will increase the performance of the rule but may decrease anomalies found.")
+                             .desc("Deprecated and ignored: all paths are checked. Formerly the maximum number of checked paths per method.")
                              .range(100, 8000)
                              .defaultValue(1000)
                              .uiOrder(1.0f).build();
@@ -41,26 +40,10 @@ public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Exe
                              .range(1, 2000)
                              .defaultValue(100)
                              .uiOrder(2.0f).build();
-    private RuleContext rc;
     private List<DaaRuleViolation> daaRuleViolations;
     private int maxRuleViolations;
     private int currentRuleViolationCount;
 
-
-    private static class Usage {
-        public int accessType;
-        public DataFlowNode node;
-
-        Usage(int accessType, DataFlowNode node) {
-            this.accessType = accessType;
-            this.node = node;
-        }
-
-        public String toString() {
-            return "accessType = " + accessType + ", line = " + node.getLine();
-        }
-    }
-
     public DataflowAnomalyAnalysisRule() {
         definePropertyDescriptor(MAX_PATH_DESCRIPTOR);
         definePropertyDescriptor(MAX_VIOLATIONS_DESCRIPTOR);
@@ -73,61 +56,39 @@ public class DataflowAnomalyAnalysisRule extends AbstractJavaRule implements Exe
     }
 
     public Object visit(ASTMethodDeclaration methodDeclaration, Object data) {
-        rc = (RuleContext) data;
         daaRuleViolations = new ArrayList<>();
 
-        final DataFlowNode node = methodDeclaration.getDataFlowNode().getFlow().get(0);
-
-        final DAAPathFinder pathFinder = new DAAPathFinder(node, this, getProperty(MAX_PATH_DESCRIPTOR));
-        pathFinder.run();
+        final ReachingAccesses analysis = new ReachingAccesses(methodDeclaration.getDataFlowNode().getFlow());
+        analysis.run();
+        for (DataFlowAnomaly anomaly : analysis.getAnomalies()) {
+            if (maxNumberOfViolationsReached()) {
+                break;
+            }
+            if (isRedeclaration(anomaly)) {
+                continue;
+            }
+            // the DU anomaly is reported at the definition, the others at the second access
+            Node node = anomaly.getType() == DataFlowAnomaly.Type.DU ? anomaly.getFirstNode().getNode()
+                    : anomaly.getLastNode().getNode();
+            addDaaViolation(data, node, anomaly.getType().name(), anomaly.getVariableName(),
+                    anomaly.getFirstNode().getLine(), anomaly.getLastNode().getLine());
+        }
 
         super.visit(methodDeclaration, data);
         return data;
     }
 
-    public void execute(CurrentPath path) {
-
-        if (maxNumberOfViolationsReached()) {
-            return;
-        }
-
-        Map<String, Usage> usagesByVarName = new HashMap<>();
-
-        for (DataFlowNode inode : path) {
-            if (inode.getVariableAccess() != null) {
-                // iterate all variables of this node
-                for (VariableAccess va : inode.getVariableAccess()) {
-
-                    // get the last usage of the current variable
-                    Usage lastUsage = usagesByVarName.get(va.getVariableName());
-                    if (lastUsage != null) {
-                        // there was a usage to this variable before
-                        checkVariableAccess(inode, va, lastUsage);
-                    }
-
-                    Usage newUsage = new Usage(va.getAccessType(), inode);
-                    // put the new usage for the variable
-                    usagesByVarName.put(va.getVariableName(), newUsage);
-                }
-            }
-        }
-    }
-
-    private void checkVariableAccess(DataFlowNode inode, VariableAccess va, final Usage u) {
-        // get the start and end line
-        int startLine = u.node.getLine();
-        int endLine = inode.getLine();
-
-        Node lastNode = inode.getNode();
-        Node firstNode = u.node.getNode();
-
-        if (va.accessTypeMatches(u.accessType) && va.isDefinition()) { // DD
-            addDaaViolation(rc, lastNode, "DD", va.getVariableName(), startLine, endLine);
-        } else if (u.accessType == VariableAccess.UNDEFINITION && va.isReference()) { // UR
-            addDaaViolation(rc, lastNode, "UR", va.getVariableName(), startLine, endLine);
-        } else if (u.accessType == VariableAccess.DEFINITION && va.isUndefinition()) { // DU
-            addDaaViolation(rc, firstNode, "DU", va.getVariableName(), startLine, endLine);
+    /**
+     * A definition, which reaches the declaration of the variable, comes from
+     * a former iteration of a loop, in which the variable was another one.
+     */
+    private static boolean isRedeclaration(DataFlowAnomaly anomaly) {
+        Node node = anomaly.getLastNode().getNode();
+        if (anomaly.getType() != DataFlowAnomaly.Type.DD || !(node instanceof ASTVariableDeclarator)) {
+            return false;
         }
+        ASTVariableDeclaratorId id = node.getFirstChildOfType(ASTVariableDeclaratorId.class);
+        return id != null && anomaly.getVariableName().equals(id.getImage());
     }
 
     /**
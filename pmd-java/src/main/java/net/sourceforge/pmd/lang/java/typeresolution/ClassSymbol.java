@@ -0,0 +1,134 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The symbol of a class, as read from its class file, without loading the
+ * class. Only the header of the class file is kept, the fields and methods
+ * are read on first access.
+ *
+ * @see ClassSymbolTable
+ */
+public final class ClassSymbol {
+
+    private final ClassSymbolTable table;
+    private final String binaryName;
+    private final int access;
+    private final String superName;
+    private final String[] interfaces;
+    private final int typeParameterCount;
+    private final String[] innerClasses;
+
+    private volatile List<MemberSymbol> fields;
+    private volatile List<MemberSymbol> methods;
+
+    ClassSymbol(ClassSymbolTable table, String binaryName, int access, String superName, String[] interfaces,
+            int typeParameterCount, String[] innerClasses) {
+        this.table = table;
+        this.binaryName = binaryName;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.typeParameterCount = typeParameterCount;
+        this.innerClasses = innerClasses;
+    }
+
+    /**
+     * Creates a symbol, whose fields and methods are already known, e.g. from
+     * a {@link ClasspathSymbolIndex}.
+     */
+    ClassSymbol(String binaryName, int access, String superName, String[] interfaces, int typeParameterCount,
+            String[] innerClasses, List<MemberSymbol> fields, List<MemberSymbol> methods) {
+        this(null, binaryName, access, superName, interfaces, typeParameterCount, innerClasses);
+        this.fields = Collections.unmodifiableList(fields);
+        this.methods = Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Gets the binary name, e.g. <code>java.util.Map$Entry</code>.
+     */
+    public String getBinaryName() {
+        return binaryName;
+    }
+
+    /**
+     * Gets the binary name of the super class.
+     *
+     * @return the name or <code>null</code> for interfaces and
+     *         <code>java.lang.Object</code>
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * Gets the binary names of the directly implemented interfaces.
+     */
+    public List<String> getInterfaces() {
+        return Collections.unmodifiableList(Arrays.asList(interfaces));
+    }
+
+    /**
+     * Gets the binary names of the member classes declared by this class.
+     */
+    public List<String> getInnerClasses() {
+        return Collections.unmodifiableList(Arrays.asList(innerClasses));
+    }
+
+    public int getTypeParameterCount() {
+        return typeParameterCount;
+    }
+
+    public boolean isInterface() {
+        return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    public boolean isPublic() {
+        return (access & Opcodes.ACC_PUBLIC) != 0;
+    }
+
+    /* default */ int getAccess() {
+        return access;
+    }
+
+    /**
+     * Gets the fields declared by this class.
+     */
+    public List<MemberSymbol> getFields() {
+        loadMembers();
+        return fields;
+    }
+
+    /**
+     * Gets the methods and constructors declared by this class.
+     */
+    public List<MemberSymbol> getMethods() {
+        loadMembers();
+        return methods;
+    }
+
+    private void loadMembers() {
+        if (methods == null) {
+            synchronized (this) {
+                if (methods == null) {
+                    List<List<MemberSymbol>> members = table.readMembers(binaryName);
+                    fields = Collections.unmodifiableList(members.get(0));
+                    methods = Collections.unmodifiableList(members.get(1));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return binaryName;
+    }
+}
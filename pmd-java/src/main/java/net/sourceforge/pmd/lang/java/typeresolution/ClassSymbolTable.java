@@ -0,0 +1,344 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import net.sourceforge.pmd.cache.TypeDependencies;
+
+/**
+ * A table of the {@link ClassSymbol}s of the classes, which a class loader can
+ * find, e.g. of the auxclasspath. The class files are read with ASM, the
+ * classes are never loaded, so that asking about a class doesn't fill the
+ * metaspace or fail with {@link NoClassDefFoundError}, because a class it
+ * depends on is missing.
+ *
+ * <p>The symbols are keyed by binary name and shared by all threads and files
+ * analyzed with the same class loader.
+ *
+ * <p>The table only replaces the lookups, which probe for a type without
+ * assigning it to a node: {@link TypeHelper#isA(net.sourceforge.pmd.lang.java.ast.TypeNode, String)},
+ * {@link ClassTypeResolver#classNameExists(String)} and the static imports of
+ * the rule {@code DuplicateImports}. It isn't a backend of the type
+ * resolution: the types of the nodes are still
+ * {@link net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefinition JavaTypeDefinitions}
+ * of loaded classes, as rules get the {@link Class} of a type. So the classes
+ * of the auxclasspath, which the analyzed code uses, are still loaded.
+ */
+public final class ClassSymbolTable {
+
+    private static final Map<ClassLoader, ClassSymbolTable> INSTANCES = new WeakHashMap<>();
+
+    /** Marks the classes, which don't exist. */
+    static final ClassSymbol MISSING = new ClassSymbol(null, "", 0, null, new String[0], 0, new String[0]);
+    /** Marks the classes, whose class files can't be read, e.g. as they are too new for ASM. */
+    static final ClassSymbol UNREADABLE = new ClassSymbol(null, "", 0, null, new String[0], 0, new String[0]);
+
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+            | ClassReader.SKIP_FRAMES;
+
+    private final WeakReference<ClassLoader> classLoader;
+    private final ConcurrentMap<String, ClassSymbol> symbols = new ConcurrentHashMap<>();
+
+    private volatile ClasspathSymbolIndex index;
+    private volatile boolean indexLoaded;
+
+    private ClassSymbolTable(ClassLoader classLoader) {
+        this.classLoader = new WeakReference<>(classLoader);
+    }
+
+    /**
+     * Gets the symbol table of the classes of the given class loader.
+     *
+     * @param classLoader the class loader, <code>null</code> for the system
+     *            class loader
+     * @return the shared symbol table
+     */
+    public static synchronized ClassSymbolTable getInstance(ClassLoader classLoader) {
+        ClassLoader loader = classLoader == null ? ClassLoader.getSystemClassLoader() : classLoader;
+        ClassSymbolTable table = INSTANCES.get(loader);
+        if (table == null) {
+            table = new ClassSymbolTable(loader);
+            INSTANCES.put(loader, table);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the symbol of the given class.
+     *
+     * @param binaryName the binary name, e.g. <code>java.util.Map$Entry</code>
+     * @return the symbol or <code>null</code>, if there is no such class file
+     *         or it can't be read
+     */
+    public ClassSymbol getSymbol(String binaryName) {
+        ClassSymbol symbol = lookup(binaryName);
+        return symbol == MISSING || symbol == UNREADABLE ? null : symbol;
+    }
+
+    /**
+     * Checks, whether there is a class file for the given class. This is also
+     * the case, if the class file can't be read.
+     *
+     * @param binaryName the binary name, e.g. <code>java.util.Map$Entry</code>
+     * @return whether the class exists
+     */
+    public boolean exists(String binaryName) {
+        return lookup(binaryName) != MISSING;
+    }
+
+    private ClassSymbol lookup(String binaryName) {
+        TypeDependencies.typeResolved(binaryName);
+        ClassSymbol symbol = symbols.get(binaryName);
+        if (symbol == null) {
+            symbol = readSymbol(binaryName);
+            ClassSymbol previous = symbols.putIfAbsent(binaryName, symbol);
+            if (previous != null) {
+                symbol = previous;
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Checks, whether the given class is the given super type or extends or
+     * implements it, directly or indirectly.
+     *
+     * @param binaryName the name of the class
+     * @param superName the name of the super type
+     * @return whether the class is a subtype, or <code>null</code>, if it
+     *         can't be decided, as one of the types isn't found or can't be
+     *         read
+     */
+    public Boolean isSubtype(String binaryName, String superName) {
+        if (binaryName.equals(superName)) {
+            return Boolean.TRUE;
+        }
+        if (!exists(superName)) {
+            return null;
+        }
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(binaryName);
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            if (name.equals(superName)) {
+                return Boolean.TRUE;
+            }
+            if (!"java.lang.Object".equals(name) && visited.add(name)) {
+                ClassSymbol symbol = getSymbol(name);
+                if (symbol == null) {
+                    return null;
+                }
+                if (symbol.getSuperName() != null) {
+                    pending.add(symbol.getSuperName());
+                }
+                pending.addAll(symbol.getInterfaces());
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * Checks, whether the classes of the auxclasspath are looked up in a
+     * {@link ClasspathSymbolIndex}, so that {@link #exists(String)} doesn't
+     * need to open the jars.
+     *
+     * @return whether there is a symbol index
+     */
+    public boolean isIndexed() {
+        ClassLoader loader = classLoader.get();
+        return loader != null && getIndex(loader) != null;
+    }
+
+    /**
+     * Gets the symbol index of the auxclasspath, if there is one.
+     */
+    private ClasspathSymbolIndex getIndex(ClassLoader loader) {
+        if (!indexLoaded) {
+            synchronized (this) {
+                if (!indexLoaded) {
+                    index = ClasspathSymbolIndex.forClassLoader(loader);
+                    indexLoaded = true;
+                }
+            }
+        }
+        return index;
+    }
+
+    private ClassSymbol readSymbol(String binaryName) {
+        ClassLoader loader = classLoader.get();
+        if (loader == null) {
+            return MISSING;
+        }
+        ClasspathSymbolIndex classpathIndex = getIndex(loader);
+        if (classpathIndex != null) {
+            ClassSymbol symbol = classpathIndex.getSymbol(binaryName);
+            if (symbol != null) {
+                return symbol;
+            }
+            // not on the auxclasspath
+            loader = classpathIndex.getParent();
+        }
+        try (InputStream classFile = loader.getResourceAsStream(binaryName.replace('.', '/') + ".class")) {
+            if (classFile == null) {
+                return MISSING;
+            }
+            return readClassFile(this, binaryName, classFile, false);
+        } catch (IOException e) {
+            return UNREADABLE;
+        }
+    }
+
+    /**
+     * Reads the symbol of a class from its class file.
+     *
+     * @param table the table of the symbol, if the members are read later
+     * @param binaryName the name of the class
+     * @param classFile the class file
+     * @param withMembers whether to read the fields and methods right away
+     * @return the symbol, {@link #MISSING} if the class file is of another
+     *         class, or {@link #UNREADABLE}
+     */
+    /* default */ static ClassSymbol readClassFile(ClassSymbolTable table, String binaryName, InputStream classFile,
+            boolean withMembers) throws IOException {
+        MemberVisitor members = withMembers ? new MemberVisitor() : null;
+        HeaderVisitor header = new HeaderVisitor(members);
+        try {
+            new ClassReader(classFile).accept(header, PARSING_OPTIONS);
+        } catch (RuntimeException e) {
+            // e.g. a class file version, which ASM doesn't support yet
+            return UNREADABLE;
+        }
+        if (!binaryName.replace('.', '/').equals(header.name)) {
+            // e.g. a differently cased file on a case insensitive file system
+            return MISSING;
+        }
+        String[] innerClasses = header.innerClasses.toArray(new String[0]);
+        if (members == null) {
+            return new ClassSymbol(table, binaryName, header.access, header.superName, header.interfaces,
+                    header.typeParameterCount, innerClasses);
+        }
+        return new ClassSymbol(binaryName, header.access, header.superName, header.interfaces,
+                header.typeParameterCount, innerClasses, members.fields, members.methods);
+    }
+
+    /**
+     * Reads the fields and methods of the given class.
+     *
+     * @return the fields and the methods
+     */
+    List<List<MemberSymbol>> readMembers(String binaryName) {
+        MemberVisitor members = new MemberVisitor();
+        ClassLoader loader = classLoader.get();
+        if (loader != null && getIndex(loader) != null) {
+            // the symbols of the auxclasspath are read with their members
+            loader = getIndex(loader).getParent();
+        }
+        if (loader != null) {
+            try (InputStream classFile = loader.getResourceAsStream(binaryName.replace('.', '/') + ".class")) {
+                if (classFile != null) {
+                    new ClassReader(classFile).accept(members, PARSING_OPTIONS);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the class file changed or can't be read anymore, the class has no members then
+                members.fields.clear();
+                members.methods.clear();
+            }
+        }
+        return Arrays.asList(members.fields, members.methods);
+    }
+
+    private static String toBinaryName(String internalName) {
+        return internalName == null ? null : internalName.replace('/', '.');
+    }
+
+    private static class HeaderVisitor extends ClassVisitor {
+        private String name;
+        private int access;
+        private String superName;
+        private String[] interfaces;
+        private int typeParameterCount;
+        private final List<String> innerClasses = new ArrayList<>();
+
+        HeaderVisitor(ClassVisitor members) {
+            super(Opcodes.ASM6, members);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+            this.name = name;
+            this.access = access;
+            this.superName = toBinaryName(superName);
+            this.interfaces = new String[interfaces == null ? 0 : interfaces.length];
+            for (int i = 0; i < this.interfaces.length; i++) {
+                this.interfaces[i] = toBinaryName(interfaces[i]);
+            }
+            if (signature != null) {
+                new SignatureReader(signature).accept(new SignatureVisitor(Opcodes.ASM6) {
+                    @Override
+                    public void visitFormalTypeParameter(String parameterName) {
+                        typeParameterCount++;
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            if (outerName != null && outerName.equals(this.name)) {
+                innerClasses.add(toBinaryName(name));
+            }
+        }
+    }
+
+    private static class MemberVisitor extends ClassVisitor {
+        private final List<MemberSymbol> fields = new ArrayList<>();
+        private final List<MemberSymbol> methods = new ArrayList<>();
+
+        MemberVisitor() {
+            super(Opcodes.ASM6);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
+                fields.add(new MemberSymbol(name, desc, access));
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
+                methods.add(new MemberSymbol(name, desc, access));
+            }
+            return null;
+        }
+    }
+}
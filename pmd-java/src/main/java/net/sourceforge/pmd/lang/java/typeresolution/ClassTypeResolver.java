@@ -1360,6 +1360,10 @@ public class ClassTypeResolver extends JavaParserVisitorAdapter {
      * Check whether the supplied class name exists.
      */
     public boolean classNameExists(String fullyQualifiedClassName) {
+        if (pmdClassLoader.getSymbolTable().exists(fullyQualifiedClassName)) {
+            // found without loading the class
+            return true;
+        }
         try {
             pmdClassLoader.loadClass(fullyQualifiedClassName);
             return true; // Class found
@@ -1368,6 +1372,16 @@ public class ClassTypeResolver extends JavaParserVisitorAdapter {
         }
     }
 
+    /**
+     * Gets the symbol of the given class from the class file, without
+     * loading the class.
+     *
+     * @return the symbol or <code>null</code>, if the class wasn't found
+     */
+    public ClassSymbol getClassSymbol(String fullyQualifiedClassName) {
+        return pmdClassLoader.getSymbolTable().getSymbol(fullyQualifiedClassName);
+    }
+
     public Class<?> loadClass(String fullyQualifiedClassName) {
         try {
             return pmdClassLoader.loadClass(fullyQualifiedClassName);
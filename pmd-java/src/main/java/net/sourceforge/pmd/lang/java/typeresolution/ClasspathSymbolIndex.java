@@ -0,0 +1,488 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.util.ClasspathClassLoader;
+
+/**
+ * The symbols of the classes on the auxclasspath. The symbols of each jar are
+ * stored in an index file, so that later analyses find the classes without
+ * opening the jars. The index files are keyed by a checksum of the central
+ * directory of the jar, which contains the names and CRCs of all entries, so
+ * the index directory can be shared by several projects using the same jars.
+ *
+ * <p>The entries of the classpath are searched in order, like
+ * {@link ClasspathClassLoader} does. The jars listed in the
+ * <code>Class-Path</code> attribute of the manifest of a jar are searched
+ * right after the jar. Directories are not indexed, as their class files
+ * change often, the class files are read directly instead.
+ *
+ * <p>An index file consists of
+ * <ul>
+ * <li>a header with a magic number, the format version, the PMD version and
+ * the checksum of the jar,</li>
+ * <li>the <code>Class-Path</code> of the manifest of the jar,</li>
+ * <li>the names of the classes and the offsets of their records,</li>
+ * <li>the records with the header and the members of each class.</li>
+ * </ul>
+ */
+/* default */ final class ClasspathSymbolIndex {
+
+    private static final Logger LOG = Logger.getLogger(ClasspathSymbolIndex.class.getName());
+
+    /** "PMDS" */
+    private static final int MAGIC = 0x504d4453;
+    private static final int FORMAT_VERSION = 2;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private final List<Entry> entries;
+    private final ClassLoader parent;
+
+    private ClasspathSymbolIndex(List<Entry> entries, ClassLoader parent) {
+        this.entries = entries;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates the index of the classpath of the given class loader. The index
+     * files of the jars are read, or created if they don't exist yet.
+     *
+     * @param classLoader the class loader of the auxclasspath
+     * @return the index, or <code>null</code>, if the class loader is not a
+     *         {@link ClasspathClassLoader} with a symbol index directory or
+     *         its classpath can't be indexed
+     */
+    /* default */ static ClasspathSymbolIndex forClassLoader(ClassLoader classLoader) {
+        if (!(classLoader instanceof ClasspathClassLoader)) {
+            return null;
+        }
+        File indexDirectory = ((ClasspathClassLoader) classLoader).getSymbolIndexDirectory();
+        if (indexDirectory == null) {
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        Set<File> indexed = new HashSet<>();
+        ClassLoader current = classLoader;
+        while (current instanceof ClasspathClassLoader) {
+            for (URL url : ((ClasspathClassLoader) current).getURLs()) {
+                if (!addEntry(url, indexDirectory, entries, indexed)) {
+                    return null;
+                }
+            }
+            current = current.getParent();
+        }
+        return new ClasspathSymbolIndex(entries, current);
+    }
+
+    /**
+     * Adds the entry of the given classpath URL and, if it is a jar, the
+     * entries of the <code>Class-Path</code> of its manifest, like
+     * {@link java.net.URLClassLoader} does.
+     *
+     * @return <code>false</code>, if the entry can't be indexed
+     */
+    private static boolean addEntry(URL url, File indexDirectory, List<Entry> entries, Set<File> indexed) {
+        File file;
+        try {
+            file = new File(url.toURI()).getAbsoluteFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOG.fine("Classpath entry " + url + " can't be indexed, the symbol index is not used");
+            return false;
+        }
+        if (!indexed.add(file)) {
+            return true;
+        }
+        if (file.isDirectory()) {
+            entries.add(new DirectoryEntry(file));
+        } else if (file.isFile()) {
+            JarIndex jarIndex;
+            try {
+                jarIndex = JarIndex.open(file, indexDirectory);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Could not index " + file + ", the symbol index is not used", e);
+                return false;
+            }
+            entries.add(jarIndex);
+            for (String path : jarIndex.getClassPath()) {
+                URL classPathUrl;
+                try {
+                    classPathUrl = new URL(url, path);
+                } catch (MalformedURLException e) {
+                    // the class loader ignores it as well
+                    continue;
+                }
+                if (!addEntry(classPathUrl, indexDirectory, entries, indexed)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the symbol of a class on the classpath.
+     *
+     * @param binaryName the binary name of the class
+     * @return the symbol, {@link ClassSymbolTable#UNREADABLE} if the class
+     *         file can't be read, or <code>null</code>, if the class is not on
+     *         the classpath
+     */
+    /* default */ ClassSymbol getSymbol(String binaryName) {
+        for (Entry entry : entries) {
+            ClassSymbol symbol = entry.getSymbol(binaryName);
+            if (symbol != null && symbol != ClassSymbolTable.MISSING) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the class loader, which finds the classes, which are not on the
+     * indexed classpath, e.g. the JDK.
+     */
+    /* default */ ClassLoader getParent() {
+        return parent;
+    }
+
+    /**
+     * Computes the checksum of a jar. Only the central directory is read, as
+     * it contains the CRC of each entry. If it can't be found, the whole file
+     * is read.
+     */
+    /* default */ static long computeChecksum(File jar) throws IOException {
+        Adler32 adler = new Adler32();
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile file = new RandomAccessFile(jar, "r")) {
+            long length = file.length();
+            int tailLength = (int) Math.min(length, END_HEADER_SIZE + 0xFFFF);
+            byte[] tail = new byte[tailLength];
+            file.seek(length - tailLength);
+            file.readFully(tail);
+            for (int i = tailLength - END_HEADER_SIZE; i >= 0; i--) {
+                if (readInt(tail, i) == END_HEADER_SIGNATURE) {
+                    long directorySize = readInt(tail, i + 12) & ZIP64_MARKER;
+                    long directoryOffset = readInt(tail, i + 16) & ZIP64_MARKER;
+                    if (directorySize != ZIP64_MARKER && directoryOffset != ZIP64_MARKER
+                            && directoryOffset + directorySize <= length - tailLength + i) {
+                        byte[] directory = new byte[(int) directorySize];
+                        file.seek(directoryOffset);
+                        file.readFully(directory);
+                        adler.update(directory);
+                        crc.update(directory);
+                        return crc.getValue() << 32 | adler.getValue();
+                    }
+                    break;
+                }
+            }
+        }
+
+        try (InputStream in = new FileInputStream(jar)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                adler.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue() << 32 | adler.getValue();
+    }
+
+    /** Reads a little endian int, as used by the zip format. */
+    private static int readInt(byte[] bytes, int offset) {
+        return bytes[offset] & 0xff | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    private interface Entry {
+        /**
+         * Gets the symbol of the class, {@link ClassSymbolTable#MISSING} or
+         * <code>null</code> if it isn't found.
+         */
+        ClassSymbol getSymbol(String binaryName);
+    }
+
+    private static final class DirectoryEntry implements Entry {
+        private final File directory;
+
+        DirectoryEntry(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public ClassSymbol getSymbol(String binaryName) {
+            File classFile = new File(directory, binaryName.replace('.', File.separatorChar) + ".class");
+            if (!classFile.isFile()) {
+                return null;
+            }
+            try (InputStream in = new FileInputStream(classFile)) {
+                return ClassSymbolTable.readClassFile(null, binaryName, in, true);
+            } catch (IOException e) {
+                return ClassSymbolTable.UNREADABLE;
+            }
+        }
+    }
+
+    /**
+     * The index of the classes of one jar.
+     */
+    /* default */ static final class JarIndex implements Entry {
+        private final byte[] data;
+        private final int recordsOffset;
+        private final List<String> classPath;
+        private final Map<String, Integer> offsets;
+
+        private JarIndex(byte[] data, long checksum) throws IOException {
+            this.data = data;
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytes);
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(in.readUTF())
+                    || in.readLong() != checksum) {
+                throw new IOException("Symbol index is outdated");
+            }
+            classPath = Collections.unmodifiableList(Arrays.asList(readNames(in)));
+            int count = in.readInt();
+            offsets = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                offsets.put(name, in.readInt());
+            }
+            recordsOffset = data.length - bytes.available();
+        }
+
+        /**
+         * Reads the index of the given jar, or creates it, if it doesn't exist
+         * yet or is outdated.
+         *
+         * @param jar the jar
+         * @param indexDirectory the directory of the index files
+         * @return the index
+         * @throws IOException if the jar can't be read
+         */
+        /* default */ static JarIndex open(File jar, File indexDirectory) throws IOException {
+            long checksum = computeChecksum(jar);
+            File indexFile = new File(indexDirectory, Long.toHexString(checksum) + ".idx");
+            if (indexFile.isFile()) {
+                try {
+                    return new JarIndex(Files.readAllBytes(indexFile.toPath()), checksum);
+                } catch (IOException e) {
+                    LOG.info("Symbol index " + indexFile + " is malformed or outdated, it is created again");
+                }
+            }
+
+            LOG.fine("Creating symbol index of " + jar);
+            byte[] data = createIndex(jar, checksum);
+            try {
+                write(indexFile, data);
+            } catch (IOException e) {
+                LOG.warning("Could not write symbol index " + indexFile + ": " + e.getMessage());
+            }
+            return new JarIndex(data, checksum);
+        }
+
+        /**
+         * Gets the <code>Class-Path</code> of the manifest of the jar.
+         *
+         * @return the relative URLs of the jars and directories
+         */
+        /* default */ List<String> getClassPath() {
+            return classPath;
+        }
+
+        @Override
+        public ClassSymbol getSymbol(String binaryName) {
+            Integer offset = offsets.get(binaryName);
+            if (offset == null) {
+                return null;
+            }
+            int start = recordsOffset + offset;
+            try {
+                return readRecord(new DataInputStream(new ByteArrayInputStream(data, start, data.length - start)),
+                        binaryName);
+            } catch (IOException e) {
+                return ClassSymbolTable.UNREADABLE;
+            }
+        }
+
+        private static byte[] createIndex(File jar, long checksum) throws IOException {
+            Map<String, Integer> offsets = new LinkedHashMap<>();
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream recordStream = new DataOutputStream(records);
+            List<String> classPath = new ArrayList<>();
+            try (JarFile jarFile = new JarFile(jar)) {
+                Manifest manifest = jarFile.getManifest();
+                String classPathAttribute = manifest == null ? null
+                        : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+                if (classPathAttribute != null) {
+                    for (String path : classPathAttribute.trim().split("\\s+")) {
+                        if (!path.isEmpty()) {
+                            classPath.add(path);
+                        }
+                    }
+                }
+                Enumeration<JarEntry> jarEntries = jarFile.entries();
+                while (jarEntries.hasMoreElements()) {
+                    JarEntry jarEntry = jarEntries.nextElement();
+                    String name = jarEntry.getName();
+                    if (!name.endsWith(".class") || name.startsWith("META-INF/")) {
+                        continue;
+                    }
+                    String binaryName = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                    if (offsets.containsKey(binaryName)) {
+                        continue;
+                    }
+                    ClassSymbol symbol;
+                    try (InputStream in = jarFile.getInputStream(jarEntry)) {
+                        symbol = ClassSymbolTable.readClassFile(null, binaryName, in, true);
+                    }
+                    if (symbol != ClassSymbolTable.MISSING) {
+                        offsets.put(binaryName, recordStream.size());
+                        writeRecord(recordStream, symbol);
+                    }
+                }
+            }
+            recordStream.flush();
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(records.size() + offsets.size() * 48);
+            DataOutputStream out = new DataOutputStream(data);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(PMDVersion.VERSION);
+            out.writeLong(checksum);
+            writeNames(out, classPath);
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            records.writeTo(out);
+            out.flush();
+            return data.toByteArray();
+        }
+
+        private static void write(File indexFile, byte[] data) throws IOException {
+            File directory = indexFile.getAbsoluteFile().getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory);
+            }
+            // write to a temporary file first, other PMD processes may read the index concurrently
+            File tempFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+            try {
+                Files.write(tempFile.toPath(), data);
+                try {
+                    Files.move(tempFile.toPath(), indexFile.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+
+        private static void writeRecord(DataOutputStream out, ClassSymbol symbol) throws IOException {
+            out.writeBoolean(symbol != ClassSymbolTable.UNREADABLE);
+            if (symbol == ClassSymbolTable.UNREADABLE) {
+                return;
+            }
+            out.writeInt(symbol.getAccess());
+            out.writeBoolean(symbol.getSuperName() != null);
+            if (symbol.getSuperName() != null) {
+                out.writeUTF(symbol.getSuperName());
+            }
+            out.writeInt(symbol.getTypeParameterCount());
+            writeNames(out, symbol.getInterfaces());
+            writeNames(out, symbol.getInnerClasses());
+            writeMembers(out, symbol.getFields());
+            writeMembers(out, symbol.getMethods());
+        }
+
+        private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+
+        private static void writeMembers(DataOutputStream out, List<MemberSymbol> members) throws IOException {
+            out.writeInt(members.size());
+            for (MemberSymbol member : members) {
+                out.writeUTF(member.getName());
+                out.writeUTF(member.getDescriptor());
+                out.writeInt(member.getAccess());
+            }
+        }
+
+        private static ClassSymbol readRecord(DataInputStream in, String binaryName) throws IOException {
+            if (!in.readBoolean()) {
+                return ClassSymbolTable.UNREADABLE;
+            }
+            int access = in.readInt();
+            String superName = in.readBoolean() ? in.readUTF() : null;
+            int typeParameterCount = in.readInt();
+            String[] interfaces = readNames(in);
+            String[] innerClasses = readNames(in);
+            List<MemberSymbol> fields = readMembers(in);
+            List<MemberSymbol> methods = readMembers(in);
+            return new ClassSymbol(binaryName, access, superName, interfaces, typeParameterCount, innerClasses,
+                    fields, methods);
+        }
+
+        private static String[] readNames(DataInputStream in) throws IOException {
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            return names;
+        }
+
+        private static List<MemberSymbol> readMembers(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<MemberSymbol> members = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                members.add(new MemberSymbol(in.readUTF(), in.readUTF(), in.readInt()));
+            }
+            return members;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A field or method of a {@link ClassSymbol}, as declared in the class file.
+ */
+public final class MemberSymbol {
+
+    private final String name;
+    private final String descriptor;
+    private final int access;
+
+    MemberSymbol(String name, String descriptor, int access) {
+        this.name = name;
+        this.descriptor = descriptor;
+        this.access = access;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type descriptor, e.g. <code>(Ljava/lang/String;)V</code> for
+     * a method.
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isPublic() {
+        return (access & Opcodes.ACC_PUBLIC) != 0;
+    }
+
+    public boolean isStatic() {
+        return (access & Opcodes.ACC_STATIC) != 0;
+    }
+
+    /* default */ int getAccess() {
+        return access;
+    }
+
+    @Override
+    public String toString() {
+        return name + descriptor;
+    }
+}
@@ -503,6 +503,11 @@ public final class MethodTypeResolution {
     public static MethodType getTypeDefOfMethod(JavaTypeDefinition context, Method method,
                                                 List<JavaTypeDefinition> typeArguments) {
         if (typeArguments.isEmpty() && isGeneric(method)) {
+            // the selection uses the raw types of the signature, before they are inferred
+            PMDASMClassLoader.typeResolved(method.getReturnType());
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                PMDASMClassLoader.typeResolved(parameterType);
+            }
             return MethodType.build(method);
         }
 
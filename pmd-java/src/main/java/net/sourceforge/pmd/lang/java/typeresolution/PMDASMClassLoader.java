@@ -14,6 +14,7 @@ import java.util.concurrent.ConcurrentMap;
 
 import org.objectweb.asm.ClassReader;
 
+import net.sourceforge.pmd.cache.TypeDependencies;
 import net.sourceforge.pmd.lang.java.typeresolution.visitors.PMDASMVisitor;
 
 /*
@@ -43,12 +44,15 @@ public final class PMDASMClassLoader extends ClassLoader {
      */
     private final ConcurrentMap<String, Boolean> dontBother = new ConcurrentHashMap<>();
 
+    private final ClassSymbolTable symbolTable;
+
     static {
         registerAsParallelCapable();
     }
 
     private PMDASMClassLoader(ClassLoader parent) {
         super(parent);
+        symbolTable = ClassSymbolTable.getInstance(parent);
     }
 
     /**
@@ -67,16 +71,21 @@ public final class PMDASMClassLoader extends ClassLoader {
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
-        if (dontBother.containsKey(name)) {
+        if (!couldResolve(name)) {
+            TypeDependencies.typeResolved(name);
             throw new ClassNotFoundException(name);
         }
 
         try {
-            return super.loadClass(name);
+            Class<?> type = super.loadClass(name);
+            typeResolved(type);
+            return type;
         } catch (ClassNotFoundException e) {
+            TypeDependencies.typeResolved(name);
             dontBother.put(name, Boolean.TRUE);
             throw e;
         } catch (NoClassDefFoundError e) {
+            TypeDependencies.typeResolved(name);
             dontBother.put(name, Boolean.TRUE);
             // rethrow as ClassNotFoundException, as the remaining part just
             // deals with that
@@ -85,6 +94,33 @@ public final class PMDASMClassLoader extends ClassLoader {
         }
     }
 
+    /**
+     * Records the given type and its supertypes for the analysis cache. The
+     * supertypes are loaded by the JVM directly and not through this class
+     * loader, but the result of the analysis depends on them as well. The same
+     * applies to the types, which type resolution gets by reflection, e.g. the
+     * types of fields and the return and parameter types of methods, so these
+     * are recorded, where they are resolved.
+     *
+     * @param type the resolved type, may be <code>null</code>
+     */
+    public static void typeResolved(Class<?> type) {
+        if (!TypeDependencies.isRecording()) {
+            return;
+        }
+        Class<?> elementType = type;
+        while (elementType != null && elementType.isArray()) {
+            elementType = elementType.getComponentType();
+        }
+        if (elementType != null && !elementType.isPrimitive()
+                && TypeDependencies.typeResolved(elementType.getName())) {
+            typeResolved(elementType.getSuperclass());
+            for (Class<?> iface : elementType.getInterfaces()) {
+                typeResolved(iface);
+            }
+        }
+    }
+
     /**
      * Checks if the class loader could resolve a given class name (ie: it
      * doesn't know for sure it will fail). Notice, that the ability to resolve
@@ -96,10 +132,29 @@ public final class PMDASMClassLoader extends ClassLoader {
      * @return whether the class can be resolved
      */
     public boolean couldResolve(String name) {
-        return !dontBother.containsKey(name);
+        if (dontBother.containsKey(name)) {
+            return false;
+        }
+        // the symbol index knows all the classes of the classpath, including the Class-Path of the manifests
+        if (symbolTable.isIndexed() && !symbolTable.exists(name)) {
+            dontBother.put(name, Boolean.TRUE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the symbols of the classes of this class loader, which can be
+     * looked up without loading the classes.
+     *
+     * @return the shared symbol table
+     */
+    public ClassSymbolTable getSymbolTable() {
+        return symbolTable;
     }
 
     public synchronized Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
+        TypeDependencies.typeResolved(name);
         if (dontBother.containsKey(name)) {
             throw new ClassNotFoundException(name);
         }
@@ -113,6 +168,7 @@ public final class PMDASMClassLoader extends ClassLoader {
                 // to avoid ConcurrentModificationException
                 inner = new ArrayList<>(inner);
                 for (String str : inner) {
+                    TypeDependencies.typeResolved(str);
                     try (InputStream innerClassStream = getResourceAsStream(str.replace('.', '/') + ".class")) {
                         if (innerClassStream != null) {
                             reader = new ClassReader(innerClassStream);
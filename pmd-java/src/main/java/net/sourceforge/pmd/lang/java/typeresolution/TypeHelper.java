@@ -32,11 +32,20 @@ public final class TypeHelper {
                     classLoader = ClassLoader.getSystemClassLoader();
                 }
 
-                // If the requested type is in the classpath, using the same classloader should work
-                final Class<?> clazz = classLoader.loadClass(clazzName);
+                // Check the class files first, so that probing for a type doesn't load it
+                ClassSymbolTable symbolTable = ClassSymbolTable.getInstance(classLoader);
+                if (symbolTable.exists(clazzName)) {
+                    Boolean isSubtype = symbolTable.isSubtype(n.getType().getName(), clazzName);
+                    if (isSubtype != null) {
+                        return isSubtype;
+                    }
 
-                if (clazz != null) {
-                    return isA(n, clazz);
+                    // If the requested type is in the classpath, using the same classloader should work
+                    final Class<?> clazz = classLoader.loadClass(clazzName);
+
+                    if (clazz != null) {
+                        return isA(n, clazz);
+                    }
                 }
             } catch (final ClassNotFoundException ignored) {
                 // The requested type is not on the auxclasspath. This might happen, if the type node
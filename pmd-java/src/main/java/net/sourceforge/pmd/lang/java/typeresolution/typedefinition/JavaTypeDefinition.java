@@ -7,15 +7,18 @@ package net.sourceforge.pmd.lang.java.typeresolution.typedefinition;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
-public abstract class JavaTypeDefinition implements TypeDefinition {
-    // contains non-generic and raw EXACT types
-    private static final Map<Class<?>, JavaTypeDefinition> CLASS_EXACT_TYPE_DEF_CACHE = new HashMap<>();
+import net.sourceforge.pmd.lang.java.typeresolution.PMDASMClassLoader;
 
+/**
+ * The type of a node, as resolved by the type resolution. A definition always
+ * wraps a loaded {@link Class}, which {@link #getType()} exposes to the rules,
+ * and its members and generics are resolved by reflection. To check a type
+ * without loading it, use the {@link net.sourceforge.pmd.lang.java.typeresolution.ClassSymbolTable}.
+ */
+public abstract class JavaTypeDefinition implements TypeDefinition {
     private final TypeDefinitionType definitionType;
 
     protected JavaTypeDefinition(TypeDefinitionType definitionType) {
@@ -49,14 +52,27 @@ public abstract class JavaTypeDefinition implements TypeDefinition {
         if (clazz == null) {
             return null;
         }
+        // the types of members, type arguments and enclosing types are resolved by reflection
+        PMDASMClassLoader.typeResolved(clazz);
 
         // deal with generic types
         if (boundGenerics.length != 0) {
-            // With generics there is no cache
-            return new JavaTypeDefinitionSimple(clazz, boundGenerics);
+            final TypeDefinitionCache cache = TypeDefinitionCache.getInstance(clazz, boundGenerics);
+            if (cache == null) {
+                return new JavaTypeDefinitionSimple(null, clazz, boundGenerics);
+            }
+
+            final JavaTypeDefinition typeDef = cache.getParameterizedType(clazz, boundGenerics);
+            if (typeDef != null) {
+                return typeDef;
+            }
+
+            return cache.putParameterizedType(clazz, boundGenerics,
+                    new JavaTypeDefinitionSimple(cache, clazz, boundGenerics));
         }
 
-        final JavaTypeDefinition typeDef = CLASS_EXACT_TYPE_DEF_CACHE.get(clazz);
+        final TypeDefinitionCache cache = TypeDefinitionCache.getInstance(clazz.getClassLoader());
+        final JavaTypeDefinition typeDef = cache.getRawType(clazz);
 
         if (typeDef != null) {
             return typeDef;
@@ -64,14 +80,12 @@ public abstract class JavaTypeDefinition implements TypeDefinition {
 
         final JavaTypeDefinition newDef;
         try {
-            newDef = new JavaTypeDefinitionSimple(clazz);
+            newDef = new JavaTypeDefinitionSimple(cache, clazz);
         } catch (final NoClassDefFoundError e) {
             return null; // Can happen if a parent class references a class not in classpath
         }
 
-        CLASS_EXACT_TYPE_DEF_CACHE.put(clazz, newDef);
-
-        return newDef;
+        return cache.putRawType(clazz, newDef);
     }
 
     @Override
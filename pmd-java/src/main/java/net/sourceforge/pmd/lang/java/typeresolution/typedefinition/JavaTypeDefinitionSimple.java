@@ -16,10 +16,12 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
@@ -28,7 +30,9 @@ import java.util.logging.Logger;
 
 /* default */ class JavaTypeDefinitionSimple extends JavaTypeDefinition {
     private final Class<?> clazz;
-    private final List<JavaTypeDefinition> genericArgs;
+    private final TypeDefinitionCache cache;
+    // copied on write, so that the lazily resolved generics can be read without locking
+    private volatile JavaTypeDefinition[] genericArgs;
     // cached because calling clazz.getTypeParameters().length create a new array every time
     private final int typeParameterCount;
     private final boolean isGeneric;
@@ -37,8 +41,22 @@ import java.util.logging.Logger;
 
     private static final Logger LOG = Logger.getLogger(JavaTypeDefinitionSimple.class.getName());
 
-    protected JavaTypeDefinitionSimple(Class<?> clazz, JavaTypeDefinition... boundGenerics) {
+    /*
+     * The indexes of the generic types, which the current thread is resolving, to circuit-brake
+     * recursions. Kept private to the thread, so that other threads never see a placeholder.
+     */
+    private static final ThreadLocal<Map<JavaTypeDefinitionSimple, BitSet>> RESOLVING
+            = new ThreadLocal<Map<JavaTypeDefinitionSimple, BitSet>>() {
+                @Override
+                protected Map<JavaTypeDefinitionSimple, BitSet> initialValue() {
+                    return new IdentityHashMap<>();
+                }
+            };
+
+    protected JavaTypeDefinitionSimple(TypeDefinitionCache cache, Class<?> clazz,
+                                       JavaTypeDefinition... boundGenerics) {
         super(EXACT);
+        this.cache = cache;
         this.clazz = clazz;
 
         final TypeVariable<?>[] typeParameters;
@@ -58,14 +76,9 @@ import java.util.logging.Logger;
         isGeneric = typeParameters.length != 0;
         isRawType = isGeneric && boundGenerics.length == 0;
 
-        if (isGeneric) {
-            // Generics will be lazily loaded
-            this.genericArgs = new ArrayList<>(typeParameters.length);
-            // boundGenerics would be empty if this is a raw type, hence the lazy loading
-            Collections.addAll(this.genericArgs, boundGenerics);
-        } else {
-            this.genericArgs = Collections.emptyList();
-        }
+        // Generics will be lazily loaded
+        // boundGenerics would be empty if this is a raw type, hence the lazy loading
+        this.genericArgs = isGeneric ? boundGenerics.clone() : new JavaTypeDefinition[0];
 
         enclosingClass = forClass(clazz.getEnclosingClass());
     }
@@ -80,9 +93,18 @@ import java.util.logging.Logger;
         return enclosingClass;
     }
 
+    /**
+     * Gets the cache this type definition is interned in.
+     *
+     * @return the cache or <code>null</code>, if it isn't cached
+     */
+    /* default */ TypeDefinitionCache getCache() {
+        return cache;
+    }
+
     @Override
     public boolean isGeneric() {
-        return !genericArgs.isEmpty();
+        return genericArgs.length != 0;
     }
 
     private JavaTypeDefinition getGenericType(final String parameterName, Method method,
@@ -126,29 +148,50 @@ import java.util.logging.Logger;
     @Override
     public JavaTypeDefinition getGenericType(final int index) {
         // Check if it has been lazily initialized first
-        if (genericArgs.size() > index) {
-            final JavaTypeDefinition cachedDefinition = genericArgs.get(index);
-            if (cachedDefinition != null) {
-                return cachedDefinition;
-            }
+        final JavaTypeDefinition[] args = genericArgs;
+        if (args.length > index && args[index] != null) {
+            return args[index];
         }
 
-        // Force the list to have enough elements
-        for (int i = genericArgs.size(); i <= index; i++) {
-            genericArgs.add(null);
+        final Map<JavaTypeDefinitionSimple, BitSet> resolving = RESOLVING.get();
+        BitSet indexes = resolving.get(this);
+        if (indexes != null && indexes.get(index)) {
+            /*
+             * Circuit-brake any recursions (ie: raw types with no generic info)
+             * Object.class is a right answer in those scenarios
+             */
+            return forClass(Object.class);
+        }
+        if (indexes == null) {
+            indexes = new BitSet();
+            resolving.put(this, indexes);
+        }
+
+        final JavaTypeDefinition typeDefinition;
+        indexes.set(index);
+        try {
+            final TypeVariable<?> typeVariable = clazz.getTypeParameters()[index];
+            typeDefinition = resolveTypeDefinition(typeVariable.getBounds()[0]);
+        } finally {
+            indexes.clear(index);
+            if (indexes.isEmpty()) {
+                resolving.remove(this);
+            }
         }
-        
-        /*
-         * Set a default to circuit-brake any recursions (ie: raw types with no generic info)
-         * Object.class is a right answer in those scenarios
-         */
-        genericArgs.set(index, forClass(Object.class));
 
-        final TypeVariable<?> typeVariable = clazz.getTypeParameters()[index];
-        final JavaTypeDefinition typeDefinition = resolveTypeDefinition(typeVariable.getBounds()[0]);
+        // cache result, only the final definition is ever published
+        return setGenericType(index, typeDefinition);
+    }
 
-        // cache result
-        genericArgs.set(index, typeDefinition);
+    private synchronized JavaTypeDefinition setGenericType(int index, JavaTypeDefinition typeDefinition) {
+        if (genericArgs.length > index && genericArgs[index] != null) {
+            // resolved by another thread meanwhile, resolving is deterministic
+            return genericArgs[index];
+        }
+        // Force the array to have enough elements
+        final JavaTypeDefinition[] args = Arrays.copyOf(genericArgs, Math.max(genericArgs.length, index + 1));
+        args[index] = typeDefinition;
+        genericArgs = args;
         return typeDefinition;
     }
 
@@ -0,0 +1,221 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution.typedefinition;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the {@link JavaTypeDefinition}s of the classes of one class loader.
+ * The cache is shared by all threads.
+ *
+ * <p>The definitions of non-generic and raw types are kept as long as the
+ * cache, as there is only one per class. Parameterized types are interned as
+ * well, but only the most recently used ones are kept, see
+ * {@link #MAX_PARAMETERIZED_TYPES}. The type arguments are compared by
+ * identity, which works, as they are themselves interned.
+ *
+ * <p>There is a cache for the classes PMD itself can see, e.g. the JDK, and
+ * one for the auxclasspath of the current analysis. Like
+ * {@code PMDASMClassLoader}, only the cache of the most recent auxclasspath
+ * is kept, so that the classes of an earlier analysis can be unloaded.
+ */
+/* default */ final class TypeDefinitionCache {
+
+    /**
+     * The maximum number of parameterized types per class loader, configured
+     * with the system property
+     * <code>net.sourceforge.pmd.typeresolution.cacheSize</code>.
+     */
+    static final int MAX_PARAMETERIZED_TYPES = Integer.getInteger("net.sourceforge.pmd.typeresolution.cacheSize",
+            4096);
+
+    private static final ClassLoader PMD_CLASS_LOADER = TypeDefinitionCache.class.getClassLoader();
+
+    /** The classes of the bootstrap class loader and of the loaders of PMD itself. */
+    private static final TypeDefinitionCache SHARED_CACHE = new TypeDefinitionCache(PMD_CLASS_LOADER);
+
+    private static TypeDefinitionCache auxclasspathCache;
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<Class<?>, JavaTypeDefinition> rawTypes = new ConcurrentHashMap<>();
+
+    private final Map<ParameterizedKey, JavaTypeDefinition> parameterizedTypes
+        = new LinkedHashMap<ParameterizedKey, JavaTypeDefinition>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ParameterizedKey, JavaTypeDefinition> eldest) {
+                return size() > MAX_PARAMETERIZED_TYPES;
+            }
+        };
+
+    private TypeDefinitionCache(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Gets the cache for the classes of the given class loader.
+     *
+     * @param classLoader the class loader
+     * @return the cache
+     */
+    /* default */ static TypeDefinitionCache getInstance(ClassLoader classLoader) {
+        if (isAncestor(classLoader, PMD_CLASS_LOADER)) {
+            return SHARED_CACHE;
+        }
+        synchronized (TypeDefinitionCache.class) {
+            if (auxclasspathCache == null || auxclasspathCache.classLoader != classLoader) {
+                auxclasspathCache = new TypeDefinitionCache(classLoader);
+            }
+            return auxclasspathCache;
+        }
+    }
+
+    /**
+     * Gets the cache for a parameterized type. This is the cache of the most
+     * specific class loader of the generic class and the type arguments, so
+     * that the cache doesn't keep the classes of another class loader alive.
+     *
+     * @param clazz the generic class
+     * @param boundGenerics the type arguments
+     * @return the cache or <code>null</code>, if the type can't be cached, e.g.
+     *         as a type argument is a wildcard
+     */
+    /* default */ static TypeDefinitionCache getInstance(Class<?> clazz, JavaTypeDefinition[] boundGenerics) {
+        TypeDefinitionCache cache = getInstance(clazz.getClassLoader());
+        for (JavaTypeDefinition typeDef : boundGenerics) {
+            if (!(typeDef instanceof JavaTypeDefinitionSimple)) {
+                return null;
+            }
+            TypeDefinitionCache argCache = ((JavaTypeDefinitionSimple) typeDef).getCache();
+            if (argCache == null) {
+                return null;
+            }
+            if (isAncestor(cache.classLoader, argCache.classLoader)) {
+                cache = argCache;
+            } else if (!isAncestor(argCache.classLoader, cache.classLoader)) {
+                return null;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the cached definition of the given non-generic or raw type.
+     *
+     * @return the definition or <code>null</code>, if it isn't cached yet
+     */
+    /* default */ JavaTypeDefinition getRawType(Class<?> clazz) {
+        return rawTypes.get(clazz);
+    }
+
+    /**
+     * Caches the definition of a non-generic or raw type, unless another
+     * thread was faster.
+     *
+     * @return the cached definition
+     */
+    /* default */ JavaTypeDefinition putRawType(Class<?> clazz, JavaTypeDefinition typeDef) {
+        JavaTypeDefinition previous = rawTypes.putIfAbsent(clazz, typeDef);
+        return previous == null ? typeDef : previous;
+    }
+
+    /**
+     * Gets the cached definition of the given parameterized type.
+     *
+     * @return the definition or <code>null</code>, if it isn't cached
+     */
+    /* default */ JavaTypeDefinition getParameterizedType(Class<?> clazz, JavaTypeDefinition[] boundGenerics) {
+        ParameterizedKey key = new ParameterizedKey(clazz, boundGenerics);
+        synchronized (parameterizedTypes) {
+            return parameterizedTypes.get(key);
+        }
+    }
+
+    /**
+     * Caches the definition of a parameterized type, unless another thread
+     * was faster.
+     *
+     * @return the cached definition
+     */
+    /* default */ JavaTypeDefinition putParameterizedType(Class<?> clazz, JavaTypeDefinition[] boundGenerics,
+            JavaTypeDefinition typeDef) {
+        ParameterizedKey key = new ParameterizedKey(clazz, boundGenerics.clone());
+        synchronized (parameterizedTypes) {
+            JavaTypeDefinition previous = parameterizedTypes.get(key);
+            if (previous != null) {
+                return previous;
+            }
+            parameterizedTypes.put(key, typeDef);
+            return typeDef;
+        }
+    }
+
+    /* default */ int getParameterizedTypeCount() {
+        synchronized (parameterizedTypes) {
+            return parameterizedTypes.size();
+        }
+    }
+
+    /**
+     * Checks, whether the first class loader is the second one or one of its
+     * parents, i.e. whether the classes of the first one live at least as long
+     * as the ones of the second one. <code>null</code> is the bootstrap class
+     * loader.
+     */
+    /* default */ static boolean isAncestor(ClassLoader ancestor, ClassLoader classLoader) {
+        if (ancestor == null) {
+            return true;
+        }
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ParameterizedKey {
+        private final Class<?> clazz;
+        private final JavaTypeDefinition[] boundGenerics;
+        private final int hashCode;
+
+        ParameterizedKey(Class<?> clazz, JavaTypeDefinition[] boundGenerics) {
+            this.clazz = clazz;
+            this.boundGenerics = boundGenerics;
+            int hash = clazz.hashCode();
+            for (JavaTypeDefinition typeDef : boundGenerics) {
+                hash = 31 * hash + System.identityHashCode(typeDef);
+            }
+            this.hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ParameterizedKey)) {
+                return false;
+            }
+            ParameterizedKey other = (ParameterizedKey) obj;
+            if (clazz != other.clazz || boundGenerics.length != other.boundGenerics.length) {
+                return false;
+            }
+            for (int i = 0; i < boundGenerics.length; i++) {
+                if (boundGenerics[i] != other.boundGenerics[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.cli;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -12,6 +13,7 @@ import java.util.regex.Pattern;
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.sourceforge.pmd.benchmark.Benchmarker;
 import net.sourceforge.pmd.util.FileUtil;
 
 /**
@@ -66,6 +68,15 @@ public class CLITest extends BaseCLITest {
         assertTrue(FileUtil.findPatternInFile(new File(resultFilename), "Avoid empty if"));
     }
 
+    @Test
+    public void benchmarkIsDisabledAfterwards() {
+        String[] args = { "-d", SOURCE_FOLDER, "-f", "text", "-R", "category/java/design.xml", "-benchmark", };
+        runTest(args, "benchmark");
+        assertFalse(Benchmarker.isEnabled());
+        // the benchmarks are reported and released
+        assertTrue(Benchmarker.values().isEmpty());
+    }
+
     /**
      * See https://sourceforge.net/p/pmd/bugs/1231/
      */
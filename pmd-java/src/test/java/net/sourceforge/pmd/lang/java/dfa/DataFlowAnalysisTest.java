@@ -0,0 +1,154 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.dfa;
+
+import static net.sourceforge.pmd.lang.java.ParserTstUtil.getOrderedNodes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.dfa.DataFlowNode;
+import net.sourceforge.pmd.lang.dfa.analysis.DataFlowAnomaly;
+import net.sourceforge.pmd.lang.dfa.analysis.DefiniteAssignment;
+import net.sourceforge.pmd.lang.dfa.analysis.LiveVariables;
+import net.sourceforge.pmd.lang.dfa.analysis.ReachingAccesses;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+
+public class DataFlowAnalysisTest {
+
+    @Test
+    public void testAnomalies() {
+        List<String> anomalies = anomaliesOf(DD_DU_UR);
+        assertEquals(3, anomalies.size());
+        assertTrue(anomalies.contains("DD-anomaly of i (lines 3-4)"));
+        assertTrue(anomalies.contains("DU-anomaly of j (lines 5-6)"));
+        assertTrue(anomalies.contains("UR-anomaly of k (lines 2-5)"));
+    }
+
+    @Test
+    public void testAnomalyOnOneBranch() {
+        List<String> anomalies = anomaliesOf(BRANCH);
+        // the reference in the else branch doesn't hide the redefinition in the then branch
+        assertTrue(anomalies.contains("DD-anomaly of x (lines 3-5)"));
+        assertFalse(anomalies.contains("DD-anomaly of x (lines 3-7)"));
+    }
+
+    @Test
+    public void testAnomalyInLoop() {
+        List<String> anomalies = anomaliesOf(LOOP);
+        // the definition in the loop reaches itself on the next iteration
+        assertTrue(anomalies.contains("DD-anomaly of x (lines 5-5)"));
+    }
+
+    @Test
+    public void testManyBranches() {
+        StringBuilder code = new StringBuilder("class Foo {" + PMD.EOL + " void bar(int a) {" + PMD.EOL
+                + "  int x = 0;" + PMD.EOL);
+        for (int i = 0; i < 40; i++) {
+            code.append("  if (a == ").append(i).append(") { a++; }").append(PMD.EOL);
+        }
+        code.append("  x = 1;" + PMD.EOL + "  a = x;" + PMD.EOL + " }" + PMD.EOL + "}");
+
+        // 2^40 paths, the redefinition is found nevertheless
+        List<String> anomalies = anomaliesOf(code.toString());
+        assertTrue(anomalies.contains("DD-anomaly of x (lines 3-44)"));
+    }
+
+    @Test
+    public void testLiveVariables() {
+        List<DataFlowNode> flow = flowOf(BRANCH);
+        LiveVariables live = new LiveVariables(flow);
+        live.run();
+
+        // x = 0 is only referenced in the else branch
+        assertTrue(live.isLiveAfter(nodeAtLine(flow, 3), "x"));
+        // x = 1 is never referenced
+        assertFalse(live.isLiveAfter(nodeAtLine(flow, 5), "x"));
+        assertTrue(live.isLiveBefore(nodeAtLine(flow, 7), "x"));
+    }
+
+    @Test
+    public void testDefiniteAssignment() {
+        List<DataFlowNode> flow = flowOf(DEFINITE_ASSIGNMENT);
+        DefiniteAssignment assignment = new DefiniteAssignment(flow);
+        assignment.run();
+
+        assertFalse(assignment.isAssignedBefore(nodeAtLine(flow, 4), "x"));
+        assertTrue(assignment.isAssignedAfter(nodeAtLine(flow, 4), "x"));
+        // only assigned in the then branch
+        assertFalse(assignment.isAssignedBefore(nodeAtLine(flow, 7), "y"));
+        // assigned in both branches
+        assertTrue(assignment.isAssignedBefore(nodeAtLine(flow, 7), "x"));
+    }
+
+    private static List<DataFlowNode> flowOf(String code) {
+        ASTMethodDeclaration method = getOrderedNodes(ASTMethodDeclaration.class, code).get(0);
+        return method.getDataFlowNode().getFlow();
+    }
+
+    private static List<String> anomaliesOf(String code) {
+        ReachingAccesses analysis = new ReachingAccesses(flowOf(code));
+        analysis.run();
+        List<String> result = new ArrayList<>();
+        for (DataFlowAnomaly anomaly : analysis.getAnomalies()) {
+            result.add(anomaly.toString());
+        }
+        return result;
+    }
+
+    private static DataFlowNode nodeAtLine(List<DataFlowNode> flow, int line) {
+        for (DataFlowNode node : flow) {
+            if (node.getNode() != null && node.getLine() == line) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("No node at line " + line);
+    }
+
+    private static final String DD_DU_UR = "class Foo {" + PMD.EOL
+            + " void bar() {" + PMD.EOL
+            + "  int i = 0;" + PMD.EOL
+            + "  i = 1;" + PMD.EOL
+            + "  int k; int j = k + i;" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+
+    private static final String BRANCH = "class Foo {" + PMD.EOL
+            + " void bar(int a) {" + PMD.EOL
+            + "  int x = 0;" + PMD.EOL
+            + "  if (a > 0) {" + PMD.EOL
+            + "   x = 1;" + PMD.EOL
+            + "  } else {" + PMD.EOL
+            + "   a = x;" + PMD.EOL
+            + "  }" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+
+    private static final String LOOP = "class Foo {" + PMD.EOL
+            + " void bar(int a) {" + PMD.EOL
+            + "  int x;" + PMD.EOL
+            + "  while (a > 0) {" + PMD.EOL
+            + "   x = a;" + PMD.EOL
+            + "   a--;" + PMD.EOL
+            + "  }" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+
+    private static final String DEFINITE_ASSIGNMENT = "class Foo {" + PMD.EOL
+            + " void bar(int a) {" + PMD.EOL
+            + "  int x, y;" + PMD.EOL
+            + "  x = 0;" + PMD.EOL
+            + "  if (a > 0) {" + PMD.EOL
+            + "   y = 1; x = 1;" + PMD.EOL
+            + "  } a = x;" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+}
@@ -4,17 +4,26 @@
 
 package net.sourceforge.pmd.lang.java.dfa;
 
+import static net.sourceforge.pmd.lang.java.ParserTstUtil.getOrderedNodes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
+import java.util.List;
 
 import org.junit.Test;
 
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.dfa.AbstractDataFlowNode;
+import net.sourceforge.pmd.lang.dfa.DataFlowGraph;
 import net.sourceforge.pmd.lang.dfa.DataFlowNode;
 import net.sourceforge.pmd.lang.dfa.NodeType;
 import net.sourceforge.pmd.lang.dfa.StartOrEndDataFlowNode;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTStatementExpression;
 
 public class DataFlowNodeTest {
 
@@ -74,6 +83,50 @@ public class DataFlowNodeTest {
         assertFalse(node.isType(NodeType.CASE_LAST_STATEMENT));
     }
 
+    @Test
+    public void testDataFlowBuiltOnDemand() {
+        ASTStatementExpression statement = getOrderedNodes(ASTStatementExpression.class, TEST).get(0);
+        // the data flow of the method is built, when the first node asks for it
+        assertSame(statement, statement.getDataFlowNode().getNode());
+        assertEquals(3, statement.getDataFlowNode().getLine());
+    }
+
+    @Test
+    public void testCompactedFlow() {
+        ASTMethodDeclaration method = getOrderedNodes(ASTMethodDeclaration.class, TEST).get(0);
+        List<DataFlowNode> flow = method.getDataFlowNode().getFlow();
+        DataFlowGraph graph = ((AbstractDataFlowNode) flow.get(0)).getGraph();
+        assertNotNull(graph);
+        assertSame(graph, DataFlowGraph.of(flow));
+
+        for (int i = 0; i < flow.size(); i++) {
+            DataFlowNode node = flow.get(i);
+            assertEquals(i, node.getIndex());
+            assertEquals(graph.getChildCount(i), node.getChildren().size());
+            for (int n = 0; n < graph.getChildCount(i); n++) {
+                DataFlowNode child = node.getChildren().get(n);
+                assertSame(flow.get(graph.getChild(i, n)), child);
+                assertTrue(child.getParents().contains(node));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompactedFlowIsReadOnly() {
+        ASTMethodDeclaration method = getOrderedNodes(ASTMethodDeclaration.class, TEST).get(0);
+        List<DataFlowNode> flow = method.getDataFlowNode().getFlow();
+        flow.get(0).addPathToChild(flow.get(flow.size() - 1));
+    }
+
+    private static final String TEST = "class Foo {" + PMD.EOL
+            + " void bar(int a) {" + PMD.EOL
+            + "  a = 1;" + PMD.EOL
+            + "  if (a > 0) {" + PMD.EOL
+            + "   a++;" + PMD.EOL
+            + "  }" + PMD.EOL
+            + " }" + PMD.EOL
+            + "}";
+
     public static junit.framework.Test suite() {
         return new junit.framework.JUnit4TestAdapter(DataFlowNodeTest.class);
     }
@@ -7,6 +7,9 @@ package net.sourceforge.pmd.lang.java.metrics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,10 +22,13 @@ import net.sourceforge.pmd.lang.java.ast.ASTAnyTypeDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodOrConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorReducedAdapter;
+import net.sourceforge.pmd.lang.java.ast.JavaQualifiedName;
 import net.sourceforge.pmd.lang.java.ast.MethodLikeNode;
+import net.sourceforge.pmd.lang.java.ast.QualifiedNameFactory;
 import net.sourceforge.pmd.lang.java.metrics.impl.AbstractJavaClassMetric;
 import net.sourceforge.pmd.lang.java.metrics.impl.AbstractJavaOperationMetric;
 import net.sourceforge.pmd.lang.java.metrics.testdata.MetricsVisitorTestData;
+import net.sourceforge.pmd.lang.metrics.BasicProjectMemoizer;
 import net.sourceforge.pmd.lang.metrics.MetricKey;
 import net.sourceforge.pmd.lang.metrics.MetricKeyUtil;
 import net.sourceforge.pmd.lang.metrics.MetricMemoizer;
@@ -65,6 +71,46 @@ public class ProjectMemoizerTest {
     }
 
 
+    @Test
+    public void fileScopeTest() {
+        JavaProjectMemoizer memoizer = new JavaProjectMemoizer();
+        JavaQualifiedName qname = QualifiedNameFactory.ofClass(MetricsVisitorTestData.class);
+        MetricMemoizer<ASTAnyTypeDeclaration> outside = memoizer.getClassMemoizer(qname);
+
+        BasicProjectMemoizer.startFile();
+        try {
+            MetricMemoizer<ASTAnyTypeDeclaration> first = memoizer.getClassMemoizer(qname);
+            assertNotSame(outside, first);
+            assertSame(first, memoizer.getClassMemoizer(qname));
+
+            BasicProjectMemoizer.startFile();
+            assertNotSame(first, memoizer.getClassMemoizer(qname));
+        } finally {
+            BasicProjectMemoizer.endFile();
+        }
+
+        assertSame(outside, memoizer.getClassMemoizer(qname));
+    }
+
+
+    @Test
+    public void boundedSizeTest() {
+        JavaProjectMemoizer memoizer = new JavaProjectMemoizer(4);
+        List<MetricMemoizer<ASTAnyTypeDeclaration>> memoizers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            memoizers.add(memoizer.getClassMemoizer(QualifiedNameFactory.ofString("org.foo.Foo" + i)));
+        }
+
+        int kept = 0;
+        for (int i = 0; i < 10; i++) {
+            if (memoizers.get(i) == memoizer.getClassMemoizer(QualifiedNameFactory.ofString("org.foo.Foo" + i))) {
+                kept++;
+            }
+        }
+        assertTrue(kept <= 4);
+    }
+
+
     private List<Integer> visitWith(ASTCompilationUnit acu, final boolean force) {
         final JavaProjectMemoizer toplevel = JavaMetrics.getFacade().getLanguageSpecificProjectMemoizer();
 
@@ -0,0 +1,200 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.multifile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.java.ParserTstUtil;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.JavaQualifiedName;
+import net.sourceforge.pmd.lang.java.ast.QualifiedNameFactory;
+import net.sourceforge.pmd.lang.java.multifile.signature.JavaOperationSigMask;
+import net.sourceforge.pmd.lang.java.multifile.testdata.MultifileVisitorTestData;
+import net.sourceforge.pmd.lang.java.multifile.testdata.MultifileVisitorTestData2;
+import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.processor.ProjectIndexProcessor;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+/**
+ * Tests of the project index of the multifile rules.
+ */
+public class JavaProjectIndexerTest {
+
+    private static final String FILE_1 = "MultifileVisitorTestData.java";
+    private static final String FILE_2 = "MultifileVisitorTestData2.java";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final JavaQualifiedName class1 = QualifiedNameFactory.ofClass(MultifileVisitorTestData.class);
+    private final JavaQualifiedName class2 = QualifiedNameFactory.ofClass(MultifileVisitorTestData2.class);
+
+    private final RuleContext ctx = new RuleContext();
+
+    @Before
+    public void resetMultifile() {
+        PackageStats.INSTANCE.reset();
+    }
+
+    @Test
+    public void testPublish() {
+        JavaProjectIndexer indexer = new JavaProjectIndexer();
+        indexer.start(null);
+        assertFalse(indexer.isUpToDate(FILE_1, 1));
+        indexer.index(FILE_1, 1, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData.class));
+        assertFalse(indexer.isUpToDate(FILE_2, 2));
+        indexer.index(FILE_2, 2, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData2.class));
+        assertFalse(JavaProjectIndexer.isPublished(ctx));
+        assertSame(PackageStats.INSTANCE, JavaProjectIndexer.getProjectMirror(ctx));
+
+        indexer.publish(ctx);
+
+        assertTrue(JavaProjectIndexer.isPublished(ctx));
+        assertTrue("The files share the index of the analysis", JavaProjectIndexer.isPublished(new RuleContext(ctx)));
+        ProjectMirror mirror = JavaProjectIndexer.getProjectMirror(ctx);
+        assertNotNull(mirror.getClassMirror(class1));
+        assertNotNull(mirror.getClassMirror(class2));
+        assertNull(PackageStats.INSTANCE.getClassMirror(class2));
+
+        JavaOperationSigMask opMask = new JavaOperationSigMask();
+        assertEquals(countOperations(class2), mirror.getClassMirror(class2).countMatchingOpSigs(opMask));
+
+        indexer.release(ctx);
+        assertFalse(JavaProjectIndexer.isPublished(ctx));
+    }
+
+    @Test
+    public void testIndexesOfConcurrentAnalysesAreSeparate() {
+        JavaProjectIndexer indexer = new JavaProjectIndexer();
+        indexer.start(null);
+        indexer.index(FILE_1, 1, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData.class));
+        indexer.publish(ctx);
+
+        RuleContext otherCtx = new RuleContext();
+        JavaProjectIndexer otherIndexer = new JavaProjectIndexer();
+        otherIndexer.start(null);
+        otherIndexer.index(FILE_2, 2, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData2.class));
+        otherIndexer.publish(otherCtx);
+
+        assertNotNull(JavaProjectIndexer.getProjectMirror(ctx).getClassMirror(class1));
+        assertNull(JavaProjectIndexer.getProjectMirror(ctx).getClassMirror(class2));
+        assertNotNull(JavaProjectIndexer.getProjectMirror(otherCtx).getClassMirror(class2));
+
+        otherIndexer.release(otherCtx);
+        assertTrue("The other analysis released this index", JavaProjectIndexer.isPublished(ctx));
+        indexer.release(ctx);
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        File indexFile = new File(folder.getRoot(), "multifile-java.idx");
+
+        JavaProjectIndexer indexer = new JavaProjectIndexer();
+        indexer.start(indexFile);
+        indexer.isUpToDate(FILE_1, 1);
+        indexer.index(FILE_1, 1, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData.class));
+        indexer.isUpToDate(FILE_2, 2);
+        indexer.index(FILE_2, 2, ParserTstUtil.parseJavaDefaultVersion(MultifileVisitorTestData2.class));
+        indexer.publish(ctx);
+        indexer.release(ctx);
+        assertTrue(indexFile.isFile());
+
+        // the second file was removed, the first one is unchanged
+        JavaProjectIndexer reloaded = new JavaProjectIndexer();
+        reloaded.start(indexFile);
+        assertTrue(reloaded.isUpToDate(FILE_1, 1));
+        reloaded.publish(ctx);
+
+        ProjectMirror mirror = JavaProjectIndexer.getProjectMirror(ctx);
+        assertNotNull(mirror.getClassMirror(class1));
+        assertNull(mirror.getClassMirror(class2));
+        assertEquals(countOperations(class1),
+                     mirror.getClassMirror(class1).countMatchingOpSigs(new JavaOperationSigMask()));
+        reloaded.release(ctx);
+
+        // the first file changed
+        JavaProjectIndexer changed = new JavaProjectIndexer();
+        changed.start(indexFile);
+        assertFalse(changed.isUpToDate(FILE_1, 3));
+        changed.release(ctx);
+    }
+
+    @Test
+    public void testMalformedIndex() throws IOException {
+        File indexFile = folder.newFile("multifile-java.idx");
+
+        JavaProjectIndexer indexer = new JavaProjectIndexer();
+        indexer.start(indexFile);
+        assertFalse(indexer.isUpToDate(FILE_1, 1));
+        indexer.publish(ctx);
+        assertTrue(indexFile.length() > 0);
+        indexer.release(ctx);
+    }
+
+    @Test
+    public void testInterruptedIndexIsNotPublished() throws IOException {
+        AbstractJavaRule rule = new AbstractJavaRule() { };
+        rule.setLanguage(LanguageRegistry.getLanguage("Java"));
+        rule.setMultifile(true);
+        RuleSets ruleSets = new RuleSets(new RuleSetFactory().createSingleRuleRuleSet(rule));
+
+        List<DataSource> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            File file = new File(folder.getRoot(), "Foo" + i + ".java");
+            FileUtils.writeStringToFile(file, "class Foo" + i + " { void bar() { } }", StandardCharsets.UTF_8);
+            files.add(new FileDataSource(file));
+        }
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setThreads(2);
+        ProjectIndexProcessor processor = new ProjectIndexProcessor(configuration);
+
+        Thread.currentThread().interrupt();
+        try {
+            processor.index(ruleSets, files, ctx);
+            fail("The interrupt must be reported");
+        } catch (IllegalStateException e) {
+            assertTrue(Thread.interrupted());
+            assertFalse(JavaProjectIndexer.isPublished(ctx));
+            assertFalse(ProjectIndexProcessor.isIndexed(ctx, LanguageRegistry.getLanguage("Java")));
+        } finally {
+            Thread.interrupted();
+            processor.release();
+        }
+    }
+
+    private int countOperations(JavaQualifiedName className) {
+        PackageStats.INSTANCE.reset();
+        ASTCompilationUnit acu = ParserTstUtil.parseJavaDefaultVersion(
+                className.equals(class1) ? MultifileVisitorTestData.class : MultifileVisitorTestData2.class);
+        acu.jjtAccept(new MultifileVisitor(PackageStats.INSTANCE), null);
+        int count = PackageStats.INSTANCE.getClassMirror(className).countMatchingOpSigs(new JavaOperationSigMask());
+        PackageStats.INSTANCE.reset();
+        return count;
+    }
+}
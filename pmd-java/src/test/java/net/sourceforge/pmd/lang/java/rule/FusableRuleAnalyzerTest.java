@@ -0,0 +1,185 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.benchmark.Benchmarker;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTFormalParameter;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTResource;
+
+public class FusableRuleAnalyzerTest {
+
+    private static final String TEST_CODE = "public class Foo {\n"
+            + "    void a() {}\n"
+            + "    class Bar {\n"
+            + "        void b() {}\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testTailCall() {
+        assertEquals(Collections.<Class<?>>singleton(ASTMethodDeclaration.class),
+                FusableRuleAnalyzer.getVisitedNodes(TailCallRule.class));
+    }
+
+    @Test
+    public void testReturnDataAfterVisit() {
+        assertEquals(Collections.<Class<?>>singleton(ASTClassOrInterfaceDeclaration.class),
+                FusableRuleAnalyzer.getVisitedNodes(ReturnDataRule.class));
+    }
+
+    @Test
+    public void testInheritedVisitMethods() {
+        assertEquals(2, FusableRuleAnalyzer.getVisitedNodes(SubclassRule.class).size());
+    }
+
+    @Test
+    public void testSkippedChildren() {
+        assertNull(FusableRuleAnalyzer.getVisitedNodes(SkipChildrenRule.class));
+    }
+
+    @Test
+    public void testWorkAfterChildren() {
+        assertNull(FusableRuleAnalyzer.getVisitedNodes(WorkAfterChildrenRule.class));
+    }
+
+    @Test
+    public void testOwnVisitation() {
+        assertNull(FusableRuleAnalyzer.getVisitedNodes(ChildrenAcceptRule.class));
+    }
+
+    @Test
+    public void testVisitType() {
+        assertEquals(ASTMethodDeclaration.class, FusableRuleAnalyzer.getVisitType(ASTMethodDeclaration.class));
+        assertEquals(ASTResource.class, FusableRuleAnalyzer.getVisitType(ASTResource.class));
+        assertEquals(ASTFormalParameter.class, FusableRuleAnalyzer.getVisitType(ASTFormalParameter.class));
+    }
+
+    @Test
+    public void testFusedRulesFindSameViolations() throws Exception {
+        assertEquals(3, process(false).size());
+        assertEquals(3, process(true).size());
+    }
+
+    @Test
+    public void testFusedRulesAreBenchmarked() throws Exception {
+        Benchmarker.reset();
+        Benchmarker.setEnabled(true);
+        try {
+            process(true);
+            assertTrue("Fused rule is missing in the benchmark", Benchmarker.values().containsKey("TailCall"));
+            assertTrue(Benchmarker.values().containsKey("SkipChildren"));
+        } finally {
+            Benchmarker.setEnabled(false);
+            Benchmarker.reset();
+        }
+    }
+
+    private Report process(boolean fuseRules) throws Exception {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setIgnoreIncrementalAnalysis(true);
+        configuration.setFuseRules(fuseRules);
+        LanguageVersion languageVersion = LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+        RuleContext ctx = new RuleContext();
+        Report report = new Report();
+        ctx.setReport(report);
+        ctx.setSourceCodeFilename("n/a");
+        ctx.setLanguageVersion(languageVersion);
+        ctx.setIgnoreExceptions(false);
+
+        RuleSetFactory factory = new RuleSetFactory();
+        RuleSets ruleSets = new RuleSets();
+        ruleSets.addRuleSet(factory.createSingleRuleRuleSet(new TailCallRule()));
+        ruleSets.addRuleSet(factory.createSingleRuleRuleSet(new SkipChildrenRule()));
+        new SourceCodeProcessor(configuration).processSourceCode(new StringReader(TEST_CODE), ruleSets, ctx);
+        return report;
+    }
+
+    public static class TailCallRule extends AbstractJavaRule {
+        public TailCallRule() {
+            setName("TailCall");
+            setMessage("method");
+        }
+
+        @Override
+        public Object visit(ASTMethodDeclaration node, Object data) {
+            addViolation(data, node);
+            return super.visit(node, data);
+        }
+    }
+
+    public static class ReturnDataRule extends AbstractJavaRule {
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            if (node.isNested()) {
+                addViolation(data, node);
+            }
+            super.visit(node, data);
+            return data;
+        }
+    }
+
+    public static class SubclassRule extends TailCallRule {
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            return super.visit(node, data);
+        }
+    }
+
+    public static class SkipChildrenRule extends AbstractJavaRule {
+        public SkipChildrenRule() {
+            setName("SkipChildren");
+            setMessage("top level class");
+        }
+
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            if (node.isNested()) {
+                return data;
+            }
+            addViolation(data, node);
+            return super.visit(node, data);
+        }
+    }
+
+    public static class WorkAfterChildrenRule extends AbstractJavaRule {
+        private int depth;
+
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            depth++;
+            super.visit(node, data);
+            depth--;
+            return data;
+        }
+    }
+
+    public static class ChildrenAcceptRule extends AbstractJavaRule {
+        @Override
+        public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
+            node.childrenAccept(this, data);
+            return data;
+        }
+    }
+}
@@ -5,8 +5,10 @@
 package net.sourceforge.pmd.lang.java.rule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.StringReader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -186,6 +188,55 @@ public class XPathRuleTest extends RuleTst {
         assertEquals(5, nodes.get(1).getBeginLine());
     }
 
+    @Test
+    public void testSaxonRuleChain() throws Exception {
+        rule.setXPath("//VariableDeclaratorId[string-length(@Image) < 3] | //ClassOrInterfaceDeclaration[@Image='Foo']");
+        rule.setVersion(XPathRuleQuery.XPATH_2_0);
+        assertEquals(Arrays.asList("VariableDeclaratorId", "ClassOrInterfaceDeclaration"), rule.getRuleChainVisits());
+        Report report = getReportForTestString(rule, TEST1);
+        assertEquals(2, report.size());
+    }
+
+    @Test
+    public void testSaxonNoRuleChain() throws Exception {
+        rule.setXPath("//VariableDeclaratorId[string-length(@Image) < 3]/ancestor::ClassOrInterfaceBody");
+        rule.setVersion(XPathRuleQuery.XPATH_2_0);
+        assertTrue(rule.getRuleChainVisits().isEmpty());
+        Report report = getReportForTestString(rule, TEST1);
+        assertEquals(1, report.size());
+    }
+
+    /**
+     * The Saxon tree is cached per thread for the current AST, switching
+     * between ASTs must not mix up the nodes.
+     */
+    @Test
+    public void testSaxonAlternatingAsts() throws Exception {
+        LanguageVersion language = LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+        ParserOptions parserOptions = language.getLanguageVersionHandler().getDefaultParserOptions();
+        Parser parser = language.getLanguageVersionHandler().getParser(parserOptions);
+        ASTCompilationUnit cu1 = (ASTCompilationUnit) parser.parse("test1", new StringReader(TEST1));
+        ASTCompilationUnit cu2 = (ASTCompilationUnit) parser.parse("test2", new StringReader(TEST2));
+        RuleContext ruleContext = new RuleContext();
+        ruleContext.setLanguageVersion(language);
+
+        XPathRuleQuery xpathRuleQuery = new SaxonXPathRuleQuery();
+        xpathRuleQuery.setXPath("//VariableDeclaratorId");
+        xpathRuleQuery.setProperties(new HashMap<PropertyDescriptor<?>, Object>());
+        xpathRuleQuery.setVersion(XPathRuleQuery.XPATH_2_0);
+
+        for (int i = 0; i < 2; i++) {
+            List<Node> nodes = xpathRuleQuery.evaluate(cu1, ruleContext);
+            assertEquals(1, nodes.size());
+            assertEquals("a", nodes.get(0).getImage());
+
+            nodes = xpathRuleQuery.evaluate(cu2, ruleContext);
+            assertEquals(2, nodes.size());
+            assertEquals("faddle", nodes.get(0).getImage());
+            assertEquals("fiddle", nodes.get(1).getImage());
+        }
+    }
+
     private static Report getReportForTestString(Rule r, String test) throws PMDException {
         PMD p = new PMD();
         RuleContext ctx = new RuleContext();
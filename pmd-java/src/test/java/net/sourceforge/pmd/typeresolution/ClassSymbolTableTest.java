@@ -0,0 +1,156 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.typeresolution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.lang.java.typeresolution.ClassSymbol;
+import net.sourceforge.pmd.lang.java.typeresolution.ClassSymbolTable;
+import net.sourceforge.pmd.lang.java.typeresolution.MemberSymbol;
+import net.sourceforge.pmd.util.ClasspathClassLoader;
+
+public class ClassSymbolTableTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ClassSymbolTable table;
+
+    @Before
+    public void setUp() {
+        // the classes are only read, never loaded
+        ClassLoader noLoading = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                throw new ClassNotFoundException(name);
+            }
+        };
+        table = ClassSymbolTable.getInstance(noLoading);
+    }
+
+    @Test
+    public void testHeader() {
+        ClassSymbol symbol = table.getSymbol("org.apache.commons.lang3.tuple.ImmutablePair");
+        assertEquals("org.apache.commons.lang3.tuple.ImmutablePair", symbol.getBinaryName());
+        assertEquals("org.apache.commons.lang3.tuple.Pair", symbol.getSuperName());
+        assertEquals(2, symbol.getTypeParameterCount());
+        assertTrue(symbol.isPublic());
+        assertFalse(symbol.isInterface());
+        assertSame(symbol, table.getSymbol("org.apache.commons.lang3.tuple.ImmutablePair"));
+    }
+
+    @Test
+    public void testNestedClass() {
+        ClassSymbol symbol = table.getSymbol("net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Nested");
+        assertTrue(symbol.isInterface());
+        assertTrue(symbol.getInterfaces().contains("java.lang.Comparable"));
+        assertEquals(1, symbol.getTypeParameterCount());
+        assertTrue(table.getSymbol("net.sourceforge.pmd.typeresolution.ClassSymbolTableTest").getInnerClasses()
+                .contains("net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Nested"));
+    }
+
+    @Test
+    public void testMissingClass() {
+        assertNull(table.getSymbol("net.sourceforge.pmd.typeresolution.DoesNotExist"));
+        assertFalse(table.exists("net.sourceforge.pmd.typeresolution.DoesNotExist"));
+        assertFalse(table.exists("org.apache.commons.lang3.stringutils"));
+        assertTrue(table.exists("java.lang.String"));
+    }
+
+    @Test
+    public void testMembers() {
+        boolean found = false;
+        for (MemberSymbol method : table.getSymbol("org.apache.commons.lang3.StringUtils").getMethods()) {
+            if ("isEmpty".equals(method.getName())) {
+                found = method.isPublic() && method.isStatic();
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testIsSubtype() {
+        assertEquals(Boolean.TRUE, table.isSubtype("org.apache.commons.lang3.tuple.ImmutablePair",
+                "org.apache.commons.lang3.tuple.Pair"));
+        assertEquals(Boolean.TRUE, table.isSubtype("net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Derived",
+                "net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Base"));
+        assertEquals(Boolean.FALSE, table.isSubtype("net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Base",
+                "net.sourceforge.pmd.typeresolution.ClassSymbolTableTest$Derived"));
+        assertNull(table.isSubtype("org.apache.commons.lang3.tuple.ImmutablePair",
+                "net.sourceforge.pmd.typeresolution.DoesNotExist"));
+    }
+
+    @Test
+    public void testSymbolIndex() throws Exception {
+        File indexDirectory = tempFolder.newFolder();
+        String jar = new File(StringUtils.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+        for (int run = 0; run < 2; run++) {
+            // the second run reads the index, which the first one created
+            ClasspathClassLoader loader = new ClasspathClassLoader(jar, ClassLoader.getSystemClassLoader().getParent());
+            loader.setSymbolIndexDirectory(indexDirectory);
+            ClassSymbolTable indexedTable = ClassSymbolTable.getInstance(loader);
+
+            assertTrue(indexedTable.isIndexed());
+            ClassSymbol symbol = indexedTable.getSymbol("org.apache.commons.lang3.tuple.ImmutablePair");
+            assertEquals("org.apache.commons.lang3.tuple.Pair", symbol.getSuperName());
+            assertEquals(2, symbol.getTypeParameterCount());
+            assertFalse(symbol.getMethods().isEmpty());
+            assertTrue(indexedTable.getSymbol("org.apache.commons.lang3.builder.ToStringStyle").getInnerClasses()
+                    .contains("org.apache.commons.lang3.builder.ToStringStyle$DefaultToStringStyle"));
+            assertFalse(indexedTable.exists("org.apache.commons.lang3.DoesNotExist"));
+            assertTrue(indexedTable.exists("java.lang.String"));
+            assertEquals(1, indexDirectory.list().length);
+        }
+    }
+
+    @Test
+    public void testSymbolIndexFollowsManifestClassPath() throws Exception {
+        File indexDirectory = tempFolder.newFolder();
+        File commonsLang = new File(StringUtils.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File jar = tempFolder.newFile("manifest-only.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, commonsLang.toURI().toString());
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            out.flush();
+        }
+
+        ClasspathClassLoader loader = new ClasspathClassLoader(jar.getPath(),
+                ClassLoader.getSystemClassLoader().getParent());
+        loader.setSymbolIndexDirectory(indexDirectory);
+        ClassSymbolTable indexedTable = ClassSymbolTable.getInstance(loader);
+
+        assertTrue(indexedTable.isIndexed());
+        // the class loader finds the classes of the Class-Path, so the index must know them, too
+        assertTrue(indexedTable.exists("org.apache.commons.lang3.StringUtils"));
+        assertEquals(2, indexDirectory.list().length);
+    }
+
+    private interface Nested<T> extends Comparable<T> {
+    }
+
+    private static class Base {
+    }
+
+    private static class Derived extends Base {
+    }
+}
@@ -30,6 +30,7 @@ import org.jaxen.JaxenException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.sourceforge.pmd.cache.TypeDependencies;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.ast.Node;
@@ -1803,6 +1804,21 @@ public class ClassTypeResolverTest {
         parseAndTypeResolveForClass(MethodGenericParam.class, "1.8");
     }
 
+    @Test
+    public void testTypesOfMembersAreRecorded() {
+        Set<String> types;
+        TypeDependencies.startRecording();
+        try {
+            parseAndTypeResolveForClass15(FieldAccessStatic.class);
+        } finally {
+            types = TypeDependencies.stopRecording();
+        }
+
+        assertTrue(types.contains(StaticMembers.class.getName()));
+        // only known by reflection, as the type of a field of StaticMembers
+        assertTrue(types.contains(GenericClass.class.getName()));
+    }
+
     @Test
     public void testAbstractMethodReturnType() throws Exception {
         parseAndTypeResolveForClass(AbstractReturnTypeUseCase.class, "1.8");
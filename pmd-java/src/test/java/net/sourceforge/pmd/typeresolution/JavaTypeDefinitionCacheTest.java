@@ -0,0 +1,123 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.typeresolution;
+
+import static net.sourceforge.pmd.lang.java.typeresolution.typedefinition.TypeDefinitionType.UPPER_WILDCARD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefinition;
+
+public class JavaTypeDefinitionCacheTest {
+
+    @Test
+    public void testParameterizedTypesAreInterned() {
+        JavaTypeDefinition string = JavaTypeDefinition.forClass(String.class);
+        JavaTypeDefinition listOfString = JavaTypeDefinition.forClass(List.class, string);
+
+        assertSame(string, JavaTypeDefinition.forClass(String.class));
+        assertSame(listOfString, JavaTypeDefinition.forClass(List.class, string));
+        assertSame(JavaTypeDefinition.forClass(Map.class, string, listOfString),
+                JavaTypeDefinition.forClass(Map.class, string, JavaTypeDefinition.forClass(List.class, string)));
+        assertNotSame(listOfString, JavaTypeDefinition.forClass(List.class));
+    }
+
+    @Test
+    public void testWildcardsAreNotInterned() {
+        JavaTypeDefinition wildcard = JavaTypeDefinition.forClass(UPPER_WILDCARD, Number.class);
+
+        assertNotSame(JavaTypeDefinition.forClass(List.class, wildcard),
+                JavaTypeDefinition.forClass(List.class, wildcard));
+        assertEquals(JavaTypeDefinition.forClass(List.class, wildcard),
+                JavaTypeDefinition.forClass(List.class, wildcard));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JavaTypeDefinition>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<JavaTypeDefinition>() {
+                    @Override
+                    public JavaTypeDefinition call() {
+                        JavaTypeDefinition raw = JavaTypeDefinition.forClass(Recursive.class);
+                        // resolves the bound of the raw type lazily
+                        raw.getGenericType(0);
+                        return JavaTypeDefinition.forClass(Map.class, raw, JavaTypeDefinition.forClass(Long.class));
+                    }
+                }));
+            }
+            JavaTypeDefinition expected = results.get(0).get();
+            for (Future<JavaTypeDefinition> result : results) {
+                assertSame(expected, result.get());
+            }
+            assertSame(Comparable.class, expected.getGenericType(0).getGenericType(0).getType());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentSelfReferentialGenerics() throws Exception {
+        final Class<?>[] types = {Enum.class, SelfA.class, SelfB.class, SelfC.class, SelfD.class};
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Class<?>>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<List<Class<?>>>() {
+                    @Override
+                    public List<Class<?>> call() throws InterruptedException {
+                        start.await();
+                        List<Class<?>> resolved = new ArrayList<>();
+                        for (Class<?> type : types) {
+                            // E extends Enum<E>: the bound of the raw type is the type itself
+                            resolved.add(JavaTypeDefinition.forClass(type).getGenericType(0).getType());
+                        }
+                        return resolved;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<List<Class<?>>> result : results) {
+                List<Class<?>> resolved = result.get();
+                for (int i = 0; i < types.length; i++) {
+                    assertSame(types[i], resolved.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Recursive<T extends Comparable<T>> {
+    }
+
+    private interface SelfA<T extends SelfA<T>> {
+    }
+
+    private interface SelfB<T extends SelfB<T>> {
+    }
+
+    private interface SelfC<T extends SelfC<T>> {
+    }
+
+    private interface SelfD<T extends SelfD<T>> {
+    }
+}
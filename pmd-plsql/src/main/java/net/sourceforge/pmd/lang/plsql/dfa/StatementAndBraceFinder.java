@@ -98,6 +98,7 @@ public class StatementAndBraceFinder extends PLSQLParserVisitorAdapter {
             LOGGER.severe("SequenceException");
             e.printStackTrace();
         }
+        this.dataFlow.compact();
         LOGGER.exiting(this.getClass().getCanonicalName(), "buildDataFlowFor");
     }
 